@@ -0,0 +1,529 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.OptionalExamples.Address;
+import com.example.java8.OptionalExamples.User;
+
+/**
+ * Java 8 异步 Optional 查找示例类
+ * 展示 CompletableFuture&lt;Optional&lt;T&gt;&gt; 的批量加载、请求合并和带 TTL 的缓存（包括"不存在"结果的负缓存）
+ */
+public class AsyncOptionalExamples {
+
+    /**
+     * 1. 基本异步查找：返回 CompletableFuture&lt;Optional&lt;User&gt;&gt;
+     */
+    public static void basicAsyncLookup() {
+        System.out.println("=== 基本异步 Optional 查找 ===");
+
+        SlowUserStore store = new SlowUserStore(20);
+        AsyncOptionalLoader<Integer, User> loader = AsyncOptionalLoader.<Integer, User>builder(store::loadAll)
+            .build();
+
+        try {
+            CompletableFuture<Optional<User>> future = loader.load(1);
+            String city = future.join()
+                .map(User::getAddress)
+                .map(Address::getCity)
+                .orElse("未知城市");
+            System.out.println("异步查找用户所在城市: " + city);
+
+            String missing = loader.load(999).join()
+                .map(User::getName)
+                .orElse("用户不存在");
+            System.out.println("异步查找不存在的用户: " + missing);
+            System.out.println("后端调用次数: " + store.getCallCount());
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    /**
+     * 2. 并发请求合并：同一个 id 的并发请求只触发一次加载
+     */
+    public static void coalescingConcurrentRequests() {
+        System.out.println("\n=== 并发请求合并 ===");
+
+        SlowUserStore store = new SlowUserStore(50);
+        AsyncOptionalLoader<Integer, User> loader = AsyncOptionalLoader.<Integer, User>builder(store::loadAll)
+            .build();
+
+        try {
+            List<CompletableFuture<Optional<User>>> futures = IntStream.range(0, 100)
+                .parallel()
+                .mapToObj(i -> loader.load(1))
+                .collect(Collectors.toList());
+
+            long found = futures.stream()
+                .map(CompletableFuture::join)
+                .filter(Optional::isPresent)
+                .count();
+
+            System.out.println("100 个并发请求，找到用户次数: " + found);
+            System.out.println("后端调用次数: " + store.getCallCount());
+            System.out.println("后端加载的 key 总数: " + store.getKeyCount());
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    /**
+     * 3. 批量加载：多个不同 id 合并为一次后端调用（DataLoader 风格）
+     */
+    public static void batchingManyIds() {
+        System.out.println("\n=== 批量加载多个 id ===");
+
+        SlowUserStore store = new SlowUserStore(30);
+        AsyncOptionalLoader<Integer, User> loader = AsyncOptionalLoader.<Integer, User>builder(store::loadAll)
+            .batchWindowMillis(5)
+            .maxBatchSize(64)
+            .build();
+
+        try {
+            List<Integer> ids = Arrays.asList(1, 2, 3, 4, 5, 999, 1000);
+
+            // loadMany 返回的 Map 保持请求顺序
+            Map<Integer, Optional<User>> users = loader.loadMany(ids).join();
+            users.forEach((id, user) ->
+                System.out.println("  id=" + id + " -> " + user.map(User::getName).orElse("不存在")));
+
+            System.out.println("后端调用次数: " + store.getCallCount());
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    /**
+     * 4. TTL 缓存与负缓存：命中缓存后 Optional 链不再重复查询
+     */
+    public static void ttlAndNegativeCaching() {
+        System.out.println("\n=== TTL 缓存与负缓存 ===");
+
+        SlowUserStore store = new SlowUserStore(10);
+        AsyncOptionalLoader<Integer, User> loader = AsyncOptionalLoader.<Integer, User>builder(store::loadAll)
+            .ttlMillis(200)
+            .negativeTtlMillis(50)
+            .build();
+
+        try {
+            // 模拟 realWorldScenarios 中的多条 Optional 链
+            for (int i = 0; i < 3; i++) {
+                String name = loader.load(1).join().map(User::getName).orElse("用户不存在");
+                String city = loader.load(1).join().map(User::getAddress).map(Address::getCity).orElse("未知城市");
+                String missing = loader.load(999).join().map(User::getName).orElse("默认用户");
+                System.out.println("  第" + (i + 1) + "轮: " + name + ", " + city + ", " + missing);
+            }
+            System.out.println("缓存有效期内后端调用次数: " + store.getCallCount());
+
+            // 负缓存先过期，只有不存在的 id 会被重新加载
+            sleepQuietly(80);
+            loader.load(1).join();
+            loader.load(999).join();
+            System.out.println("负缓存过期后后端调用次数: " + store.getCallCount());
+
+            // 手动失效
+            loader.invalidate(1);
+            loader.load(1).join();
+            System.out.println("手动失效后后端调用次数: " + store.getCallCount());
+            System.out.println("加载器统计: " + loader.stats());
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    /**
+     * 5. 异常处理：加载失败不会被缓存，下一次请求会重试
+     */
+    public static void failureHandling() {
+        System.out.println("\n=== 加载失败处理 ===");
+
+        AtomicInteger attempts = new AtomicInteger();
+        AsyncOptionalLoader<Integer, User> loader = AsyncOptionalLoader.<Integer, User>builder(keys -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("后端暂时不可用");
+            }
+            Map<Integer, User> result = new HashMap<>();
+            keys.forEach(id -> result.put(id, new User("User" + id, new Address("上海", "浦东新区"))));
+            return result;
+        }).build();
+
+        try {
+            String first = loader.load(7)
+                .thenApply(user -> user.map(User::getName).orElse("用户不存在"))
+                .exceptionally(e -> "加载失败: " + rootCause(e).getMessage())
+                .join();
+            System.out.println("第一次: " + first);
+
+            String second = loader.load(7).join().map(User::getName).orElse("用户不存在");
+            System.out.println("第二次: " + second);
+        } finally {
+            loader.shutdown();
+        }
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        Throwable current = e;
+        while ((current instanceof CompletionException || current instanceof ExecutionException)
+                && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        basicAsyncLookup();
+        coalescingConcurrentRequests();
+        batchingManyIds();
+        ttlAndNegativeCaching();
+        failureHandling();
+    }
+
+    /**
+     * 批量加载函数：一次后端调用加载一组 key，不存在的 key 不出现在返回的 Map 中
+     */
+    @FunctionalInterface
+    interface BatchLoader<K, V> {
+        Map<K, V> loadAll(Set<K> keys) throws Exception;
+    }
+
+    /**
+     * 异步 Optional 加载器
+     * - 同一个 key 的并发请求共享同一个 CompletableFuture（请求合并）
+     * - 批处理窗口内的不同 key 合并为一次 BatchLoader 调用
+     * - 存在和不存在的结果分别按 ttl / negativeTtl 缓存，失败结果不缓存
+     */
+    static class AsyncOptionalLoader<K, V> {
+        private final BatchLoader<K, V> batchLoader;
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+        private final long batchWindowMillis;
+        private final int maxBatchSize;
+        private final Executor loadExecutor;
+        private final boolean ownsExecutor;
+
+        private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+        private final Object batchLock = new Object();
+        private final ScheduledExecutorService scheduler;
+
+        // 以下字段由 batchLock 保护
+        private Map<K, CompletableFuture<Optional<V>>> pending = new LinkedHashMap<>();
+        private boolean dispatchScheduled;
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder batches = new LongAdder();
+
+        // 过期条目的清理是 O(缓存大小) 的全表扫描，按时间节流而不是每批都做
+        private static final long MIN_PURGE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+        private final long purgeIntervalNanos;
+        private final AtomicLong nextPurgeAt;
+
+        private AsyncOptionalLoader(Builder<K, V> builder) {
+            this.batchLoader = builder.batchLoader;
+            this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(builder.ttlMillis);
+            this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(builder.negativeTtlMillis);
+            this.batchWindowMillis = builder.batchWindowMillis;
+            this.maxBatchSize = builder.maxBatchSize;
+            this.ownsExecutor = builder.loadExecutor == null;
+            this.loadExecutor = ownsExecutor ? Executors.newCachedThreadPool(daemonThreads("loader")) : builder.loadExecutor;
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("loader-batch"));
+            // 两次清理之间新过期的条目最多存活一个较短的 TTL（至少 1 秒），缓存中的过期垃圾因此有上界
+            this.purgeIntervalNanos = Math.max(Math.min(ttlNanos, negativeTtlNanos), MIN_PURGE_INTERVAL_NANOS);
+            this.nextPurgeAt = new AtomicLong(System.nanoTime() + purgeIntervalNanos);
+        }
+
+        public static <K, V> Builder<K, V> builder(BatchLoader<K, V> batchLoader) {
+            return new Builder<>(batchLoader);
+        }
+
+        /**
+         * 异步加载单个 key
+         */
+        public CompletableFuture<Optional<V>> load(K key) {
+            Objects.requireNonNull(key, "key");
+            long now = System.nanoTime();
+
+            Entry<V> existing = entries.get(key);
+            if (existing != null && !existing.isExpired(now)) {
+                hits.increment();
+                return existing.future;
+            }
+
+            Entry<V> created = new Entry<>(new CompletableFuture<>());
+            Entry<V> winner = entries.compute(key, (k, current) ->
+                current != null && !current.isExpired(now) ? current : created);
+            if (winner != created) {
+                hits.increment();
+                return winner.future;
+            }
+
+            misses.increment();
+            enqueue(key, created);
+            return created.future;
+        }
+
+        /**
+         * 异步加载多个 key，结果 Map 按请求顺序排列
+         */
+        public CompletableFuture<Map<K, Optional<V>>> loadMany(Collection<K> keys) {
+            Map<K, CompletableFuture<Optional<V>>> futures = new LinkedHashMap<>();
+            keys.forEach(key -> futures.put(key, load(key)));
+
+            return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    Map<K, Optional<V>> result = new LinkedHashMap<>();
+                    futures.forEach((key, future) -> result.put(key, future.join()));
+                    return result;
+                });
+        }
+
+        /**
+         * 使缓存中的 key 失效，下一次 load 会重新加载
+         */
+        public void invalidate(K key) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.future.isDone()) {
+                entries.remove(key, entry);
+            }
+        }
+
+        public void invalidateAll() {
+            entries.entrySet().removeIf(e -> e.getValue().future.isDone());
+        }
+
+        public String stats() {
+            return "hits=" + hits.sum() + ", misses=" + misses.sum() + ", batches=" + batches.sum()
+                + ", size=" + entries.size();
+        }
+
+        public void shutdown() {
+            scheduler.shutdownNow();
+            // 被取消的定时任务不会再派发，还在攒批的 key 直接失败，避免调用方永远等待
+            Map<K, CompletableFuture<Optional<V>>> stranded;
+            synchronized (batchLock) {
+                stranded = pending;
+                pending = new LinkedHashMap<>();
+                dispatchScheduled = false;
+            }
+            fail(stranded, new RejectedExecutionException("loader 已关闭"));
+            if (ownsExecutor) {
+                // 已经提交的批次仍然执行完，shutdownNow 会丢弃排队中的任务而不完成它们的 future
+                ((ExecutorService) loadExecutor).shutdown();
+            }
+        }
+
+        private void enqueue(K key, Entry<V> entry) {
+            Map<K, CompletableFuture<Optional<V>>> toDispatch = null;
+            RejectedExecutionException rejected = null;
+            synchronized (batchLock) {
+                pending.put(key, entry.future);
+                if (pending.size() >= maxBatchSize) {
+                    toDispatch = pending;
+                    pending = new LinkedHashMap<>();
+                } else if (!dispatchScheduled) {
+                    try {
+                        scheduler.schedule(this::dispatchPending, batchWindowMillis, TimeUnit.MILLISECONDS);
+                        dispatchScheduled = true;
+                    } catch (RejectedExecutionException e) {
+                        // 已经 shutdown：这一批永远不会被调度，直接让它们失败
+                        toDispatch = pending;
+                        pending = new LinkedHashMap<>();
+                        rejected = e;
+                    }
+                }
+            }
+            if (rejected != null) {
+                fail(toDispatch, rejected);
+            } else if (toDispatch != null) {
+                dispatch(toDispatch);
+            }
+        }
+
+        private void dispatchPending() {
+            Map<K, CompletableFuture<Optional<V>>> toDispatch;
+            synchronized (batchLock) {
+                dispatchScheduled = false;
+                if (pending.isEmpty()) {
+                    return;
+                }
+                toDispatch = pending;
+                pending = new LinkedHashMap<>();
+            }
+            dispatch(toDispatch);
+        }
+
+        private void dispatch(Map<K, CompletableFuture<Optional<V>>> batch) {
+            batches.increment();
+            purgeExpired(System.nanoTime());
+            CompletableFuture<Map<K, V>> loading;
+            try {
+                loading = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return batchLoader.loadAll(Collections.unmodifiableSet(batch.keySet()));
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, loadExecutor);
+            } catch (RejectedExecutionException e) {
+                fail(batch, e);
+                return;
+            }
+            loading.whenComplete((values, error) -> {
+                if (error != null) {
+                    fail(batch, error);
+                    return;
+                }
+                long now = System.nanoTime();
+                batch.forEach((key, future) -> {
+                    Optional<V> value = Optional.ofNullable(values == null ? null : values.get(key));
+                    Entry<V> entry = entries.get(key);
+                    if (entry != null && entry.future == future) {
+                        entry.expiresAt = now + (value.isPresent() ? ttlNanos : negativeTtlNanos);
+                    }
+                    future.complete(value);
+                });
+            });
+        }
+
+        /**
+         * 只有未命中才会新增条目并走到 dispatch，在这里顺带清理过期条目，避免 entries 无限增长；
+         * 每个清理间隔最多一个线程扫描一次，单次未命中的开销不随缓存大小增长
+         */
+        private void purgeExpired(long now) {
+            long due = nextPurgeAt.get();
+            if (now - due >= 0 && nextPurgeAt.compareAndSet(due, now + purgeIntervalNanos)) {
+                entries.values().removeIf(entry -> entry.isExpired(now));
+            }
+        }
+
+        /**
+         * 失败不缓存：先移除条目再通知调用方，保证重试能触发新的加载
+         */
+        private void fail(Map<K, CompletableFuture<Optional<V>>> batch, Throwable error) {
+            batch.forEach((key, future) -> {
+                entries.computeIfPresent(key, (k, e) -> e.future == future ? null : e);
+                future.completeExceptionally(error);
+            });
+        }
+
+        private static ThreadFactory daemonThreads(String prefix) {
+            AtomicInteger counter = new AtomicInteger();
+            return runnable -> {
+                Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+
+        /**
+         * 缓存条目：加载中的条目 expiresAt 为 Long.MAX_VALUE，加载完成后再设置过期时间
+         */
+        private static class Entry<V> {
+            final CompletableFuture<Optional<V>> future;
+            volatile long expiresAt = Long.MAX_VALUE;
+
+            Entry(CompletableFuture<Optional<V>> future) {
+                this.future = future;
+            }
+
+            boolean isExpired(long now) {
+                return now - expiresAt >= 0 && expiresAt != Long.MAX_VALUE;
+            }
+        }
+
+        static class Builder<K, V> {
+            private final BatchLoader<K, V> batchLoader;
+            private long ttlMillis = TimeUnit.MINUTES.toMillis(5);
+            private long negativeTtlMillis = TimeUnit.SECONDS.toMillis(30);
+            private long batchWindowMillis = 2;
+            private int maxBatchSize = 100;
+            private Executor loadExecutor;
+
+            Builder(BatchLoader<K, V> batchLoader) {
+                this.batchLoader = Objects.requireNonNull(batchLoader, "batchLoader");
+            }
+
+            public Builder<K, V> ttlMillis(long ttlMillis) {
+                this.ttlMillis = ttlMillis;
+                return this;
+            }
+
+            public Builder<K, V> negativeTtlMillis(long negativeTtlMillis) {
+                this.negativeTtlMillis = negativeTtlMillis;
+                return this;
+            }
+
+            public Builder<K, V> batchWindowMillis(long batchWindowMillis) {
+                this.batchWindowMillis = batchWindowMillis;
+                return this;
+            }
+
+            public Builder<K, V> maxBatchSize(int maxBatchSize) {
+                if (maxBatchSize < 1) {
+                    throw new IllegalArgumentException("maxBatchSize 必须大于 0: " + maxBatchSize);
+                }
+                this.maxBatchSize = maxBatchSize;
+                return this;
+            }
+
+            public Builder<K, V> loadExecutor(Executor loadExecutor) {
+                this.loadExecutor = loadExecutor;
+                return this;
+            }
+
+            public AsyncOptionalLoader<K, V> build() {
+                return new AsyncOptionalLoader<>(this);
+            }
+        }
+    }
+
+    /**
+     * 模拟慢速用户存储：每次批量调用固定延迟，并记录调用次数
+     */
+    static class SlowUserStore {
+        private final long latencyMillis;
+        private final AtomicInteger callCount = new AtomicInteger();
+        private final AtomicInteger keyCount = new AtomicInteger();
+
+        SlowUserStore(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        public Map<Integer, User> loadAll(Set<Integer> ids) {
+            callCount.incrementAndGet();
+            keyCount.addAndGet(ids.size());
+            sleepQuietly(latencyMillis);
+
+            Map<Integer, User> result = new HashMap<>();
+            for (Integer id : ids) {
+                if (id == 1) {
+                    result.put(id, new User("Alice", new Address("北京", "朝阳区")));
+                } else if (id > 1 && id <= 5) {
+                    result.put(id, new User("User" + id, new Address("上海", "浦东新区")));
+                }
+            }
+            return result;
+        }
+
+        public int getCallCount() { return callCount.get(); }
+        public int getKeyCount() { return keyCount.get(); }
+    }
+}
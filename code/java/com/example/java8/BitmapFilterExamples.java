@@ -0,0 +1,822 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.StreamAdvancedExamples.Product;
+
+/**
+ * Java 8 压缩位图过滤示例类
+ * 为产品目录上的每个谓词缓存一个 Roaring 风格的压缩位图：多个谓词的 AND / OR 变成位图运算，
+ * 目录更新时增量修补谓词位图并让组合查询的缓存失效，结果以匹配产品的 Stream 返回
+ */
+public class BitmapFilterExamples {
+
+    /**
+     * 1. dynamicStreamBuilding 中的组合谓词改为位图运算
+     */
+    public static void basicBitmapFilters() {
+        System.out.println("=== 谓词位图 ===");
+
+        ProductCatalog catalog = new ProductCatalog();
+        catalog.add(new Product("Laptop", 1200.0, "Electronics", true));
+        catalog.add(new Product("Mouse", 25.0, "Electronics", false));
+        catalog.add(new Product("Desk", 300.0, "Furniture", true));
+        catalog.add(new Product("Keyboard", 80.0, "Electronics", true));
+        catalog.add(new Product("Chair", 150.0, "Furniture", false));
+
+        catalog.define("price>100", p -> p.getPrice() > 100);
+        catalog.define("inStock", Product::isInStock);
+        catalog.define("electronics", p -> p.getCategory().equals("Electronics"));
+        catalog.define("furniture", p -> p.getCategory().equals("Furniture"));
+
+        BitmapExpr all = BitmapExpr.ref("price>100").and(BitmapExpr.ref("inStock")).and(BitmapExpr.ref("electronics"));
+        System.out.println(all + ": " + catalog.stream(all).collect(Collectors.toList()));
+
+        BitmapExpr either = BitmapExpr.ref("furniture").or(BitmapExpr.ref("electronics").andNot(BitmapExpr.ref("inStock")));
+        System.out.println(either + ": " + catalog.stream(either).map(Product::getName).collect(Collectors.toList()));
+
+        // 更新：Mouse 到货，谓词位图被增量修补，组合查询的缓存失效
+        catalog.update(1, new Product("Mouse", 25.0, "Electronics", true));
+        System.out.println("Mouse 到货后 " + either + ": "
+            + catalog.stream(either).map(Product::getName).collect(Collectors.toList()));
+        System.out.println("缓存统计: " + catalog.stats());
+    }
+
+    /**
+     * 2. 压缩效果：稀疏的谓词用有序数组容器，稠密的谓词用位图容器
+     */
+    public static void containerSelection() {
+        System.out.println("\n=== 容器选择 ===");
+
+        RoaringBitmap sparse = new RoaringBitmap();
+        RoaringBitmap dense = new RoaringBitmap();
+        for (int i = 0; i < 1_000_000; i++) {
+            if (i % 1000 == 0) {
+                sparse.add(i);
+            }
+            if (i % 3 != 0) {
+                dense.add(i);
+            }
+        }
+        System.out.println("稀疏: " + sparse.describe());
+        System.out.println("稠密: " + dense.describe());
+
+        RoaringBitmap both = RoaringBitmap.and(sparse, dense);
+        RoaringBitmap either = RoaringBitmap.or(sparse, dense);
+        System.out.println("AND: 基数 " + both.cardinality() + ", 前 5 个: "
+            + both.stream().limit(5).boxed().collect(Collectors.toList()));
+        System.out.println("OR: 基数 " + either.cardinality());
+        System.out.println("ANDNOT: 基数 " + RoaringBitmap.andNot(sparse, dense).cardinality());
+    }
+
+    /**
+     * 3. 对比：每次查询都逐个元素求值组合谓词，与缓存的谓词位图
+     */
+    public static void comparison(int count) {
+        System.out.println("\n=== 对比（" + count + " 个产品）===");
+
+        String[] categories = {"Electronics", "Furniture", "Books", "Toys", "Garden", "Sports"};
+        Random random = new Random(17);
+        ProductCatalog catalog = new ProductCatalog();
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Product product = new Product("P" + i, random.nextInt(200_000) / 100.0,
+                categories[random.nextInt(categories.length)], random.nextInt(10) < 7);
+            products.add(product);
+            catalog.add(product);
+        }
+
+        Map<String, Predicate<Product>> predicates = new LinkedHashMap<>();
+        predicates.put("inStock", Product::isInStock);
+        predicates.put("price>100", p -> p.getPrice() > 100);
+        predicates.put("price<500", p -> p.getPrice() < 500);
+        for (String category : categories) {
+            predicates.put(category, p -> p.getCategory().equals(category));
+        }
+        predicates.forEach(catalog::define);
+
+        List<String> names = new ArrayList<>(predicates.keySet());
+        List<BitmapExpr> queries = new ArrayList<>();
+        List<Predicate<Product>> streamQueries = new ArrayList<>();
+        for (int q = 0; q < 100; q++) {
+            String a = names.get(3 + q % categories.length);
+            String b = names.get(3 + (q + 1) % categories.length);
+            String range = q % 2 == 0 ? "price>100" : "price<500";
+            queries.add(BitmapExpr.ref("inStock").and(BitmapExpr.ref(range)).and(BitmapExpr.ref(a).or(BitmapExpr.ref(b))));
+            streamQueries.add(Stream.of(predicates.get("inStock"), predicates.get(range),
+                predicates.get(a).or(predicates.get(b))).reduce(Predicate::and).orElse(x -> true));
+        }
+
+        long start = System.nanoTime();
+        long streamMatches = 0;
+        for (Predicate<Product> predicate : streamQueries) {
+            streamMatches += products.stream().filter(predicate).count();
+        }
+        long streamNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long cold = 0;
+        for (BitmapExpr query : queries) {
+            cold += catalog.evaluate(query).cardinality();
+        }
+        long coldNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long warm = 0;
+        for (BitmapExpr query : queries) {
+            warm += catalog.evaluate(query).cardinality();
+        }
+        long warmNanos = System.nanoTime() - start;
+
+        catalog.update(0, new Product("P0", 1.0, "Toys", true));
+        start = System.nanoTime();
+        long afterUpdate = 0;
+        for (BitmapExpr query : queries) {
+            afterUpdate += catalog.evaluate(query).cardinality();
+        }
+        long afterUpdateNanos = System.nanoTime() - start;
+
+        System.out.printf("100 个查询: 逐元素谓词 %.1fms, 位图(首次,含构建谓词位图) %.1fms, 位图(缓存命中) %.2fms, 更新后重新组合 %.1fms%n",
+            streamNanos / 1e6, coldNanos / 1e6, warmNanos / 1e6, afterUpdateNanos / 1e6);
+        System.out.println("匹配总数: " + streamMatches + " / " + cold + " / " + warm + " / " + afterUpdate);
+        System.out.println("inStock 位图: " + catalog.bitmap("inStock").describe());
+        System.out.println("缓存统计: " + catalog.stats());
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        basicBitmapFilters();
+        containerSelection();
+        comparison(args.length > 0 ? Integer.parseInt(args[0]) : 500_000);
+    }
+
+    /**
+     * Roaring 风格的压缩位图
+     * 32 位整数按高 16 位分桶，每桶一个容器：元素不超过 4096 个时用有序 char 数组，否则用 1024 个 long 的位图。
+     * 容器在 add / remove 时按基数自动转换；集合运算按容器类型组合选择算法，结果总是新的对象
+     */
+    static final class RoaringBitmap {
+        private char[] keys = new char[4];
+        private Container[] containers = new Container[4];
+        private int size;
+
+        public static RoaringBitmap of(int... values) {
+            RoaringBitmap bitmap = new RoaringBitmap();
+            for (int value : values) {
+                bitmap.add(value);
+            }
+            return bitmap;
+        }
+
+        public void add(int value) {
+            char high = (char) (value >>> 16);
+            int i = indexOf(high);
+            if (i >= 0) {
+                containers[i] = containers[i].add((char) value);
+            } else {
+                insert(-i - 1, high, new ArrayContainer().add((char) value));
+            }
+        }
+
+        public void remove(int value) {
+            int i = indexOf((char) (value >>> 16));
+            if (i < 0) {
+                return;
+            }
+            Container container = containers[i].remove((char) value);
+            if (container.cardinality() == 0) {
+                System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+                System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+                containers[--size] = null;
+            } else {
+                containers[i] = container;
+            }
+        }
+
+        public boolean contains(int value) {
+            int i = indexOf((char) (value >>> 16));
+            return i >= 0 && containers[i].contains((char) value);
+        }
+
+        public long cardinality() {
+            long cardinality = 0;
+            for (int i = 0; i < size; i++) {
+                cardinality += containers[i].cardinality();
+            }
+            return cardinality;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * 按升序遍历所有元素
+         */
+        public void forEach(IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                containers[i].forEach(keys[i] << 16, action);
+            }
+        }
+
+        public IntStream stream() {
+            return IntStream.range(0, size).flatMap(i -> containers[i].stream(keys[i] << 16));
+        }
+
+        public long sizeInBytes() {
+            long bytes = 3L * size;
+            for (int i = 0; i < size; i++) {
+                bytes += containers[i].sizeInBytes();
+            }
+            return bytes;
+        }
+
+        public String describe() {
+            int arrays = 0;
+            int bitmaps = 0;
+            for (int i = 0; i < size; i++) {
+                if (containers[i] instanceof ArrayContainer) {
+                    arrays++;
+                } else {
+                    bitmaps++;
+                }
+            }
+            return String.format("基数 %d, 数组容器 %d, 位图容器 %d, 约 %d KB", cardinality(), arrays, bitmaps,
+                sizeInBytes() / 1024);
+        }
+
+        public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+            RoaringBitmap result = new RoaringBitmap();
+            int i = 0;
+            int j = 0;
+            while (i < a.size && j < b.size) {
+                if (a.keys[i] < b.keys[j]) {
+                    i++;
+                } else if (a.keys[i] > b.keys[j]) {
+                    j++;
+                } else {
+                    Container c = a.containers[i].and(b.containers[j]);
+                    if (c.cardinality() > 0) {
+                        result.append(a.keys[i], c);
+                    }
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+            RoaringBitmap result = new RoaringBitmap();
+            int i = 0;
+            int j = 0;
+            while (i < a.size || j < b.size) {
+                if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                    result.append(a.keys[i], a.containers[i].copy());
+                    i++;
+                } else if (i == a.size || a.keys[i] > b.keys[j]) {
+                    result.append(b.keys[j], b.containers[j].copy());
+                    j++;
+                } else {
+                    result.append(a.keys[i], a.containers[i].or(b.containers[j]));
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+            RoaringBitmap result = new RoaringBitmap();
+            int j = 0;
+            for (int i = 0; i < a.size; i++) {
+                while (j < b.size && b.keys[j] < a.keys[i]) {
+                    j++;
+                }
+                Container c = j < b.size && b.keys[j] == a.keys[i]
+                    ? a.containers[i].andNot(b.containers[j])
+                    : a.containers[i].copy();
+                if (c.cardinality() > 0) {
+                    result.append(a.keys[i], c);
+                }
+            }
+            return result;
+        }
+
+        public RoaringBitmap copy() {
+            RoaringBitmap copy = new RoaringBitmap();
+            for (int i = 0; i < size; i++) {
+                copy.append(keys[i], containers[i].copy());
+            }
+            return copy;
+        }
+
+        private int indexOf(char high) {
+            return Arrays.binarySearch(keys, 0, size, high);
+        }
+
+        private void insert(int index, char high, Container container) {
+            ensureCapacity();
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(containers, index, containers, index + 1, size - index);
+            keys[index] = high;
+            containers[index] = container;
+            size++;
+        }
+
+        private void append(char high, Container container) {
+            ensureCapacity();
+            keys[size] = high;
+            containers[size++] = container;
+        }
+
+        private void ensureCapacity() {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                containers = Arrays.copyOf(containers, size * 2);
+            }
+        }
+    }
+
+    /**
+     * 一个桶（低 16 位）内的元素集合；add / remove 可能返回转换后的新容器
+     */
+    abstract static class Container {
+        static final int ARRAY_MAX = 4096;
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract Container copy();
+
+        abstract void forEach(int high, IntConsumer action);
+
+        abstract IntStream stream(int high);
+
+        abstract int sizeInBytes();
+    }
+
+    /**
+     * 稀疏容器：有序 char 数组
+     */
+    static final class ArrayContainer extends Container {
+        char[] values;
+        int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] out = new char[cardinality];
+            int n = 0;
+            if (other instanceof BitmapContainer) {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        out[n++] = values[i];
+                    }
+                }
+                return new ArrayContainer(out, n);
+            }
+            ArrayContainer b = (ArrayContainer) other;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < b.cardinality) {
+                if (values[i] < b.values[j]) {
+                    i++;
+                } else if (values[i] > b.values[j]) {
+                    j++;
+                } else {
+                    out[n++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer b = (ArrayContainer) other;
+            if (cardinality + b.cardinality > ARRAY_MAX) {
+                BitmapContainer bitmap = toBitmap();
+                for (int j = 0; j < b.cardinality; j++) {
+                    bitmap.set(b.values[j]);
+                }
+                return bitmap.normalize();
+            }
+            char[] out = new char[cardinality + b.cardinality];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < cardinality || j < b.cardinality) {
+                if (j == b.cardinality || (i < cardinality && values[i] < b.values[j])) {
+                    out[n++] = values[i++];
+                } else if (i == cardinality || values[i] > b.values[j]) {
+                    out[n++] = b.values[j++];
+                } else {
+                    out[n++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] out = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) {
+                    out[n++] = values[i];
+                }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        IntStream stream(int high) {
+            return IntStream.range(0, cardinality).map(i -> high | values[i]);
+        }
+
+        @Override
+        int sizeInBytes() {
+            return 2 * values.length;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.set(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * 稠密容器：65536 位的定长位图
+     */
+    static final class BitmapContainer extends Container {
+        final long[] words;
+        int cardinality;
+
+        BitmapContainer() {
+            this(new long[1024], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        void set(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+            words[value >>> 6] = after;
+            cardinality += before == after ? 0 : 1;
+        }
+
+        @Override
+        Container add(char value) {
+            set(value);
+            return this;
+        }
+
+        void clear(char value) {
+            long before = words[value >>> 6];
+            long after = before & ~(1L << value);
+            words[value >>> 6] = after;
+            cardinality -= before == after ? 0 : 1;
+        }
+
+        @Override
+        Container remove(char value) {
+            clear(value);
+            return normalize();
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] b = ((BitmapContainer) other).words;
+            long[] out = new long[1024];
+            int count = 0;
+            for (int i = 0; i < 1024; i++) {
+                out[i] = words[i] & b[i];
+                count += Long.bitCount(out[i]);
+            }
+            return new BitmapContainer(out, count).normalize();
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] out = words.clone();
+            if (other instanceof ArrayContainer) {
+                BitmapContainer result = new BitmapContainer(out, cardinality);
+                ArrayContainer a = (ArrayContainer) other;
+                for (int i = 0; i < a.cardinality; i++) {
+                    result.set(a.values[i]);
+                }
+                return result;
+            }
+            long[] b = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < 1024; i++) {
+                out[i] |= b[i];
+                count += Long.bitCount(out[i]);
+            }
+            return new BitmapContainer(out, count);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] out = words.clone();
+            if (other instanceof ArrayContainer) {
+                BitmapContainer result = new BitmapContainer(out, cardinality);
+                ArrayContainer a = (ArrayContainer) other;
+                for (int i = 0; i < a.cardinality; i++) {
+                    result.clear(a.values[i]);
+                }
+                return result.normalize();
+            }
+            long[] b = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < 1024; i++) {
+                out[i] &= ~b[i];
+                count += Long.bitCount(out[i]);
+            }
+            return new BitmapContainer(out, count).normalize();
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        IntStream stream(int high) {
+            IntStream.Builder builder = IntStream.builder();
+            forEach(high, builder);
+            return builder.build();
+        }
+
+        @Override
+        int sizeInBytes() {
+            return 8 * 1024;
+        }
+
+        /**
+         * 基数降到阈值以下时转换回数组容器
+         */
+        Container normalize() {
+            if (cardinality > ARRAY_MAX) {
+                return this;
+            }
+            char[] values = new char[Math.max(cardinality, 1)];
+            int[] n = {0};
+            forEach(0, v -> values[n[0]++] = (char) v);
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+
+    /**
+     * 位图表达式：谓词名称的 AND / OR / ANDNOT 组合
+     */
+    abstract static class BitmapExpr {
+        static BitmapExpr ref(String predicate) {
+            return new BitmapExpr() {
+                @Override
+                RoaringBitmap evaluate(ProductCatalog catalog) {
+                    return catalog.bitmap(predicate);
+                }
+
+                @Override
+                public String toString() {
+                    return predicate;
+                }
+            };
+        }
+
+        abstract RoaringBitmap evaluate(ProductCatalog catalog);
+
+        BitmapExpr and(BitmapExpr other) {
+            return combine(this, other, "AND", RoaringBitmap::and);
+        }
+
+        BitmapExpr or(BitmapExpr other) {
+            return combine(this, other, "OR", RoaringBitmap::or);
+        }
+
+        BitmapExpr andNot(BitmapExpr other) {
+            return combine(this, other, "ANDNOT", RoaringBitmap::andNot);
+        }
+
+        private static BitmapExpr combine(BitmapExpr left, BitmapExpr right, String op,
+                                          BinaryOperator<RoaringBitmap> operator) {
+            return new BitmapExpr() {
+                @Override
+                RoaringBitmap evaluate(ProductCatalog catalog) {
+                    return operator.apply(left.evaluate(catalog), right.evaluate(catalog));
+                }
+
+                @Override
+                public String toString() {
+                    return "(" + left + " " + op + " " + right + ")";
+                }
+            };
+        }
+    }
+
+    /**
+     * 产品目录：产品以插入顺序编号，谓词位图在首次使用时计算并缓存
+     * 新增或更新产品时，只对该产品重新求值已缓存的谓词并修补位图；组合查询的结果缓存整体清空。
+     * 不是线程安全的，遍历查询结果期间不要修改目录
+     */
+    static final class ProductCatalog {
+        private final List<Product> products = new ArrayList<>();
+        private final Map<String, Predicate<? super Product>> predicates = new HashMap<>();
+        private final Map<String, RoaringBitmap> predicateBitmaps = new HashMap<>();
+        private final Map<String, RoaringBitmap> queryCache = new HashMap<>();
+        private long predicateBuilds;
+        private long queryHits;
+        private long queryMisses;
+
+        public int add(Product product) {
+            int id = products.size();
+            products.add(product);
+            patch(id, product);
+            return id;
+        }
+
+        public void update(int id, Product product) {
+            products.set(id, product);
+            patch(id, product);
+        }
+
+        public Product get(int id) {
+            return products.get(id);
+        }
+
+        public void define(String name, Predicate<? super Product> predicate) {
+            predicates.put(name, predicate);
+            predicateBitmaps.remove(name);
+            queryCache.clear();
+        }
+
+        /**
+         * 单个谓词的位图（缓存实例，调用方不应修改）
+         */
+        public RoaringBitmap bitmap(String name) {
+            RoaringBitmap bitmap = predicateBitmaps.get(name);
+            if (bitmap == null) {
+                Predicate<? super Product> predicate = predicates.get(name);
+                if (predicate == null) {
+                    throw new IllegalArgumentException("未定义的谓词: " + name);
+                }
+                bitmap = new RoaringBitmap();
+                for (int id = 0; id < products.size(); id++) {
+                    if (predicate.test(products.get(id))) {
+                        bitmap.add(id);
+                    }
+                }
+                predicateBitmaps.put(name, bitmap);
+                predicateBuilds++;
+            }
+            return bitmap;
+        }
+
+        /**
+         * 组合查询的位图，按表达式文本缓存
+         */
+        public RoaringBitmap evaluate(BitmapExpr expr) {
+            String key = expr.toString();
+            RoaringBitmap result = queryCache.get(key);
+            if (result != null) {
+                queryHits++;
+                return result;
+            }
+            queryMisses++;
+            result = expr.evaluate(this);
+            queryCache.put(key, result);
+            return result;
+        }
+
+        public Stream<Product> stream(BitmapExpr expr) {
+            return evaluate(expr).stream().mapToObj(products::get);
+        }
+
+        public String stats() {
+            return "谓词位图构建 " + predicateBuilds + " 次, 组合查询命中 " + queryHits + " / 未命中 " + queryMisses;
+        }
+
+        private void patch(int id, Product product) {
+            for (Map.Entry<String, RoaringBitmap> entry : predicateBitmaps.entrySet()) {
+                if (predicates.get(entry.getKey()).test(product)) {
+                    entry.getValue().add(id);
+                } else {
+                    entry.getValue().remove(id);
+                }
+            }
+            queryCache.clear();
+        }
+    }
+}
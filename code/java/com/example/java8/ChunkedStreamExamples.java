@@ -0,0 +1,498 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.ColumnAggregationExamples.AggregationKernels;
+import com.example.java8.ColumnAggregationExamples.DoubleColumnStats;
+import com.example.java8.StreamAdvancedExamples.Product;
+import com.example.java8.StreamAdvancedExamples.Transaction;
+
+/**
+ * Java 8 分块流处理示例类
+ * 展示按块（默认 1024 个元素）执行的管道：filter 只生成选择向量、不复制数据，map 把选中的元素写入新的输出块，
+ * 基本类型的块直接交给列式聚合内核；并提供与 Stream 之间的相互转换
+ */
+public class ChunkedStreamExamples {
+
+    /**
+     * 1. 基本用法：与 StreamExamples 中的 filter/map 管道等价
+     */
+    public static void basicChunkedPipeline() {
+        System.out.println("=== 分块管道基本用法 ===");
+
+        List<Integer> numbers = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+
+        List<Integer> viaStream = numbers.stream()
+            .filter(n -> n % 2 == 0)
+            .map(n -> n * n)
+            .collect(Collectors.toList());
+        System.out.println("Stream 结果: " + viaStream);
+
+        List<Integer> viaBlocks = ChunkedPipeline.from(numbers, 4)
+            .filter(n -> n % 2 == 0)
+            .map(n -> n * n)
+            .toList();
+        System.out.println("分块管道结果: " + viaBlocks);
+
+        // 查看每个块的选择向量
+        ChunkedPipeline.from(numbers, 4)
+            .filter(n -> n % 3 != 0)
+            .forEachBlock(block -> System.out.println("  块: 大小=" + block.size()
+                + ", 选中=" + block.selectedCount() + ", 选择向量=" + Arrays.toString(block.selectionVector())));
+    }
+
+    /**
+     * 2. 交易管道：filter → mapToDouble → 聚合，基本类型块直接交给聚合内核
+     */
+    public static void transactionPipeline() {
+        System.out.println("\n=== 分块交易管道 ===");
+
+        List<Transaction> transactions = Arrays.asList(
+            new Transaction("T001", 100.0, "USD", "2024-01-01"),
+            new Transaction("T002", 200.0, "EUR", "2024-01-02"),
+            new Transaction("T003", 150.0, "USD", "2024-01-03"),
+            new Transaction("T004", 300.0, "GBP", "2024-01-04"),
+            new Transaction("T005", 250.0, "USD", "2024-01-05")
+        );
+
+        DoubleColumnStats usdStats = ChunkedPipeline.from(transactions)
+            .filter(t -> "USD".equals(t.getCurrency()))
+            .mapToDouble(Transaction::getAmount)
+            .stats();
+        System.out.println("USD 交易统计: " + usdStats);
+
+        double highValueTotal = ChunkedPipeline.from(transactions)
+            .mapToDouble(Transaction::getAmount)
+            .filterGreaterThan(150)
+            .sum();
+        System.out.println("金额 > 150 的总额: " + highValueTotal);
+    }
+
+    /**
+     * 3. 与 Stream 相互转换：分块管道的结果可以继续接 Stream 操作，Stream 也可以分块消费
+     */
+    public static void streamAdapters() {
+        System.out.println("\n=== 与 Stream 相互转换 ===");
+
+        List<Product> products = Arrays.asList(
+            new Product("Laptop", 1200.0, "Electronics", true),
+            new Product("Mouse", 25.0, "Electronics", false),
+            new Product("Desk", 300.0, "Furniture", true),
+            new Product("Keyboard", 80.0, "Electronics", true),
+            new Product("Chair", 150.0, "Furniture", false)
+        );
+
+        // 分块管道 → Stream
+        Map<String, List<String>> inStockByCategory = ChunkedPipeline.from(products)
+            .filter(Product::isInStock)
+            .stream()
+            .collect(Collectors.groupingBy(Product::getCategory, TreeMap::new,
+                Collectors.mapping(Product::getName, Collectors.toList())));
+        System.out.println("有库存的产品: " + inStockByCategory);
+
+        // Stream → 块流：每个元素是一个块，可以并行处理
+        long blocks = ChunkedStreams.blocks(IntStream.range(0, 10_000).boxed(), 1024).count();
+        System.out.println("10000 个元素分成的块数: " + blocks);
+
+        // 块流 → Stream
+        long evens = ChunkedStreams.unblock(ChunkedStreams.blocks(IntStream.range(0, 10_000).boxed(), 1024))
+            .filter(n -> n % 2 == 0)
+            .count();
+        System.out.println("展开后偶数个数: " + evens);
+
+        // 并行分块：块在各个工作线程上独立执行
+        double parallelSum = ChunkedPipeline.from(IntStream.range(0, 100_000).boxed().collect(Collectors.toList()))
+            .parallel()
+            .filter(n -> n % 3 == 0)
+            .mapToDouble(n -> n * 0.5)
+            .sum();
+        System.out.println("并行分块求和: " + parallelSum);
+    }
+
+    /**
+     * 4. 吞吐量对比：逐元素 Stream 与分块管道
+     */
+    public static void throughputComparison(int size) {
+        System.out.println("\n=== 吞吐量对比（" + size + " 个交易）===");
+
+        String[] currencies = {"USD", "EUR", "GBP", "JPY"};
+        Random random = new Random(11);
+        List<Transaction> transactions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            transactions.add(new Transaction("T" + i, random.nextInt(1000), currencies[random.nextInt(4)], "2024-01-01"));
+        }
+
+        for (int blockSize : new int[] {256, 1024, 4096}) {
+            ChunkedPipeline<Transaction> pipeline = ChunkedPipeline.from(transactions, blockSize);
+            double chunked = 0;
+            double streamed = 0;
+            long chunkedBest = Long.MAX_VALUE;
+            long streamBest = Long.MAX_VALUE;
+            for (int round = 0; round < 8; round++) {
+                long start = System.nanoTime();
+                streamed = transactions.stream()
+                    .filter(t -> t.getAmount() > 150)
+                    .filter(t -> "USD".equals(t.getCurrency()))
+                    .mapToDouble(Transaction::getAmount)
+                    .sum();
+                streamBest = Math.min(streamBest, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                chunked = pipeline
+                    .filter(t -> "USD".equals(t.getCurrency()))
+                    .mapToDouble(Transaction::getAmount)
+                    .filterGreaterThan(150)
+                    .sum();
+                chunkedBest = Math.min(chunkedBest, System.nanoTime() - start);
+            }
+            System.out.printf("块大小 %4d: Stream %.2fms, 分块 %.2fms, 结果一致: %b%n",
+                blockSize, streamBest / 1e6, chunkedBest / 1e6, Math.abs(streamed - chunked) < 1e-6);
+        }
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        basicChunkedPipeline();
+        transactionPipeline();
+        streamAdapters();
+        throughputComparison(args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000);
+    }
+
+    /**
+     * 对象块：dense 的数据数组 + 可选的选择向量
+     * selection 为 null 表示全部选中；filter 只改写选择向量，不移动数据
+     */
+    static final class Block<T> {
+        private final Object[] data;
+        private final int size;
+        private final int[] selection;
+        private final int selectedCount;
+
+        Block(Object[] data, int size) {
+            this(data, size, null, size);
+        }
+
+        private Block(Object[] data, int size, int[] selection, int selectedCount) {
+            this.data = data;
+            this.size = size;
+            this.selection = selection;
+            this.selectedCount = selectedCount;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int selectedCount() {
+            return selectedCount;
+        }
+
+        /**
+         * 第 i 个选中元素
+         */
+        @SuppressWarnings("unchecked")
+        public T get(int i) {
+            return (T) data[selection == null ? i : selection[i]];
+        }
+
+        public int[] selectionVector() {
+            if (selection == null) {
+                return IntStream.range(0, size).toArray();
+            }
+            return Arrays.copyOf(selection, selectedCount);
+        }
+
+        /**
+         * filter：在已选中的位置上求值，生成更小的选择向量
+         */
+        @SuppressWarnings("unchecked")
+        Block<T> filter(Predicate<? super T> predicate) {
+            int[] next = selection != null ? selection : new int[size];
+            int count = 0;
+            if (selection == null) {
+                for (int i = 0; i < size; i++) {
+                    if (predicate.test((T) data[i])) {
+                        next[count++] = i;
+                    }
+                }
+            } else {
+                // 就地压缩选择向量：写指针永远不会超过读指针
+                for (int i = 0; i < selectedCount; i++) {
+                    int index = selection[i];
+                    if (predicate.test((T) data[index])) {
+                        next[count++] = index;
+                    }
+                }
+            }
+            return new Block<>(data, size, next, count);
+        }
+
+        /**
+         * map：只转换选中的元素，输出为新的 dense 块
+         */
+        @SuppressWarnings("unchecked")
+        <R> Block<R> map(Function<? super T, ? extends R> mapper) {
+            Object[] out = new Object[selectedCount];
+            if (selection == null) {
+                for (int i = 0; i < size; i++) {
+                    out[i] = mapper.apply((T) data[i]);
+                }
+            } else {
+                for (int i = 0; i < selectedCount; i++) {
+                    out[i] = mapper.apply((T) data[selection[i]]);
+                }
+            }
+            return new Block<>(out, selectedCount);
+        }
+
+        @SuppressWarnings("unchecked")
+        DoubleBlock mapToDouble(ToDoubleFunction<? super T> mapper) {
+            double[] out = new double[selectedCount];
+            if (selection == null) {
+                for (int i = 0; i < size; i++) {
+                    out[i] = mapper.applyAsDouble((T) data[i]);
+                }
+            } else {
+                for (int i = 0; i < selectedCount; i++) {
+                    out[i] = mapper.applyAsDouble((T) data[selection[i]]);
+                }
+            }
+            return new DoubleBlock(out, selectedCount);
+        }
+
+        void forEach(Consumer<? super T> action) {
+            for (int i = 0; i < selectedCount; i++) {
+                action.accept(get(i));
+            }
+        }
+    }
+
+    /**
+     * double 块：dense 的基本类型数组，聚合直接调用列式内核
+     */
+    static final class DoubleBlock {
+        private final double[] values;
+        private final int size;
+
+        DoubleBlock(double[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        DoubleBlock filterGreaterThan(double threshold) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                double v = values[i];
+                values[count] = v;
+                count += v > threshold ? 1 : 0;
+            }
+            return new DoubleBlock(values, count);
+        }
+
+        DoubleColumnStats stats() {
+            return AggregationKernels.stats(values, 0, size);
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * 分块管道：逻辑上等价于 Stream 的 filter/map 链，执行时一次处理一个块
+     * 管道对象不可变，可以反复执行；每个中间操作返回新的管道
+     */
+    static final class ChunkedPipeline<T> {
+        static final int DEFAULT_BLOCK_SIZE = 1024;
+
+        private final Supplier<Spliterator<?>> source;
+        private final Function<Block<?>, Block<T>> stages;
+        private final int blockSize;
+        private final boolean parallel;
+
+        private ChunkedPipeline(Supplier<Spliterator<?>> source, Function<Block<?>, Block<T>> stages,
+                                int blockSize, boolean parallel) {
+            this.source = source;
+            this.stages = stages;
+            this.blockSize = blockSize;
+            this.parallel = parallel;
+        }
+
+        public static <T> ChunkedPipeline<T> from(Collection<T> source) {
+            return from(source, DEFAULT_BLOCK_SIZE);
+        }
+
+        @SuppressWarnings("unchecked")
+        public static <T> ChunkedPipeline<T> from(Collection<T> source, int blockSize) {
+            if (blockSize < 1) {
+                throw new IllegalArgumentException("blockSize 必须大于 0: " + blockSize);
+            }
+            return new ChunkedPipeline<>(source::spliterator, block -> (Block<T>) block, blockSize, false);
+        }
+
+        public ChunkedPipeline<T> parallel() {
+            return new ChunkedPipeline<>(source, stages, blockSize, true);
+        }
+
+        public ChunkedPipeline<T> filter(Predicate<? super T> predicate) {
+            return new ChunkedPipeline<>(source, stages.andThen(block -> block.filter(predicate)), blockSize, parallel);
+        }
+
+        public <R> ChunkedPipeline<R> map(Function<? super T, ? extends R> mapper) {
+            return new ChunkedPipeline<>(source, stages.andThen(block -> block.<R>map(mapper)), blockSize, parallel);
+        }
+
+        public DoubleChunkedPipeline mapToDouble(ToDoubleFunction<? super T> mapper) {
+            return new DoubleChunkedPipeline(() -> blocks().map(block -> block.mapToDouble(mapper)));
+        }
+
+        /**
+         * 按块输出：每个块已经应用了所有中间操作
+         */
+        public Stream<Block<T>> blocks() {
+            return ChunkedStreams.<Object>blockStream(source.get(), blockSize, parallel)
+                .map(block -> stages.apply(block));
+        }
+
+        public void forEachBlock(Consumer<? super Block<T>> action) {
+            blocks().forEach(action);
+        }
+
+        public Stream<T> stream() {
+            return blocks().flatMap(ChunkedStreams::elements);
+        }
+
+        public List<T> toList() {
+            List<T> result = new ArrayList<>();
+            blocks().forEachOrdered(block -> block.forEach(result::add));
+            return result;
+        }
+
+        public long count() {
+            return blocks().mapToLong(Block::selectedCount).sum();
+        }
+    }
+
+    /**
+     * 基本类型 double 的分块管道
+     * 与 ChunkedPipeline 一样保存块流的提供者，每个终止操作都重新执行一遍，可以反复调用
+     */
+    static final class DoubleChunkedPipeline {
+        private final Supplier<Stream<DoubleBlock>> blocks;
+
+        DoubleChunkedPipeline(Supplier<Stream<DoubleBlock>> blocks) {
+            this.blocks = blocks;
+        }
+
+        public DoubleChunkedPipeline filterGreaterThan(double threshold) {
+            return new DoubleChunkedPipeline(() -> blocks.get().map(block -> block.filterGreaterThan(threshold)));
+        }
+
+        public double sum() {
+            return stats().getSum();
+        }
+
+        public DoubleColumnStats stats() {
+            return blocks.get().map(DoubleBlock::stats)
+                .reduce(DoubleColumnStats.EMPTY, ChunkedStreams::combine);
+        }
+
+        public long count() {
+            return blocks.get().mapToLong(DoubleBlock::size).sum();
+        }
+    }
+
+    /**
+     * Stream 与块流之间的适配器
+     */
+    static final class ChunkedStreams {
+        private ChunkedStreams() {
+        }
+
+        /**
+         * 把元素流切成块流
+         */
+        public static <T> Stream<Block<T>> blocks(Stream<T> stream, int blockSize) {
+            return blockStream(stream.spliterator(), blockSize, stream.isParallel());
+        }
+
+        /**
+         * 把块流展开为元素流
+         */
+        public static <T> Stream<T> unblock(Stream<Block<T>> blocks) {
+            return blocks.flatMap(ChunkedStreams::elements);
+        }
+
+        static <T> Stream<T> elements(Block<T> block) {
+            return IntStream.range(0, block.selectedCount()).mapToObj(block::get);
+        }
+
+        @SuppressWarnings("unchecked")
+        static <T> Stream<Block<T>> blockStream(Spliterator<?> source, int blockSize, boolean parallel) {
+            return StreamSupport.stream(new BlockSpliterator<>((Spliterator<T>) source, blockSize), parallel);
+        }
+
+        static DoubleColumnStats combine(DoubleColumnStats a, DoubleColumnStats b) {
+            if (a.getCount() == 0) {
+                return b;
+            }
+            if (b.getCount() == 0) {
+                return a;
+            }
+            return new DoubleColumnStats(a.getCount() + b.getCount(), a.getSum() + b.getSum(),
+                Math.min(a.getMin(), b.getMin()), Math.max(a.getMax(), b.getMax()));
+        }
+    }
+
+    /**
+     * 把元素 Spliterator 包装成块 Spliterator：拆分委托给底层 Spliterator，每次 tryAdvance 产出一个块
+     */
+    static final class BlockSpliterator<T> implements Spliterator<Block<T>> {
+        private final Spliterator<T> source;
+        private final int blockSize;
+
+        BlockSpliterator(Spliterator<T> source, int blockSize) {
+            this.source = source;
+            this.blockSize = blockSize;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Block<T>> action) {
+            Object[] buffer = new Object[blockSize];
+            int[] size = new int[1];
+            while (size[0] < blockSize && source.tryAdvance(t -> buffer[size[0]++] = t)) {
+                // 逐个填充，直到块满或源耗尽
+            }
+            if (size[0] == 0) {
+                return false;
+            }
+            action.accept(new Block<>(buffer, size[0]));
+            return true;
+        }
+
+        @Override
+        public Spliterator<Block<T>> trySplit() {
+            // 剩余元素不足两个块时不再拆分，避免产生大量半空的块
+            if (source.estimateSize() < 2L * blockSize) {
+                return null;
+            }
+            Spliterator<T> prefix = source.trySplit();
+            return prefix == null ? null : new BlockSpliterator<>(prefix, blockSize);
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = source.estimateSize();
+            return size == Long.MAX_VALUE ? size : (size + blockSize - 1) / blockSize;
+        }
+
+        @Override
+        public int characteristics() {
+            return source.characteristics() & ORDERED | NONNULL;
+        }
+    }
+}
@@ -0,0 +1,535 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.StreamAdvancedExamples.Order;
+import com.example.java8.StreamAdvancedExamples.OrderStats;
+
+/**
+ * Java 8 列式聚合内核示例类
+ * 展示把 Stream 中的 mapToDouble(...).sum()/average()/max()/min() 改写为直接作用在 double[]/long[] 列上的聚合内核：
+ * 循环手工展开为多个独立累加器，过滤条件与聚合融合为一次遍历，便于 JIT 生成紧凑（可自动向量化）的机器码
+ */
+public class ColumnAggregationExamples {
+
+    /**
+     * 1. 基本内核：sum / min / max / average
+     */
+    public static void basicKernels() {
+        System.out.println("=== 基本聚合内核 ===");
+
+        long[] numbers = LongStream.rangeClosed(1, 1_000_000).toArray();
+        System.out.println("Stream sum: " + LongStream.of(numbers).sum());
+        System.out.println("内核 sum:   " + AggregationKernels.sum(numbers));
+
+        double[] prices = {1200.0, 25.0, 300.0, 80.0, 150.0, 400.0};
+        DoubleColumnStats stats = AggregationKernels.stats(prices);
+        System.out.println("价格列统计: " + stats);
+        System.out.println("价格 > 100 的总额（融合过滤）: " + AggregationKernels.sumGreaterThan(prices, 100));
+        System.out.println("价格 > 100 的个数（融合过滤）: " + AggregationKernels.countGreaterThan(prices, 100));
+    }
+
+    /**
+     * 2. 按类别编码分组统计：替代 groupingBy + collectingAndThen(toList(), 多次 mapToDouble)
+     */
+    public static void groupedStatsOverColumns() {
+        System.out.println("\n=== 列式分组统计 ===");
+
+        List<Order> orders = Arrays.asList(
+            new Order("A001", "Laptop", 1200.0, "Electronics", "2024-01-15"),
+            new Order("A002", "Mouse", 25.0, "Electronics", "2024-01-16"),
+            new Order("A003", "Desk", 300.0, "Furniture", "2024-01-17"),
+            new Order("A004", "Keyboard", 80.0, "Electronics", "2024-01-18"),
+            new Order("A005", "Chair", 150.0, "Furniture", "2024-01-19"),
+            new Order("A006", "Monitor", 400.0, "Electronics", "2024-01-20")
+        );
+
+        // 一次性转换为列：价格列 + 类别编码列
+        OrderColumns columns = OrderColumns.from(orders);
+        DoubleColumnStats[] byCategory = AggregationKernels.statsByCode(columns.prices, columns.categoryCodes,
+            columns.categories.size());
+
+        for (int code = 0; code < byCategory.length; code++) {
+            OrderStats stats = byCategory[code].toOrderStats();
+            System.out.printf("类别: %s - 总价值: %.2f, 平均价格: %.2f, 最高价: %.2f, 最低价: %.2f, 订单数: %d%n",
+                columns.categories.get(code), stats.getTotalValue(), stats.getAvgPrice(),
+                stats.getMaxPrice(), stats.getMinPrice(), stats.getCount());
+        }
+
+        // 融合过滤 + 聚合：某个类别中价格大于阈值的总额
+        int electronics = columns.categories.indexOf("Electronics");
+        System.out.println("Electronics 中价格 > 50 的总额: "
+            + AggregationKernels.sumWhereCodeAndGreaterThan(columns.prices, columns.categoryCodes, electronics, 50));
+    }
+
+    /**
+     * 3. 作为终端操作使用：DoubleColumn 封装一列数据，链式调用融合内核
+     */
+    public static void columnAsTerminalOperation() {
+        System.out.println("\n=== 作为终端操作使用 ===");
+
+        int[] ages = {25, 30, 35, 28, 32};
+        IntSummaryStatistics jdk = IntStream.of(ages).summaryStatistics();
+        DoubleColumnStats kernel = AggregationKernels.stats(ages);
+        System.out.println("JDK summaryStatistics: " + jdk);
+        System.out.println("内核统计: " + kernel);
+
+        DoubleColumn column = DoubleColumn.of(1200.0, 25.0, 300.0, 80.0, 150.0, 400.0);
+        System.out.println("列总和: " + column.sum());
+        System.out.println("列平均: " + column.average().orElse(0));
+        System.out.println("价格 > 100 的平均值: " + column.whereGreaterThan(100).average().orElse(0));
+
+        // 从现有 Stream 收集为列，之后的多个聚合都只遍历一次数组
+        DoubleColumn fromStream = Stream.of("1.5", "2.5", "3.0").mapToDouble(Double::parseDouble)
+            .collect(DoubleColumn.Builder::new, DoubleColumn.Builder::add, DoubleColumn.Builder::addAll)
+            .build();
+        System.out.println("从 Stream 收集的列: " + fromStream.stats());
+    }
+
+    /**
+     * 4. 基准测试：内核与原有 Stream 写法对比
+     */
+    public static void benchmark(int size) {
+        System.out.println("\n=== 聚合内核基准测试（" + size + " 个元素）===");
+
+        Random random = new Random(3);
+        List<Integer> boxed = IntStream.range(0, size).boxed().collect(Collectors.toList());
+        long[] longs = LongStream.range(0, size).toArray();
+        double[] prices = random.doubles(size, 1, 2000).toArray();
+        int[] codes = random.ints(size, 0, 8).toArray();
+        List<Order> orders = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            orders.add(new Order("O" + i, "P", prices[i], "C" + codes[i], "2024-01-01"));
+        }
+
+        bench("mapToLong(Integer).sum()", () -> boxed.stream().mapToLong(Integer::longValue).sum());
+        bench("LongStream.of(long[]).sum()", () -> LongStream.of(longs).sum());
+        bench("内核 sum(long[])", () -> AggregationKernels.sum(longs));
+
+        bench("orders mapToDouble sum/avg/max/min", () -> {
+            double sum = orders.stream().mapToDouble(Order::getPrice).sum();
+            double avg = orders.stream().mapToDouble(Order::getPrice).average().orElse(0);
+            double max = orders.stream().mapToDouble(Order::getPrice).max().orElse(0);
+            double min = orders.stream().mapToDouble(Order::getPrice).min().orElse(0);
+            return (long) (sum + avg + max + min);
+        });
+        bench("DoubleStream.summaryStatistics()", () -> (long) DoubleStream.of(prices).summaryStatistics().getSum());
+        bench("内核 stats(double[])", () -> (long) AggregationKernels.stats(prices).getSum());
+
+        bench("filter(>1000).mapToDouble.sum()", () ->
+            (long) orders.stream().filter(o -> o.getPrice() > 1000).mapToDouble(Order::getPrice).sum());
+        bench("内核 sumGreaterThan", () -> (long) AggregationKernels.sumGreaterThan(prices, 1000));
+
+        bench("groupingBy + summarizingDouble", () ->
+            (long) orders.stream().collect(Collectors.groupingBy(Order::getCategory,
+                Collectors.summarizingDouble(Order::getPrice))).size());
+        bench("内核 statsByCode", () -> AggregationKernels.statsByCode(prices, codes, 8).length);
+    }
+
+    private static void bench(String name, LongSupplier task) {
+        long sink = 0;
+        for (int i = 0; i < 5; i++) {
+            sink += task.getAsLong();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            sink += task.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-38s %8.2fms%s%n", name, best / 1e6, sink == 42 ? " " : "");
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        basicKernels();
+        groupedStatsOverColumns();
+        columnAsTerminalOperation();
+        benchmark(args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000);
+    }
+
+    /**
+     * 聚合内核
+     * 浮点循环按 4 路展开，每一路使用独立的累加器，打破相邻迭代间的数据依赖；
+     * 过滤通过条件选择（三目运算）而不是提前 continue 实现，循环体内没有难以预测的分支
+     * 注意：double 求和改变了累加顺序，结果与顺序求和可能在最后几位有舍入差异
+     */
+    static final class AggregationKernels {
+        private AggregationKernels() {
+        }
+
+        /**
+         * 整数加法满足结合律，C2 可以自行把这个简单循环向量化，因此保持最朴素的写法
+         */
+        public static long sum(long[] values) {
+            long sum = 0;
+            for (long value : values) {
+                sum += value;
+            }
+            return sum;
+        }
+
+        /**
+         * 浮点加法不满足结合律，JIT 不能重排顺序求和，需要手工拆成多个独立累加器
+         */
+        public static double sum(double[] values) {
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int i = 0;
+            int bound = values.length & ~3;
+            for (; i < bound; i += 4) {
+                s0 += values[i];
+                s1 += values[i + 1];
+                s2 += values[i + 2];
+                s3 += values[i + 3];
+            }
+            for (; i < values.length; i++) {
+                s0 += values[i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+
+        public static double max(double[] values) {
+            if (values.length == 0) {
+                throw new NoSuchElementException("空列没有最大值");
+            }
+            double m0 = Double.NEGATIVE_INFINITY, m1 = m0, m2 = m0, m3 = m0;
+            int i = 0;
+            int bound = values.length & ~3;
+            for (; i < bound; i += 4) {
+                m0 = Math.max(m0, values[i]);
+                m1 = Math.max(m1, values[i + 1]);
+                m2 = Math.max(m2, values[i + 2]);
+                m3 = Math.max(m3, values[i + 3]);
+            }
+            for (; i < values.length; i++) {
+                m0 = Math.max(m0, values[i]);
+            }
+            return Math.max(Math.max(m0, m1), Math.max(m2, m3));
+        }
+
+        public static double min(double[] values) {
+            if (values.length == 0) {
+                throw new NoSuchElementException("空列没有最小值");
+            }
+            double m0 = Double.POSITIVE_INFINITY, m1 = m0, m2 = m0, m3 = m0;
+            int i = 0;
+            int bound = values.length & ~3;
+            for (; i < bound; i += 4) {
+                m0 = Math.min(m0, values[i]);
+                m1 = Math.min(m1, values[i + 1]);
+                m2 = Math.min(m2, values[i + 2]);
+                m3 = Math.min(m3, values[i + 3]);
+            }
+            for (; i < values.length; i++) {
+                m0 = Math.min(m0, values[i]);
+            }
+            return Math.min(Math.min(m0, m1), Math.min(m2, m3));
+        }
+
+        /**
+         * 一次遍历同时计算 count / sum / min / max
+         */
+        public static DoubleColumnStats stats(double[] values) {
+            return stats(values, 0, values.length);
+        }
+
+        public static DoubleColumnStats stats(double[] values, int from, int to) {
+            double s0 = 0, s1 = 0;
+            double min0 = Double.POSITIVE_INFINITY, min1 = min0;
+            double max0 = Double.NEGATIVE_INFINITY, max1 = max0;
+            int i = from;
+            int bound = from + ((to - from) & ~1);
+            for (; i < bound; i += 2) {
+                double a = values[i];
+                double b = values[i + 1];
+                s0 += a;
+                s1 += b;
+                min0 = Math.min(min0, a);
+                min1 = Math.min(min1, b);
+                max0 = Math.max(max0, a);
+                max1 = Math.max(max1, b);
+            }
+            for (; i < to; i++) {
+                s0 += values[i];
+                min0 = Math.min(min0, values[i]);
+                max0 = Math.max(max0, values[i]);
+            }
+            return new DoubleColumnStats(to - from, s0 + s1, Math.min(min0, min1), Math.max(max0, max1));
+        }
+
+        public static DoubleColumnStats stats(int[] values) {
+            long s0 = 0, s1 = 0;
+            int min0 = Integer.MAX_VALUE, min1 = min0;
+            int max0 = Integer.MIN_VALUE, max1 = max0;
+            int i = 0;
+            int bound = values.length & ~1;
+            for (; i < bound; i += 2) {
+                int a = values[i];
+                int b = values[i + 1];
+                s0 += a;
+                s1 += b;
+                min0 = Math.min(min0, a);
+                min1 = Math.min(min1, b);
+                max0 = Math.max(max0, a);
+                max1 = Math.max(max1, b);
+            }
+            for (; i < values.length; i++) {
+                s0 += values[i];
+                min0 = Math.min(min0, values[i]);
+                max0 = Math.max(max0, values[i]);
+            }
+            if (values.length == 0) {
+                return DoubleColumnStats.EMPTY;
+            }
+            return new DoubleColumnStats(values.length, s0 + s1, Math.min(min0, min1), Math.max(max0, max1));
+        }
+
+        /**
+         * 融合的 filter(v > threshold) + sum
+         */
+        public static double sumGreaterThan(double[] values, double threshold) {
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int i = 0;
+            int bound = values.length & ~3;
+            for (; i < bound; i += 4) {
+                double a = values[i], b = values[i + 1], c = values[i + 2], d = values[i + 3];
+                s0 += a > threshold ? a : 0.0;
+                s1 += b > threshold ? b : 0.0;
+                s2 += c > threshold ? c : 0.0;
+                s3 += d > threshold ? d : 0.0;
+            }
+            for (; i < values.length; i++) {
+                s0 += values[i] > threshold ? values[i] : 0.0;
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+
+        /**
+         * 融合的 filter(v > threshold) + count
+         */
+        public static int countGreaterThan(double[] values, double threshold) {
+            int c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+            int i = 0;
+            int bound = values.length & ~3;
+            for (; i < bound; i += 4) {
+                c0 += values[i] > threshold ? 1 : 0;
+                c1 += values[i + 1] > threshold ? 1 : 0;
+                c2 += values[i + 2] > threshold ? 1 : 0;
+                c3 += values[i + 3] > threshold ? 1 : 0;
+            }
+            for (; i < values.length; i++) {
+                c0 += values[i] > threshold ? 1 : 0;
+            }
+            return c0 + c1 + c2 + c3;
+        }
+
+        /**
+         * 融合的 filter(code == target && v > threshold) + sum
+         */
+        public static double sumWhereCodeAndGreaterThan(double[] values, int[] codes, int target, double threshold) {
+            checkSameLength(values, codes);
+            double s0 = 0, s1 = 0;
+            int i = 0;
+            int bound = values.length & ~1;
+            for (; i < bound; i += 2) {
+                double a = values[i], b = values[i + 1];
+                s0 += codes[i] == target & a > threshold ? a : 0.0;
+                s1 += codes[i + 1] == target & b > threshold ? b : 0.0;
+            }
+            for (; i < values.length; i++) {
+                s0 += codes[i] == target & values[i] > threshold ? values[i] : 0.0;
+            }
+            return s0 + s1;
+        }
+
+        /**
+         * 按编码分组统计：codes[i] 的取值范围为 [0, codeCount)
+         * 每个分组的累加器放在按编码下标访问的基本类型数组中，没有 Map 查找
+         */
+        public static DoubleColumnStats[] statsByCode(double[] values, int[] codes, int codeCount) {
+            checkSameLength(values, codes);
+            long[] counts = new long[codeCount];
+            double[] sums = new double[codeCount];
+            double[] mins = new double[codeCount];
+            double[] maxs = new double[codeCount];
+            Arrays.fill(mins, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+
+            for (int i = 0; i < values.length; i++) {
+                int code = codes[i];
+                double v = values[i];
+                counts[code]++;
+                sums[code] += v;
+                mins[code] = Math.min(mins[code], v);
+                maxs[code] = Math.max(maxs[code], v);
+            }
+
+            DoubleColumnStats[] result = new DoubleColumnStats[codeCount];
+            for (int code = 0; code < codeCount; code++) {
+                result[code] = counts[code] == 0
+                    ? DoubleColumnStats.EMPTY
+                    : new DoubleColumnStats(counts[code], sums[code], mins[code], maxs[code]);
+            }
+            return result;
+        }
+
+        private static void checkSameLength(double[] values, int[] codes) {
+            if (values.length != codes.length) {
+                throw new IllegalArgumentException("列长度不一致: " + values.length + " != " + codes.length);
+            }
+        }
+    }
+
+    /**
+     * 列统计结果，对应 DoubleSummaryStatistics
+     */
+    static final class DoubleColumnStats {
+        static final DoubleColumnStats EMPTY =
+            new DoubleColumnStats(0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+
+        private final long count;
+        private final double sum;
+        private final double min;
+        private final double max;
+
+        DoubleColumnStats(long count, double sum, double min, double max) {
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public long getCount() { return count; }
+        public double getSum() { return sum; }
+        public double getMin() { return min; }
+        public double getMax() { return max; }
+
+        public double getAverage() {
+            return count == 0 ? 0.0 : sum / count;
+        }
+
+        public OrderStats toOrderStats() {
+            return new OrderStats(sum, getAverage(), count == 0 ? 0 : max, count == 0 ? 0 : min, (int) count);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("DoubleColumnStats{count=%d, sum=%f, min=%f, average=%f, max=%f}",
+                count, sum, min, getAverage(), max);
+        }
+    }
+
+    /**
+     * 不可变的 double 列，聚合方法都是终端操作
+     */
+    static final class DoubleColumn {
+        private final double[] values;
+
+        private DoubleColumn(double[] values) {
+            this.values = values;
+        }
+
+        public static DoubleColumn of(double... values) {
+            return new DoubleColumn(values.clone());
+        }
+
+        public static DoubleColumn wrap(double[] values) {
+            return new DoubleColumn(values);
+        }
+
+        public int size() { return values.length; }
+        public double sum() { return AggregationKernels.sum(values); }
+        public DoubleColumnStats stats() { return AggregationKernels.stats(values); }
+
+        public OptionalDouble average() {
+            return values.length == 0 ? OptionalDouble.empty() : OptionalDouble.of(sum() / values.length);
+        }
+
+        public OptionalDouble max() {
+            return values.length == 0 ? OptionalDouble.empty() : OptionalDouble.of(AggregationKernels.max(values));
+        }
+
+        public OptionalDouble min() {
+            return values.length == 0 ? OptionalDouble.empty() : OptionalDouble.of(AggregationKernels.min(values));
+        }
+
+        /**
+         * 过滤后生成新列：先用融合内核计数，再一次性分配精确大小的数组
+         */
+        public DoubleColumn whereGreaterThan(double threshold) {
+            double[] selected = new double[AggregationKernels.countGreaterThan(values, threshold)];
+            int j = 0;
+            for (double v : values) {
+                if (v > threshold) {
+                    selected[j++] = v;
+                }
+            }
+            return new DoubleColumn(selected);
+        }
+
+        public DoubleStream stream() {
+            return Arrays.stream(values);
+        }
+
+        /**
+         * 用于 DoubleStream.collect 的可增长构建器
+         */
+        static final class Builder {
+            private double[] buffer = new double[16];
+            private int size;
+
+            public void add(double value) {
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size * 2);
+                }
+                buffer[size++] = value;
+            }
+
+            public void addAll(Builder other) {
+                for (int i = 0; i < other.size; i++) {
+                    add(other.buffer[i]);
+                }
+            }
+
+            public DoubleColumn build() {
+                return new DoubleColumn(Arrays.copyOf(buffer, size));
+            }
+        }
+    }
+
+    /**
+     * Order 列表转换后的列式表示
+     */
+    static final class OrderColumns {
+        final double[] prices;
+        final int[] categoryCodes;
+        final List<String> categories;
+
+        private OrderColumns(double[] prices, int[] categoryCodes, List<String> categories) {
+            this.prices = prices;
+            this.categoryCodes = categoryCodes;
+            this.categories = categories;
+        }
+
+        static OrderColumns from(List<Order> orders) {
+            double[] prices = new double[orders.size()];
+            int[] codes = new int[orders.size()];
+            Map<String, Integer> dictionary = new LinkedHashMap<>();
+            for (int i = 0; i < orders.size(); i++) {
+                Order order = orders.get(i);
+                prices[i] = order.getPrice();
+                Integer code = dictionary.get(order.getCategory());
+                if (code == null) {
+                    code = dictionary.size();
+                    dictionary.put(order.getCategory(), code);
+                }
+                codes[i] = code;
+            }
+            return new OrderColumns(prices, codes, new ArrayList<>(dictionary.keySet()));
+        }
+    }
+}
@@ -0,0 +1,634 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.PrimitiveOptionalExamples.AllocationMeter;
+import com.example.java8.StreamAdvancedExamples.Transaction;
+
+/**
+ * Java 8 预编译管道示例类
+ * 管道定义只声明一次：编译时校验并融合阶段（相邻 filter 合并、map + distinct 特化为一个阶段），
+ * 之后对新的数据源反复执行，每次执行几乎不产生建立管道的分配
+ */
+public class CompiledPipelineExamples {
+
+    /**
+     * streamApiCompositionAndChaining 中的三个阶段，改写为可组合的管道定义
+     */
+    static final PipelineDefinition<Transaction, Transaction> highValueFilter =
+        PipelineDefinition.<Transaction>start().filter(t -> t.getAmount() > 150);
+
+    static final PipelineDefinition<Transaction, Transaction> usdOnlyFilter =
+        PipelineDefinition.<Transaction>start().filter(t -> "USD".equals(t.getCurrency()));
+
+    static final PipelineDefinition<Transaction, String> currencyExtractor =
+        PipelineDefinition.<Transaction>start().map(Transaction::getCurrency);
+
+    /**
+     * 1. 组合已声明的阶段并查看编译后的执行计划
+     */
+    public static void composeAndCompile() {
+        System.out.println("=== 组合与编译 ===");
+
+        List<Transaction> transactions = sampleTransactions();
+
+        PipelineDefinition<Transaction, String> definition = highValueFilter
+            .then(usdOnlyFilter)
+            .then(currencyExtractor)
+            .distinct();
+        CompiledPipeline<Transaction, String> pipeline = definition.compile();
+
+        System.out.println("定义: " + definition);
+        System.out.println("执行计划: " + pipeline);
+        System.out.println("结果: " + pipeline.run(transactions));
+
+        // 与 streamApiCompositionAndChaining 中的内联写法对比
+        List<String> inline = transactions.stream()
+            .filter(t -> t.getAmount() > 150)
+            .filter(t -> "USD".equals(t.getCurrency()))
+            .map(Transaction::getCurrency)
+            .distinct()
+            .collect(Collectors.toList());
+        System.out.println("内联 Stream 结果: " + inline);
+    }
+
+    /**
+     * 2. 同一个编译结果反复执行：每次换一个数据源，结果写入复用的集合
+     */
+    public static void runRepeatedly() {
+        System.out.println("\n=== 反复执行 ===");
+
+        CompiledPipeline<Transaction, String> pipeline = highValueFilter
+            .map(Transaction::getId)
+            .limit(2)
+            .compile();
+        System.out.println("执行计划: " + pipeline);
+
+        PipelineRunner<Transaction, String> runner = pipeline.newRunner();
+        List<String> out = new ArrayList<>();
+        List<List<Transaction>> batches = Arrays.asList(
+            sampleTransactions(),
+            Arrays.asList(new Transaction("T100", 999.0, "EUR", "2024-02-01")),
+            Collections.emptyList()
+        );
+        for (List<Transaction> batch : batches) {
+            out.clear();
+            runner.runInto(batch, out);
+            System.out.println("批次结果: " + out);
+        }
+    }
+
+    /**
+     * 3. 编译期校验：非法的定义在 compile 时失败，而不是在执行时
+     */
+    public static void validation() {
+        System.out.println("\n=== 编译期校验 ===");
+
+        try {
+            PipelineDefinition.<Transaction>start().limit(-1).compile();
+        } catch (IllegalArgumentException e) {
+            System.out.println("非法定义: " + e.getMessage());
+        }
+
+        CompiledPipeline<Transaction, Transaction> redundant = PipelineDefinition.<Transaction>start()
+            .distinct()
+            .distinct()
+            .filter(t -> true)
+            .compile();
+        System.out.println("重复 distinct 被消除: " + redundant);
+    }
+
+    /**
+     * 4. 小批次高频执行：内联 Stream 与预编译管道的耗时和每次执行的分配量
+     */
+    public static void smallBatchBenchmark(int runs) {
+        System.out.println("\n=== 小批次基准（每批 64 个交易，" + runs + " 次）===");
+
+        String[] currencies = {"USD", "EUR", "GBP", "JPY"};
+        Random random = new Random(5);
+        List<Transaction> batch = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            batch.add(new Transaction("T" + i, random.nextInt(400), currencies[random.nextInt(4)], "2024-01-01"));
+        }
+
+        CompiledPipeline<Transaction, String> pipeline = highValueFilter
+            .then(usdOnlyFilter)
+            .map(Transaction::getId)
+            .compile();
+        PipelineRunner<Transaction, String> runner = pipeline.newRunner();
+        List<String> reused = new ArrayList<>();
+
+        ToIntFunction<Integer> inline = i -> batch.stream()
+            .filter(t -> t.getAmount() > 150)
+            .filter(t -> "USD".equals(t.getCurrency()))
+            .map(Transaction::getId)
+            .collect(Collectors.toList())
+            .size();
+        ToIntFunction<Integer> compiled = i -> {
+            reused.clear();
+            runner.runInto(batch, reused);
+            return reused.size();
+        };
+
+        report("内联 Stream ", inline, runs);
+        report("预编译管道  ", compiled, runs);
+    }
+
+    private static void report(String label, ToIntFunction<Integer> operation, int runs) {
+        long best = Long.MAX_VALUE;
+        int sink = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                sink += operation.applyAsInt(i & 127);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        AllocationMeter meter = AllocationMeter.create();
+        String allocation = meter == null ? "不支持" : String.format("%.0f B", meter.bytesPerOp(operation, runs));
+        System.out.printf("%s %6.0f ns/次, 分配 %s/次 (校验和 %d)%n", label, (double) best / runs, allocation, sink);
+    }
+
+    private static List<Transaction> sampleTransactions() {
+        return Arrays.asList(
+            new Transaction("T001", 100.0, "USD", "2024-01-01"),
+            new Transaction("T002", 200.0, "EUR", "2024-01-02"),
+            new Transaction("T003", 150.0, "USD", "2024-01-03"),
+            new Transaction("T004", 300.0, "GBP", "2024-01-04"),
+            new Transaction("T005", 250.0, "USD", "2024-01-05"),
+            new Transaction("T006", 400.0, "USD", "2024-01-06")
+        );
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        composeAndCompile();
+        runRepeatedly();
+        validation();
+        smallBatchBenchmark(args.length > 0 ? Integer.parseInt(args[0]) : 100_000);
+    }
+
+    /**
+     * 阶段声明
+     */
+    enum StageKind { FILTER, MAP, DISTINCT, LIMIT }
+
+    static final class StageSpec {
+        final StageKind kind;
+        final Object function;
+        final long limit;
+
+        StageSpec(StageKind kind, Object function, long limit) {
+            this.kind = kind;
+            this.function = function;
+            this.limit = limit;
+        }
+
+        @Override
+        public String toString() {
+            return kind == StageKind.LIMIT ? "limit(" + limit + ")" : kind.name().toLowerCase();
+        }
+    }
+
+    /**
+     * 不可变的管道定义：每个中间操作返回新的定义，可以像积木一样用 then 拼接
+     */
+    static final class PipelineDefinition<T, R> {
+        private final List<StageSpec> stages;
+
+        private PipelineDefinition(List<StageSpec> stages) {
+            this.stages = stages;
+        }
+
+        public static <T> PipelineDefinition<T, T> start() {
+            return new PipelineDefinition<>(Collections.emptyList());
+        }
+
+        public PipelineDefinition<T, R> filter(Predicate<? super R> predicate) {
+            return append(new StageSpec(StageKind.FILTER, Objects.requireNonNull(predicate, "predicate"), 0));
+        }
+
+        public <X> PipelineDefinition<T, X> map(Function<? super R, ? extends X> mapper) {
+            return append(new StageSpec(StageKind.MAP, Objects.requireNonNull(mapper, "mapper"), 0));
+        }
+
+        public PipelineDefinition<T, R> distinct() {
+            return append(new StageSpec(StageKind.DISTINCT, null, 0));
+        }
+
+        public PipelineDefinition<T, R> limit(long maxSize) {
+            return append(new StageSpec(StageKind.LIMIT, null, maxSize));
+        }
+
+        /**
+         * 把另一个定义接在当前定义之后
+         */
+        public <X> PipelineDefinition<T, X> then(PipelineDefinition<R, X> next) {
+            List<StageSpec> combined = new ArrayList<>(stages);
+            combined.addAll(next.stages);
+            return new PipelineDefinition<>(Collections.unmodifiableList(combined));
+        }
+
+        private <X> PipelineDefinition<T, X> append(StageSpec stage) {
+            List<StageSpec> next = new ArrayList<>(stages);
+            next.add(stage);
+            return new PipelineDefinition<>(Collections.unmodifiableList(next));
+        }
+
+        /**
+         * 校验并融合阶段，生成可反复执行的管道
+         */
+        public CompiledPipeline<T, R> compile() {
+            return new CompiledPipeline<>(PipelineCompiler.fuse(stages));
+        }
+
+        @Override
+        public String toString() {
+            return stages.stream().map(StageSpec::toString).collect(Collectors.joining(" -> ", "[", "]"));
+        }
+    }
+
+    /**
+     * 融合后的算子
+     */
+    enum OperatorKind { FILTER, MAP, MAP_DISTINCT, DISTINCT, LIMIT }
+
+    static final class FusedOperator {
+        final OperatorKind kind;
+        final Predicate<Object>[] predicates;
+        final Function<Object, Object> mapper;
+        final long limit;
+        final int sourceStages;
+
+        FusedOperator(OperatorKind kind, Predicate<Object>[] predicates, Function<Object, Object> mapper,
+                      long limit, int sourceStages) {
+            this.kind = kind;
+            this.predicates = predicates;
+            this.mapper = mapper;
+            this.limit = limit;
+            this.sourceStages = sourceStages;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case FILTER:
+                    return predicates.length == 1 ? "filter" : "filter×" + predicates.length;
+                case MAP:
+                    return sourceStages == 1 ? "map" : "map×" + sourceStages;
+                case MAP_DISTINCT:
+                    return "mapDistinct";
+                case LIMIT:
+                    return "limit(" + limit + ")";
+                default:
+                    return "distinct";
+            }
+        }
+    }
+
+    /**
+     * 编译器：一次线性扫描完成校验与融合
+     * - 相邻的 filter 合并为一个算子，在同一个循环里依次求值
+     * - 相邻的 map 合成一个函数
+     * - map 之后紧跟 distinct 特化为 mapDistinct，映射结果直接进入去重集合
+     * - 连续的 distinct 只保留一个，连续的 limit 取较小值
+     */
+    static final class PipelineCompiler {
+        private PipelineCompiler() {
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        static List<FusedOperator> fuse(List<StageSpec> stages) {
+            List<FusedOperator> operators = new ArrayList<>();
+            int i = 0;
+            while (i < stages.size()) {
+                StageSpec stage = stages.get(i);
+                switch (stage.kind) {
+                    case FILTER: {
+                        List<Predicate<Object>> predicates = new ArrayList<>();
+                        while (i < stages.size() && stages.get(i).kind == StageKind.FILTER) {
+                            predicates.add((Predicate<Object>) stages.get(i++).function);
+                        }
+                        operators.add(new FusedOperator(OperatorKind.FILTER,
+                            predicates.toArray(new Predicate[0]), null, 0, predicates.size()));
+                        break;
+                    }
+                    case MAP: {
+                        Function<Object, Object> mapper = (Function<Object, Object>) stage.function;
+                        int count = 1;
+                        i++;
+                        while (i < stages.size() && stages.get(i).kind == StageKind.MAP) {
+                            mapper = mapper.andThen((Function<Object, Object>) stages.get(i++).function);
+                            count++;
+                        }
+                        boolean distinct = i < stages.size() && stages.get(i).kind == StageKind.DISTINCT;
+                        if (distinct) {
+                            i = skipDistinct(stages, i);
+                        }
+                        operators.add(new FusedOperator(distinct ? OperatorKind.MAP_DISTINCT : OperatorKind.MAP,
+                            null, mapper, 0, count));
+                        break;
+                    }
+                    case DISTINCT:
+                        i = skipDistinct(stages, i);
+                        operators.add(new FusedOperator(OperatorKind.DISTINCT, null, null, 0, 1));
+                        break;
+                    case LIMIT: {
+                        long limit = Long.MAX_VALUE;
+                        while (i < stages.size() && stages.get(i).kind == StageKind.LIMIT) {
+                            long next = stages.get(i++).limit;
+                            if (next < 0) {
+                                throw new IllegalArgumentException("limit 不能为负数: " + next);
+                            }
+                            limit = Math.min(limit, next);
+                        }
+                        operators.add(new FusedOperator(OperatorKind.LIMIT, null, null, limit, 1));
+                        break;
+                    }
+                    default:
+                        throw new IllegalStateException("未知阶段: " + stage.kind);
+                }
+            }
+            return Collections.unmodifiableList(operators);
+        }
+
+        private static int skipDistinct(List<StageSpec> stages, int i) {
+            while (i < stages.size() && stages.get(i).kind == StageKind.DISTINCT) {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * 编译结果：不可变、线程安全；真正执行由 PipelineRunner 完成
+     * run 使用线程本地的执行器，因此多个线程可以共享同一个 CompiledPipeline
+     */
+    static final class CompiledPipeline<T, R> {
+        private final List<FusedOperator> operators;
+        private final ThreadLocal<PipelineRunner<T, R>> runners;
+
+        CompiledPipeline(List<FusedOperator> operators) {
+            this.operators = operators;
+            this.runners = ThreadLocal.withInitial(this::newRunner);
+        }
+
+        /**
+         * 创建一个单线程复用的执行器：算子链只在这里分配一次
+         */
+        public PipelineRunner<T, R> newRunner() {
+            return new PipelineRunner<>(operators);
+        }
+
+        public List<R> run(Collection<? extends T> source) {
+            List<R> result = new ArrayList<>();
+            runners.get().runInto(source, result);
+            return result;
+        }
+
+        public void forEach(Collection<? extends T> source, Consumer<? super R> action) {
+            runners.get().run(source, action);
+        }
+
+        @Override
+        public String toString() {
+            return operators.stream().map(FusedOperator::toString).collect(Collectors.joining(" -> ", "[", "]"));
+        }
+    }
+
+    /**
+     * 执行器：持有预先串好的 Sink 链和可复用的去重集合，每次执行只重置状态
+     * 不是线程安全的
+     */
+    static final class PipelineRunner<T, R> {
+        private final Sink head;
+        private final TerminalSink terminal;
+        private final boolean shortCircuit;
+
+        PipelineRunner(List<FusedOperator> operators) {
+            this.terminal = new TerminalSink();
+            Sink sink = terminal;
+            boolean limit = false;
+            for (int i = operators.size() - 1; i >= 0; i--) {
+                FusedOperator op = operators.get(i);
+                switch (op.kind) {
+                    case FILTER:
+                        sink = op.predicates.length == 1
+                            ? new SingleFilterSink(op.predicates[0], sink)
+                            : new FilterSink(op.predicates, sink);
+                        break;
+                    case MAP:
+                        sink = new MapSink(op.mapper, sink);
+                        break;
+                    case MAP_DISTINCT:
+                        sink = new MapDistinctSink(op.mapper, sink);
+                        break;
+                    case DISTINCT:
+                        sink = new DistinctSink(sink);
+                        break;
+                    default:
+                        sink = new LimitSink(op.limit, sink);
+                        limit = true;
+                        break;
+                }
+            }
+            this.head = sink;
+            this.shortCircuit = limit;
+        }
+
+        public void runInto(Collection<? extends T> source, Collection<? super R> target) {
+            run(source, target::add);
+        }
+
+        @SuppressWarnings("unchecked")
+        public void run(Collection<? extends T> source, Consumer<? super R> action) {
+            terminal.action = (Consumer<Object>) action;
+            head.begin();
+            try {
+                if (source instanceof RandomAccess && source instanceof List) {
+                    List<? extends T> list = (List<? extends T>) source;
+                    for (int i = 0, n = list.size(); i < n && !(shortCircuit && head.cancellationRequested()); i++) {
+                        head.accept(list.get(i));
+                    }
+                } else {
+                    for (T t : source) {
+                        if (shortCircuit && head.cancellationRequested()) {
+                            break;
+                        }
+                        head.accept(t);
+                    }
+                }
+            } finally {
+                terminal.action = null;
+            }
+        }
+    }
+
+    /**
+     * 算子链中的一个环节，begin 在每次执行前重置状态
+     */
+    abstract static class Sink {
+        void begin() {
+        }
+
+        abstract void accept(Object t);
+
+        boolean cancellationRequested() {
+            return false;
+        }
+    }
+
+    abstract static class ChainedSink extends Sink {
+        final Sink downstream;
+
+        ChainedSink(Sink downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        void begin() {
+            downstream.begin();
+        }
+
+        @Override
+        boolean cancellationRequested() {
+            return downstream.cancellationRequested();
+        }
+    }
+
+    static final class TerminalSink extends Sink {
+        Consumer<Object> action;
+
+        @Override
+        void accept(Object t) {
+            action.accept(t);
+        }
+    }
+
+    static final class SingleFilterSink extends ChainedSink {
+        private final Predicate<Object> predicate;
+
+        SingleFilterSink(Predicate<Object> predicate, Sink downstream) {
+            super(downstream);
+            this.predicate = predicate;
+        }
+
+        @Override
+        void accept(Object t) {
+            if (predicate.test(t)) {
+                downstream.accept(t);
+            }
+        }
+    }
+
+    static final class FilterSink extends ChainedSink {
+        private final Predicate<Object>[] predicates;
+
+        FilterSink(Predicate<Object>[] predicates, Sink downstream) {
+            super(downstream);
+            this.predicates = predicates;
+        }
+
+        @Override
+        void accept(Object t) {
+            for (Predicate<Object> predicate : predicates) {
+                if (!predicate.test(t)) {
+                    return;
+                }
+            }
+            downstream.accept(t);
+        }
+    }
+
+    static final class MapSink extends ChainedSink {
+        private final Function<Object, Object> mapper;
+
+        MapSink(Function<Object, Object> mapper, Sink downstream) {
+            super(downstream);
+            this.mapper = mapper;
+        }
+
+        @Override
+        void accept(Object t) {
+            downstream.accept(mapper.apply(t));
+        }
+    }
+
+    static final class MapDistinctSink extends ChainedSink {
+        private final Function<Object, Object> mapper;
+        private final Set<Object> seen = new HashSet<>();
+
+        MapDistinctSink(Function<Object, Object> mapper, Sink downstream) {
+            super(downstream);
+            this.mapper = mapper;
+        }
+
+        @Override
+        void begin() {
+            seen.clear();
+            super.begin();
+        }
+
+        @Override
+        void accept(Object t) {
+            Object mapped = mapper.apply(t);
+            if (seen.add(mapped)) {
+                downstream.accept(mapped);
+            }
+        }
+    }
+
+    static final class DistinctSink extends ChainedSink {
+        private final Set<Object> seen = new HashSet<>();
+
+        DistinctSink(Sink downstream) {
+            super(downstream);
+        }
+
+        @Override
+        void begin() {
+            seen.clear();
+            super.begin();
+        }
+
+        @Override
+        void accept(Object t) {
+            if (seen.add(t)) {
+                downstream.accept(t);
+            }
+        }
+    }
+
+    static final class LimitSink extends ChainedSink {
+        private final long limit;
+        private long count;
+
+        LimitSink(long limit, Sink downstream) {
+            super(downstream);
+            this.limit = limit;
+        }
+
+        @Override
+        void begin() {
+            count = 0;
+            super.begin();
+        }
+
+        @Override
+        void accept(Object t) {
+            if (count < limit) {
+                count++;
+                downstream.accept(t);
+            }
+        }
+
+        @Override
+        boolean cancellationRequested() {
+            return count >= limit || super.cancellationRequested();
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.PrimitiveMapExamples.Object2LongOpenHashMap;
+import com.example.java8.StreamAdvancedExamples.Order;
+import com.example.java8.StreamAdvancedExamples.OrderStats;
+
+/**
+ * Java 8 并行分组收集器示例类
+ * 展示两种低竞争的分组聚合方式：
+ * - 并发收集器：所有线程共享一个 ConcurrentHashMap，每个 key 一个 LongAdder/DoubleAdder 分段计数单元
+ * - 线程本地收集器：每个叶子任务在本地 Map 中用可变基本类型单元累加，combine 时小表并入大表
+ */
+public class ConcurrentGroupingExamples {
+
+    /**
+     * 1. 基本用法：替代 groupingBy(..., counting()) 和 toConcurrentMap(..., merge)
+     */
+    public static void basicUsage() {
+        System.out.println("=== 并行分组收集器基本用法 ===");
+
+        List<String> words = Arrays.asList("Hello", "World", "Java", "Stream", "Parallel", "Processing",
+            "Hello", "Java", "Java");
+
+        // JDK 写法
+        Map<String, Long> jdkCounts = words.parallelStream()
+            .collect(Collectors.groupingByConcurrent(w -> w, Collectors.counting()));
+        System.out.println("JDK groupingByConcurrent: " + new TreeMap<>(jdkCounts));
+
+        // 每个 key 一个 LongAdder 的并发收集器
+        Map<String, Long> adderCounts = words.parallelStream()
+            .collect(ConcurrentGrouping.countingConcurrent(w -> w));
+        System.out.println("LongAdder 并发收集器: " + new TreeMap<>(adderCounts));
+
+        // 线程本地累加 + 合并树，结果是基本类型值的 Map
+        LongValuedMap<String> localCounts = words.parallelStream()
+            .collect(ConcurrentGrouping.countingLocal(w -> w));
+        System.out.println("线程本地收集器: " + localCounts);
+        System.out.println("Java 出现次数（无装箱读取）: " + localCounts.getLong("Java"));
+
+        // 单词长度求和：对应 advancedParallelStreamUsage 中的单词 → 长度映射
+        LongValuedMap<Character> lengthByInitial = words.parallelStream()
+            .collect(ConcurrentGrouping.summingLongLocal(w -> w.charAt(0), String::length));
+        System.out.println("按首字母累计长度: " + lengthByInitial);
+    }
+
+    /**
+     * 2. 每个 key 的统计单元：替代 groupingBy + collectingAndThen(toList(), ...) 计算 OrderStats
+     */
+    public static void perKeyStatistics() {
+        System.out.println("\n=== 每个 key 的统计单元 ===");
+
+        List<Order> orders = Arrays.asList(
+            new Order("A001", "Laptop", 1200.0, "Electronics", "2024-01-15"),
+            new Order("A002", "Mouse", 25.0, "Electronics", "2024-01-16"),
+            new Order("A003", "Desk", 300.0, "Furniture", "2024-01-17"),
+            new Order("A004", "Keyboard", 80.0, "Electronics", "2024-01-18"),
+            new Order("A005", "Chair", 150.0, "Furniture", "2024-01-19"),
+            new Order("A006", "Monitor", 400.0, "Electronics", "2024-01-20")
+        );
+
+        // 不需要先收集成 List 再多次遍历，每个元素只更新一次统计单元
+        Map<String, OrderStats> categoryStats = orders.parallelStream()
+            .collect(ConcurrentGrouping.summarizingDoubleConcurrent(Order::getCategory, Order::getPrice))
+            .entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, e -> toOrderStats(e.getValue())));
+
+        new TreeMap<>(categoryStats).forEach((category, stats) ->
+            System.out.printf("类别: %s - 总价值: %.2f, 平均价格: %.2f, 最高价: %.2f, 最低价: %.2f, 订单数: %d%n",
+                category, stats.getTotalValue(), stats.getAvgPrice(),
+                stats.getMaxPrice(), stats.getMinPrice(), stats.getCount()));
+    }
+
+    /**
+     * 3. 基准测试：高基数 key 下与 JDK 收集器在 1~64 个线程上的对比
+     */
+    public static void benchmarkAgainstJdk(int elements, int distinctKeys, int[] parallelisms) {
+        System.out.println("\n=== 并行分组收集器基准测试 ===");
+        System.out.println("元素数: " + elements + ", 不同 key 数: " + distinctKeys);
+
+        int[] keys = new Random(7).ints(elements, 0, distinctKeys).toArray();
+        Map<String, Supplier<Map<Integer, Long>>> candidates = new LinkedHashMap<>();
+        candidates.put("groupingBy", () -> IntStream.of(keys).parallel().boxed()
+            .collect(Collectors.groupingBy(k -> k, Collectors.counting())));
+        candidates.put("groupingByConcurrent", () -> IntStream.of(keys).parallel().boxed()
+            .collect(Collectors.groupingByConcurrent(k -> k, Collectors.counting())));
+        candidates.put("countingConcurrent", () -> IntStream.of(keys).parallel().boxed()
+            .collect(ConcurrentGrouping.countingConcurrent(k -> k)));
+        candidates.put("countingLocal", () -> IntStream.of(keys).parallel().boxed()
+            .collect(ConcurrentGrouping.countingLocal((Integer k) -> k)).toMap());
+
+        System.out.printf("%-8s", "线程数");
+        candidates.keySet().forEach(name -> System.out.printf("%22s", name));
+        System.out.println();
+
+        Map<Integer, Long> expected = candidates.get("groupingBy").get();
+        for (int parallelism : parallelisms) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                System.out.printf("%-10d", parallelism);
+                for (Map.Entry<String, Supplier<Map<Integer, Long>>> candidate : candidates.entrySet()) {
+                    Map<Integer, Long> result = runIn(pool, candidate.getValue());
+                    if (!expected.equals(result)) {
+                        throw new IllegalStateException(candidate.getKey() + " 结果不一致");
+                    }
+                    long best = Long.MAX_VALUE;
+                    for (int round = 0; round < 3; round++) {
+                        long start = System.nanoTime();
+                        runIn(pool, candidate.getValue());
+                        best = Math.min(best, System.nanoTime() - start);
+                    }
+                    System.out.printf("%19.1fms", best / 1_000_000.0);
+                }
+                System.out.println();
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static <T> T runIn(ForkJoinPool pool, Supplier<T> task) {
+        // 在自定义 ForkJoinPool 中提交的并行流会使用该池的工作线程
+        return pool.submit(task::get).join();
+    }
+
+    private static OrderStats toOrderStats(DoubleStatsCell cell) {
+        long count = cell.getCount();
+        double total = cell.getSum();
+        return new OrderStats(total, count == 0 ? 0 : total / count, cell.getMax(), cell.getMin(), (int) count);
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        basicUsage();
+        perKeyStatistics();
+
+        // 可以通过参数放大规模：java ConcurrentGroupingExamples <元素数> <key 数>
+        int elements = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int distinctKeys = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        benchmarkAgainstJdk(elements, distinctKeys, new int[] {1, 2, 4, 8, 16, 32, 64});
+    }
+
+    /**
+     * 分组收集器工厂
+     */
+    static final class ConcurrentGrouping {
+        private ConcurrentGrouping() {
+        }
+
+        /**
+         * 并发计数：共享 ConcurrentHashMap，每个 key 一个 LongAdder
+         * 热点 key 上的竞争被 LongAdder 的分段单元分散，已有 key 的读取走无锁的 get
+         */
+        public static <T, K> Collector<T, ?, Map<K, Long>> countingConcurrent(Function<? super T, ? extends K> classifier) {
+            return summingLongConcurrent(classifier, t -> 1L);
+        }
+
+        public static <T, K> Collector<T, ?, Map<K, Long>> summingLongConcurrent(
+                Function<? super T, ? extends K> classifier, ToLongFunction<? super T> mapper) {
+            return Collector.<T, ConcurrentHashMap<K, LongAdder>, Map<K, Long>>of(
+                ConcurrentHashMap::new,
+                (map, t) -> cell(map, classifier.apply(t), LongAdder::new).add(mapper.applyAsLong(t)),
+                (left, right) -> {
+                    right.forEach((k, adder) -> cell(left, k, LongAdder::new).add(adder.sum()));
+                    return left;
+                },
+                map -> {
+                    Map<K, Long> result = new HashMap<>(capacityFor(map.size()));
+                    map.forEach((k, adder) -> result.put(k, adder.sum()));
+                    return result;
+                },
+                Collector.Characteristics.CONCURRENT, Collector.Characteristics.UNORDERED);
+        }
+
+        public static <T, K> Collector<T, ?, Map<K, Double>> summingDoubleConcurrent(
+                Function<? super T, ? extends K> classifier, ToDoubleFunction<? super T> mapper) {
+            return Collector.<T, ConcurrentHashMap<K, DoubleAdder>, Map<K, Double>>of(
+                ConcurrentHashMap::new,
+                (map, t) -> cell(map, classifier.apply(t), DoubleAdder::new).add(mapper.applyAsDouble(t)),
+                (left, right) -> {
+                    right.forEach((k, adder) -> cell(left, k, DoubleAdder::new).add(adder.sum()));
+                    return left;
+                },
+                map -> {
+                    Map<K, Double> result = new HashMap<>(capacityFor(map.size()));
+                    map.forEach((k, adder) -> result.put(k, adder.sum()));
+                    return result;
+                },
+                Collector.Characteristics.CONCURRENT, Collector.Characteristics.UNORDERED);
+        }
+
+        /**
+         * 并发统计：每个 key 一个 DoubleStatsCell（计数、求和、最大值、最小值）
+         */
+        public static <T, K> Collector<T, ?, Map<K, DoubleStatsCell>> summarizingDoubleConcurrent(
+                Function<? super T, ? extends K> classifier, ToDoubleFunction<? super T> mapper) {
+            return Collector.<T, ConcurrentHashMap<K, DoubleStatsCell>, Map<K, DoubleStatsCell>>of(
+                ConcurrentHashMap::new,
+                (map, t) -> cell(map, classifier.apply(t), DoubleStatsCell::new).accept(mapper.applyAsDouble(t)),
+                (left, right) -> {
+                    right.forEach((k, stats) -> cell(left, k, DoubleStatsCell::new).merge(stats));
+                    return left;
+                },
+                map -> map,
+                Collector.Characteristics.CONCURRENT, Collector.Characteristics.UNORDERED);
+        }
+
+        /**
+         * 线程本地计数：没有共享状态，每个叶子任务独立累加
+         */
+        public static <T, K> Collector<T, ?, LongValuedMap<K>> countingLocal(Function<? super T, ? extends K> classifier) {
+            return summingLongLocal(classifier, t -> 1L);
+        }
+
+        /**
+         * 线程本地求和：叶子任务在本地 LongValuedMap 中累加，ForkJoin 的 combine 形成一棵合并树，
+         * 每次合并都把较小的表并入较大的表，避免在最后由一个线程合并所有结果
+         */
+        public static <T, K> Collector<T, ?, LongValuedMap<K>> summingLongLocal(
+                Function<? super T, ? extends K> classifier, ToLongFunction<? super T> mapper) {
+            return Collector.<T, LongValuedMap<K>, LongValuedMap<K>>of(
+                LongValuedMap::new,
+                (map, t) -> map.add(classifier.apply(t), mapper.applyAsLong(t)),
+                LongValuedMap::mergeSmallerIntoLarger,
+                map -> map,
+                Collector.Characteristics.UNORDERED);
+        }
+
+        private static <K, C> C cell(ConcurrentHashMap<K, C> map, K key, Supplier<C> factory) {
+            // 已存在的 key 走无锁 get，只有第一次出现的 key 才进入 computeIfAbsent
+            C cell = map.get(key);
+            return cell != null ? cell : map.computeIfAbsent(key, k -> factory.get());
+        }
+
+        private static int capacityFor(int size) {
+            return (int) (size / 0.75f) + 1;
+        }
+    }
+
+    /**
+     * 基本类型值的 Map：底层是开放寻址的 Object2LongOpenHashMap，累加时不装箱，也没有每个条目的 Node
+     * 非线程安全，由线程本地收集器在单个叶子任务内使用
+     */
+    static final class LongValuedMap<K> {
+        private final Object2LongOpenHashMap<K> cells = new Object2LongOpenHashMap<>();
+
+        public void add(K key, long delta) {
+            cells.addTo(key, delta);
+        }
+
+        public long getLong(K key) {
+            return cells.getLong(key);
+        }
+
+        public boolean containsKey(K key) {
+            return cells.containsKey(key);
+        }
+
+        public int size() {
+            return cells.size();
+        }
+
+        public void forEach(ObjLongConsumer<? super K> action) {
+            cells.forEach(action);
+        }
+
+        public Map<K, Long> toMap() {
+            return cells.toMap();
+        }
+
+        static <K> LongValuedMap<K> mergeSmallerIntoLarger(LongValuedMap<K> left, LongValuedMap<K> right) {
+            LongValuedMap<K> larger = left.size() >= right.size() ? left : right;
+            LongValuedMap<K> smaller = larger == left ? right : left;
+            smaller.forEach(larger::add);
+            return larger;
+        }
+
+        @Override
+        public String toString() {
+            return new TreeMap<>(toMap()).toString();
+        }
+    }
+
+    /**
+     * 并发的 double 统计单元：计数和求和使用 LongAdder/DoubleAdder，最大最小值用 CAS 更新
+     */
+    static final class DoubleStatsCell {
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+        private final AtomicLong maxBits = new AtomicLong(Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY));
+        private final AtomicLong minBits = new AtomicLong(Double.doubleToRawLongBits(Double.POSITIVE_INFINITY));
+
+        public void accept(double value) {
+            count.increment();
+            sum.add(value);
+            updateMax(value);
+            updateMin(value);
+        }
+
+        public void merge(DoubleStatsCell other) {
+            count.add(other.getCount());
+            sum.add(other.getSum());
+            updateMax(other.getMax());
+            updateMin(other.getMin());
+        }
+
+        public long getCount() { return count.sum(); }
+        public double getSum() { return sum.sum(); }
+        public double getMax() { return Double.longBitsToDouble(maxBits.get()); }
+        public double getMin() { return Double.longBitsToDouble(minBits.get()); }
+
+        private void updateMax(double value) {
+            long current;
+            while (value > Double.longBitsToDouble(current = maxBits.get())
+                    && !maxBits.compareAndSet(current, Double.doubleToRawLongBits(value))) {
+                // 重试
+            }
+        }
+
+        private void updateMin(double value) {
+            long current;
+            while (value < Double.longBitsToDouble(current = minBits.get())
+                    && !minBits.compareAndSet(current, Double.doubleToRawLongBits(value))) {
+                // 重试
+            }
+        }
+    }
+}
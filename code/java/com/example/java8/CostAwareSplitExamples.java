@@ -0,0 +1,468 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.PipelineEventsExamples.EventRecorder;
+import com.example.java8.PipelineEventsExamples.LeafTaskEvent;
+import com.example.java8.PipelineEventsExamples.PipelineEvent;
+import com.example.java8.PipelineEventsExamples.Recording;
+import com.example.java8.PipelineEventsExamples.RecordingAnalysis;
+import com.example.java8.PipelineEventsExamples.RecordingSettings;
+import com.example.java8.PipelineEventsExamples.TracedStreams;
+
+/**
+ * Java 8 按代价拆分示例类
+ * ArrayList 的 Spliterator 按元素个数对半拆分，单个元素代价相差几个数量级时少数叶子任务会拖慢整体。
+ * 这里按估计代价的前缀和拆分：代价可以由估计函数给出，也可以通过采样学习；
+ * 另外提供一个 ForkJoin 执行器，在叶子任务运行超过时间预算时把剩余区间再拆出去
+ */
+public class CostAwareSplitExamples {
+
+    /**
+     * 1. 按估计代价拆分：与 primeGenerator 相同的试除法，大数的代价约为 sqrt(n)
+     */
+    public static void costFunctionSplitting(int size) throws Exception {
+        System.out.println("=== 按估计代价拆分 ===");
+
+        List<Long> numbers = skewedNumbers(size);
+        CostProfile profile = CostProfile.estimate(numbers, n -> Math.sqrt(n));
+        System.out.printf("元素 %d 个, 末尾 %d 个大数占估计总代价的 %.1f%%%n", numbers.size(), size / 100,
+            100 * profile.cost(numbers.size() - size / 100, numbers.size()) / profile.totalCost());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int round = 0; round < 2; round++) {
+                boolean print = round == 1;
+                runTraced(pool, "按个数拆分", print,
+                    () -> StreamSupport.stream(numbers.spliterator(), true));
+                runTraced(pool, "按代价拆分", print,
+                    () -> StreamSupport.stream(CostAwareSpliterator.of(numbers, profile), true));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 2. 采样学习代价：不提供代价函数，按块抽样计时得到每个位置的代价
+     */
+    public static void sampledCosts(int size) throws Exception {
+        System.out.println("\n=== 采样学习代价 ===");
+
+        List<Long> numbers = skewedNumbers(size);
+        long start = System.nanoTime();
+        CostProfile profile = CostProfile.sample(numbers, CostAwareSplitExamples::isPrime, 64, 16);
+        System.out.printf("采样耗时 %.2fms, 第一块每元素 %.0fns, 最后一块每元素 %.0fns%n",
+            (System.nanoTime() - start) / 1e6, profile.cost(0, 1), profile.cost(numbers.size() - 1, numbers.size()));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            runTraced(pool, "采样代价拆分", true,
+                () -> StreamSupport.stream(CostAwareSpliterator.of(numbers, profile), true));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 3. 自适应再拆分：代价模型错误（假设均匀）时，运行超时的叶子把剩余区间拆给空闲线程
+     */
+    public static void adaptiveResplitting(int size) throws Exception {
+        System.out.println("\n=== 自适应再拆分 ===");
+
+        List<Long> numbers = skewedNumbers(size);
+        CostProfile uniform = CostProfile.uniform(numbers.size());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int round = 0; round < 2; round++) {
+                boolean print = round == 1;
+                runAdaptive(pool, "均匀模型, 不再拆分", print, numbers, uniform, Long.MAX_VALUE);
+                runAdaptive(pool, "均匀模型, 预算 2ms", print, numbers, uniform, TimeUnit.MILLISECONDS.toNanos(2));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 小数在前、少量大数在后：模拟单条记录代价相差几个数量级的输入
+     */
+    static List<Long> skewedNumbers(int size) {
+        int large = size / 100;
+        return LongStream.concat(
+                LongStream.rangeClosed(1, size - large),
+                LongStream.range(0, large).map(i -> 1_000_000_000_000L + 2 * i + 1))
+            .boxed()
+            .collect(Collectors.toList());
+    }
+
+    static boolean isPrime(long n) {
+        if (n < 2) return false;
+        if (n % 2 == 0) return n == 2;
+        for (long i = 3; i * i <= n; i += 2) {
+            if (n % i == 0) return false;
+        }
+        return true;
+    }
+
+    private static void runTraced(ForkJoinPool pool, String label, boolean print,
+                                  Supplier<Stream<Long>> source) throws Exception {
+        try (Recording recording = EventRecorder.start(RecordingSettings.defaults())) {
+            long start = System.nanoTime();
+            long primes = pool.submit(() ->
+                TracedStreams.parallelStream(source.get().spliterator())
+                    .filter(CostAwareSplitExamples::isPrime)
+                    .count()).get();
+            long elapsed = System.nanoTime() - start;
+            if (print) {
+                report(label, recording.stop(), elapsed, primes, 0);
+            }
+        }
+    }
+
+    private static void runAdaptive(ForkJoinPool pool, String label, boolean print, List<Long> numbers,
+                                    CostProfile profile, long leafBudgetNanos) {
+        try (Recording recording = EventRecorder.start(RecordingSettings.defaults())) {
+            long start = System.nanoTime();
+            AdaptiveResult<Long> result = AdaptiveExecutor.reduce(pool, numbers, profile, leafBudgetNanos,
+                n -> isPrime(n) ? 1L : 0L, 0L, Long::sum);
+            long elapsed = System.nanoTime() - start;
+            if (print) {
+                report(label, recording.stop(), elapsed, result.getValue(), result.getResplits());
+            }
+        }
+    }
+
+    private static void report(String label, List<PipelineEvent> events, long elapsedNanos, long primes,
+                               int resplits) {
+        List<LeafTaskEvent> leaves = RecordingAnalysis.of(events).ofType(LeafTaskEvent.class);
+        long[] cpu = leaves.stream().mapToLong(e -> Math.max(0, e.cpuNanos)).sorted().toArray();
+        LongSummaryStatistics elements = leaves.stream().mapToLong(e -> e.elements).summaryStatistics();
+        long total = LongStream.of(cpu).sum();
+        System.out.printf("  %-16s 耗时 %7.2fms, 质数 %d, 叶子 %2d 个 (元素 %d..%d), 再拆分 %d 次, "
+                + "最慢叶子 CPU %.2fms = 总量的 %.0f%%%n",
+            label, elapsedNanos / 1e6, primes, leaves.size(), elements.getMin(), elements.getMax(), resplits,
+            cpu.length == 0 ? 0 : cpu[cpu.length - 1] / 1e6,
+            total == 0 ? 0 : 100.0 * cpu[cpu.length - 1] / total);
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        costFunctionSplitting(size);
+        sampledCosts(size);
+        adaptiveResplitting(size);
+    }
+
+    /**
+     * 代价分布：每个下标的估计代价及其前缀和，prefix[i] 是区间 [0, i) 的总代价
+     * 拆分时在前缀和上二分查找，使左右两半的估计代价相等
+     */
+    static final class CostProfile {
+        private final double[] prefix;
+
+        private CostProfile(double[] prefix) {
+            this.prefix = prefix;
+        }
+
+        /**
+         * 由代价估计函数计算，函数本身应远比实际处理廉价
+         */
+        static <T> CostProfile estimate(List<T> list, ToDoubleFunction<? super T> cost) {
+            double[] prefix = new double[list.size() + 1];
+            for (int i = 0; i < list.size(); i++) {
+                prefix[i + 1] = prefix[i] + Math.max(0, cost.applyAsDouble(list.get(i)));
+            }
+            return new CostProfile(prefix);
+        }
+
+        /**
+         * 采样学习：把列表分成 blocks 块，每块等距抽取 samplesPerBlock 个元素执行 work 并计时，
+         * 块内每个元素的代价取样本的平均耗时（纳秒）。采样本身会执行一部分真实工作
+         */
+        static <T> CostProfile sample(List<T> list, Consumer<? super T> work, int blocks, int samplesPerBlock) {
+            int n = list.size();
+            double[] prefix = new double[n + 1];
+            blocks = Math.max(1, Math.min(blocks, n));
+            for (int b = 0; b < blocks; b++) {
+                int from = (int) ((long) n * b / blocks);
+                int to = (int) ((long) n * (b + 1) / blocks);
+                int samples = Math.max(1, Math.min(samplesPerBlock, to - from));
+                long nanos = 0;
+                for (int s = 0; s < samples; s++) {
+                    T element = list.get(from + (int) ((long) (to - from) * s / samples));
+                    long start = System.nanoTime();
+                    work.accept(element);
+                    nanos += System.nanoTime() - start;
+                }
+                // 避免计时精度不足时得到 0 代价
+                double perElement = Math.max(1.0, (double) nanos / samples);
+                for (int i = from; i < to; i++) {
+                    prefix[i + 1] = prefix[i] + perElement;
+                }
+            }
+            return new CostProfile(prefix);
+        }
+
+        static CostProfile uniform(int size) {
+            double[] prefix = new double[size + 1];
+            for (int i = 0; i < size; i++) {
+                prefix[i + 1] = i + 1;
+            }
+            return new CostProfile(prefix);
+        }
+
+        int size() {
+            return prefix.length - 1;
+        }
+
+        double totalCost() {
+            return prefix[prefix.length - 1];
+        }
+
+        double cost(int from, int to) {
+            return prefix[to] - prefix[from];
+        }
+
+        /**
+         * 返回 (from, to) 内的拆分点 mid，使 [from, mid) 与 [mid, to) 的代价尽量接近
+         */
+        int split(int from, int to) {
+            double half = (prefix[from] + prefix[to]) / 2;
+            int lo = from + 1;
+            int hi = to - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (prefix[mid] < half) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            // lo 是前缀和首次达到一半的位置，比较它与前一个位置哪个更接近一半
+            if (lo > from + 1 && half - prefix[lo - 1] < prefix[lo] - half) {
+                lo--;
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * 按代价拆分的列表 Spliterator
+     * 流框架按 estimateSize 决定何时停止拆分（叶子阈值约为总大小 / (4 * 并行度)），
+     * 所以这里的 estimateSize 按代价折算：返回 区间代价 / 总代价 * 总元素数，
+     * 代价高的小区间会继续被拆分，代价低的大区间会尽早成为叶子。
+     * 折算后的大小不是真实元素数，因此不报告 SIZED / SUBSIZED
+     */
+    static final class CostAwareSpliterator<T> implements Spliterator<T> {
+        private final List<T> list;
+        private final CostProfile profile;
+        private final double minLeafCost;
+        private final double sizePerCost;
+        private int from;
+        private final int to;
+
+        private CostAwareSpliterator(List<T> list, CostProfile profile, double minLeafCost, double sizePerCost,
+                                     int from, int to) {
+            this.list = list;
+            this.profile = profile;
+            this.minLeafCost = minLeafCost;
+            this.sizePerCost = sizePerCost;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * 叶子数目标与流框架一致：当前所在 ForkJoinPool（不在池中时为公共池）并行度的 4 倍
+         */
+        static <T> CostAwareSpliterator<T> of(List<T> list, CostProfile profile) {
+            ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+            return of(list, profile, Math.max(1, pool.getParallelism()) * 4);
+        }
+
+        static <T> CostAwareSpliterator<T> of(List<T> list, CostProfile profile, int targetLeaves) {
+            if (profile.size() != list.size()) {
+                throw new IllegalArgumentException("代价分布大小 " + profile.size() + " 与列表大小 " + list.size() + " 不一致");
+            }
+            double total = profile.totalCost();
+            double sizePerCost = total > 0 ? list.size() / total : 0;
+            return new CostAwareSpliterator<>(list, profile, total / Math.max(1, targetLeaves), sizePerCost,
+                0, list.size());
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (to - from < 2 || profile.cost(from, to) <= minLeafCost) {
+                return null;
+            }
+            int mid = profile.split(from, to);
+            Spliterator<T> prefix = new CostAwareSpliterator<>(list, profile, minLeafCost, sizePerCost, from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(list.get(from++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            int end = to;
+            for (int i = from; i < end; i++) {
+                action.accept(list.get(i));
+            }
+            from = end;
+        }
+
+        @Override
+        public long estimateSize() {
+            if (from >= to) {
+                return 0;
+            }
+            return Math.max(1, Math.round(profile.cost(from, to) * sizePerCost));
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED;
+        }
+    }
+
+    /**
+     * 自适应执行结果：归约值和运行中再拆分的次数
+     */
+    static final class AdaptiveResult<R> {
+        private final R value;
+        private final int resplits;
+
+        AdaptiveResult(R value, int resplits) {
+            this.value = value;
+            this.resplits = resplits;
+        }
+
+        public R getValue() { return value; }
+        public int getResplits() { return resplits; }
+
+        @Override
+        public String toString() {
+            return "AdaptiveResult{value=" + value + ", resplits=" + resplits + "}";
+        }
+    }
+
+    /**
+     * 带自适应再拆分的 ForkJoin 归约
+     * 先按代价分布拆到 4 * 并行度 个叶子；叶子每处理 CHECK_INTERVAL 个元素检查一次耗时，
+     * 超过预算且池中没有积压任务时，把剩余区间按个数对半拆出一个子任务（此时代价模型已被证明不准）。
+     * 结果按下标顺序合并，combiner 只需满足结合律
+     */
+    static final class AdaptiveExecutor {
+        static final int CHECK_INTERVAL = 16;
+
+        private AdaptiveExecutor() {
+        }
+
+        static <T, R> AdaptiveResult<R> reduce(ForkJoinPool pool, List<T> list, CostProfile profile,
+                                               long leafBudgetNanos, Function<? super T, ? extends R> mapper,
+                                               R identity, BinaryOperator<R> combiner) {
+            double minLeafCost = profile.totalCost() / (pool.getParallelism() * 4);
+            AtomicInteger resplits = new AtomicInteger();
+            ReduceTask<T, R> root = new ReduceTask<>(list, profile, minLeafCost, leafBudgetNanos,
+                mapper, identity, combiner, resplits, 0, list.size());
+            R value = pool.invoke(root);
+            return new AdaptiveResult<>(value, resplits.get());
+        }
+
+        private static final class ReduceTask<T, R> extends RecursiveTask<R> {
+            private static final long serialVersionUID = 1L;
+
+            private final List<T> list;
+            private final CostProfile profile;
+            private final double minLeafCost;
+            private final long leafBudgetNanos;
+            private final Function<? super T, ? extends R> mapper;
+            private final R identity;
+            private final BinaryOperator<R> combiner;
+            private final AtomicInteger resplits;
+            private final int from;
+            private final int to;
+
+            ReduceTask(List<T> list, CostProfile profile, double minLeafCost, long leafBudgetNanos,
+                       Function<? super T, ? extends R> mapper, R identity, BinaryOperator<R> combiner,
+                       AtomicInteger resplits, int from, int to) {
+                this.list = list;
+                this.profile = profile;
+                this.minLeafCost = minLeafCost;
+                this.leafBudgetNanos = leafBudgetNanos;
+                this.mapper = mapper;
+                this.identity = identity;
+                this.combiner = combiner;
+                this.resplits = resplits;
+                this.from = from;
+                this.to = to;
+            }
+
+            private ReduceTask<T, R> subtask(int lo, int hi) {
+                return new ReduceTask<>(list, profile, minLeafCost, leafBudgetNanos, mapper, identity, combiner,
+                    resplits, lo, hi);
+            }
+
+            @Override
+            protected R compute() {
+                // 拆出的子任务区间依次位于更靠前的位置，合并时倒序遍历即为下标顺序
+                List<ForkJoinTask<R>> forked = new ArrayList<>();
+                int hi = to;
+                while (hi - from > 1 && profile.cost(from, hi) > minLeafCost) {
+                    int mid = profile.split(from, hi);
+                    forked.add(subtask(mid, hi).fork());
+                    hi = mid;
+                }
+
+                LeafTaskEvent event = EventRecorder.isRecording() ? new LeafTaskEvent() : null;
+                if (event != null) {
+                    event.begin();
+                }
+                R acc = identity;
+                long leafStart = System.nanoTime();
+                int i = from;
+                while (i < hi) {
+                    acc = combiner.apply(acc, mapper.apply(list.get(i++)));
+                    if ((i - from) % CHECK_INTERVAL == 0 && hi - i >= 2
+                            && System.nanoTime() - leafStart > leafBudgetNanos
+                            && getSurplusQueuedTaskCount() <= 0) {
+                        int mid = i + (hi - i) / 2;
+                        forked.add(subtask(mid, hi).fork());
+                        hi = mid;
+                        resplits.incrementAndGet();
+                        leafStart = System.nanoTime();
+                    }
+                }
+                if (event != null) {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.elements = i - from;
+                        event.commit();
+                    }
+                }
+
+                for (int k = forked.size() - 1; k >= 0; k--) {
+                    acc = combiner.apply(acc, forked.get(k).join());
+                }
+                return acc;
+            }
+        }
+    }
+}
@@ -0,0 +1,570 @@
+package com.example.java8;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Java 8 词典索引示例类
+ * docs/dict.xml 是一个单词本（wordbook/item/word、trans、phonetic、progress），之前只由 Python 脚本处理。
+ * 这里用 StAX 一次顺序读取，每次只在内存中保留当前条目，作为 Stream 数据源接入现有的管道写法；
+ * 条目按规范化后的单词排序，建立路径压缩的紧凑字典树：边标签不单独存储，直接引用排序后的单词，
+ * 每个节点对应排序数组中的一个连续区间，所以精确查找和前缀查找都只需走一遍前缀，再返回一段子列表
+ */
+public class DictionaryIndexExamples {
+
+    /**
+     * 1. StAX 流式解析：词典直接作为 Stream 数据源
+     */
+    public static void streamingParse(Path file) {
+        System.out.println("=== 流式解析 dict.xml ===");
+
+        long start = System.nanoTime();
+        Map<Integer, Long> byProgress;
+        try (Stream<DictEntry> entries = DictionaryReader.entries(file)) {
+            byProgress = entries.collect(Collectors.groupingBy(DictEntry::getProgress, TreeMap::new,
+                Collectors.counting()));
+        }
+        System.out.printf("解析 %d 个条目 %.2fms%n", byProgress.values().stream().mapToLong(Long::longValue).sum(),
+            (System.nanoTime() - start) / 1e6);
+        System.out.println("按学习进度计数: " + byProgress);
+
+        try (Stream<DictEntry> entries = DictionaryReader.entries(file)) {
+            List<String> phrases = entries.map(DictEntry::getWord)
+                .filter(word -> word.indexOf(' ') >= 0)
+                .limit(5)
+                .collect(Collectors.toList());
+            System.out.println("前 5 个词组: " + phrases);
+        }
+    }
+
+    /**
+     * 2. 建立索引：节点数、边数和重复收录的单词
+     */
+    public static DictionaryIndex buildIndex(Path file) {
+        System.out.println("\n=== 建立字典树索引 ===");
+
+        long start = System.nanoTime();
+        DictionaryIndex index;
+        try (Stream<DictEntry> entries = DictionaryReader.entries(file)) {
+            index = DictionaryIndex.build(entries);
+        }
+        System.out.printf("解析并建索引 %.2fms: %s%n", (System.nanoTime() - start) / 1e6, index);
+
+        List<String> duplicated = index.keys()
+            .filter(key -> index.lookup(key).size() > 1)
+            .collect(Collectors.toList());
+        System.out.println("重复收录的单词 " + duplicated.size() + " 个: " + duplicated);
+        return index;
+    }
+
+    /**
+     * 3. 精确查找：不区分大小写，重复收录的单词返回全部条目
+     */
+    public static void exactLookup(DictionaryIndex index) {
+        System.out.println("\n=== 精确查找 ===");
+
+        for (String word : Arrays.asList("sober", "Tweak", "on the go", "fiancé", "idl", "zzz")) {
+            List<DictEntry> entries = index.lookup(word);
+            if (entries.isEmpty()) {
+                System.out.println("  " + word + ": 未收录");
+            }
+            entries.forEach(entry -> System.out.println("  " + word + ": " + entry.getWord() + " "
+                + entry.getPhonetic() + " " + entry.firstSense()));
+        }
+    }
+
+    /**
+     * 4. 前缀查找，以及与线性扫描、TreeMap 的耗时对比
+     */
+    public static void prefixLookup(DictionaryIndex index, int rounds) {
+        System.out.println("\n=== 前缀查找 ===");
+
+        for (String prefix : Arrays.asList("un", "over", "dis", "tw", "q")) {
+            System.out.println("  " + prefix + "*: " + index.countWithPrefix(prefix) + " 个, 例如 "
+                + index.withPrefix(prefix).map(DictEntry::getWord).limit(5).collect(Collectors.toList()));
+        }
+
+        List<DictEntry> all = index.stream().collect(Collectors.toList());
+        List<String> queries = all.stream()
+            .map(entry -> DictionaryIndex.normalize(entry.getWord()))
+            .map(key -> key.substring(0, Math.min(key.length(), 3)))
+            .collect(Collectors.toList());
+        TreeMap<String, List<DictEntry>> treeMap = all.stream().collect(Collectors.groupingBy(
+            entry -> DictionaryIndex.normalize(entry.getWord()), TreeMap::new, Collectors.toList()));
+
+        long trieTotal = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (String query : queries) {
+                trieTotal += index.countWithPrefix(query);
+            }
+        }
+        double trieMs = (System.nanoTime() - start) / 1e6;
+
+        long treeMapTotal = 0;
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (String query : queries) {
+                treeMapTotal += treeMap.subMap(query, true, query + Character.MAX_VALUE, false).values().stream()
+                    .mapToInt(List::size).sum();
+            }
+        }
+        double treeMapMs = (System.nanoTime() - start) / 1e6;
+
+        // 线性扫描太慢，只跑一轮再按轮数折算
+        long scanTotal = 0;
+        start = System.nanoTime();
+        for (String query : queries) {
+            scanTotal += all.stream().filter(entry -> DictionaryIndex.normalize(entry.getWord()).startsWith(query))
+                .count();
+        }
+        double scanMs = (System.nanoTime() - start) / 1e6 * rounds;
+
+        System.out.printf("%d 次前缀计数: 字典树 %.2fms, TreeMap.subMap %.2fms, 线性扫描(折算) %.0fms, 结果一致: %b%n",
+            queries.size() * rounds, trieMs, treeMapMs, scanMs,
+            trieTotal == treeMapTotal && trieTotal == scanTotal * rounds);
+    }
+
+    /**
+     * 5. 作为 Stream 数据源：前缀结果直接进入分组管道
+     */
+    public static void prefixPipeline(DictionaryIndex index) {
+        System.out.println("\n=== 前缀结果接入管道 ===");
+
+        Map<String, List<String>> byPartOfSpeech = index.withPrefix("re")
+            .collect(Collectors.groupingBy(DictEntry::partOfSpeech, TreeMap::new,
+                Collectors.mapping(DictEntry::getWord, Collectors.toList())));
+        byPartOfSpeech.forEach((pos, words) -> System.out.println("  " + pos + " " + words.size() + " 个: "
+            + words.stream().limit(6).collect(Collectors.joining(", "))));
+
+        // 已掌握（progress > 0）的 un- 开头单词中释义最长的三个
+        index.withPrefix("un")
+            .filter(entry -> entry.getProgress() > 0)
+            .sorted(Comparator.comparingInt((DictEntry entry) -> entry.getTranslation().length()).reversed())
+            .limit(3)
+            .forEach(entry -> System.out.println("  " + entry.getWord() + ": " + entry.firstSense()));
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        Path file = Paths.get(args.length > 0 ? args[0] : "docs/dict.xml");
+        if (!Files.isRegularFile(file)) {
+            System.out.println("找不到词典文件 " + file.toAbsolutePath() + "，请在仓库根目录运行或通过参数指定路径");
+            return;
+        }
+        streamingParse(file);
+        DictionaryIndex index = buildIndex(file);
+        exactLookup(index);
+        prefixLookup(index, 20);
+        prefixPipeline(index);
+    }
+
+    /**
+     * 词典条目
+     */
+    static final class DictEntry {
+        private final String word;
+        private final String phonetic;
+        private final String translation;
+        private final int progress;
+
+        DictEntry(String word, String phonetic, String translation, int progress) {
+            this.word = word;
+            this.phonetic = phonetic;
+            this.translation = translation;
+            this.progress = progress;
+        }
+
+        public String getWord() { return word; }
+        public String getPhonetic() { return phonetic; }
+        public String getTranslation() { return translation; }
+        public int getProgress() { return progress; }
+
+        /**
+         * 释义的第一行
+         */
+        String firstSense() {
+            int newline = translation.indexOf('\n');
+            return (newline < 0 ? translation : translation.substring(0, newline)).trim();
+        }
+
+        /**
+         * 释义开头的词性标记，例如 "adj."、"vt."；没有时为 "-"
+         */
+        String partOfSpeech() {
+            int dot = translation.indexOf('.');
+            if (dot <= 0 || dot > 5) {
+                return "-";
+            }
+            String pos = translation.substring(0, dot + 1);
+            return pos.chars().allMatch(c -> c == '.' || (c >= 'a' && c <= 'z')) ? pos : "-";
+        }
+
+        @Override
+        public String toString() {
+            return word + " " + phonetic + " " + firstSense();
+        }
+    }
+
+    /**
+     * 基于 StAX 的词典读取器：返回的流每次解析一个 item，需要关闭以释放文件
+     * 关闭了 DTD 和外部实体，避免解析不可信文件时的 XXE
+     */
+    static final class DictionaryReader {
+        private static final XMLInputFactory FACTORY = createFactory();
+
+        private DictionaryReader() {
+        }
+
+        private static XMLInputFactory createFactory() {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+            return factory;
+        }
+
+        static Stream<DictEntry> entries(Path file) {
+            InputStream in = null;
+            XMLStreamReader reader;
+            try {
+                in = new BufferedInputStream(Files.newInputStream(file), 64 << 10);
+                synchronized (FACTORY) {
+                    reader = FACTORY.createXMLStreamReader(in, "UTF-8");
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("打开词典失败: " + file, e);
+            } catch (XMLStreamException e) {
+                closeQuietly(in);
+                throw new IllegalStateException("词典不是合法的 XML: " + file, e);
+            }
+            InputStream input = in;
+            Spliterator<DictEntry> spliterator = new Spliterators.AbstractSpliterator<DictEntry>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super DictEntry> action) {
+                    try {
+                        DictEntry entry = nextEntry(reader);
+                        if (entry == null) {
+                            return false;
+                        }
+                        action.accept(entry);
+                        return true;
+                    } catch (XMLStreamException e) {
+                        throw new IllegalStateException("解析词典失败: " + file + " 第 "
+                            + e.getLocation().getLineNumber() + " 行", e);
+                    }
+                }
+            };
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // 下面会关闭底层输入流
+                } finally {
+                    closeQuietly(input);
+                }
+            });
+        }
+
+        /**
+         * 前进到下一个 item 并读取它的子元素；没有更多条目时返回 null
+         */
+        private static DictEntry nextEntry(XMLStreamReader reader) throws XMLStreamException {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && "item".equals(reader.getLocalName())) {
+                    return readItem(reader);
+                }
+            }
+            return null;
+        }
+
+        private static DictEntry readItem(XMLStreamReader reader) throws XMLStreamException {
+            String word = null;
+            String phonetic = "";
+            String translation = "";
+            int progress = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT && "item".equals(reader.getLocalName())) {
+                    break;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                switch (reader.getLocalName()) {
+                    case "word":
+                        word = reader.getElementText().trim();
+                        break;
+                    case "trans":
+                        translation = reader.getElementText().trim();
+                        break;
+                    case "phonetic":
+                        phonetic = reader.getElementText().trim();
+                        // 没有音标的条目写作 "[]"
+                        if ("[]".equals(phonetic)) {
+                            phonetic = "";
+                        }
+                        break;
+                    case "progress":
+                        progress = parseProgress(reader.getElementText());
+                        break;
+                    default:
+                        // lanfrom、lanto、tags 等不需要的字段
+                        reader.getElementText();
+                        break;
+                }
+            }
+            if (word == null || word.isEmpty()) {
+                throw new XMLStreamException("item 缺少 word", reader.getLocation());
+            }
+            return new DictEntry(word, phonetic, translation, progress);
+        }
+
+        private static int parseProgress(String text) {
+            try {
+                return Integer.parseInt(text.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        private static void closeQuietly(Closeable closeable) {
+            if (closeable == null) {
+                return;
+            }
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响已经读到的数据
+            }
+        }
+    }
+
+    /**
+     * 路径压缩字典树，按规范化后的单词（去掉首尾空白、转小写）查找
+     * keys 是排序去重后的单词，entryStart[k] 到 entryStart[k + 1] 是 keys[k] 对应的条目。
+     * 节点 n 代表前缀 keys[nodeLo[n]].substring(0, nodeDepth[n])，以它为前缀的单词正好是 keys[nodeLo[n], nodeHi[n])；
+     * 子节点按首字符排序存放在 edgeChar / edgeNode 的 [edgeStart[n], edgeEnd[n]) 中，
+     * 边上其余的字符不单独保存，查找时直接与 keys[nodeLo[child]] 比较
+     */
+    static final class DictionaryIndex {
+        private final List<DictEntry> entries;
+        private final String[] keys;
+        private final int[] entryStart;
+        private final int[] nodeLo;
+        private final int[] nodeHi;
+        private final int[] nodeDepth;
+        private final int[] edgeStart;
+        private final int[] edgeEnd;
+        private final char[] edgeChar;
+        private final int[] edgeNode;
+        private int nodeCount;
+        private int edgeCount;
+
+        private DictionaryIndex(List<DictEntry> entries, String[] keys, int[] entryStart) {
+            this.entries = entries;
+            this.keys = keys;
+            this.entryStart = entryStart;
+            // 每个内部节点至少有两个分支或者本身是一个单词，节点数不超过 2 * keys
+            int capacity = Math.max(1, 2 * keys.length);
+            this.nodeLo = new int[capacity];
+            this.nodeHi = new int[capacity];
+            this.nodeDepth = new int[capacity];
+            this.edgeStart = new int[capacity];
+            this.edgeEnd = new int[capacity];
+            this.edgeChar = new char[capacity];
+            this.edgeNode = new int[capacity];
+            if (keys.length > 0) {
+                buildNode(0, keys.length, 0);
+            }
+        }
+
+        static String normalize(String word) {
+            return word.trim().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * 消费条目流建立索引；同一单词的多个条目保持在文件中的先后顺序
+         */
+        static DictionaryIndex build(Stream<DictEntry> source) {
+            List<DictEntry> sorted = source
+                .map(entry -> new AbstractMap.SimpleImmutableEntry<>(normalize(entry.getWord()), entry))
+                .sorted(Map.Entry.comparingByKey())
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toCollection(ArrayList::new));
+
+            List<String> keys = new ArrayList<>();
+            int[] entryStart = new int[sorted.size() + 1];
+            String previous = null;
+            for (int i = 0; i < sorted.size(); i++) {
+                String key = normalize(sorted.get(i).getWord());
+                if (!key.equals(previous)) {
+                    entryStart[keys.size()] = i;
+                    keys.add(key);
+                    previous = key;
+                }
+            }
+            entryStart[keys.size()] = sorted.size();
+            return new DictionaryIndex(Collections.unmodifiableList(sorted), keys.toArray(new String[0]),
+                Arrays.copyOf(entryStart, keys.size() + 1));
+        }
+
+        /**
+         * 为 keys[lo, hi) 建立节点，这些单词共享长度至少为 minDepth 的前缀，返回节点编号
+         * 递归深度不超过最长单词的长度
+         */
+        private int buildNode(int lo, int hi, int minDepth) {
+            int node = nodeCount++;
+            int depth = commonPrefix(keys[lo], keys[hi - 1], minDepth);
+            nodeLo[node] = lo;
+            nodeHi[node] = hi;
+            nodeDepth[node] = depth;
+
+            // 与节点前缀等长的单词排在区间最前面，其余按第 depth 个字符分组
+            int i = keys[lo].length() == depth ? lo + 1 : lo;
+            List<Integer> children = new ArrayList<>();
+            while (i < hi) {
+                char c = keys[i].charAt(depth);
+                int j = i + 1;
+                while (j < hi && keys[j].charAt(depth) == c) {
+                    j++;
+                }
+                children.add(buildNode(i, j, depth + 1));
+                i = j;
+            }
+            // 子节点的边写完之后再写本节点的边，保证每个节点的边连续
+            edgeStart[node] = edgeCount;
+            for (int child : children) {
+                edgeChar[edgeCount] = keys[nodeLo[child]].charAt(depth);
+                edgeNode[edgeCount] = child;
+                edgeCount++;
+            }
+            edgeEnd[node] = edgeCount;
+            return node;
+        }
+
+        private static int commonPrefix(String a, String b, int from) {
+            int max = Math.min(a.length(), b.length());
+            int i = from;
+            while (i < max && a.charAt(i) == b.charAt(i)) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * 找到以 prefix 为前缀的所有单词所在的节点，没有时返回 -1
+         */
+        private int locate(String prefix) {
+            if (keys.length == 0) {
+                return -1;
+            }
+            int node = 0;
+            int matched = 0;
+            while (true) {
+                String label = keys[nodeLo[node]];
+                int depth = nodeDepth[node];
+                int end = Math.min(depth, prefix.length());
+                for (; matched < end; matched++) {
+                    if (label.charAt(matched) != prefix.charAt(matched)) {
+                        return -1;
+                    }
+                }
+                if (prefix.length() <= depth) {
+                    return node;
+                }
+                int child = findChild(node, prefix.charAt(depth));
+                if (child < 0) {
+                    return -1;
+                }
+                node = child;
+                matched = depth + 1;
+            }
+        }
+
+        private int findChild(int node, char c) {
+            int lo = edgeStart[node];
+            int hi = edgeEnd[node] - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char label = edgeChar[mid];
+                if (label < c) {
+                    lo = mid + 1;
+                } else if (label > c) {
+                    hi = mid - 1;
+                } else {
+                    return edgeNode[mid];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 精确查找，不区分大小写；未收录时返回空列表
+         */
+        List<DictEntry> lookup(String word) {
+            String key = normalize(word);
+            int node = locate(key);
+            if (node < 0 || nodeDepth[node] != key.length() || keys[nodeLo[node]].length() != key.length()) {
+                return Collections.emptyList();
+            }
+            int k = nodeLo[node];
+            return entries.subList(entryStart[k], entryStart[k + 1]);
+        }
+
+        /**
+         * 以 prefix 开头的所有条目，按单词排序；流是 SIZED 的，可以直接并行
+         * 前缀只转小写不去空白，"on " 只匹配以 on 开头的词组
+         */
+        Stream<DictEntry> withPrefix(String prefix) {
+            return prefixRange(prefix.toLowerCase(Locale.ROOT)).stream();
+        }
+
+        int countWithPrefix(String prefix) {
+            return prefixRange(prefix.toLowerCase(Locale.ROOT)).size();
+        }
+
+        private List<DictEntry> prefixRange(String key) {
+            int node = locate(key);
+            if (node < 0) {
+                return Collections.emptyList();
+            }
+            return entries.subList(entryStart[nodeLo[node]], entryStart[nodeHi[node]]);
+        }
+
+        /**
+         * 全部条目，按单词排序
+         */
+        Stream<DictEntry> stream() {
+            return entries.stream();
+        }
+
+        /**
+         * 规范化后的全部单词，按字典序
+         */
+        Stream<String> keys() {
+            return Arrays.stream(keys);
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        @Override
+        public String toString() {
+            long indexBytes = 4L * (5 * nodeCount + edgeCount + entryStart.length) + 2L * edgeCount;
+            return String.format("DictionaryIndex{条目=%d, 单词=%d, 节点=%d, 边=%d, 索引数组约 %.1fKB}",
+                entries.size(), keys.length, nodeCount, edgeCount, indexBytes / 1024.0);
+        }
+    }
+}
@@ -0,0 +1,731 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.StreamAdvancedExamples.Person;
+import com.example.java8.StreamAdvancedExamples.Product;
+import com.example.java8.StreamAdvancedExamples.Transaction;
+
+/**
+ * Java 8 索引集合示例类
+ * 为内存中的记录维护二级索引：等值键用哈希索引，数值范围用有序索引（TreeMap），低基数键用位图索引；
+ * 插入、替换、删除时增量维护索引，查询时优先选择估计结果最少的索引而不是全量扫描
+ */
+public class IndexedCollectionExamples {
+
+    /**
+     * 1. dynamicStreamBuilding 中的产品过滤改为索引查询
+     */
+    public static void productQueries() {
+        System.out.println("=== 产品索引查询 ===");
+
+        IndexedCollection<String, Product> products = IndexedCollection.<String, Product>keyedBy(Product::getName)
+            .withHashIndex("category", Product::getCategory)
+            .withSortedIndex("price", Product::getPrice)
+            .withBitmapIndex("inStock", Product::isInStock);
+        products.put(new Product("Laptop", 1200.0, "Electronics", true));
+        products.put(new Product("Mouse", 25.0, "Electronics", false));
+        products.put(new Product("Desk", 300.0, "Furniture", true));
+        products.put(new Product("Keyboard", 80.0, "Electronics", true));
+        products.put(new Product("Chair", 150.0, "Furniture", false));
+
+        Query<String, Product> query = products.query()
+            .greaterThan("price", 100.0)
+            .eq("inStock", true)
+            .eq("category", "Electronics");
+        System.out.println(query.explain());
+        System.out.println("应用所有过滤条件后的产品: " + query.toList());
+
+        Query<String, Product> range = products.query().between("price", 50.0, 300.0);
+        System.out.println(range.explain());
+        System.out.println("价格在 [50, 300] 的产品: " + range.toList());
+
+        System.out.println("按主键查找: " + products.get("Desk").map(Product::toString).orElse("不存在"));
+    }
+
+    /**
+     * 2. 增量维护：替换和删除记录后索引立即反映变化
+     */
+    public static void incrementalMaintenance() {
+        System.out.println("\n=== 增量维护 ===");
+
+        IndexedCollection<String, Person> people = IndexedCollection.<String, Person>keyedBy(Person::getName)
+            .withHashIndex("jobTitle", Person::getJobTitle)
+            .withSortedIndex("salary", Person::getSalary)
+            .withSortedIndex("age", Person::getAge);
+        people.put(new Person("Alice", 25, "Developer", 8000));
+        people.put(new Person("Bob", 30, "Manager", 12000));
+        people.put(new Person("Charlie", 35, "Developer", 9500));
+        people.put(new Person("Diana", 28, "Designer", 7000));
+
+        System.out.println("薪资 >= 9000: " + names(people.query().atLeast("salary", 9000.0).toList()));
+
+        // Diana 升职加薪：同一主键替换，旧的索引项被移除
+        Optional<Person> previous = people.put(new Person("Diana", 29, "Manager", 11000));
+        System.out.println("被替换的记录: " + previous.map(Person::getName).orElse("无"));
+        System.out.println("薪资 >= 9000: " + names(people.query().atLeast("salary", 9000.0).toList()));
+        System.out.println("经理: " + names(people.query().eq("jobTitle", "Manager").toList()));
+        System.out.println("设计师: " + names(people.query().eq("jobTitle", "Designer").toList()));
+
+        people.remove("Bob");
+        System.out.println("删除 Bob 后的经理: " + names(people.query().eq("jobTitle", "Manager").toList()));
+        System.out.println("年龄在 [25, 35) 的开发者: " + names(people.query()
+            .eq("jobTitle", "Developer")
+            .range("age", 25, true, 35, false)
+            .toList()));
+    }
+
+    private static List<String> names(List<Person> people) {
+        return people.stream().map(Person::getName).collect(Collectors.toList());
+    }
+
+    /**
+     * 3. 对比：每次查询都线性扫描，与使用索引
+     */
+    public static void comparison(int count) {
+        System.out.println("\n=== 对比（" + count + " 个产品 / 交易）===");
+
+        Random random = new Random(3);
+        List<Product> productList = new ArrayList<>(count);
+        IndexedCollection<String, Product> products = IndexedCollection.<String, Product>keyedBy(Product::getName)
+            .withHashIndex("category", Product::getCategory)
+            .withSortedIndex("price", Product::getPrice)
+            .withBitmapIndex("inStock", Product::isInStock);
+        for (int i = 0; i < count; i++) {
+            Product product = new Product("P" + i, random.nextInt(200_000) / 100.0,
+                "C" + random.nextInt(100), random.nextInt(10) < 3);
+            productList.add(product);
+            products.put(product);
+        }
+
+        List<Transaction> transactionList = new ArrayList<>(count);
+        IndexedCollection<String, Transaction> transactions =
+            IndexedCollection.<String, Transaction>keyedBy(Transaction::getId)
+                .withHashIndex("currency", Transaction::getCurrency);
+        for (int i = 0; i < count; i++) {
+            Transaction t = new Transaction("T" + i, i, i % 2 == 0 ? "USD" : "EUR", "2024-01-01");
+            transactionList.add(t);
+            transactions.put(t);
+        }
+
+        int queries = 200;
+        long scanBest = Long.MAX_VALUE;
+        long indexBest = Long.MAX_VALUE;
+        long scanResult = 0;
+        long indexResult = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            scanResult = 0;
+            for (int q = 0; q < queries; q++) {
+                String category = "C" + q % 100;
+                double low = q * 5.0;
+                scanResult += productList.stream()
+                    .filter(p -> p.getCategory().equals(category))
+                    .filter(p -> p.getPrice() >= low && p.getPrice() < low + 100)
+                    .filter(Product::isInStock)
+                    .count();
+            }
+            scanBest = Math.min(scanBest, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            indexResult = 0;
+            for (int q = 0; q < queries; q++) {
+                double low = q * 5.0;
+                indexResult += products.query()
+                    .eq("category", "C" + q % 100)
+                    .range("price", low, true, low + 100, false)
+                    .eq("inStock", true)
+                    .count();
+            }
+            indexBest = Math.min(indexBest, System.nanoTime() - start);
+        }
+        System.out.printf("类别 + 价格区间 + 有库存 × %d 次: 扫描 %.1fms, 索引 %.1fms, 结果 %d / %d%n",
+            queries, scanBest / 1e6, indexBest / 1e6, scanResult, indexResult);
+
+        long lookupScan = System.nanoTime();
+        long found = 0;
+        for (int q = 0; q < queries; q++) {
+            String id = "T" + (q * 7919 % count);
+            found += transactionList.stream().filter(t -> t.getId().equals(id)).findFirst().isPresent() ? 1 : 0;
+        }
+        lookupScan = System.nanoTime() - lookupScan;
+        long lookupIndex = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            found += transactions.get("T" + (q * 7919 % count)).isPresent() ? 1 : 0;
+        }
+        lookupIndex = System.nanoTime() - lookupIndex;
+        System.out.printf("按 id 查找 × %d 次: 扫描 %.2fms, 主键索引 %.3fms, 命中 %d%n",
+            queries, lookupScan / 1e6, lookupIndex / 1e6, found);
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        productQueries();
+        incrementalMaintenance();
+        comparison(args.length > 0 ? Integer.parseInt(args[0]) : 200_000);
+    }
+
+    /**
+     * 二级索引：槽位号（slot）到键的映射由集合维护，索引只保存键到槽位的反向映射
+     */
+    interface SecondaryIndex<T> {
+        /**
+         * 在修改任何结构之前调用：提取并校验键，不能加入索引时抛出异常
+         */
+        default void check(T record) {
+        }
+
+        void add(T record, int slot);
+
+        void remove(T record, int slot);
+    }
+
+    /**
+     * 哈希索引：等值查询
+     */
+    static final class HashIndex<T> implements SecondaryIndex<T> {
+        final Function<? super T, ?> keyExtractor;
+        private final Map<Object, Set<Integer>> slots = new HashMap<>();
+
+        HashIndex(Function<? super T, ?> keyExtractor) {
+            this.keyExtractor = keyExtractor;
+        }
+
+        @Override
+        public void add(T record, int slot) {
+            slots.computeIfAbsent(keyExtractor.apply(record), k -> new HashSet<>()).add(slot);
+        }
+
+        @Override
+        public void remove(T record, int slot) {
+            Object key = keyExtractor.apply(record);
+            Set<Integer> set = slots.get(key);
+            if (set != null && set.remove(slot) && set.isEmpty()) {
+                slots.remove(key);
+            }
+        }
+
+        Set<Integer> lookup(Object key) {
+            return slots.getOrDefault(key, Collections.emptySet());
+        }
+    }
+
+    /**
+     * 有序索引：范围查询，键必须可比较且不能为 null
+     */
+    static final class SortedIndex<T> implements SecondaryIndex<T> {
+        final Function<? super T, ? extends Comparable<?>> keyExtractor;
+        private final TreeMap<Object, Set<Integer>> slots = new TreeMap<>(SortedIndex::compare);
+
+        SortedIndex(Function<? super T, ? extends Comparable<?>> keyExtractor) {
+            this.keyExtractor = keyExtractor;
+        }
+
+        /**
+         * TreeMap 不能保存 null 键；与已有键比较一次，提前发现类型不一致的键
+         */
+        @Override
+        public void check(T record) {
+            Object key = keyExtractor.apply(record);
+            if (key == null) {
+                throw new IllegalArgumentException("有序索引的键不能为 null: " + record);
+            }
+            if (!slots.isEmpty()) {
+                compare(key, slots.firstKey());
+            }
+        }
+
+        @Override
+        public void add(T record, int slot) {
+            slots.computeIfAbsent(keyExtractor.apply(record), k -> new HashSet<>()).add(slot);
+        }
+
+        @Override
+        public void remove(T record, int slot) {
+            Object key = keyExtractor.apply(record);
+            Set<Integer> set = slots.get(key);
+            if (set != null && set.remove(slot) && set.isEmpty()) {
+                slots.remove(key);
+            }
+        }
+
+        NavigableMap<Object, Set<Integer>> range(Object low, boolean lowInclusive, Object high, boolean highInclusive) {
+            if (low == null && high == null) {
+                return slots;
+            }
+            if (low == null) {
+                return slots.headMap(high, highInclusive);
+            }
+            if (high == null) {
+                return slots.tailMap(low, lowInclusive);
+            }
+            if (compare(low, high) > 0) {
+                return Collections.emptyNavigableMap();
+            }
+            return slots.subMap(low, lowInclusive, high, highInclusive);
+        }
+
+        /**
+         * 估计区间内的行数：最多遍历到 limit 为止，超过 limit 的区间对选择索引没有意义
+         */
+        long estimate(NavigableMap<Object, Set<Integer>> range, long limit) {
+            long rows = 0;
+            for (Set<Integer> set : range.values()) {
+                rows += set.size();
+                if (rows >= limit) {
+                    return rows;
+                }
+            }
+            return rows;
+        }
+
+        /**
+         * 自然顺序；类型不同的数值按数值比较，所以 Double 键的索引可以用 Integer 作为区间边界
+         */
+        @SuppressWarnings("unchecked")
+        static int compare(Object a, Object b) {
+            if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+                Number x = (Number) a;
+                Number y = (Number) b;
+                return isIntegral(x) && isIntegral(y) ? Long.compare(x.longValue(), y.longValue())
+                    : Double.compare(x.doubleValue(), y.doubleValue());
+            }
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+
+        private static boolean isIntegral(Number n) {
+            return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+        }
+    }
+
+    /**
+     * 位图索引：低基数键（布尔、枚举），每个键一个 BitSet，按槽位号置位
+     */
+    static final class BitmapIndex<T> implements SecondaryIndex<T> {
+        final Function<? super T, ?> keyExtractor;
+        private final Map<Object, BitSet> bitmaps = new HashMap<>();
+
+        BitmapIndex(Function<? super T, ?> keyExtractor) {
+            this.keyExtractor = keyExtractor;
+        }
+
+        @Override
+        public void add(T record, int slot) {
+            bitmaps.computeIfAbsent(keyExtractor.apply(record), k -> new BitSet()).set(slot);
+        }
+
+        @Override
+        public void remove(T record, int slot) {
+            BitSet bitmap = bitmaps.get(keyExtractor.apply(record));
+            if (bitmap != null) {
+                bitmap.clear(slot);
+            }
+        }
+
+        BitSet lookup(Object key) {
+            BitSet bitmap = bitmaps.get(key);
+            return bitmap == null ? new BitSet() : bitmap;
+        }
+    }
+
+    /**
+     * 带二级索引的集合
+     * 记录存放在槽位数组中，删除后的槽位进入空闲列表复用；主键用 HashMap 映射到槽位。
+     * 记录本身不可变，"更新"即以相同主键 put 一条新记录，索引按旧键移除、按新键加入。
+     * 不是线程安全的
+     */
+    static final class IndexedCollection<K, T> {
+        private final Function<? super T, ? extends K> primaryKey;
+        private final List<T> records = new ArrayList<>();
+        private final Deque<Integer> freeSlots = new ArrayDeque<>();
+        private final Map<K, Integer> slotsByKey = new HashMap<>();
+        private final Map<String, SecondaryIndex<T>> indexes = new LinkedHashMap<>();
+
+        private IndexedCollection(Function<? super T, ? extends K> primaryKey) {
+            this.primaryKey = primaryKey;
+        }
+
+        public static <K, T> IndexedCollection<K, T> keyedBy(Function<? super T, ? extends K> primaryKey) {
+            return new IndexedCollection<>(primaryKey);
+        }
+
+        public IndexedCollection<K, T> withHashIndex(String name, Function<? super T, ?> keyExtractor) {
+            return addIndex(name, new HashIndex<>(keyExtractor));
+        }
+
+        public IndexedCollection<K, T> withSortedIndex(String name,
+                                                       Function<? super T, ? extends Comparable<?>> keyExtractor) {
+            return addIndex(name, new SortedIndex<>(keyExtractor));
+        }
+
+        public IndexedCollection<K, T> withBitmapIndex(String name, Function<? super T, ?> keyExtractor) {
+            return addIndex(name, new BitmapIndex<>(keyExtractor));
+        }
+
+        /**
+         * 可以在已有数据上新建索引：对现有记录做一次回填
+         */
+        private IndexedCollection<K, T> addIndex(String name, SecondaryIndex<T> index) {
+            if (indexes.containsKey(name)) {
+                throw new IllegalArgumentException("索引已存在: " + name);
+            }
+            // 回填成功后才登记，失败时集合保持原样
+            slotsByKey.values().forEach(slot -> {
+                index.check(records.get(slot));
+                index.add(records.get(slot), slot);
+            });
+            indexes.put(name, index);
+            return this;
+        }
+
+        /**
+         * 插入或按主键替换，返回被替换的旧记录
+         */
+        public Optional<T> put(T record) {
+            K key = primaryKey.apply(record);
+            // 先对所有索引提取并校验键，任何一个失败都不修改集合，避免记录只被部分索引
+            for (SecondaryIndex<T> index : indexes.values()) {
+                index.check(record);
+            }
+            Integer slot = slotsByKey.get(key);
+            if (slot == null) {
+                int newSlot = freeSlots.isEmpty() ? records.size() : freeSlots.pop();
+                if (newSlot == records.size()) {
+                    records.add(record);
+                } else {
+                    records.set(newSlot, record);
+                }
+                slotsByKey.put(key, newSlot);
+                for (SecondaryIndex<T> index : indexes.values()) {
+                    index.add(record, newSlot);
+                }
+                return Optional.empty();
+            }
+            T previous = records.set(slot, record);
+            for (SecondaryIndex<T> index : indexes.values()) {
+                index.remove(previous, slot);
+                index.add(record, slot);
+            }
+            return Optional.of(previous);
+        }
+
+        public Optional<T> remove(K key) {
+            Integer slot = slotsByKey.remove(key);
+            if (slot == null) {
+                return Optional.empty();
+            }
+            T previous = records.set(slot, null);
+            for (SecondaryIndex<T> index : indexes.values()) {
+                index.remove(previous, slot);
+            }
+            freeSlots.push(slot);
+            return Optional.of(previous);
+        }
+
+        public Optional<T> get(K key) {
+            Integer slot = slotsByKey.get(key);
+            return slot == null ? Optional.empty() : Optional.of(records.get(slot));
+        }
+
+        public int size() {
+            return slotsByKey.size();
+        }
+
+        public Query<K, T> query() {
+            return new Query<>(this);
+        }
+
+        SecondaryIndex<T> index(String name) {
+            SecondaryIndex<T> index = indexes.get(name);
+            if (index == null) {
+                throw new IllegalArgumentException("没有名为 " + name + " 的索引");
+            }
+            return index;
+        }
+
+        T record(int slot) {
+            return records.get(slot);
+        }
+
+        /**
+         * 全量扫描：按槽位顺序遍历存活记录
+         */
+        Stream<T> scan() {
+            return records.stream().filter(Objects::nonNull);
+        }
+    }
+
+    /**
+     * 查询条件：既能作为谓词逐条判断，也能向对应索引要候选槽位
+     */
+    abstract static class Condition<T> {
+        final String indexName;
+
+        Condition(String indexName) {
+            this.indexName = indexName;
+        }
+
+        abstract boolean test(T record);
+
+        /**
+         * 估计命中行数，limit 之后可以停止计数
+         */
+        abstract long estimate(long limit);
+
+        abstract void collectSlots(BitSet into);
+    }
+
+    /**
+     * 查询：条件之间是 AND 关系
+     * 执行时选择估计行数最少的条件作为驱动索引，位图条件直接与候选集求交，其余条件逐条判断
+     */
+    static final class Query<K, T> {
+        private final IndexedCollection<K, T> collection;
+        private final List<Condition<T>> conditions = new ArrayList<>();
+
+        Query(IndexedCollection<K, T> collection) {
+            this.collection = collection;
+        }
+
+        public Query<K, T> eq(String indexName, Object key) {
+            SecondaryIndex<T> index = collection.index(indexName);
+            if (index instanceof BitmapIndex) {
+                BitmapIndex<T> bitmap = (BitmapIndex<T>) index;
+                conditions.add(new BitmapCondition<>(indexName, bitmap, key));
+            } else if (index instanceof HashIndex) {
+                HashIndex<T> hash = (HashIndex<T>) index;
+                conditions.add(new HashCondition<>(indexName, hash, key));
+            } else {
+                range(indexName, key, true, key, true);
+            }
+            return this;
+        }
+
+        public Query<K, T> greaterThan(String indexName, Object low) {
+            return range(indexName, low, false, null, false);
+        }
+
+        public Query<K, T> atLeast(String indexName, Object low) {
+            return range(indexName, low, true, null, false);
+        }
+
+        public Query<K, T> lessThan(String indexName, Object high) {
+            return range(indexName, null, false, high, false);
+        }
+
+        public Query<K, T> between(String indexName, Object low, Object high) {
+            return range(indexName, low, true, high, true);
+        }
+
+        /**
+         * 范围条件；low 或 high 为 null 表示该侧无界
+         */
+        public Query<K, T> range(String indexName, Object low, boolean lowInclusive, Object high, boolean highInclusive) {
+            SecondaryIndex<T> index = collection.index(indexName);
+            if (!(index instanceof SortedIndex)) {
+                throw new IllegalArgumentException(indexName + " 不是有序索引，不支持范围查询");
+            }
+            SortedIndex<T> sorted = (SortedIndex<T>) index;
+            NavigableMap<Object, Set<Integer>> range = sorted.range(low, lowInclusive, high, highInclusive);
+            conditions.add(new Condition<T>(indexName) {
+                @Override
+                boolean test(T record) {
+                    Object key = sorted.keyExtractor.apply(record);
+                    if (low != null) {
+                        int c = SortedIndex.compare(key, low);
+                        if (c < 0 || (c == 0 && !lowInclusive)) {
+                            return false;
+                        }
+                    }
+                    if (high != null) {
+                        int c = SortedIndex.compare(key, high);
+                        return c < 0 || (c == 0 && highInclusive);
+                    }
+                    return true;
+                }
+
+                @Override
+                long estimate(long limit) {
+                    return sorted.estimate(range, limit);
+                }
+
+                @Override
+                void collectSlots(BitSet into) {
+                    for (Set<Integer> slots : range.values()) {
+                        slots.forEach(into::set);
+                    }
+                }
+
+                @Override
+                public String toString() {
+                    return indexName + " ∈ " + (lowInclusive ? "[" : "(") + (low == null ? "-∞" : low) + ", "
+                        + (high == null ? "+∞" : high) + (highInclusive ? "]" : ")") + " (sorted)";
+                }
+            });
+            return this;
+        }
+
+        public Stream<T> stream() {
+            Plan<T> plan = plan();
+            if (plan.driver == null) {
+                return collection.scan().filter(plan::matchesResiduals);
+            }
+            BitSet candidates = plan.candidates();
+            return candidates.stream()
+                .mapToObj(collection::record)
+                .filter(plan::matchesResiduals);
+        }
+
+        public List<T> toList() {
+            return stream().collect(Collectors.toList());
+        }
+
+        public long count() {
+            Plan<T> plan = plan();
+            if (plan.driver != null && plan.residuals.isEmpty()) {
+                return plan.candidates().cardinality();
+            }
+            return stream().count();
+        }
+
+        public String explain() {
+            Plan<T> plan = plan();
+            if (plan.driver == null) {
+                return "全量扫描 " + collection.size() + " 行, 过滤: " + plan.residuals;
+            }
+            return "驱动索引: " + plan.driver + ", 估计 " + plan.driverEstimate + " 行"
+                + (plan.bitmaps.isEmpty() ? "" : "; 位图求交: " + plan.bitmaps)
+                + (plan.residuals.isEmpty() ? "" : "; 逐条判断: " + plan.residuals);
+        }
+
+        /**
+         * 选择驱动索引：先取 O(1) 的哈希估计，再以当前最优值为上限计数有序区间，
+         * 所以有更窄的条件时，很宽的区间只计数到那个值为止；只有有序条件时，第一个区间最多计数到集合大小
+         */
+        private Plan<T> plan() {
+            Plan<T> plan = new Plan<>();
+            long best = Long.MAX_VALUE;
+            List<Condition<T>> candidates = conditions.stream()
+                .filter(condition -> !(condition instanceof BitmapCondition))
+                .sorted(Comparator.comparing(condition -> !(condition instanceof HashCondition)))
+                .collect(Collectors.toList());
+            for (Condition<T> condition : candidates) {
+                long estimate = condition.estimate(Math.min(best, collection.size() + 1L));
+                if (estimate < best) {
+                    best = estimate;
+                    plan.driver = condition;
+                }
+            }
+            // 没有哈希或有序条件时，由位图条件驱动
+            for (Condition<T> condition : conditions) {
+                if (condition instanceof BitmapCondition) {
+                    if (plan.driver == null) {
+                        plan.driver = condition;
+                        best = condition.estimate(Long.MAX_VALUE);
+                    } else {
+                        plan.bitmaps.add((BitmapCondition<T>) condition);
+                    }
+                } else if (condition != plan.driver) {
+                    plan.residuals.add(condition);
+                }
+            }
+            plan.driverEstimate = best;
+            return plan;
+        }
+    }
+
+    static final class HashCondition<T> extends Condition<T> {
+        private final HashIndex<T> index;
+        private final Object key;
+
+        HashCondition(String indexName, HashIndex<T> index, Object key) {
+            super(indexName);
+            this.index = index;
+            this.key = key;
+        }
+
+        @Override
+        boolean test(T record) {
+            return Objects.equals(index.keyExtractor.apply(record), key);
+        }
+
+        @Override
+        long estimate(long limit) {
+            return index.lookup(key).size();
+        }
+
+        @Override
+        void collectSlots(BitSet into) {
+            index.lookup(key).forEach(into::set);
+        }
+
+        @Override
+        public String toString() {
+            return indexName + " = " + key + " (hash)";
+        }
+    }
+
+    static final class BitmapCondition<T> extends Condition<T> {
+        private final BitmapIndex<T> index;
+        private final Object key;
+
+        BitmapCondition(String indexName, BitmapIndex<T> index, Object key) {
+            super(indexName);
+            this.index = index;
+            this.key = key;
+        }
+
+        @Override
+        boolean test(T record) {
+            return Objects.equals(index.keyExtractor.apply(record), key);
+        }
+
+        @Override
+        long estimate(long limit) {
+            return index.lookup(key).cardinality();
+        }
+
+        @Override
+        void collectSlots(BitSet into) {
+            into.or(index.lookup(key));
+        }
+
+        BitSet bitmap() {
+            return index.lookup(key);
+        }
+
+        @Override
+        public String toString() {
+            return indexName + " = " + key + " (bitmap)";
+        }
+    }
+
+    static final class Plan<T> {
+        Condition<T> driver;
+        long driverEstimate;
+        final List<BitmapCondition<T>> bitmaps = new ArrayList<>();
+        final List<Condition<T>> residuals = new ArrayList<>();
+
+        BitSet candidates() {
+            BitSet candidates = new BitSet();
+            driver.collectSlots(candidates);
+            for (BitmapCondition<T> bitmap : bitmaps) {
+                candidates.and(bitmap.bitmap());
+            }
+            return candidates;
+        }
+
+        boolean matchesResiduals(T record) {
+            for (Condition<T> condition : residuals) {
+                if (!condition.test(record)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
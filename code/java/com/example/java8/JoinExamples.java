@@ -0,0 +1,854 @@
+package com.example.java8;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.OptionalExamples.Address;
+import com.example.java8.OptionalExamples.User;
+import com.example.java8.PrimitiveMapExamples.HashCommon;
+import com.example.java8.StreamAdvancedExamples.Order;
+import com.example.java8.StreamAdvancedExamples.Product;
+
+/**
+ * Java 8 连接操作示例类
+ * 用嵌套的 stream().filter() 关联两个列表是 O(n·m)。这里提供内连接、左连接、半连接和反连接：
+ * - 哈希连接：较小的一侧建哈希表（build），另一侧逐条探测（probe），超过内存预算时分区溢写到磁盘
+ * - 排序合并连接：两侧已按 key 排序时流式合并，只缓存右侧当前 key 的一组记录
+ * - 并行分区连接：两侧按 key 哈希分区，各分区独立建表和探测
+ */
+public class JoinExamples {
+
+    /**
+     * 1. 哈希连接：订单按商品名关联商品
+     */
+    public static void hashJoinKinds() {
+        System.out.println("=== 哈希连接 ===");
+
+        List<Order> orders = sampleOrders();
+        List<Product> products = sampleProducts();
+        HashJoin<Order, Product, String> join = HashJoin.on(Order::getProduct, Product::getName);
+
+        System.out.println("内连接:");
+        join.inner(orders.stream(), products.stream(), (o, p) -> o.getId() + " " + o.getProduct() + " -> "
+                + p.getCategory() + (p.isInStock() ? ", 有库存" : ", 无库存"))
+            .forEach(line -> System.out.println("  " + line));
+
+        System.out.println("左连接:");
+        join.left(orders.stream(), products.stream(), (o, p) -> o.getId() + " " + o.getProduct() + " -> "
+                + (p == null ? "无商品信息" : p.getCategory()))
+            .forEach(line -> System.out.println("  " + line));
+
+        System.out.println("半连接（商品有库存的订单）: " + join.semi(orders.stream(),
+            products.stream().filter(Product::isInStock)).map(Order::getId).collect(Collectors.toList()));
+        System.out.println("反连接（找不到商品的订单）: " + join.anti(orders.stream(), products.stream())
+            .map(Order::getId).collect(Collectors.toList()));
+    }
+
+    /**
+     * 2. 用户关联地址：一个用户可能有多个地址，也可能没有
+     */
+    public static void usersWithAddresses() {
+        System.out.println("\n=== 用户关联地址 ===");
+
+        List<User> users = Stream.of("Alice", "Bob", "Charlie")
+            .map(name -> new User(name, null))
+            .collect(Collectors.toList());
+        List<AddressRecord> addresses = Arrays.asList(
+            new AddressRecord("Alice", new Address("北京", "朝阳区")),
+            new AddressRecord("Bob", new Address("上海", "浦东新区")),
+            new AddressRecord("Alice", new Address("杭州", "西湖区"))
+        );
+
+        HashJoin.on(User::getName, AddressRecord::getUserName)
+            .left(users.stream(), addresses.stream(), (u, a) -> new User(u.getName(), a == null ? null : a.getAddress()))
+            .forEach(user -> System.out.println("  " + user));
+    }
+
+    /**
+     * 3. 排序合并连接：两侧已按商品名排序
+     */
+    public static void sortMergeJoin() {
+        System.out.println("\n=== 排序合并连接 ===");
+
+        List<Order> orders = sampleOrders().stream()
+            .sorted(Comparator.comparing(Order::getProduct))
+            .collect(Collectors.toList());
+        List<Product> products = sampleProducts().stream()
+            .sorted(Comparator.comparing(Product::getName))
+            .collect(Collectors.toList());
+        SortMergeJoin<Order, Product, String> join = SortMergeJoin.on(Order::getProduct, Product::getName);
+
+        join.inner(orders.stream(), products.stream(), (o, p) -> o.getProduct() + " $" + o.getPrice() + " / " + p.getCategory())
+            .forEach(line -> System.out.println("  " + line));
+        System.out.println("反连接: " + join.anti(orders.stream(), products.stream())
+            .map(Order::getId).collect(Collectors.toList()));
+
+        try {
+            join.inner(sampleOrders().stream(), products.stream(), (o, p) -> o).count();
+        } catch (IllegalStateException e) {
+            System.out.println("未排序的输入: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 4. 溢写到磁盘：建表一侧超过内存预算时改为分区的 Grace 哈希连接，结果与内存中连接相同
+     */
+    public static void spillToDisk(int productCount, int orderCount) {
+        System.out.println("\n=== 溢写到磁盘 ===");
+
+        List<Product> products = generateProducts(productCount);
+        List<Order> orders = generateOrders(orderCount, productCount);
+
+        HashJoin<Order, Product, String> inMemory = HashJoin.on(Order::getProduct, Product::getName);
+        HashJoin<Order, Product, String> spilling = HashJoin.on(Order::getProduct, Product::getName)
+            .spillOver(4L << 20, new OrderCodec(), new ProductCodec());
+
+        for (JoinType type : JoinType.values()) {
+            double expected = revenue(inMemory, type, orders, products);
+            double actual = revenue(spilling, type, orders, products);
+            System.out.printf("%-5s 内存中 %.2f, 溢写 %.2f, 一致: %b, %s%n",
+                type, expected, actual, Math.abs(expected - actual) < 1e-6 * Math.max(1, expected),
+                spilling.lastStats());
+        }
+    }
+
+    private static double revenue(HashJoin<Order, Product, String> join, JoinType type,
+                                  List<Order> orders, List<Product> products) {
+        // 溢写模式下结果流持有临时文件，用 try-with-resources 关闭
+        try (Stream<Order> joined = join.join(type, orders.stream(), products.stream(), (o, p) -> o)) {
+            return joined.mapToDouble(Order::getPrice).sum();
+        }
+    }
+
+    /**
+     * 5. 基准测试：嵌套 filter、哈希连接、排序合并连接与并行分区连接
+     */
+    public static void benchmark(int productCount, int orderCount) {
+        System.out.println("\n=== 基准测试（商品 " + productCount + ", 订单 " + orderCount + ", 并行度 "
+            + ForkJoinPool.commonPool().getParallelism() + "）===");
+
+        List<Product> products = generateProducts(productCount);
+        List<Order> orders = generateOrders(orderCount, productCount);
+        List<Product> sortedProducts = products.stream().sorted(Comparator.comparing(Product::getName))
+            .collect(Collectors.toList());
+        List<Order> sortedOrders = orders.stream().sorted(Comparator.comparing(Order::getProduct))
+            .collect(Collectors.toList());
+
+        if ((long) productCount * orderCount <= 50_000_000L) {
+            time("嵌套 stream().filter()", () -> orders.stream()
+                .flatMap(o -> products.stream().filter(p -> p.getName().equals(o.getProduct())))
+                .count());
+        }
+        time("哈希连接            ", () -> HashJoin.on(Order::getProduct, Product::getName)
+            .inner(orders.stream(), products.stream(), (o, p) -> p).count());
+        time("排序合并连接(已排序) ", () -> SortMergeJoin.on(Order::getProduct, Product::getName)
+            .inner(sortedOrders.stream(), sortedProducts.stream(), (o, p) -> p).count());
+        time("并行分区连接        ", () -> PartitionedHashJoin.on(Order::getProduct, Product::getName)
+            .inner(orders, products, (o, p) -> p).count());
+    }
+
+    private static void time(String label, LongSupplier run) {
+        long result = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            result = run.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%s %9.3fms  结果=%d%n", label, best / 1e6, result);
+    }
+
+    private static List<Order> sampleOrders() {
+        return Arrays.asList(
+            new Order("A001", "Laptop", 1200.0, "Electronics", "2024-01-15"),
+            new Order("A002", "Mouse", 25.0, "Electronics", "2024-01-16"),
+            new Order("A003", "Desk", 300.0, "Furniture", "2024-01-17"),
+            new Order("A004", "Keyboard", 80.0, "Electronics", "2024-01-18"),
+            new Order("A005", "Chair", 150.0, "Furniture", "2024-01-19"),
+            new Order("A006", "Monitor", 400.0, "Electronics", "2024-01-20"),
+            new Order("A007", "Laptop", 1150.0, "Electronics", "2024-01-21")
+        );
+    }
+
+    private static List<Product> sampleProducts() {
+        return Arrays.asList(
+            new Product("Laptop", 1200.0, "Electronics", true),
+            new Product("Mouse", 25.0, "Electronics", false),
+            new Product("Desk", 300.0, "Furniture", true),
+            new Product("Keyboard", 80.0, "Electronics", true),
+            new Product("Chair", 150.0, "Furniture", false)
+        );
+    }
+
+    static List<Product> generateProducts(int count) {
+        Random random = new Random(11);
+        return IntStream.range(0, count)
+            .mapToObj(i -> new Product("P" + i, 1 + random.nextInt(100_000) / 100.0, "C" + (i % 20), i % 3 != 0))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 大约 10% 的订单引用不存在的商品
+     */
+    static List<Order> generateOrders(int count, int productCount) {
+        Random random = new Random(13);
+        int range = productCount + productCount / 10;
+        return IntStream.range(0, count)
+            .mapToObj(i -> new Order("O" + i, "P" + random.nextInt(range), 1 + random.nextInt(100_000) / 100.0,
+                "C" + (i % 20), "2024-01-" + (10 + i % 20)))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        hashJoinKinds();
+        usersWithAddresses();
+        sortMergeJoin();
+
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int orders = args.length > 1 ? Integer.parseInt(args[1]) : 400_000;
+        spillToDisk(products, orders);
+        benchmark(2_000, 4_000);
+        benchmark(products, orders);
+    }
+
+    /**
+     * 用户的一条地址记录，按用户名关联
+     */
+    static class AddressRecord {
+        private final String userName;
+        private final Address address;
+
+        AddressRecord(String userName, Address address) {
+            this.userName = userName;
+            this.address = address;
+        }
+
+        public String getUserName() { return userName; }
+        public Address getAddress() { return address; }
+    }
+
+    /**
+     * 连接类型
+     */
+    enum JoinType {
+        /** 两侧都匹配的组合 */
+        INNER,
+        /** 左侧每条记录至少输出一次，没有匹配时右侧为 null */
+        LEFT,
+        /** 有匹配的左侧记录，每条只输出一次 */
+        SEMI,
+        /** 没有匹配的左侧记录 */
+        ANTI
+    }
+
+    /**
+     * 溢写记录的编解码器
+     */
+    interface RecordCodec<T> {
+        void write(DataOutput out, T record) throws IOException;
+
+        T read(DataInput in) throws IOException;
+
+        /**
+         * 记录在堆上的估计字节数，用于和内存预算比较
+         */
+        default long estimatedSize(T record) {
+            return 64;
+        }
+    }
+
+    static final class ProductCodec implements RecordCodec<Product> {
+        @Override
+        public void write(DataOutput out, Product product) throws IOException {
+            out.writeUTF(product.getName());
+            out.writeDouble(product.getPrice());
+            out.writeUTF(product.getCategory());
+            out.writeBoolean(product.isInStock());
+        }
+
+        @Override
+        public Product read(DataInput in) throws IOException {
+            return new Product(in.readUTF(), in.readDouble(), in.readUTF(), in.readBoolean());
+        }
+
+        @Override
+        public long estimatedSize(Product product) {
+            // 对象头和字段约 32 字节，每个 String 约 40 字节加字符内容
+            return 32 + 80 + 2L * (product.getName().length() + product.getCategory().length());
+        }
+    }
+
+    static final class OrderCodec implements RecordCodec<Order> {
+        @Override
+        public void write(DataOutput out, Order order) throws IOException {
+            out.writeUTF(order.getId());
+            out.writeUTF(order.getProduct());
+            out.writeDouble(order.getPrice());
+            out.writeUTF(order.getCategory());
+            out.writeUTF(order.getDate());
+        }
+
+        @Override
+        public Order read(DataInput in) throws IOException {
+            return new Order(in.readUTF(), in.readUTF(), in.readDouble(), in.readUTF(), in.readUTF());
+        }
+    }
+
+    /**
+     * 一次哈希连接的统计
+     */
+    static final class JoinStats {
+        long buildRows;
+        boolean spilled;
+        int spilledPartitions;
+        long spilledBytes;
+        int maxDepth;
+
+        @Override
+        public String toString() {
+            return spilled
+                ? String.format("建表 %d 行, 溢写 %d 个分区共 %.1fMB, 最大递归深度 %d",
+                    buildRows, spilledPartitions, spilledBytes / 1048576.0, maxDepth)
+                : String.format("建表 %d 行, 全部在内存中", buildRows);
+        }
+    }
+
+    /**
+     * 各连接算法共用的建表和探测逻辑；null key 与任何记录都不匹配
+     */
+    static final class JoinSupport {
+        private JoinSupport() {
+        }
+
+        static <K, R> void add(Map<K, List<R>> table, K key, R row) {
+            List<R> rows = table.get(key);
+            if (rows == null) {
+                rows = new ArrayList<>(1);
+                table.put(key, rows);
+            }
+            rows.add(row);
+        }
+
+        static <L, R, O> Stream<O> emit(JoinType type, L row, List<R> matches,
+                                        BiFunction<? super L, ? super R, ? extends O> combiner) {
+            boolean matched = matches != null && !matches.isEmpty();
+            switch (type) {
+                case INNER:
+                    return matched ? matches.stream().map(r -> combiner.apply(row, r)) : Stream.empty();
+                case LEFT:
+                    if (matched) {
+                        return matches.stream().map(r -> combiner.apply(row, r));
+                    }
+                    O unmatched = combiner.apply(row, null);
+                    return Stream.of(unmatched);
+                case SEMI:
+                    return matched ? Stream.of(combiner.apply(row, matches.get(0))) : Stream.empty();
+                case ANTI:
+                    if (matched) {
+                        return Stream.empty();
+                    }
+                    O kept = combiner.apply(row, null);
+                    return Stream.of(kept);
+                default:
+                    throw new IllegalArgumentException("未知的连接类型: " + type);
+            }
+        }
+    }
+
+    /**
+     * 哈希连接：右侧（build）建表，左侧（probe）逐条探测，探测是惰性的，左侧可以是并行流
+     * 配置了 spillOver 时，建表一侧的估计内存超过预算就把两侧按 key 哈希分成 FANOUT 个分区写入临时文件，
+     * 再逐个分区连接；某个分区仍然超过预算时用哈希的下一组位递归分区，最多 MAX_DEPTH 层。
+     * 溢写模式下结果不保持左侧的顺序，返回的流需要关闭以删除临时文件
+     */
+    static final class HashJoin<L, R, K> {
+        static final int FANOUT = 16;
+        static final int MAX_DEPTH = 4;
+        /** HashMap 条目和 ArrayList 的大致开销 */
+        static final long ENTRY_OVERHEAD = 64;
+
+        private final Function<? super L, ? extends K> probeKey;
+        private final Function<? super R, ? extends K> buildKey;
+        private long memoryBudget = Long.MAX_VALUE;
+        private RecordCodec<L> probeCodec;
+        private RecordCodec<R> buildCodec;
+        private volatile JoinStats lastStats = new JoinStats();
+
+        private HashJoin(Function<? super L, ? extends K> probeKey, Function<? super R, ? extends K> buildKey) {
+            this.probeKey = probeKey;
+            this.buildKey = buildKey;
+        }
+
+        static <L, R, K> HashJoin<L, R, K> on(Function<? super L, ? extends K> probeKey,
+                                              Function<? super R, ? extends K> buildKey) {
+            return new HashJoin<>(probeKey, buildKey);
+        }
+
+        HashJoin<L, R, K> spillOver(long budgetBytes, RecordCodec<L> probeCodec, RecordCodec<R> buildCodec) {
+            this.memoryBudget = budgetBytes;
+            this.probeCodec = probeCodec;
+            this.buildCodec = buildCodec;
+            return this;
+        }
+
+        public <O> Stream<O> inner(Stream<L> probe, Stream<R> build, BiFunction<? super L, ? super R, ? extends O> combiner) {
+            return join(JoinType.INNER, probe, build, combiner);
+        }
+
+        public <O> Stream<O> left(Stream<L> probe, Stream<R> build, BiFunction<? super L, ? super R, ? extends O> combiner) {
+            return join(JoinType.LEFT, probe, build, combiner);
+        }
+
+        public Stream<L> semi(Stream<L> probe, Stream<R> build) {
+            return join(JoinType.SEMI, probe, build, (l, r) -> l);
+        }
+
+        public Stream<L> anti(Stream<L> probe, Stream<R> build) {
+            return join(JoinType.ANTI, probe, build, (l, r) -> l);
+        }
+
+        public <O> Stream<O> join(JoinType type, Stream<L> probe, Stream<R> build,
+                                  BiFunction<? super L, ? super R, ? extends O> combiner) {
+            JoinStats stats = new JoinStats();
+            lastStats = stats;
+            return join(type, probe, build.iterator(), combiner, 0, stats);
+        }
+
+        /**
+         * 最近一次连接的统计；溢写模式下递归分区的统计在结果流消费完之后才完整
+         */
+        JoinStats lastStats() {
+            return lastStats;
+        }
+
+        private <O> Stream<O> join(JoinType type, Stream<L> probe, Iterator<R> build,
+                                   BiFunction<? super L, ? super R, ? extends O> combiner, int depth, JoinStats stats) {
+            Map<K, List<R>> table = new HashMap<>();
+            long bytes = 0;
+            while (build.hasNext()) {
+                R row = build.next();
+                if (depth == 0) {
+                    stats.buildRows++;
+                }
+                K key = buildKey.apply(row);
+                if (key == null) {
+                    continue;
+                }
+                JoinSupport.add(table, key, row);
+                if (buildCodec != null) {
+                    bytes += ENTRY_OVERHEAD + buildCodec.estimatedSize(row);
+                    if (bytes > memoryBudget && depth < MAX_DEPTH) {
+                        return spill(type, probe, table, build, combiner, depth, stats);
+                    }
+                }
+            }
+            return probe.flatMap(l -> JoinSupport.emit(type, l, table.get(probeKey.apply(l)), combiner));
+        }
+
+        private <O> Stream<O> spill(JoinType type, Stream<L> probe, Map<K, List<R>> table, Iterator<R> build,
+                                    BiFunction<? super L, ? super R, ? extends O> combiner, int depth, JoinStats stats) {
+            Path dir = SpillFiles.createDirectory("join-spill-");
+            SpillFiles<R> buildFiles = new SpillFiles<>(dir, "build", buildCodec, FANOUT);
+            SpillFiles<L> probeFiles = new SpillFiles<>(dir, "probe", probeCodec, FANOUT);
+            try {
+                table.forEach((key, rows) -> rows.forEach(r -> buildFiles.write(partition(key, depth), r)));
+                table.clear();
+                while (build.hasNext()) {
+                    R row = build.next();
+                    if (depth == 0) {
+                        stats.buildRows++;
+                    }
+                    K key = buildKey.apply(row);
+                    if (key != null) {
+                        buildFiles.write(partition(key, depth), row);
+                    }
+                }
+                // 写文件必须单线程，null key 的左侧记录放在分区 0，探测时不会匹配
+                probe.sequential().forEach(l -> probeFiles.write(partition(probeKey.apply(l), depth), l));
+                buildFiles.close();
+                probeFiles.close();
+            } catch (RuntimeException e) {
+                buildFiles.close();
+                probeFiles.close();
+                SpillFiles.deleteDirectory(dir);
+                throw e;
+            } finally {
+                // 探测侧已经全部写入分区文件，关闭它以释放上一层分区的读句柄
+                probe.close();
+            }
+
+            synchronized (stats) {
+                stats.spilled = true;
+                stats.spilledPartitions += buildFiles.nonEmpty();
+                stats.spilledBytes += buildFiles.bytes() + probeFiles.bytes();
+                stats.maxDepth = Math.max(stats.maxDepth, depth + 1);
+            }
+            return IntStream.range(0, FANOUT).boxed()
+                .<O>flatMap(p -> {
+                    Stream<L> probePartition = probeFiles.read(p);
+                    Stream<R> buildPartition = buildFiles.read(p);
+                    return join(type, probePartition, buildPartition.iterator(), combiner, depth + 1, stats)
+                        .onClose(() -> {
+                            // 先关闭读流再删除文件，否则已删除的文件句柄会一直占用
+                            probePartition.close();
+                            buildPartition.close();
+                            probeFiles.delete(p);
+                            buildFiles.delete(p);
+                        });
+                })
+                .onClose(() -> SpillFiles.deleteDirectory(dir));
+        }
+
+        /**
+         * 每一层使用哈希的不同 4 位，两侧必须使用同一个函数
+         */
+        static int partition(Object key, int depth) {
+            if (key == null) {
+                return 0;
+            }
+            return (HashCommon.mix(key.hashCode()) >>> (28 - 4 * depth)) & (FANOUT - 1);
+        }
+    }
+
+    /**
+     * 一组分区溢写文件：每个分区一个文件，记录条数保存在内存中
+     */
+    static final class SpillFiles<T> {
+        private final Path[] paths;
+        private final DataOutputStream[] outputs;
+        private final long[] counts;
+        private final RecordCodec<T> codec;
+
+        SpillFiles(Path dir, String prefix, RecordCodec<T> codec, int partitions) {
+            this.paths = new Path[partitions];
+            this.outputs = new DataOutputStream[partitions];
+            this.counts = new long[partitions];
+            this.codec = codec;
+            for (int p = 0; p < partitions; p++) {
+                paths[p] = dir.resolve(prefix + "-" + p + ".bin");
+            }
+        }
+
+        static Path createDirectory(String prefix) {
+            try {
+                return Files.createTempDirectory(prefix);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        static void deleteDirectory(Path dir) {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+                Files.deleteIfExists(dir);
+            } catch (IOException e) {
+                // 临时目录清理失败不影响计算结果
+            }
+        }
+
+        void write(int partition, T record) {
+            try {
+                if (outputs[partition] == null) {
+                    outputs[partition] = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(paths[partition]), 1 << 16));
+                }
+                codec.write(outputs[partition], record);
+                counts[partition]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() {
+            for (int p = 0; p < outputs.length; p++) {
+                if (outputs[p] != null) {
+                    try {
+                        outputs[p].close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        outputs[p] = null;
+                    }
+                }
+            }
+        }
+
+        int nonEmpty() {
+            return (int) LongStream.of(counts).filter(c -> c > 0).count();
+        }
+
+        long bytes() {
+            long total = 0;
+            for (int p = 0; p < paths.length; p++) {
+                if (counts[p] > 0) {
+                    try {
+                        total += Files.size(paths[p]);
+                    } catch (IOException e) {
+                        // 文件可能已被删除
+                    }
+                }
+            }
+            return total;
+        }
+
+        /**
+         * 惰性读取一个分区，关闭流时关闭文件
+         */
+        Stream<T> read(int partition) {
+            long count = counts[partition];
+            if (count == 0) {
+                return Stream.empty();
+            }
+            DataInputStream in;
+            try {
+                in = new DataInputStream(new BufferedInputStream(Files.newInputStream(paths[partition]), 1 << 16));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(count,
+                    Spliterator.ORDERED | Spliterator.SIZED | Spliterator.NONNULL) {
+                private long remaining = count;
+
+                @Override
+                public boolean tryAdvance(Consumer<? super T> action) {
+                    if (remaining == 0) {
+                        return false;
+                    }
+                    try {
+                        action.accept(codec.read(in));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    remaining--;
+                    return true;
+                }
+            };
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        void delete(int partition) {
+            try {
+                Files.deleteIfExists(paths[partition]);
+            } catch (IOException e) {
+                // 目录关闭时会再次清理
+            }
+        }
+    }
+
+    /**
+     * 排序合并连接：两侧必须已按 key 升序排列（key 不能为 null），结果保持左侧顺序
+     * 右侧只缓存与当前左侧 key 相等的一组记录，适合已排序的大输入；发现乱序时抛出 IllegalStateException
+     */
+    static final class SortMergeJoin<L, R, K> {
+        private final Function<? super L, ? extends K> leftKey;
+        private final Function<? super R, ? extends K> rightKey;
+        private final Comparator<? super K> order;
+
+        private SortMergeJoin(Function<? super L, ? extends K> leftKey, Function<? super R, ? extends K> rightKey,
+                              Comparator<? super K> order) {
+            this.leftKey = leftKey;
+            this.rightKey = rightKey;
+            this.order = order;
+        }
+
+        static <L, R, K extends Comparable<? super K>> SortMergeJoin<L, R, K> on(
+                Function<? super L, ? extends K> leftKey, Function<? super R, ? extends K> rightKey) {
+            return new SortMergeJoin<>(leftKey, rightKey, Comparator.naturalOrder());
+        }
+
+        static <L, R, K> SortMergeJoin<L, R, K> on(Function<? super L, ? extends K> leftKey,
+                                                   Function<? super R, ? extends K> rightKey,
+                                                   Comparator<? super K> order) {
+            return new SortMergeJoin<>(leftKey, rightKey, order);
+        }
+
+        public <O> Stream<O> inner(Stream<L> left, Stream<R> right, BiFunction<? super L, ? super R, ? extends O> combiner) {
+            return join(JoinType.INNER, left, right, combiner);
+        }
+
+        public <O> Stream<O> left(Stream<L> left, Stream<R> right, BiFunction<? super L, ? super R, ? extends O> combiner) {
+            return join(JoinType.LEFT, left, right, combiner);
+        }
+
+        public Stream<L> semi(Stream<L> left, Stream<R> right) {
+            return join(JoinType.SEMI, left, right, (l, r) -> l);
+        }
+
+        public Stream<L> anti(Stream<L> left, Stream<R> right) {
+            return join(JoinType.ANTI, left, right, (l, r) -> l);
+        }
+
+        public <O> Stream<O> join(JoinType type, Stream<L> left, Stream<R> right,
+                                  BiFunction<? super L, ? super R, ? extends O> combiner) {
+            return StreamSupport.stream(new MergeSpliterator<O>(type, left.iterator(), right.iterator(), combiner), false)
+                .onClose(() -> {
+                    left.close();
+                    right.close();
+                });
+        }
+
+        private final class MergeSpliterator<O> extends Spliterators.AbstractSpliterator<O> {
+            private final JoinType type;
+            private final Iterator<L> left;
+            private final Iterator<R> right;
+            private final BiFunction<? super L, ? super R, ? extends O> combiner;
+            private final Deque<O> buffer = new ArrayDeque<>();
+            private final List<R> group = new ArrayList<>();
+            private K groupKey;
+            private boolean hasGroup;
+            private R pending;
+            private K pendingKey;
+            private boolean hasPending;
+            private K lastLeftKey;
+            private K lastRightKey;
+
+            MergeSpliterator(JoinType type, Iterator<L> left, Iterator<R> right,
+                             BiFunction<? super L, ? super R, ? extends O> combiner) {
+                super(Long.MAX_VALUE, Spliterator.ORDERED);
+                this.type = type;
+                this.left = left;
+                this.right = right;
+                this.combiner = combiner;
+            }
+
+            @Override
+            public boolean tryAdvance(Consumer<? super O> action) {
+                while (buffer.isEmpty()) {
+                    if (!left.hasNext()) {
+                        return false;
+                    }
+                    L row = left.next();
+                    K key = Objects.requireNonNull(leftKey.apply(row), "排序合并连接的 key 不能为 null");
+                    if (lastLeftKey != null && order.compare(key, lastLeftKey) < 0) {
+                        throw new IllegalStateException("左侧输入未按 key 排序: " + lastLeftKey + " 之后出现 " + key);
+                    }
+                    lastLeftKey = key;
+                    if (!hasGroup || order.compare(groupKey, key) != 0) {
+                        loadGroup(key);
+                    }
+                    JoinSupport.emit(type, row, hasGroup ? group : null, combiner).forEach(buffer::add);
+                }
+                action.accept(buffer.poll());
+                return true;
+            }
+
+            /**
+             * 跳过右侧所有小于 key 的记录，再收集等于 key 的一组
+             */
+            private void loadGroup(K key) {
+                group.clear();
+                hasGroup = false;
+                while (peekRight() && order.compare(pendingKey, key) < 0) {
+                    hasPending = false;
+                }
+                if (peekRight() && order.compare(pendingKey, key) == 0) {
+                    groupKey = key;
+                    hasGroup = true;
+                    do {
+                        group.add(pending);
+                        hasPending = false;
+                    } while (peekRight() && order.compare(pendingKey, key) == 0);
+                }
+            }
+
+            private boolean peekRight() {
+                if (!hasPending && right.hasNext()) {
+                    pending = right.next();
+                    pendingKey = Objects.requireNonNull(rightKey.apply(pending), "排序合并连接的 key 不能为 null");
+                    if (lastRightKey != null && order.compare(pendingKey, lastRightKey) < 0) {
+                        throw new IllegalStateException("右侧输入未按 key 排序: " + lastRightKey + " 之后出现 " + pendingKey);
+                    }
+                    lastRightKey = pendingKey;
+                    hasPending = true;
+                }
+                return hasPending;
+            }
+        }
+    }
+
+    /**
+     * 并行分区哈希连接：两侧先用并行流按 key 哈希的高位分到 4 * 并行度 个分区，
+     * 每个分区独立建表和探测，分区之间没有共享状态；结果是并行流，不保持左侧顺序
+     */
+    static final class PartitionedHashJoin<L, R, K> {
+        private final Function<? super L, ? extends K> probeKey;
+        private final Function<? super R, ? extends K> buildKey;
+
+        private PartitionedHashJoin(Function<? super L, ? extends K> probeKey, Function<? super R, ? extends K> buildKey) {
+            this.probeKey = probeKey;
+            this.buildKey = buildKey;
+        }
+
+        static <L, R, K> PartitionedHashJoin<L, R, K> on(Function<? super L, ? extends K> probeKey,
+                                                         Function<? super R, ? extends K> buildKey) {
+            return new PartitionedHashJoin<>(probeKey, buildKey);
+        }
+
+        public <O> Stream<O> inner(Collection<L> probe, Collection<R> build,
+                                   BiFunction<? super L, ? super R, ? extends O> combiner) {
+            return join(JoinType.INNER, probe, build, combiner);
+        }
+
+        public <O> Stream<O> left(Collection<L> probe, Collection<R> build,
+                                  BiFunction<? super L, ? super R, ? extends O> combiner) {
+            return join(JoinType.LEFT, probe, build, combiner);
+        }
+
+        public Stream<L> semi(Collection<L> probe, Collection<R> build) {
+            return join(JoinType.SEMI, probe, build, (l, r) -> l);
+        }
+
+        public Stream<L> anti(Collection<L> probe, Collection<R> build) {
+            return join(JoinType.ANTI, probe, build, (l, r) -> l);
+        }
+
+        public <O> Stream<O> join(JoinType type, Collection<L> probe, Collection<R> build,
+                                  BiFunction<? super L, ? super R, ? extends O> combiner) {
+            int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, ForkJoinPool.getCommonPoolParallelism() * 4 - 1));
+            List<List<R>> buildParts = partition(build, buildKey, bits);
+            List<List<L>> probeParts = partition(probe, probeKey, bits);
+            return IntStream.range(0, 1 << bits).parallel().boxed().flatMap(p -> {
+                Map<K, List<R>> table = new HashMap<>();
+                for (R row : buildParts.get(p)) {
+                    K key = buildKey.apply(row);
+                    if (key != null) {
+                        JoinSupport.add(table, key, row);
+                    }
+                }
+                return probeParts.get(p).stream()
+                    .flatMap(l -> JoinSupport.emit(type, l, table.get(probeKey.apply(l)), combiner));
+            });
+        }
+
+        private static <T> List<List<T>> partition(Collection<T> rows, Function<? super T, ?> key, int bits) {
+            int partitions = 1 << bits;
+            return rows.parallelStream().collect(Collector.of(
+                () -> Stream.<List<T>>generate(ArrayList::new).limit(partitions).collect(Collectors.toList()),
+                (parts, row) -> {
+                    Object k = key.apply(row);
+                    parts.get(k == null ? 0 : HashCommon.mix(k.hashCode()) >>> (32 - bits)).add(row);
+                },
+                (a, b) -> {
+                    for (int p = 0; p < partitions; p++) {
+                        a.get(p).addAll(b.get(p));
+                    }
+                    return a;
+                }));
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * Java 8 延迟求值示例类
+ * 展示线程安全的记忆化 Supplier、带过期时间的记忆化，以及 orElseGet 中昂贵默认值的按 key 延迟计算
+ */
+public class LazyValueExamples {
+
+    /**
+     * 1. orElse、orElseGet 与记忆化 Supplier 的区别
+     */
+    public static void orElseVsOrElseGetVsLazy() {
+        System.out.println("=== orElse / orElseGet / Lazy 对比 ===");
+
+        AtomicInteger computations = new AtomicInteger();
+        Supplier<String> expensiveDefault = () -> {
+            computations.incrementAndGet();
+            return "昂贵的默认值";
+        };
+
+        Optional<String> present = Optional.of("已有值");
+        Optional<String> empty = Optional.empty();
+
+        // orElse：无论是否有值，参数都会先被求值
+        present.orElse(expensiveDefault.get());
+        System.out.println("orElse 在有值时也计算了默认值，计算次数: " + computations.getAndSet(0));
+
+        // orElseGet：只在没有值时计算，但每次都会重新计算
+        for (int i = 0; i < 3; i++) {
+            empty.orElseGet(expensiveDefault);
+        }
+        System.out.println("orElseGet 调用 3 次，计算次数: " + computations.getAndSet(0));
+
+        // Lazy：第一次需要时计算，之后复用结果
+        Lazy<String> lazyDefault = Lazy.of(expensiveDefault);
+        System.out.println("创建后的 Lazy: " + lazyDefault);
+        for (int i = 0; i < 3; i++) {
+            empty.orElseGet(lazyDefault);
+        }
+        present.orElseGet(lazyDefault);
+        System.out.println("使用 Lazy 调用 4 次，计算次数: " + computations.getAndSet(0));
+        System.out.println("求值后的 Lazy: " + lazyDefault);
+    }
+
+    /**
+     * 2. 多线程竞争下只计算一次
+     */
+    public static void memoizationUnderContention() throws InterruptedException {
+        System.out.println("\n=== 多线程竞争下的记忆化 ===");
+
+        AtomicInteger computations = new AtomicInteger();
+        Lazy<List<Integer>> primes = Lazy.of(() -> {
+            computations.incrementAndGet();
+            sleepQuietly(50);
+            return IntStream.rangeClosed(2, 100)
+                .filter(LazyValueExamples::isPrime)
+                .boxed()
+                .collect(Collectors.toList());
+        });
+
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> sizes = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            sizes.add(executor.submit(() -> {
+                start.await();
+                return Optional.<List<Integer>>empty().orElseGet(primes).size();
+            }));
+        }
+        start.countDown();
+
+        Set<Integer> distinctSizes = new HashSet<>();
+        for (Future<Integer> size : sizes) {
+            distinctSizes.add(getQuietly(size));
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+
+        System.out.println(threads + " 个线程同时请求，计算次数: " + computations.get());
+        System.out.println("所有线程看到的结果大小: " + distinctSizes);
+    }
+
+    /**
+     * 3. 计算失败不会被记忆，下一次调用会重试
+     */
+    public static void failuresAreNotMemoized() {
+        System.out.println("\n=== 失败不记忆 ===");
+
+        AtomicInteger attempts = new AtomicInteger();
+        Lazy<String> flaky = Lazy.of(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("配置中心暂时不可用");
+            }
+            return "配置值";
+        });
+
+        try {
+            flaky.get();
+        } catch (IllegalStateException e) {
+            System.out.println("第一次失败: " + e.getMessage() + ", 已求值: " + flaky.isEvaluated());
+        }
+        System.out.println("第二次结果: " + flaky.get() + ", 尝试次数: " + attempts.get());
+    }
+
+    /**
+     * 4. 带过期时间的记忆化：每个周期最多计算一次
+     */
+    public static void expiringMemoization() {
+        System.out.println("\n=== 带过期时间的记忆化 ===");
+
+        AtomicInteger version = new AtomicInteger();
+        Supplier<String> rates = Lazy.expiring(() -> "汇率快照 v" + version.incrementAndGet(), 50, TimeUnit.MILLISECONDS);
+
+        System.out.println("第一次: " + rates.get());
+        System.out.println("周期内再次读取: " + rates.get());
+        sleepQuietly(80);
+        System.out.println("过期后读取: " + rates.get());
+        System.out.println("总计算次数: " + version.get());
+    }
+
+    /**
+     * 5. 按 key 的延迟默认值：每个 key 在每个周期内最多计算一次
+     */
+    public static void perKeyLazyDefaults() throws InterruptedException {
+        System.out.println("\n=== 按 key 的延迟默认值 ===");
+
+        Map<String, String> userMap = new HashMap<>();
+        userMap.put("name", "Alice");
+
+        AtomicInteger computations = new AtomicInteger();
+        LazyDefaults<String, String> defaults = new LazyDefaults<>(key -> {
+            computations.incrementAndGet();
+            sleepQuietly(20);
+            return "默认" + key;
+        }, 1, TimeUnit.MINUTES);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            String key = i % 2 == 0 ? "phone" : "email";
+            tasks.add(() -> Optional.ofNullable(userMap.get(key)).orElseGet(defaults.forKey(key)));
+        }
+        Set<String> results = new TreeSet<>();
+        for (Future<String> future : executor.invokeAll(tasks)) {
+            results.add(getQuietly(future));
+        }
+        executor.shutdown();
+
+        String name = Optional.ofNullable(userMap.get("name")).orElseGet(defaults.forKey("name"));
+        System.out.println("64 次并发查找结果: " + results);
+        System.out.println("有值时不计算默认值: " + name);
+        System.out.println("默认值计算次数（2 个 key）: " + computations.get());
+    }
+
+    private static boolean isPrime(int n) {
+        if (n < 2) return false;
+        for (int i = 2; i * i <= n; i++) {
+            if (n % i == 0) return false;
+        }
+        return true;
+    }
+
+    private static <T> T getQuietly(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) throws InterruptedException {
+        orElseVsOrElseGetVsLazy();
+        memoizationUnderContention();
+        failuresAreNotMemoized();
+        expiringMemoization();
+        perKeyLazyDefaults();
+    }
+
+    /**
+     * 线程安全的记忆化 Supplier
+     * 使用 volatile + 双重检查锁发布结果：第一次 get() 计算并缓存，之后的读取只有一次 volatile 读
+     * 计算抛出异常时不缓存，下一次调用会重新计算；计算完成后释放对原 Supplier 的引用
+     */
+    static final class Lazy<T> implements Supplier<T> {
+        private volatile Supplier<? extends T> delegate;
+        private volatile boolean evaluated;
+        // value 在写入 evaluated 之前赋值，由 evaluated 的 volatile 写保证可见性
+        private T value;
+
+        private Lazy(Supplier<? extends T> delegate) {
+            this.delegate = delegate;
+        }
+
+        public static <T> Lazy<T> of(Supplier<? extends T> supplier) {
+            Objects.requireNonNull(supplier, "supplier");
+            return supplier instanceof Lazy ? cast(supplier) : new Lazy<>(supplier);
+        }
+
+        /**
+         * 创建每隔 duration 最多计算一次的 Supplier
+         */
+        public static <T> Supplier<T> expiring(Supplier<? extends T> supplier, long duration, TimeUnit unit) {
+            return new ExpiringLazy<>(supplier, unit.toNanos(duration));
+        }
+
+        @Override
+        public T get() {
+            if (!evaluated) {
+                synchronized (this) {
+                    if (!evaluated) {
+                        T computed = delegate.get();
+                        value = computed;
+                        evaluated = true;
+                        delegate = null;
+                        return computed;
+                    }
+                }
+            }
+            return value;
+        }
+
+        public boolean isEvaluated() {
+            return evaluated;
+        }
+
+        /**
+         * 已求值时返回结果，否则返回 Optional.empty()，不会触发计算
+         */
+        public Optional<T> peek() {
+            return evaluated ? Optional.ofNullable(value) : Optional.empty();
+        }
+
+        public <R> Lazy<R> map(Function<? super T, ? extends R> mapper) {
+            Objects.requireNonNull(mapper, "mapper");
+            return new Lazy<>(() -> mapper.apply(get()));
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Lazy<T> cast(Supplier<? extends T> supplier) {
+            return (Lazy<T>) supplier;
+        }
+
+        @Override
+        public String toString() {
+            return evaluated ? "Lazy[" + value + "]" : "Lazy[未求值]";
+        }
+    }
+
+    /**
+     * 带过期时间的记忆化 Supplier：过期后第一个调用者重新计算，其它线程在锁上等待新结果
+     */
+    static final class ExpiringLazy<T> implements Supplier<T> {
+        private final Supplier<? extends T> delegate;
+        private final long durationNanos;
+        // 0 表示尚未计算
+        private volatile long expirationNanos;
+        private T value;
+
+        ExpiringLazy(Supplier<? extends T> delegate, long durationNanos) {
+            if (durationNanos <= 0) {
+                throw new IllegalArgumentException("duration 必须大于 0: " + durationNanos);
+            }
+            this.delegate = Objects.requireNonNull(delegate, "delegate");
+            this.durationNanos = durationNanos;
+        }
+
+        @Override
+        public T get() {
+            long expiration = expirationNanos;
+            long now = System.nanoTime();
+            if (expiration == 0 || now - expiration >= 0) {
+                synchronized (this) {
+                    if (expiration == expirationNanos) {
+                        T computed = delegate.get();
+                        value = computed;
+                        long next = now + durationNanos;
+                        // 0 被用作"未计算"的标记
+                        expirationNanos = next == 0 ? 1 : next;
+                        return computed;
+                    }
+                }
+            }
+            return value;
+        }
+    }
+
+    /**
+     * 按 key 记忆的默认值：同一个 key 在一个周期内最多计算一次，
+     * 返回的 Supplier 可以直接传给 Optional.orElseGet，只有真正需要默认值时才会计算
+     */
+    static final class LazyDefaults<K, V> {
+        private final Function<? super K, ? extends V> computer;
+        private final long durationNanos;
+        private final ConcurrentHashMap<K, Supplier<V>> suppliers = new ConcurrentHashMap<>();
+
+        LazyDefaults(Function<? super K, ? extends V> computer, long duration, TimeUnit unit) {
+            this.computer = Objects.requireNonNull(computer, "computer");
+            this.durationNanos = unit.toNanos(duration);
+        }
+
+        public Supplier<V> forKey(K key) {
+            return suppliers.computeIfAbsent(key,
+                k -> new ExpiringLazy<V>(() -> computer.apply(k), durationNanos));
+        }
+
+        public V get(K key) {
+            return forKey(key).get();
+        }
+
+        public void invalidate(K key) {
+            suppliers.remove(key);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.example.java8;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.JoinExamples.RecordCodec;
+import com.example.java8.JoinExamples.SpillFiles;
+import com.example.java8.PrimitiveMapExamples.HashCommon;
+import com.example.java8.StreamAdvancedExamples.Order;
+import com.example.java8.StreamAdvancedExamples.Transaction;
+
+/**
+ * Java 8 内存预算示例类
+ * Collectors.groupingBy 和 distinct() 的哈希表没有上限，一个高基数的 key 就可能耗尽堆内存。
+ * 这里给每个查询一个 MemoryGovernor，哈希阶段为每个新分组向它申请估计的字节数；
+ * 申请失败后已在内存中的分组继续原地聚合，新 key 的记录按哈希分区写入磁盘，
+ * 内存中的结果输出完并释放预算后，再逐个分区读回聚合（分区仍超出预算时递归再分）。
+ * 超出预算的查询因此变慢，而不是 OutOfMemoryError
+ */
+public class MemoryGovernorExamples {
+
+    /**
+     * 1. 预算充足时与 groupingBy 完全相同，不产生磁盘文件
+     */
+    public static void withinBudget() {
+        System.out.println("=== 预算内的分组 ===");
+
+        List<Order> orders = Arrays.asList(
+            new Order("A001", "Laptop", 1200.0, "Electronics", "2024-01-15"),
+            new Order("A002", "Mouse", 25.0, "Electronics", "2024-01-16"),
+            new Order("A003", "Desk", 300.0, "Furniture", "2024-01-17"),
+            new Order("A004", "Keyboard", 80.0, "Electronics", "2024-01-18"),
+            new Order("A005", "Chair", 150.0, "Furniture", "2024-01-19"),
+            new Order("A006", "Monitor", 400.0, "Electronics", "2024-01-20")
+        );
+
+        MemoryGovernor governor = MemoryGovernor.withBudget(1L << 20);
+        Map<String, Double> totals = SpillingGroupingBy.of(Order::getCategory,
+                Collectors.summingDouble(Order::getPrice), new JoinExamples.OrderCodec())
+            .apply(governor, orders.stream())
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, TreeMap::new));
+        System.out.println("按类别总价: " + totals);
+        System.out.println(governor);
+    }
+
+    /**
+     * 2. 高基数分组超出预算：结果与不受限的 groupingBy 一致
+     */
+    public static void highCardinalityGrouping(int rows, int accounts) {
+        System.out.println("\n=== 高基数分组溢写 ===");
+
+        List<Transaction> transactions = generateTransactions(rows, accounts);
+        Map<String, Double> expected = transactions.stream()
+            .collect(Collectors.groupingBy(Transaction::getId, Collectors.summingDouble(Transaction::getAmount)));
+
+        for (long budget : new long[] {64L << 20, 4L << 20, 1L << 20}) {
+            MemoryGovernor governor = MemoryGovernor.withBudget(budget);
+            long start = System.nanoTime();
+            Map<String, Double> actual;
+            try (Stream<Map.Entry<String, Double>> groups = SpillingGroupingBy.of(Transaction::getId,
+                    Collectors.summingDouble(Transaction::getAmount), new TransactionCodec())
+                    .apply(governor, transactions.stream())) {
+                actual = groups.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            }
+            System.out.printf("预算 %5.1fMB: %7.2fms, 分组 %d, 一致: %b%n  %s%n", budget / 1048576.0,
+                (System.nanoTime() - start) / 1e6, actual.size(), expected.equals(actual), governor);
+        }
+    }
+
+    /**
+     * 3. distinct 超出预算：结果个数与 Stream.distinct() 相同，但不保持遭遇顺序
+     */
+    public static void spillingDistinct(int rows, int accounts) {
+        System.out.println("\n=== 去重溢写 ===");
+
+        List<Transaction> transactions = generateTransactions(rows, accounts);
+        List<String> ids = transactions.stream().map(Transaction::getId).collect(Collectors.toList());
+        long expected = ids.stream().distinct().count();
+
+        MemoryGovernor governor = MemoryGovernor.withBudget(2L << 20);
+        long actual;
+        try (Stream<String> distinct = SpillingDistinct.of(new StringCodec()).apply(governor, ids.stream())) {
+            actual = distinct.count();
+        }
+        System.out.println("distinct 个数: " + actual + ", 与 Stream.distinct() 一致: " + (expected == actual));
+        System.out.println(governor);
+    }
+
+    /**
+     * 4. 一个查询中的多个哈希阶段共享同一份预算：先对交易去重，再按币种统计
+     */
+    public static void sharedBudget(int rows, int accounts) {
+        System.out.println("\n=== 多阶段共享预算 ===");
+
+        List<Transaction> transactions = generateTransactions(rows, accounts);
+        // 每笔交易重复出现一次，模拟重复投递
+        List<Transaction> duplicated = Stream.concat(transactions.stream(), transactions.stream())
+            .collect(Collectors.toList());
+
+        MemoryGovernor governor = MemoryGovernor.withBudget(3L << 20);
+        Map<String, Long> byCurrency;
+        // Transaction 没有实现 equals，按业务字段去重
+        try (Stream<Transaction> unique = SpillingDistinct.by(
+                (Transaction t) -> t.getId() + '|' + t.getDate() + '|' + t.getAmount() + '|' + t.getCurrency(),
+                new TransactionCodec())
+                .apply(governor, duplicated.stream());
+             Stream<Map.Entry<String, Long>> groups = SpillingGroupingBy.of(Transaction::getCurrency,
+                     Collectors.counting(), new TransactionCodec())
+                 .apply(governor, unique)) {
+            byCurrency = groups.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a,
+                TreeMap::new));
+        }
+        System.out.println("去重后按币种计数: " + byCurrency + ", 合计 " + byCurrency.values().stream()
+            .mapToLong(Long::longValue).sum() + " (原始 " + transactions.size() + ")");
+        System.out.println(governor);
+    }
+
+    static List<Transaction> generateTransactions(int rows, int accounts) {
+        Random random = new Random(17);
+        String[] currencies = {"USD", "EUR", "GBP", "JPY"};
+        return IntStream.range(0, rows)
+            .mapToObj(i -> new Transaction("ACC" + random.nextInt(accounts), random.nextInt(100_000) / 100.0,
+                currencies[random.nextInt(currencies.length)], "2024-01-" + (10 + i % 20)))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 300_000;
+        int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 150_000;
+        withinBudget();
+        highCardinalityGrouping(rows, accounts);
+        spillingDistinct(rows, accounts);
+        sharedBudget(rows, accounts);
+    }
+
+    static final class TransactionCodec implements RecordCodec<Transaction> {
+        @Override
+        public void write(DataOutput out, Transaction t) throws IOException {
+            out.writeUTF(t.getId());
+            out.writeDouble(t.getAmount());
+            out.writeUTF(t.getCurrency());
+            out.writeUTF(t.getDate());
+        }
+
+        @Override
+        public Transaction read(DataInput in) throws IOException {
+            return new Transaction(in.readUTF(), in.readDouble(), in.readUTF(), in.readUTF());
+        }
+
+        @Override
+        public long estimatedSize(Transaction t) {
+            return 32 + 120 + 2L * (t.getId().length() + t.getCurrency().length() + t.getDate().length());
+        }
+    }
+
+    static final class StringCodec implements RecordCodec<String> {
+        @Override
+        public void write(DataOutput out, String value) throws IOException {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+
+        @Override
+        public long estimatedSize(String value) {
+            return 40 + 2L * value.length();
+        }
+    }
+
+    /**
+     * 每个查询一个的内存预算：哈希阶段为新分组申请估计字节数，输出完成后释放
+     * 同时记录峰值和溢写统计；方法都是同步的，多个阶段可以在不同线程上共享
+     */
+    static final class MemoryGovernor {
+        private final long budget;
+        private long reserved;
+        private long peak;
+        private long overBudget;
+        private int spillEvents;
+        private long spilledRows;
+        private long spilledBytes;
+        private int maxDepth;
+
+        private MemoryGovernor(long budget) {
+            this.budget = budget;
+        }
+
+        static MemoryGovernor withBudget(long bytes) {
+            return new MemoryGovernor(bytes);
+        }
+
+        synchronized boolean tryReserve(long bytes) {
+            if (reserved + bytes > budget) {
+                return false;
+            }
+            reserved += bytes;
+            peak = Math.max(peak, reserved);
+            return true;
+        }
+
+        /**
+         * 已到最大递归深度、无法再分区时仍然占用内存，超出部分单独记录
+         */
+        synchronized void forceReserve(long bytes) {
+            reserved += bytes;
+            peak = Math.max(peak, reserved);
+            overBudget = Math.max(overBudget, reserved - budget);
+        }
+
+        synchronized void release(long bytes) {
+            reserved -= bytes;
+        }
+
+        synchronized void recordSpill(int depth, long rows, long bytes) {
+            spillEvents++;
+            spilledRows += rows;
+            spilledBytes += bytes;
+            maxDepth = Math.max(maxDepth, depth + 1);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("MemoryGovernor{预算=%.1fMB, 峰值=%.1fMB, 当前=%.1fMB, 溢写 %d 次, %d 行 %.1fMB, "
+                    + "最大深度 %d%s}", budget / 1048576.0,
+                peak / 1048576.0, reserved / 1048576.0, spillEvents, spilledRows, spilledBytes / 1048576.0, maxDepth,
+                overBudget > 0 ? String.format(", 超出 %.1fMB", overBudget / 1048576.0) : "");
+        }
+    }
+
+    /**
+     * 受内存预算约束的 groupingBy：输入被完全消费后返回分组流
+     * 先输出内存中的分组（输出完即释放预算），再逐个读回溢写分区聚合并输出。
+     * 分组顺序不确定；溢写时返回的流持有临时文件，需要关闭。哈希阶段在调用线程上顺序执行
+     */
+    static final class SpillingGroupingBy<T, K, A, R> {
+        static final int FANOUT = 16;
+        static final int MAX_DEPTH = 4;
+        /** HashMap 条目、key 和累加器的默认估计 */
+        static final long DEFAULT_GROUP_BYTES = 160;
+
+        private final Function<? super T, ? extends K> classifier;
+        private final Collector<? super T, A, R> downstream;
+        private final RecordCodec<T> codec;
+        private ToLongFunction<? super K> groupBytes = key -> DEFAULT_GROUP_BYTES;
+
+        private SpillingGroupingBy(Function<? super T, ? extends K> classifier, Collector<? super T, A, R> downstream,
+                                   RecordCodec<T> codec) {
+            this.classifier = classifier;
+            this.downstream = downstream;
+            this.codec = codec;
+        }
+
+        static <T, K, A, R> SpillingGroupingBy<T, K, A, R> of(Function<? super T, ? extends K> classifier,
+                                                             Collector<? super T, A, R> downstream,
+                                                             RecordCodec<T> codec) {
+            return new SpillingGroupingBy<>(classifier, downstream, codec);
+        }
+
+        /**
+         * 每个分组的估计字节数，downstream 会保留记录（例如 toList）时应按预期组大小估计
+         */
+        SpillingGroupingBy<T, K, A, R> groupBytes(ToLongFunction<? super K> estimator) {
+            this.groupBytes = estimator;
+            return this;
+        }
+
+        Stream<Map.Entry<K, R>> apply(MemoryGovernor governor, Stream<T> rows) {
+            try {
+                return aggregate(governor, rows.iterator(), 0);
+            } finally {
+                rows.close();
+            }
+        }
+
+        private Stream<Map.Entry<K, R>> aggregate(MemoryGovernor governor, Iterator<T> rows, int depth) {
+            Supplier<A> supplier = downstream.supplier();
+            BiConsumer<A, ? super T> accumulator = downstream.accumulator();
+            Map<K, A> groups = new HashMap<>();
+            long held = 0;
+            Path dir = null;
+            SpillFiles<T> spill = null;
+            long spilledRows = 0;
+            try {
+                while (rows.hasNext()) {
+                    T row = rows.next();
+                    K key = Objects.requireNonNull(classifier.apply(row), "分组 key 不能为 null");
+                    A container = groups.get(key);
+                    if (container == null && spill == null) {
+                        long bytes = groupBytes.applyAsLong(key);
+                        if (governor.tryReserve(bytes)) {
+                            held += bytes;
+                        } else if (depth >= MAX_DEPTH) {
+                            governor.forceReserve(bytes);
+                            held += bytes;
+                        } else {
+                            // 预算用完：此后内存中的分组不再增加，新 key 的记录全部写入磁盘
+                            dir = SpillFiles.createDirectory("groupby-spill-");
+                            spill = new SpillFiles<>(dir, "rows", codec, FANOUT);
+                        }
+                        if (spill == null) {
+                            container = supplier.get();
+                            groups.put(key, container);
+                        }
+                    }
+                    if (container == null) {
+                        spill.write(partition(key, depth), row);
+                        spilledRows++;
+                    } else {
+                        accumulator.accept(container, row);
+                    }
+                }
+                if (spill != null) {
+                    spill.close();
+                    governor.recordSpill(depth, spilledRows, spill.bytes());
+                }
+            } catch (RuntimeException e) {
+                governor.release(held);
+                if (spill != null) {
+                    spill.close();
+                    SpillFiles.deleteDirectory(dir);
+                }
+                throw e;
+            }
+
+            long reservation = held;
+            Stream<Map.Entry<K, R>> resident = finish(groups).onClose(() -> governor.release(reservation));
+            if (spill == null) {
+                return resident;
+            }
+            SpillFiles<T> files = spill;
+            Path spillDir = dir;
+            Stream<Map.Entry<K, R>> spilled = IntStream.range(0, FANOUT).boxed().flatMap(p -> {
+                Stream<T> partition = files.read(p);
+                return aggregate(governor, partition.iterator(), depth + 1).onClose(() -> {
+                    partition.close();
+                    files.delete(p);
+                });
+            }).onClose(() -> SpillFiles.deleteDirectory(spillDir));
+            // flatMap 在内存部分输出完后关闭它、释放预算，之后才开始聚合溢写分区
+            return Stream.of(resident, spilled).flatMap(s -> s).onClose(() -> {
+                resident.close();
+                spilled.close();
+            });
+        }
+
+        private Stream<Map.Entry<K, R>> finish(Map<K, A> groups) {
+            if (downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+                @SuppressWarnings("unchecked")
+                Map<K, R> finished = (Map<K, R>) groups;
+                return finished.entrySet().stream();
+            }
+            Function<A, R> finisher = downstream.finisher();
+            return groups.entrySet().stream()
+                .map(e -> new AbstractMap.SimpleImmutableEntry<>(e.getKey(), finisher.apply(e.getValue())));
+        }
+
+        /**
+         * 每一层使用哈希的不同 4 位，保证同一 key 的记录落在同一分区，且下一层能继续分开
+         */
+        static int partition(Object key, int depth) {
+            return (HashCommon.mix(key.hashCode()) >>> (28 - 4 * depth)) & (FANOUT - 1);
+        }
+    }
+
+    /**
+     * 受内存预算约束的 distinct：按 key 分组、每组只保留遇到的第一条记录
+     * of() 以记录本身为 key（依赖 equals/hashCode），by() 用于没有实现 equals 的记录；结果不保持遭遇顺序
+     */
+    static final class SpillingDistinct<T> {
+        private final SpillingGroupingBy<T, Object, Object[], T> grouping;
+
+        private SpillingDistinct(Function<? super T, ?> key, RecordCodec<T> codec) {
+            Collector<T, Object[], T> first = Collector.of(() -> new Object[1],
+                (box, t) -> {
+                    if (box[0] == null) {
+                        box[0] = t;
+                    }
+                },
+                (a, b) -> a[0] == null ? b : a,
+                box -> {
+                    @SuppressWarnings("unchecked")
+                    T t = (T) box[0];
+                    return t;
+                });
+            this.grouping = SpillingGroupingBy.<T, Object, Object[], T>of(key, first, codec)
+                .groupBytes(k -> SpillingGroupingBy.DEFAULT_GROUP_BYTES);
+        }
+
+        static <T> SpillingDistinct<T> of(RecordCodec<T> codec) {
+            return new SpillingDistinct<>(Function.identity(), codec);
+        }
+
+        static <T> SpillingDistinct<T> by(Function<? super T, ?> key, RecordCodec<T> codec) {
+            return new SpillingDistinct<>(key, codec);
+        }
+
+        Stream<T> apply(MemoryGovernor governor, Stream<T> rows) {
+            return grouping.apply(governor, rows).map(Map.Entry::getValue);
+        }
+    }
+}
@@ -0,0 +1,643 @@
+package com.example.java8;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.StreamAdvancedExamples.Order;
+import com.example.java8.StreamAdvancedExamples.Transaction;
+import com.example.java8.StreamAdvancedExamples.TransactionSummary;
+
+/**
+ * Java 8 堆外记录存储示例类
+ * 展示如何把大量 Order / Transaction 存放在 ByteBuffer.allocateDirect 分配的定长槽位中，
+ * 通过可复用的享元视图（flyweight）读取字段，并用自定义 Spliterator 接入现有的 Stream 分组聚合管道
+ */
+public class OffHeapRecordExamples {
+
+    /**
+     * 1. 基本用法：写入订单并通过享元视图读取
+     */
+    public static void basicUsage() {
+        System.out.println("=== 堆外订单存储基本用法 ===");
+
+        OrderStore store = new OrderStore();
+        store.append(new Order("A001", "Laptop", 1200.0, "Electronics", "2024-01-15"));
+        store.append(new Order("A002", "Mouse", 25.0, "Electronics", "2024-01-16"));
+        store.append(new Order("A003", "Desk", 300.0, "Furniture", "2024-01-17"));
+
+        OrderView view = store.newView();
+        for (long i = 0; i < store.size(); i++) {
+            store.moveTo(i, view);
+            System.out.println("  槽位 " + i + ": " + view.getId() + " " + view.getProduct()
+                + " $" + view.getPrice() + " " + view.getCategory() + " " + view.getDate());
+        }
+
+        // 需要脱离存储长期持有时再物化为堆上对象
+        Order materialized = store.get(1);
+        System.out.println("物化后的订单: " + materialized);
+        System.out.println("槽位大小: " + store.slotSize() + " 字节, 堆外占用: " + store.offHeapBytes() + " 字节");
+
+        // 字段校验在分配槽位之前完成：被拒绝的记录不会留下半写的槽位
+        for (Order invalid : Arrays.asList(
+                new Order("A004-TOO-LONG-ID", "Lamp", 40.0, "Furniture", "2024-01-18"),
+                new Order("编号", "Lamp", 40.0, "Furniture", "2024-01-18"),
+                new Order("A005", "Lamp", 40.0, "Furniture", "2024/1/18"))) {
+            try {
+                store.append(invalid);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                System.out.println("拒绝写入 " + invalid.getId() + ": " + e.getClass().getSimpleName()
+                    + ", size() 仍为 " + store.size());
+            }
+        }
+    }
+
+    /**
+     * 2. 分组聚合：与 complexGroupingAndAggregation 相同的管道，数据源换成堆外存储
+     */
+    public static void groupingOverOffHeapOrders() {
+        System.out.println("\n=== 堆外订单的分组聚合 ===");
+
+        OrderStore store = new OrderStore();
+        Arrays.asList(
+            new Order("A001", "Laptop", 1200.0, "Electronics", "2024-01-15"),
+            new Order("A002", "Mouse", 25.0, "Electronics", "2024-01-16"),
+            new Order("A003", "Desk", 300.0, "Furniture", "2024-01-17"),
+            new Order("A004", "Keyboard", 80.0, "Electronics", "2024-01-18"),
+            new Order("A005", "Chair", 150.0, "Furniture", "2024-01-19"),
+            new Order("A006", "Monitor", 400.0, "Electronics", "2024-01-20")
+        ).forEach(store::append);
+
+        // 视图是可复用的享元：只能在管道内立即提取字段，不能收集视图本身
+        Map<String, DoubleSummaryStatistics> categoryStats = store.stream()
+            .collect(Collectors.groupingBy(OrderView::getCategory, TreeMap::new,
+                Collectors.summarizingDouble(OrderView::getPrice)));
+
+        categoryStats.forEach((category, stats) ->
+            System.out.printf("类别: %s - 总价值: %.2f, 平均价格: %.2f, 最高价: %.2f, 最低价: %.2f, 订单数: %d%n",
+                category, stats.getSum(), stats.getAverage(), stats.getMax(), stats.getMin(), stats.getCount()));
+
+        // 需要保留记录时先物化
+        List<Order> expensive = store.stream()
+            .filter(o -> o.getPrice() > 250)
+            .map(OrderView::toOrder)
+            .collect(Collectors.toList());
+        System.out.println("价格大于 250 的订单: " + expensive);
+    }
+
+    /**
+     * 3. 交易汇总：对应 streamApiCompositionAndChaining 中的货币汇总
+     */
+    public static void transactionSummary() {
+        System.out.println("\n=== 堆外交易汇总 ===");
+
+        TransactionStore store = new TransactionStore();
+        Arrays.asList(
+            new Transaction("T001", 100.0, "USD", "2024-01-01"),
+            new Transaction("T002", 200.0, "EUR", "2024-01-02"),
+            new Transaction("T003", 150.0, "USD", "2024-01-03"),
+            new Transaction("T004", 300.0, "GBP", "2024-01-04"),
+            new Transaction("T005", 250.0, "USD", "2024-01-05")
+        ).forEach(store::append);
+
+        Map<String, TransactionSummary> currencySummary = store.stream()
+            .filter(t -> t.getAmount() > 100)
+            .collect(Collectors.groupingBy(TransactionView::getCurrency, TreeMap::new,
+                Collectors.collectingAndThen(
+                    Collectors.summarizingDouble(TransactionView::getAmount),
+                    stats -> new TransactionSummary(stats.getSum(), stats.getAverage(), (int) stats.getCount()))));
+
+        currencySummary.forEach((currency, summary) ->
+            System.out.printf("货币: %s - 总金额: %.2f, 平均金额: %.2f, 交易数: %d%n",
+                currency, summary.getTotal(), summary.getAverage(), summary.getCount()));
+    }
+
+    /**
+     * 4. 大数据量：堆外存储与堆上 List 的堆占用和并行聚合耗时对比
+     */
+    public static void largeDatasetComparison(int count) {
+        System.out.println("\n=== 大数据量对比（" + count + " 条订单）===");
+
+        String[] categories = {"Electronics", "Furniture", "Books", "Clothing", "Toys", "Garden", "Sports", "Food"};
+        String[] products = {"Laptop", "Mouse", "Desk", "Keyboard", "Chair", "Monitor", "Lamp", "Phone"};
+        Random random = new Random(1);
+
+        long heapBefore = usedHeap();
+        OrderStore store = new OrderStore(count);
+        for (int i = 0; i < count; i++) {
+            store.append("O" + i, products[i & 7], 10 + random.nextInt(2000), categories[random.nextInt(8)],
+                20240101 + (i % 28));
+        }
+        long storeHeap = usedHeap() - heapBefore;
+
+        random = new Random(1);
+        heapBefore = usedHeap();
+        List<Order> heapOrders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            heapOrders.add(new Order("O" + i, products[i & 7], 10 + random.nextInt(2000),
+                categories[random.nextInt(8)], "2024-01-" + (1 + i % 28)));
+        }
+        long listHeap = usedHeap() - heapBefore;
+
+        System.out.printf("堆上 List<Order>: 堆占用 %,d 字节%n", listHeap);
+        System.out.printf("堆外 OrderStore:  堆占用 %,d 字节, 堆外 %,d 字节%n", storeHeap, store.offHeapBytes());
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            Map<String, Double> onHeap = heapOrders.parallelStream()
+                .collect(Collectors.groupingBy(Order::getCategory, Collectors.summingDouble(Order::getPrice)));
+            long onHeapNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Map<String, Double> offHeap = store.parallelStream()
+                .collect(Collectors.groupingBy(OrderView::getCategory, Collectors.summingDouble(OrderView::getPrice)));
+            long offHeapNanos = System.nanoTime() - start;
+
+            // 按字典编码直接累加到数组：不需要解码字符串
+            start = System.nanoTime();
+            double[] byCode = store.sumPriceByCategoryCode();
+            long codeNanos = System.nanoTime() - start;
+
+            if (round == 2) {
+                System.out.printf("堆上 groupingBy: %.1fms, 堆外 groupingBy: %.1fms, 堆外按编码累加: %.1fms%n",
+                    onHeapNanos / 1e6, offHeapNanos / 1e6, codeNanos / 1e6);
+                System.out.println("结果一致: " + approximatelyEqual(onHeap, offHeap)
+                    + ", Electronics 总额: " + String.format("%.0f", byCode[store.categoryCode("Electronics")]));
+            }
+        }
+        heapOrders.clear();
+    }
+
+    private static boolean approximatelyEqual(Map<String, Double> left, Map<String, Double> right) {
+        return left.keySet().equals(right.keySet())
+            && left.keySet().stream().allMatch(k -> Math.abs(left.get(k) - right.get(k)) < 1e-3 * Math.abs(left.get(k)));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        basicUsage();
+        groupingOverOffHeapOrders();
+        transactionSummary();
+        largeDatasetComparison(args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000);
+    }
+
+    /**
+     * 定长槽位的堆外记录存储
+     * 数据按块（chunk）分配在直接内存中，每块最多 chunkSlots 个槽位，因此总容量不受单个 ByteBuffer 2GB 的限制；
+     * 写入是单线程的，写入完成后可以被多个线程并发读取
+     */
+    abstract static class OffHeapRecordStore<V extends RecordView> {
+        private static final int DEFAULT_CHUNK_SLOTS = 1 << 16;
+
+        private final int slotSize;
+        private final int chunkShift;
+        private final int chunkMask;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private long size;
+
+        protected OffHeapRecordStore(int slotSize, int expectedRecords) {
+            this.slotSize = slotSize;
+            int chunkSlots = Math.min(DEFAULT_CHUNK_SLOTS,
+                Integer.highestOneBit(Math.max(1, Integer.MAX_VALUE / slotSize)));
+            // 数据量小时使用小块，避免为几条记录预分配整块直接内存
+            if (expectedRecords < chunkSlots) {
+                chunkSlots = Integer.highestOneBit(Math.max(1024, expectedRecords) * 2 - 1);
+            }
+            this.chunkShift = Integer.numberOfTrailingZeros(chunkSlots);
+            this.chunkMask = chunkSlots - 1;
+        }
+
+        /**
+         * 创建一个未绑定的视图，通过 moveTo 指向具体槽位
+         */
+        public abstract V newView();
+
+        public long size() {
+            return size;
+        }
+
+        public int slotSize() {
+            return slotSize;
+        }
+
+        public long offHeapBytes() {
+            return (long) chunks.size() * (chunkMask + 1) * slotSize;
+        }
+
+        /**
+         * 让视图指向第 index 条记录
+         */
+        public V moveTo(long index, V view) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+            }
+            view.wrap(chunks.get((int) (index >>> chunkShift)), (int) (index & chunkMask) * slotSize, index);
+            return view;
+        }
+
+        /**
+         * 顺序流：整个流复用一个视图
+         */
+        public Stream<V> stream() {
+            return StreamSupport.stream(new SlotSpliterator(0, size), false);
+        }
+
+        /**
+         * 并行流：每个拆分出的 Spliterator 持有自己的视图，线程之间不共享
+         */
+        public Stream<V> parallelStream() {
+            return StreamSupport.stream(new SlotSpliterator(0, size), true);
+        }
+
+        /**
+         * 分配一个新槽位，返回写入用的缓冲区，position 指向槽位起点
+         * 槽位分配后立即计入 size()，所以调用前必须完成所有可能失败的校验和编码，
+         * 否则写了一半（或全为 0）的槽位会被视图、Spliterator 和分组管道当作真实记录读到
+         */
+        protected ByteBuffer appendSlot() {
+            long index = size;
+            int chunk = (int) (index >>> chunkShift);
+            if (chunk == chunks.size()) {
+                chunks.add(ByteBuffer.allocateDirect((chunkMask + 1) * slotSize).order(ByteOrder.nativeOrder()));
+            }
+            ByteBuffer buffer = chunks.get(chunk);
+            buffer.position((int) (index & chunkMask) * slotSize);
+            size++;
+            return buffer;
+        }
+
+        /**
+         * 按块遍历所有槽位：action 收到块缓冲区和槽位起点偏移量，适合写不经过视图的紧凑循环
+         */
+        protected void forEachSlot(ObjIntConsumer<ByteBuffer> action) {
+            long remaining = size;
+            for (ByteBuffer chunk : chunks) {
+                int slots = (int) Math.min(remaining, chunkMask + 1);
+                for (int i = 0, offset = 0; i < slots; i++, offset += slotSize) {
+                    action.accept(chunk, offset);
+                }
+                remaining -= slots;
+            }
+        }
+
+        /**
+         * 基于槽位下标范围的 Spliterator：SIZED | SUBSIZED，对半拆分
+         */
+        final class SlotSpliterator implements Spliterator<V> {
+            private long index;
+            private final long fence;
+            private V view;
+
+            SlotSpliterator(long origin, long fence) {
+                this.index = origin;
+                this.fence = fence;
+            }
+
+            @Override
+            public boolean tryAdvance(Consumer<? super V> action) {
+                if (index >= fence) {
+                    return false;
+                }
+                action.accept(moveTo(index++, view()));
+                return true;
+            }
+
+            @Override
+            public void forEachRemaining(Consumer<? super V> action) {
+                V reused = view();
+                for (long i = index; i < fence; i++) {
+                    action.accept(moveTo(i, reused));
+                }
+                index = fence;
+            }
+
+            @Override
+            public Spliterator<V> trySplit() {
+                long mid = (index + fence) >>> 1;
+                if (mid - index < 1024) {
+                    return null;
+                }
+                Spliterator<V> prefix = new SlotSpliterator(index, mid);
+                index = mid;
+                return prefix;
+            }
+
+            @Override
+            public long estimateSize() {
+                return fence - index;
+            }
+
+            @Override
+            public int characteristics() {
+                return ORDERED | SIZED | SUBSIZED | NONNULL;
+            }
+
+            private V view() {
+                if (view == null) {
+                    view = newView();
+                }
+                return view;
+            }
+        }
+    }
+
+    /**
+     * 享元视图：不持有数据，只记录当前指向的缓冲区和偏移量
+     */
+    abstract static class RecordView {
+        protected ByteBuffer buffer;
+        protected int offset;
+        protected long index;
+
+        void wrap(ByteBuffer buffer, int offset, long index) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.index = index;
+        }
+
+        public long getIndex() {
+            return index;
+        }
+
+        protected String readAscii(int fieldOffset, int width) {
+            byte[] bytes = new byte[width];
+            int length = 0;
+            for (; length < width; length++) {
+                byte b = buffer.get(offset + fieldOffset + length);
+                if (b == 0) {
+                    break;
+                }
+                bytes[length] = b;
+            }
+            return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * 低基数字符串的字典编码：产品、类别、货币在槽位中只占一个 int
+     */
+    static final class StringDictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        int codeOf(String value) {
+            return codes.getOrDefault(value, -1);
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    /**
+     * 定长字段的编解码工具
+     */
+    static final class Codecs {
+        private Codecs() {
+        }
+
+        /**
+         * 校验定长 ASCII 字段，在分配槽位之前调用
+         */
+        static void checkAscii(String value, int width) {
+            if (value.length() > width) {
+                throw new IllegalArgumentException("字段超过 " + width + " 字节: " + value);
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) > 127) {
+                    throw new IllegalArgumentException("只支持 ASCII: " + value);
+                }
+            }
+        }
+
+        /**
+         * 写入已经通过 checkAscii 校验的字段，不足 width 的部分补 0
+         */
+        static void writeAscii(ByteBuffer buffer, String value, int width) {
+            for (int i = 0; i < width; i++) {
+                buffer.put((byte) (i < value.length() ? value.charAt(i) : 0));
+            }
+        }
+
+        /**
+         * "2024-01-15" ↔ 20240115
+         */
+        static int encodeDate(String date) {
+            return Integer.parseInt(date.substring(0, 4)) * 10000
+                + Integer.parseInt(date.substring(5, 7)) * 100
+                + Integer.parseInt(date.substring(8, 10));
+        }
+
+        static String decodeDate(int date) {
+            return String.format("%04d-%02d-%02d", date / 10000, date / 100 % 100, date % 100);
+        }
+    }
+
+    /**
+     * 订单存储，槽位布局（32 字节）：
+     * id[12] | productCode:int | categoryCode:int | date:int | price:double
+     */
+    static final class OrderStore extends OffHeapRecordStore<OrderView> {
+        static final int ID_WIDTH = 12;
+        static final int PRODUCT = 12;
+        static final int CATEGORY = 16;
+        static final int DATE = 20;
+        static final int PRICE = 24;
+        static final int SLOT_SIZE = 32;
+
+        private final StringDictionary productDictionary = new StringDictionary();
+        private final StringDictionary categoryDictionary = new StringDictionary();
+
+        OrderStore() {
+            this(0);
+        }
+
+        OrderStore(int expectedRecords) {
+            super(SLOT_SIZE, expectedRecords);
+        }
+
+        public long append(Order order) {
+            return append(order.getId(), order.getProduct(), order.getPrice(), order.getCategory(),
+                Codecs.encodeDate(order.getDate()));
+        }
+
+        /**
+         * 先校验 id、完成字典编码，再分配槽位；校验失败时 size() 不变
+         */
+        public long append(String id, String product, double price, String category, int date) {
+            Codecs.checkAscii(id, ID_WIDTH);
+            int productCode = productDictionary.encode(product);
+            int categoryCode = categoryDictionary.encode(category);
+            ByteBuffer buffer = appendSlot();
+            Codecs.writeAscii(buffer, id, ID_WIDTH);
+            buffer.putInt(productCode);
+            buffer.putInt(categoryCode);
+            buffer.putInt(date);
+            buffer.putDouble(price);
+            return size() - 1;
+        }
+
+        public Order get(long index) {
+            return moveTo(index, newView()).toOrder();
+        }
+
+        public int categoryCode(String category) {
+            return categoryDictionary.codeOf(category);
+        }
+
+        /**
+         * 不经过视图和 Stream 的紧凑循环：按类别编码累加价格
+         */
+        public double[] sumPriceByCategoryCode() {
+            double[] sums = new double[categoryDictionary.size()];
+            forEachSlot((buffer, offset) -> sums[buffer.getInt(offset + CATEGORY)] += buffer.getDouble(offset + PRICE));
+            return sums;
+        }
+
+        @Override
+        public OrderView newView() {
+            return new OrderView(this);
+        }
+    }
+
+    static final class OrderView extends RecordView {
+        private final OrderStore store;
+
+        OrderView(OrderStore store) {
+            this.store = store;
+        }
+
+        public String getId() { return readAscii(0, OrderStore.ID_WIDTH); }
+        public String getProduct() { return store.productDictionary.decode(getProductCode()); }
+        public int getProductCode() { return buffer.getInt(offset + OrderStore.PRODUCT); }
+        public String getCategory() { return store.categoryDictionary.decode(getCategoryCode()); }
+        public int getCategoryCode() { return buffer.getInt(offset + OrderStore.CATEGORY); }
+        public int getDateValue() { return buffer.getInt(offset + OrderStore.DATE); }
+        public String getDate() { return Codecs.decodeDate(getDateValue()); }
+        public double getPrice() { return buffer.getDouble(offset + OrderStore.PRICE); }
+
+        public Order toOrder() {
+            return new Order(getId(), getProduct(), getPrice(), getCategory(), getDate());
+        }
+
+        @Override
+        public String toString() {
+            return getId() + " - " + getProduct() + " ($" + getPrice() + ")";
+        }
+    }
+
+    /**
+     * 交易存储，槽位布局（32 字节）：
+     * id[12] | currencyCode:int | date:int | 填充[4] | amount:double
+     */
+    static final class TransactionStore extends OffHeapRecordStore<TransactionView> {
+        static final int ID_WIDTH = 12;
+        static final int CURRENCY = 12;
+        static final int DATE = 16;
+        static final int AMOUNT = 24;
+        static final int SLOT_SIZE = 32;
+
+        private final StringDictionary currencyDictionary = new StringDictionary();
+
+        TransactionStore() {
+            this(0);
+        }
+
+        TransactionStore(int expectedRecords) {
+            super(SLOT_SIZE, expectedRecords);
+        }
+
+        public long append(Transaction transaction) {
+            return append(transaction.getId(), transaction.getCurrency(), Codecs.encodeDate(transaction.getDate()),
+                transaction.getAmount());
+        }
+
+        /**
+         * 先校验 id、完成字典编码，再分配槽位；校验失败时 size() 不变
+         */
+        public long append(String id, String currency, int date, double amount) {
+            Codecs.checkAscii(id, ID_WIDTH);
+            int currencyCode = currencyDictionary.encode(currency);
+            ByteBuffer buffer = appendSlot();
+            int base = buffer.position();
+            Codecs.writeAscii(buffer, id, ID_WIDTH);
+            buffer.putInt(currencyCode);
+            buffer.putInt(date);
+            buffer.putDouble(base + AMOUNT, amount);
+            return size() - 1;
+        }
+
+        public Transaction get(long index) {
+            return moveTo(index, newView()).toTransaction();
+        }
+
+        public int currencyCode(String currency) {
+            return currencyDictionary.codeOf(currency);
+        }
+
+        public String currencyName(int code) {
+            return currencyDictionary.decode(code);
+        }
+
+        @Override
+        public TransactionView newView() {
+            return new TransactionView(this);
+        }
+    }
+
+    static final class TransactionView extends RecordView {
+        private final TransactionStore store;
+
+        TransactionView(TransactionStore store) {
+            this.store = store;
+        }
+
+        public String getId() { return readAscii(0, TransactionStore.ID_WIDTH); }
+        public String getCurrency() { return store.currencyDictionary.decode(getCurrencyCode()); }
+        public int getCurrencyCode() { return buffer.getInt(offset + TransactionStore.CURRENCY); }
+        public int getDateValue() { return buffer.getInt(offset + TransactionStore.DATE); }
+        public String getDate() { return Codecs.decodeDate(getDateValue()); }
+        public double getAmount() { return buffer.getDouble(offset + TransactionStore.AMOUNT); }
+
+        public Transaction toTransaction() {
+            return new Transaction(getId(), getAmount(), getCurrency(), getDate());
+        }
+
+        @Override
+        public String toString() {
+            return getId() + " - " + getAmount() + " " + getCurrency();
+        }
+    }
+}
@@ -0,0 +1,809 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.OptionalExamples.Address;
+import com.example.java8.OptionalExamples.User;
+
+/**
+ * Java 8 Optional 结果缓存示例类
+ * 展示基于 W-TinyLFU 淘汰策略、按权重限制容量、支持负缓存和写后刷新的进程内缓存
+ */
+public class OptionalCacheExamples {
+
+    /**
+     * 1. 缓存 findUserById 的 Optional 结果（包括不存在的负结果）
+     */
+    public static void cachingOptionalLookups() {
+        System.out.println("=== 缓存 Optional 查找结果 ===");
+
+        AtomicInteger storeCalls = new AtomicInteger();
+        OptionalLoadingCache<Integer, User> users = OptionalLoadingCache.<Integer, User>builder()
+            .maximumWeight(1_000)
+            .negativeExpireAfterWriteMillis(1_000)
+            .build(id -> {
+                storeCalls.incrementAndGet();
+                return OptionalExamples.findUserById(id);
+            });
+
+        for (int i = 0; i < 3; i++) {
+            String name = users.get(1).map(User::getName).map(String::toUpperCase).orElse("用户不存在");
+            String city = users.get(1).map(User::getAddress).map(Address::getCity).orElse("未知城市");
+            String missing = users.get(999).map(User::getName).orElse("默认用户");
+            System.out.println("  第" + (i + 1) + "轮: " + name + ", " + city + ", " + missing);
+        }
+
+        System.out.println("后端调用次数: " + storeCalls.get());
+        System.out.println("缓存统计: " + users.stats());
+    }
+
+    /**
+     * 2. 缓存 Map 查找：对应 realWorldScenarios 中的 Optional.ofNullable(map.get(key))
+     */
+    public static void cachingMapLookups() {
+        System.out.println("\n=== 缓存 Map 查找 ===");
+
+        Map<String, String> userMap = new HashMap<>();
+        userMap.put("name", "Alice");
+        userMap.put("email", "alice@example.com");
+
+        OptionalLoadingCache<String, String> fields = OptionalLoadingCache.<String, String>builder()
+            .maximumWeight(100)
+            .build(key -> Optional.ofNullable(userMap.get(key)));
+
+        String userName = fields.get("name").orElse("未知用户");
+        String userPhone = fields.get("phone").orElse("未提供电话");
+        System.out.println("用户名: " + userName);
+        System.out.println("用户电话: " + userPhone);
+
+        // 负缓存是显式的：可以单独查询某个 key 是否被缓存为"不存在"
+        System.out.println("phone 被缓存为不存在: " + fields.isCachedAbsent("phone"));
+        System.out.println("name 被缓存为不存在: " + fields.isCachedAbsent("name"));
+    }
+
+    /**
+     * 3. 按权重限制容量：大对象占用更多配额
+     */
+    public static void weightBasedBounds() {
+        System.out.println("\n=== 按权重限制容量 ===");
+
+        OptionalLoadingCache<Integer, String> cache = OptionalLoadingCache.<Integer, String>builder()
+            .maximumWeight(100)
+            .weigher((key, value) -> value.map(String::length).orElse(1))
+            .build(key -> key % 10 == 0 ? Optional.empty() : Optional.of(repeat('x', key)));
+
+        IntStream.rangeClosed(1, 40).forEach(cache::get);
+
+        System.out.println("缓存条目数: " + cache.size());
+        System.out.println("缓存总权重: " + cache.weightedSize() + " (上限 100)");
+        System.out.println("缓存统计: " + cache.stats());
+    }
+
+    /**
+     * 4. 命中率对比：热点 + 扫描混合负载下 W-TinyLFU 与 LRU
+     */
+    public static void hitRateComparison() {
+        System.out.println("\n=== W-TinyLFU 与 LRU 命中率对比 ===");
+
+        int capacity = 500;
+        int[] workload = hotSetWithScans(200_000, 400, 50_000, 42L);
+
+        OptionalLoadingCache<Integer, Integer> tinyLfu = OptionalLoadingCache.<Integer, Integer>builder()
+            .maximumWeight(capacity)
+            .build(Optional::of);
+        for (int key : workload) {
+            tinyLfu.get(key);
+        }
+
+        SimpleLruCache<Integer, Integer> lru = new SimpleLruCache<>(capacity);
+        long lruHits = 0;
+        for (int key : workload) {
+            if (lru.get(key) != null) {
+                lruHits++;
+            } else {
+                lru.put(key, key);
+            }
+        }
+
+        System.out.printf("W-TinyLFU 命中率: %.2f%%%n", tinyLfu.stats().hitRate() * 100);
+        System.out.printf("LRU 命中率: %.2f%%%n", lruHits * 100.0 / workload.length);
+    }
+
+    /**
+     * 5. 写后刷新：过期条目先返回旧值，后台异步重新加载
+     */
+    public static void refreshAfterWrite() throws InterruptedException {
+        System.out.println("\n=== 写后刷新 ===");
+
+        AtomicInteger version = new AtomicInteger();
+        OptionalLoadingCache<String, String> config = OptionalLoadingCache.<String, String>builder()
+            .maximumWeight(10)
+            .refreshAfterWriteMillis(50)
+            .build(key -> Optional.of(key + "-v" + version.incrementAndGet()));
+
+        System.out.println("首次读取: " + config.get("timeout").orElse("无"));
+        Thread.sleep(80);
+        System.out.println("刷新触发时读取(旧值): " + config.get("timeout").orElse("无"));
+        Thread.sleep(50);
+        System.out.println("刷新完成后读取: " + config.get("timeout").orElse("无"));
+        System.out.println("缓存统计: " + config.stats());
+    }
+
+    /**
+     * 6. 并发读取：读路径只访问 ConcurrentHashMap，访问记录写入分段缓冲区后批量回放
+     */
+    public static void concurrentReads() {
+        System.out.println("\n=== 并发读取 ===");
+
+        AtomicInteger storeCalls = new AtomicInteger();
+        OptionalLoadingCache<Integer, User> users = OptionalLoadingCache.<Integer, User>builder()
+            .maximumWeight(1_000)
+            .build(id -> {
+                storeCalls.incrementAndGet();
+                return id <= 100 ? Optional.of(new User("User" + id, new Address("北京", "海淀区"))) : Optional.empty();
+            });
+
+        long found = IntStream.range(0, 1_000_000)
+            .parallel()
+            .mapToObj(i -> users.get(i % 200))
+            .filter(Optional::isPresent)
+            .count();
+
+        System.out.println("找到用户次数: " + found);
+        System.out.println("后端调用次数: " + storeCalls.get());
+        System.out.println("缓存统计: " + users.stats());
+    }
+
+    private static int[] hotSetWithScans(int length, int hotKeys, int scanLength, long seed) {
+        Random random = new Random(seed);
+        int[] keys = new int[length];
+        int scanKey = 1_000_000;
+        for (int i = 0; i < length; i++) {
+            // 每隔一段插入一次性扫描，LRU 会被扫描冲掉热点
+            boolean inScan = (i / scanLength) % 2 == 1 && i % 3 == 0;
+            keys[i] = inScan ? scanKey++ : random.nextInt(hotKeys);
+        }
+        return keys;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) throws InterruptedException {
+        cachingOptionalLookups();
+        cachingMapLookups();
+        weightBasedBounds();
+        hitRateComparison();
+        refreshAfterWrite();
+        concurrentReads();
+    }
+
+    /**
+     * 缓存 Optional 结果的加载缓存
+     * - 读路径：ConcurrentHashMap 无锁读取，访问记录写入分段的读缓冲区，缓冲区满时尝试加锁批量回放
+     * - 淘汰策略：W-TinyLFU（1% 窗口 LRU + 分段 LRU 主区，由 Count-Min Sketch 频率决定准入）
+     * - 负缓存：Optional.empty() 也作为条目缓存，可以设置独立的过期时间
+     */
+    static class OptionalLoadingCache<K, V> {
+        private static final int WINDOW = 0;
+        private static final int PROBATION = 1;
+        private static final int PROTECTED = 2;
+        private static final int READ_BUFFER_SIZE = 64;
+        private static final int DRAIN_THRESHOLD = 32;
+
+        private final Function<K, Optional<V>> loader;
+        private final ToIntBiFunction<K, Optional<V>> weigher;
+        private final long maximumWeight;
+        private final long windowMaximum;
+        private final long protectedMaximum;
+        private final long expireAfterWriteNanos;
+        private final long negativeExpireAfterWriteNanos;
+        private final long refreshAfterWriteNanos;
+        private final Executor refreshExecutor;
+
+        private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<K, CompletableFuture<Optional<V>>> loading = new ConcurrentHashMap<>();
+        private final ArrayBlockingQueue<Node<K, V>>[] readBuffers;
+        private final ReentrantLock evictionLock = new ReentrantLock();
+
+        // 以下字段由 evictionLock 保护
+        private final FrequencySketch sketch;
+        private final AccessOrderDeque<K, V> window = new AccessOrderDeque<>();
+        private final AccessOrderDeque<K, V> probation = new AccessOrderDeque<>();
+        private final AccessOrderDeque<K, V> protectedDeque = new AccessOrderDeque<>();
+        private long windowWeight;
+        private long protectedWeight;
+        private long totalWeight;
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder loadCount = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder evictionWeight = new LongAdder();
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private OptionalLoadingCache(Builder<K, V> builder, Function<K, Optional<V>> loader) {
+            this.loader = Objects.requireNonNull(loader, "loader");
+            this.weigher = builder.weigher;
+            this.maximumWeight = builder.maximumWeight;
+            this.windowMaximum = Math.max(1, maximumWeight / 100);
+            this.protectedMaximum = (long) ((maximumWeight - windowMaximum) * 0.8);
+            this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+            this.negativeExpireAfterWriteNanos = builder.negativeExpireAfterWriteNanos;
+            this.refreshAfterWriteNanos = builder.refreshAfterWriteNanos;
+            this.refreshExecutor = builder.refreshExecutor;
+            this.sketch = new FrequencySketch((int) Math.min(maximumWeight, 1 << 20));
+
+            int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+            this.readBuffers = new ArrayBlockingQueue[stripes];
+            for (int i = 0; i < stripes; i++) {
+                readBuffers[i] = new ArrayBlockingQueue<>(READ_BUFFER_SIZE);
+            }
+        }
+
+        public static <K, V> Builder<K, V> builder() {
+            return new Builder<>();
+        }
+
+        /**
+         * 获取缓存值，未命中时调用 loader 加载；同一个 key 的并发未命中只加载一次
+         */
+        public Optional<V> get(K key) {
+            Objects.requireNonNull(key, "key");
+            long now = System.nanoTime();
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                if (!isExpired(node, now)) {
+                    hits.increment();
+                    afterRead(node, now);
+                    return node.value;
+                }
+                removeNode(key, node);
+            }
+            misses.increment();
+            return loadAndPut(key);
+        }
+
+        /**
+         * 只读缓存，不触发加载；返回 null 表示缓存中没有这个 key
+         */
+        public Optional<V> getIfPresent(K key) {
+            Node<K, V> node = data.get(key);
+            if (node == null || isExpired(node, System.nanoTime())) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            afterRead(node, System.nanoTime());
+            return node.value;
+        }
+
+        /**
+         * key 是否被缓存为"不存在"
+         */
+        public boolean isCachedAbsent(K key) {
+            Node<K, V> node = data.get(key);
+            return node != null && !node.value.isPresent() && !isExpired(node, System.nanoTime());
+        }
+
+        public void put(K key, Optional<V> value) {
+            Objects.requireNonNull(value, "value");
+            Node<K, V> node = new Node<>(key, value, weigh(key, value), System.nanoTime());
+            Node<K, V> previous = data.put(key, node);
+            evictionLock.lock();
+            try {
+                drainReadBuffers();
+                if (previous != null) {
+                    unlink(previous);
+                }
+                // 并发写同一个 key 时只链接仍在 data 中的最新节点
+                if (data.get(key) == node) {
+                    onWrite(node);
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+
+        /**
+         * 负权重会让 totalWeight 等预算计数失真，在写入任何结构之前拒绝
+         */
+        private int weigh(K key, Optional<V> value) {
+            int weight = weigher.applyAsInt(key, value);
+            if (weight < 0) {
+                throw new IllegalArgumentException("weigher 返回了负权重 " + weight + ": key=" + key);
+            }
+            return weight;
+        }
+
+        public void invalidate(K key) {
+            Node<K, V> node = data.remove(key);
+            if (node != null) {
+                evictionLock.lock();
+                try {
+                    unlink(node);
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+        }
+
+        public int size() {
+            return data.size();
+        }
+
+        public long weightedSize() {
+            evictionLock.lock();
+            try {
+                return totalWeight;
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+
+        public CacheStats stats() {
+            return new CacheStats(hits.sum(), misses.sum(), loadCount.sum(), evictions.sum(), evictionWeight.sum());
+        }
+
+        private Optional<V> loadAndPut(K key) {
+            CompletableFuture<Optional<V>> future = new CompletableFuture<>();
+            CompletableFuture<Optional<V>> existing = loading.putIfAbsent(key, future);
+            if (existing != null) {
+                return await(existing);
+            }
+            try {
+                loadCount.increment();
+                Optional<V> value = Objects.requireNonNull(loader.apply(key), "loader 不能返回 null");
+                put(key, value);
+                future.complete(value);
+                return value;
+            } catch (Throwable e) {
+                // Error 也要完成 future，否则等待同一个 key 的线程会永远阻塞
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                loading.remove(key, future);
+            }
+        }
+
+        /**
+         * 等待其他线程的加载结果；失败时抛出 loader 的原始异常，与自己加载时看到的一致
+         */
+        private static <V> V await(CompletableFuture<V> future) {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+
+        private boolean isExpired(Node<K, V> node, long now) {
+            long ttl = node.value.isPresent() ? expireAfterWriteNanos : negativeExpireAfterWriteNanos;
+            return ttl > 0 && now - node.writeTime >= ttl;
+        }
+
+        private void afterRead(Node<K, V> node, long now) {
+            if (refreshAfterWriteNanos > 0 && now - node.writeTime >= refreshAfterWriteNanos
+                    && node.refreshing.compareAndSet(false, true)) {
+                scheduleRefresh(node);
+            }
+
+            int stripe = (int) Thread.currentThread().getId() & (readBuffers.length - 1);
+            ArrayBlockingQueue<Node<K, V>> buffer = readBuffers[stripe];
+            // 缓冲区满时直接丢弃访问记录：频率统计本身就是近似的，读路径不能被阻塞
+            buffer.offer(node);
+            if (buffer.size() >= DRAIN_THRESHOLD && evictionLock.tryLock()) {
+                try {
+                    drainReadBuffers();
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+        }
+
+        private void scheduleRefresh(Node<K, V> node) {
+            try {
+                refreshExecutor.execute(() -> {
+                    try {
+                        loadCount.increment();
+                        Optional<V> value = Objects.requireNonNull(loader.apply(node.key), "loader 不能返回 null");
+                        // 只有条目没有被替换或移除时才写回刷新结果
+                        if (data.get(node.key) == node) {
+                            put(node.key, value);
+                        }
+                    } catch (RuntimeException e) {
+                        // 刷新失败时继续返回旧值，下次读取再重试
+                    } finally {
+                        // 成功时节点已被替换，复位无害；Error 继续交给执行器处理，但标记必须复位
+                        node.refreshing.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                node.refreshing.set(false);
+            }
+        }
+
+        private void removeNode(K key, Node<K, V> node) {
+            if (data.remove(key, node)) {
+                evictionLock.lock();
+                try {
+                    unlink(node);
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+        }
+
+        private void drainReadBuffers() {
+            for (ArrayBlockingQueue<Node<K, V>> buffer : readBuffers) {
+                Node<K, V> node;
+                while ((node = buffer.poll()) != null) {
+                    onAccess(node);
+                }
+            }
+        }
+
+        private void onAccess(Node<K, V> node) {
+            sketch.increment(node.key.hashCode());
+            if (!node.linked) {
+                return;
+            }
+            if (node.queue == WINDOW) {
+                window.moveToBack(node);
+            } else if (node.queue == PROBATION) {
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedDeque.addLast(node);
+                protectedWeight += node.weight;
+                demoteFromProtected();
+            } else {
+                protectedDeque.moveToBack(node);
+            }
+        }
+
+        private void onWrite(Node<K, V> node) {
+            sketch.increment(node.key.hashCode());
+            node.queue = WINDOW;
+            window.addLast(node);
+            windowWeight += node.weight;
+            totalWeight += node.weight;
+            evict();
+        }
+
+        private void demoteFromProtected() {
+            while (protectedWeight > protectedMaximum) {
+                Node<K, V> demoted = protectedDeque.pollFirst();
+                protectedWeight -= demoted.weight;
+                demoted.queue = PROBATION;
+                probation.addLast(demoted);
+            }
+        }
+
+        /**
+         * 窗口溢出的条目进入 probation 队尾成为候选者，主区超限时候选者和 probation 队首（受害者）
+         * 按 TinyLFU 频率比较，频率低的一方被淘汰
+         */
+        private void evict() {
+            int candidates = 0;
+            while (windowWeight > windowMaximum && !window.isEmpty()) {
+                Node<K, V> node = window.pollFirst();
+                windowWeight -= node.weight;
+                node.queue = PROBATION;
+                probation.addLast(node);
+                candidates++;
+            }
+
+            while (totalWeight > maximumWeight) {
+                Node<K, V> victim = probation.peekFirst();
+                Node<K, V> candidate = candidates > 0 ? probation.peekLast() : null;
+                Node<K, V> evicted;
+                if (victim == null) {
+                    evicted = !protectedDeque.isEmpty() ? protectedDeque.peekFirst() : window.peekFirst();
+                } else if (candidate == null || candidate == victim) {
+                    evicted = victim;
+                } else {
+                    int candidateFreq = sketch.frequency(candidate.key.hashCode());
+                    int victimFreq = sketch.frequency(victim.key.hashCode());
+                    evicted = candidateFreq > victimFreq ? victim : candidate;
+                }
+                if (evicted == null) {
+                    break;
+                }
+                if (evicted == candidate) {
+                    candidates--;
+                }
+                if (data.remove(evicted.key, evicted)) {
+                    evictions.increment();
+                    evictionWeight.add(evicted.weight);
+                }
+                unlink(evicted);
+            }
+        }
+
+        private void unlink(Node<K, V> node) {
+            if (!node.linked) {
+                return;
+            }
+            if (node.queue == WINDOW) {
+                window.remove(node);
+                windowWeight -= node.weight;
+            } else if (node.queue == PROBATION) {
+                probation.remove(node);
+            } else {
+                protectedDeque.remove(node);
+                protectedWeight -= node.weight;
+            }
+            totalWeight -= node.weight;
+        }
+
+        static class Builder<K, V> {
+            private long maximumWeight = 10_000;
+            private ToIntBiFunction<K, Optional<V>> weigher = (key, value) -> 1;
+            private long expireAfterWriteNanos;
+            private long negativeExpireAfterWriteNanos;
+            private long refreshAfterWriteNanos;
+            private Executor refreshExecutor = ForkJoinPool.commonPool();
+
+            public Builder<K, V> maximumWeight(long maximumWeight) {
+                if (maximumWeight <= 0) {
+                    throw new IllegalArgumentException("maximumWeight 必须大于 0: " + maximumWeight);
+                }
+                this.maximumWeight = maximumWeight;
+                return this;
+            }
+
+            /**
+             * 权重必须非负；写入时返回负数会抛出 IllegalArgumentException，条目不会被缓存
+             */
+            public Builder<K, V> weigher(ToIntBiFunction<K, Optional<V>> weigher) {
+                this.weigher = Objects.requireNonNull(weigher, "weigher");
+                return this;
+            }
+
+            public Builder<K, V> expireAfterWriteMillis(long millis) {
+                this.expireAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+                return this;
+            }
+
+            public Builder<K, V> negativeExpireAfterWriteMillis(long millis) {
+                this.negativeExpireAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+                return this;
+            }
+
+            public Builder<K, V> refreshAfterWriteMillis(long millis) {
+                this.refreshAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+                return this;
+            }
+
+            public Builder<K, V> refreshExecutor(Executor refreshExecutor) {
+                this.refreshExecutor = Objects.requireNonNull(refreshExecutor, "refreshExecutor");
+                return this;
+            }
+
+            public OptionalLoadingCache<K, V> build(Function<K, Optional<V>> loader) {
+                return new OptionalLoadingCache<>(this, loader);
+            }
+        }
+    }
+
+    /**
+     * 缓存条目，同时作为访问顺序双向链表的节点
+     */
+    static class Node<K, V> {
+        final K key;
+        final Optional<V> value;
+        final int weight;
+        final long writeTime;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        // 以下字段由 evictionLock 保护
+        int queue;
+        boolean linked;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, Optional<V> value, int weight, long writeTime) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = writeTime;
+        }
+    }
+
+    /**
+     * 侵入式访问顺序双向链表：队首最久未访问
+     */
+    static class AccessOrderDeque<K, V> {
+        private Node<K, V> head;
+        private Node<K, V> tail;
+
+        boolean isEmpty() {
+            return head == null;
+        }
+
+        Node<K, V> peekFirst() {
+            return head;
+        }
+
+        Node<K, V> peekLast() {
+            return tail;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            node.linked = true;
+        }
+
+        Node<K, V> pollFirst() {
+            Node<K, V> node = head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void moveToBack(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.linked = false;
+        }
+    }
+
+    /**
+     * 4 位计数器的 Count-Min Sketch，每个 long 存放 16 个计数器；
+     * 累计增量达到采样上限后所有计数器减半，让历史热度逐渐老化
+     */
+    static class FrequencySketch {
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int size = Integer.highestOneBit(Math.max(2, expectedEntries) * 2 - 1);
+            this.table = new long[Math.max(1, size / 4)];
+            this.tableMask = table.length - 1;
+            this.sampleSize = 10 * Math.max(1, expectedEntries);
+        }
+
+        int frequency(int hashCode) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                long hash = rehash(hashCode, i);
+                int index = (int) (hash >>> 32) & tableMask;
+                int offset = ((int) hash & 15) << 2;
+                frequency = Math.min(frequency, (int) ((table[index] >>> offset) & 0xfL));
+            }
+            return frequency;
+        }
+
+        void increment(int hashCode) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                long hash = rehash(hashCode, i);
+                int index = (int) (hash >>> 32) & tableMask;
+                int offset = ((int) hash & 15) << 2;
+                if (((table[index] >>> offset) & 0xfL) != 0xfL) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions >>>= 1;
+        }
+
+        private static long rehash(int hashCode, int i) {
+            long hash = (hashCode + SEEDS[i]) * SEEDS[i];
+            return hash ^ (hash >>> 29);
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    static class CacheStats {
+        private final long hitCount;
+        private final long missCount;
+        private final long loadCount;
+        private final long evictionCount;
+        private final long evictionWeight;
+
+        CacheStats(long hitCount, long missCount, long loadCount, long evictionCount, long evictionWeight) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loadCount = loadCount;
+            this.evictionCount = evictionCount;
+            this.evictionWeight = evictionWeight;
+        }
+
+        public long getHitCount() { return hitCount; }
+        public long getMissCount() { return missCount; }
+        public long getLoadCount() { return loadCount; }
+        public long getEvictionCount() { return evictionCount; }
+        public long getEvictionWeight() { return evictionWeight; }
+
+        public double hitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d, misses=%d, loads=%d, evictions=%d, evictionWeight=%d, hitRate=%.2f%%",
+                hitCount, missCount, loadCount, evictionCount, evictionWeight, hitRate() * 100);
+        }
+    }
+
+    /**
+     * 用于对比的简单 LRU 缓存
+     */
+    static class SimpleLruCache<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        SimpleLruCache(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
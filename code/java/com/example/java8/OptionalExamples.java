@@ -258,11 +258,11 @@ public class OptionalExamples {
      * 工具方法：安全解析整数
      */
     private static Optional<Integer> safeParseInt(String str) {
-        try {
-            return Optional.of(Integer.parseInt(str));
-        } catch (NumberFormatException e) {
-            return Optional.empty();
-        }
+        // 使用不抛异常的解析，无效输入不会创建 NumberFormatException
+        long result = PrimitiveOptionalExamples.OptionalInts.parseInt(str);
+        return PrimitiveOptionalExamples.OptionalInts.isPresent(result)
+            ? Optional.of((int) result)
+            : Optional.empty();
     }
 
     /**
@@ -275,7 +275,7 @@ public class OptionalExamples {
     /**
      * 模拟查找用户的方法
      */
-    private static Optional<User> findUserById(int id) {
+    static Optional<User> findUserById(int id) {
         if (id == 1) {
             return Optional.of(new User("Alice", new Address("北京", "朝阳区")));
         }
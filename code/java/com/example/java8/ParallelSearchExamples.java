@@ -0,0 +1,454 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * Java 8 并行短路查找示例类
+ * 展示 findFirst / findAny / anyMatch 的并行实现：命中后通过原子变量发布当前最小下标，
+ * 下标更大的工作任务据此提前退出；数据源可以是 List 或 Stream，并支持时间预算，超时返回部分结果
+ */
+public class ParallelSearchExamples {
+
+    /**
+     * 1. 基本用法：与 StreamExamples.streamWithOptionalExamples 中的查找等价
+     */
+    public static void basicSearch() {
+        System.out.println("=== 并行短路查找 ===");
+
+        List<String> names = Arrays.asList("Alice", "Bob", null, "Charlie", "", "David");
+
+        Optional<String> firstValidName = ParallelSearch.findFirst(names,
+            name -> name != null && !name.isEmpty());
+        System.out.println("第一个有效名字: " + firstValidName.orElse("无"));
+
+        String result = ParallelSearch.findFirst(names, name -> name != null && name.length() > 5)
+            .orElse("未找到长度>5的名字");
+        System.out.println("结果: " + result);
+
+        boolean hasEmpty = ParallelSearch.anyMatch(names, name -> name != null && name.isEmpty());
+        System.out.println("存在空字符串: " + hasEmpty);
+
+        Optional<String> anyLong = ParallelSearch.findAny(names, name -> name != null && name.length() >= 5);
+        System.out.println("任意一个长度>=5的名字: " + anyLong.orElse("无"));
+
+        // 也可以直接传入 Stream：IntStream.range 的 Spliterator 是 SUBSIZED，按下标拆分而不需要先收集
+        Optional<Integer> firstCommon = ParallelSearch.findFirst(IntStream.range(1, 1_000_000).boxed(),
+            n -> n % 991 == 0 && n % 997 == 0);
+        System.out.println("流中第一个同时被 991 和 997 整除的数: " + firstCommon.orElse(-1));
+    }
+
+    /**
+     * 2. 大输入上的 findFirst：结果与顺序流一致，并统计实际扫描的元素数
+     */
+    public static void earlyCancellation() {
+        System.out.println("\n=== 提前取消 ===");
+
+        List<Integer> numbers = IntStream.range(0, 1_000_000).boxed().collect(Collectors.toList());
+
+        SearchResult<Integer> first = ParallelSearch.search(numbers, n -> n % 99_991 == 99_990, true, 0);
+        System.out.println("findFirst: " + first);
+
+        SearchResult<Integer> any = ParallelSearch.search(numbers, n -> n % 99_991 == 99_990, false, 0);
+        System.out.println("findAny: " + any);
+
+        SearchResult<Integer> none = ParallelSearch.search(numbers, n -> n < 0, true, 0);
+        System.out.println("无匹配: " + none);
+    }
+
+    /**
+     * 3. 时间预算：谓词很慢时在期限内返回部分结果
+     */
+    public static void timeBudget() {
+        System.out.println("\n=== 时间预算 ===");
+
+        List<Integer> numbers = IntStream.range(0, 200_000).boxed().collect(Collectors.toList());
+        Predicate<Integer> slowPredicate = n -> {
+            // 模拟昂贵的谓词
+            double x = n;
+            for (int i = 0; i < 2_000; i++) {
+                x = Math.sqrt(x + i);
+            }
+            return n == 190_000 && x > 0;
+        };
+
+        SearchResult<Integer> partial = ParallelSearch.findFirst(numbers, slowPredicate, 20, TimeUnit.MILLISECONDS);
+        System.out.println("20ms 预算: " + partial);
+
+        SearchResult<Integer> quick = ParallelSearch.findFirst(numbers, n -> n == 190_000, 1, TimeUnit.SECONDS);
+        System.out.println("1s 预算(廉价谓词): " + quick);
+    }
+
+    /**
+     * 4. 基准测试：选择性谓词（命中靠后或不命中）与非选择性谓词（大量命中）
+     */
+    public static void benchmark(int size) {
+        System.out.println("\n=== 基准测试（" + size + " 个元素，并行度 "
+            + ForkJoinPool.commonPool().getParallelism() + "）===");
+
+        List<Integer> numbers = IntStream.range(0, size).boxed().collect(Collectors.toList());
+        int lateTarget = size - size / 10;
+
+        Map<String, Predicate<Integer>> predicates = new LinkedHashMap<>();
+        predicates.put("选择性: 命中在 90% 处", n -> n == lateTarget);
+        predicates.put("选择性: 无命中", n -> n < 0);
+        predicates.put("非选择性: 一半命中", n -> (n & 1) == 1);
+        predicates.put("非选择性: 命中在后半段起点", n -> n >= size / 2);
+
+        for (Map.Entry<String, Predicate<Integer>> entry : predicates.entrySet()) {
+            Predicate<Integer> predicate = entry.getValue();
+            System.out.println(entry.getKey());
+            time("  parallel().filter().findFirst()",
+                () -> numbers.parallelStream().filter(predicate).findFirst().orElse(-1));
+            time("  parallel().filter().findAny()  ",
+                () -> numbers.parallelStream().filter(predicate).findAny().orElse(-1));
+            time("  ParallelSearch.findFirst       ",
+                () -> ParallelSearch.findFirst(numbers, predicate).orElse(-1));
+            time("  ParallelSearch.findAny         ",
+                () -> ParallelSearch.findAny(numbers, predicate).orElse(-1));
+        }
+    }
+
+    private static void time(String label, IntSupplier search) {
+        int result = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 7; round++) {
+            long start = System.nanoTime();
+            result = search.getAsInt();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%s %8.3fms  结果=%d%n", label, best / 1e6, result);
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        basicSearch();
+        earlyCancellation();
+        timeBudget();
+        benchmark(args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000);
+    }
+
+    /**
+     * 查找结果：命中的元素及其下标、实际扫描的元素数，以及查找是否完整结束（未超时）
+     * complete 为 false 时，findFirst 返回的元素不一定是全局第一个
+     */
+    static final class SearchResult<T> {
+        private final T value;
+        private final int index;
+        private final long scanned;
+        private final boolean complete;
+
+        SearchResult(T value, int index, long scanned, boolean complete) {
+            this.value = value;
+            this.index = index;
+            this.scanned = scanned;
+            this.complete = complete;
+        }
+
+        public Optional<T> getValue() {
+            return index < 0 ? Optional.empty() : Optional.of(value);
+        }
+
+        public int getIndex() { return index; }
+        public long getScanned() { return scanned; }
+        public boolean isComplete() { return complete; }
+
+        @Override
+        public String toString() {
+            return "SearchResult{value=" + (index < 0 ? "无" : value) + ", index=" + index
+                + ", scanned=" + scanned + ", complete=" + complete + "}";
+        }
+    }
+
+    /**
+     * 并行短路查找
+     * 把下标区间递归二分为 ForkJoin 任务；命中时用 CAS 把下标写入共享的 best（findFirst 取最小值），
+     * 每扫描 CHECK_INTERVAL 个元素检查一次 best，起始下标不可能更优的任务直接放弃
+     * 数据源可以是 List，也可以是 Stream / Spliterator：SUBSIZED 的 Spliterator 按 trySplit 拆分并由前缀大小推算下标，
+     * 其他 Spliterator（例如 filter 之后的流）无法推算下标，先收集到 ArrayList 再查找，因此不能用于无限流
+     * 设置了时间预算时每个元素都检查期限，超时最多多执行每个工作线程上正在进行的一次谓词调用
+     */
+    static final class ParallelSearch {
+        static final int LEAF_SIZE = 4096;
+        static final int CHECK_INTERVAL = 256;
+        private static final int NOT_FOUND = Integer.MAX_VALUE;
+
+        private ParallelSearch() {
+        }
+
+        public static <T> Optional<T> findFirst(List<T> list, Predicate<? super T> predicate) {
+            return search(list, predicate, true, 0).getValue();
+        }
+
+        public static <T> Optional<T> findAny(List<T> list, Predicate<? super T> predicate) {
+            return search(list, predicate, false, 0).getValue();
+        }
+
+        public static <T> boolean anyMatch(List<T> list, Predicate<? super T> predicate) {
+            return search(list, predicate, false, 0).getIndex() >= 0;
+        }
+
+        public static <T> Optional<T> findFirst(Stream<T> stream, Predicate<? super T> predicate) {
+            return search(stream.spliterator(), predicate, true, 0).getValue();
+        }
+
+        public static <T> Optional<T> findAny(Stream<T> stream, Predicate<? super T> predicate) {
+            return search(stream.spliterator(), predicate, false, 0).getValue();
+        }
+
+        public static <T> boolean anyMatch(Stream<T> stream, Predicate<? super T> predicate) {
+            return search(stream.spliterator(), predicate, false, 0).getIndex() >= 0;
+        }
+
+        /**
+         * 带时间预算的 findFirst：超时后返回目前已知的最小下标命中（可能为空）
+         */
+        public static <T> SearchResult<T> findFirst(List<T> list, Predicate<? super T> predicate,
+                                                    long budget, TimeUnit unit) {
+            return search(list, predicate, true, unit.toNanos(budget));
+        }
+
+        public static <T> SearchResult<T> findAny(List<T> list, Predicate<? super T> predicate,
+                                                  long budget, TimeUnit unit) {
+            return search(list, predicate, false, unit.toNanos(budget));
+        }
+
+        public static <T> SearchResult<T> findFirst(Stream<T> stream, Predicate<? super T> predicate,
+                                                    long budget, TimeUnit unit) {
+            return search(stream.spliterator(), predicate, true, unit.toNanos(budget));
+        }
+
+        public static <T> SearchResult<T> findAny(Stream<T> stream, Predicate<? super T> predicate,
+                                                  long budget, TimeUnit unit) {
+            return search(stream.spliterator(), predicate, false, unit.toNanos(budget));
+        }
+
+        /**
+         * @param ordered      true 为 findFirst 语义，false 为 findAny 语义
+         * @param budgetNanos  时间预算，0 表示不限时
+         */
+        static <T> SearchResult<T> search(List<T> list, Predicate<? super T> predicate,
+                                          boolean ordered, long budgetNanos) {
+            List<T> source = list instanceof RandomAccess ? list : new ArrayList<>(list);
+            SearchState<T> state = new SearchState<>(predicate, ordered, budgetNanos);
+            if (!source.isEmpty()) {
+                ForkJoinPool.commonPool().invoke(new SearchTask<>(state, source, 0, source.size()));
+            }
+            return state.result();
+        }
+
+        static <T> SearchResult<T> search(Spliterator<T> spliterator, Predicate<? super T> predicate,
+                                          boolean ordered, long budgetNanos) {
+            if (!spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
+                List<T> buffer = new ArrayList<>();
+                spliterator.forEachRemaining(buffer::add);
+                return search(buffer, predicate, ordered, budgetNanos);
+            }
+            long size = spliterator.getExactSizeIfKnown();
+            if (size >= NOT_FOUND) {
+                throw new IllegalArgumentException("元素个数超过 int 下标范围: " + size);
+            }
+            SearchState<T> state = new SearchState<>(predicate, ordered, budgetNanos);
+            if (size > 0) {
+                ForkJoinPool.commonPool().invoke(new SpliteratorSearchTask<>(state, spliterator, 0));
+            }
+            return state.result();
+        }
+    }
+
+    /**
+     * 一次查找中各任务共享的状态
+     */
+    static final class SearchState<T> {
+        final Predicate<? super T> predicate;
+        final boolean ordered;
+        final long deadline;
+        final int checkInterval;
+        final AtomicInteger best = new AtomicInteger(ParallelSearch.NOT_FOUND);
+        // 每个叶子任务最多发布一次命中，按下标保存命中的元素，最后取 best 对应的那个
+        final Map<Integer, T> hits = new ConcurrentHashMap<>();
+        final LongAdder scanned = new LongAdder();
+        volatile boolean timedOut;
+
+        SearchState(Predicate<? super T> predicate, boolean ordered, long budgetNanos) {
+            this.predicate = predicate;
+            this.ordered = ordered;
+            this.deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : 0;
+            // 谓词可能很慢，有期限时逐个元素检查，否则按间隔检查以减少共享变量的读取
+            this.checkInterval = deadline != 0 ? 1 : ParallelSearch.CHECK_INTERVAL;
+        }
+
+        /**
+         * 从下标 index 开始的扫描是否已经没有意义
+         */
+        boolean shouldStop(int index) {
+            int current = best.get();
+            if (ordered ? current <= index : current != ParallelSearch.NOT_FOUND) {
+                return true;
+            }
+            if (timedOut) {
+                return true;
+            }
+            if (deadline != 0 && System.nanoTime() - deadline > 0) {
+                timedOut = true;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 发布命中下标：findFirst 取最小值，findAny 只接受第一个
+         */
+        void publish(int index, T value) {
+            hits.put(index, value);
+            if (!ordered) {
+                best.compareAndSet(ParallelSearch.NOT_FOUND, index);
+                return;
+            }
+            int current;
+            while (index < (current = best.get())) {
+                if (best.compareAndSet(current, index)) {
+                    return;
+                }
+            }
+        }
+
+        SearchResult<T> result() {
+            int index = best.get();
+            return index == ParallelSearch.NOT_FOUND
+                ? new SearchResult<>(null, -1, scanned.sum(), !timedOut)
+                : new SearchResult<>(hits.get(index), index, scanned.sum(), !timedOut);
+        }
+    }
+
+    /**
+     * 查找任务：先计算左半部分再等待右半部分，这样右半部分在被窃取之前往往已经可以直接跳过
+     */
+    @SuppressWarnings("serial")
+    static final class SearchTask<T> extends RecursiveAction {
+        private final SearchState<T> state;
+        private final List<T> source;
+        private final int from;
+        private final int to;
+
+        SearchTask(SearchState<T> state, List<T> source, int from, int to) {
+            this.state = state;
+            this.source = source;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (state.shouldStop(from)) {
+                return;
+            }
+            if (to - from > ParallelSearch.LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                SearchTask<T> right = new SearchTask<>(state, source, mid, to);
+                right.fork();
+                new SearchTask<>(state, source, from, mid).compute();
+                right.join();
+                return;
+            }
+            scanLeaf();
+        }
+
+        private void scanLeaf() {
+            Predicate<? super T> predicate = state.predicate;
+            int i = from;
+            try {
+                while (i < to) {
+                    int end = Math.min(to, i + state.checkInterval);
+                    for (; i < end; i++) {
+                        T element = source.get(i);
+                        if (predicate.test(element)) {
+                            state.publish(i, element);
+                            i++;
+                            return;
+                        }
+                    }
+                    if (i < to && state.shouldStop(i)) {
+                        return;
+                    }
+                }
+            } finally {
+                state.scanned.add(i - from);
+            }
+        }
+    }
+
+    /**
+     * 基于 SUBSIZED Spliterator 的查找任务：trySplit 得到的前缀在左，当前 Spliterator 剩余部分在右，
+     * 右半部分的起始下标等于左边界加前缀的精确大小
+     */
+    @SuppressWarnings("serial")
+    static final class SpliteratorSearchTask<T> extends RecursiveAction implements Consumer<T> {
+        private final SearchState<T> state;
+        private final Spliterator<T> spliterator;
+        private final int origin;
+        private T current;
+
+        SpliteratorSearchTask(SearchState<T> state, Spliterator<T> spliterator, int origin) {
+            this.state = state;
+            this.spliterator = spliterator;
+            this.origin = origin;
+        }
+
+        @Override
+        public void accept(T element) {
+            current = element;
+        }
+
+        @Override
+        protected void compute() {
+            if (state.shouldStop(origin)) {
+                return;
+            }
+            Spliterator<T> prefix;
+            if (spliterator.estimateSize() > ParallelSearch.LEAF_SIZE && (prefix = spliterator.trySplit()) != null) {
+                int prefixSize = (int) prefix.getExactSizeIfKnown();
+                SpliteratorSearchTask<T> right = new SpliteratorSearchTask<>(state, spliterator, origin + prefixSize);
+                right.fork();
+                new SpliteratorSearchTask<>(state, prefix, origin).compute();
+                right.join();
+                return;
+            }
+            scanLeaf();
+        }
+
+        private void scanLeaf() {
+            Predicate<? super T> predicate = state.predicate;
+            int i = origin;
+            try {
+                while (true) {
+                    for (int n = 0; n < state.checkInterval; n++, i++) {
+                        if (!spliterator.tryAdvance(this)) {
+                            return;
+                        }
+                        if (predicate.test(current)) {
+                            state.publish(i, current);
+                            i++;
+                            return;
+                        }
+                    }
+                    if (state.shouldStop(i)) {
+                        return;
+                    }
+                }
+            } finally {
+                current = null;
+                state.scanned.add(i - origin);
+            }
+        }
+    }
+}
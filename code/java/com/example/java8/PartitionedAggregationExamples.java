@@ -0,0 +1,602 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.ConcurrentGroupingExamples.ConcurrentGrouping;
+import com.example.java8.PrimitiveMapExamples.HashCommon;
+import com.example.java8.StreamAdvancedExamples.Order;
+import com.example.java8.StreamAdvancedExamples.Transaction;
+import com.example.java8.StreamAdvancedExamples.TransactionSummary;
+
+/**
+ * Java 8 分区聚合示例类
+ * 并行 groupingBy 让每个叶子任务各建一个 HashMap，再在先完成的线程上逐层合并，合并时要读取别的核心（多路服务器上
+ * 可能是别的 CPU 插槽）刚写过的缓存行。分区聚合分三步：先按 key 哈希的高位把记录基数分区（radix partition）到
+ * 各分区的连续区间，再由每个任务独占一个分区完成聚合、没有共享状态，最后各分区的 key 互不相交，直接拼接即可
+ */
+public class PartitionedAggregationExamples {
+
+    /**
+     * 1. 基本用法：按类别、按币种聚合，结果与 groupingBy 相同
+     */
+    public static void basicUsage() {
+        System.out.println("=== 分区聚合基本用法 ===");
+
+        List<Order> orders = Arrays.asList(
+            new Order("A001", "Laptop", 1200.0, "Electronics", "2024-01-15"),
+            new Order("A002", "Mouse", 25.0, "Electronics", "2024-01-16"),
+            new Order("A003", "Desk", 300.0, "Furniture", "2024-01-17"),
+            new Order("A004", "Keyboard", 80.0, "Electronics", "2024-01-18"),
+            new Order("A005", "Chair", 150.0, "Furniture", "2024-01-19"),
+            new Order("A006", "Monitor", 400.0, "Electronics", "2024-01-20")
+        );
+        List<Transaction> transactions = Arrays.asList(
+            new Transaction("T001", 100.0, "USD", "2024-01-01"),
+            new Transaction("T002", 200.0, "EUR", "2024-01-02"),
+            new Transaction("T003", 150.0, "USD", "2024-01-03"),
+            new Transaction("T004", 300.0, "GBP", "2024-01-04"),
+            new Transaction("T005", 250.0, "EUR", "2024-01-05")
+        );
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Map<String, Double> totalByCategory = PartitionedAggregation.aggregate(pool, orders,
+                Order::getCategory, Collectors.summingDouble(Order::getPrice));
+            System.out.println("按类别总价: " + new TreeMap<>(totalByCategory));
+            System.out.println("与 groupingBy 一致: " + totalByCategory.equals(orders.stream()
+                .collect(Collectors.groupingBy(Order::getCategory, Collectors.summingDouble(Order::getPrice)))));
+
+            PartitionedMap<String, TransactionSummary> byCurrency = PartitionedAggregation.aggregate(pool,
+                transactions, Transaction::getCurrency, Collectors.collectingAndThen(
+                    Collectors.summarizingDouble(Transaction::getAmount),
+                    s -> new TransactionSummary(s.getSum(), s.getAverage(), (int) s.getCount())));
+            new TreeMap<>(byCurrency).forEach((currency, summary) ->
+                System.out.printf("币种: %s - 总额: %.2f, 平均: %.2f, 笔数: %d%n",
+                    currency, summary.getTotal(), summary.getAverage(), summary.getCount()));
+            System.out.println("执行方式: " + byCurrency.getStrategy());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 2. 分区分布：高基数 key 走基数分区，低基数 key 先在块内预聚合再分区
+     */
+    public static void partitionLayout() {
+        System.out.println("\n=== 分区分布 ===");
+
+        Random random = new Random(42);
+        List<Integer> highCardinality = random.ints(200_000, 0, 100_000).boxed().collect(Collectors.toList());
+        List<Integer> lowCardinality = random.ints(200_000, 0, 8).boxed().collect(Collectors.toList());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (List<Integer> keys : Arrays.asList(highCardinality, lowCardinality)) {
+                PartitionedMap<Integer, Long> counts = PartitionedAggregation.counting(pool, keys, k -> k);
+                int[] sizes = counts.partitionSizes();
+                IntSummaryStatistics stats = IntStream.of(sizes).summaryStatistics();
+                System.out.printf("不同 key %d 个, 执行方式 %s, 分区 %d 个, 每分区 key 数 min/avg/max = %d / %.0f / %d%n",
+                    counts.size(), counts.getStrategy(), sizes.length, stats.getMin(), stats.getAverage(), stats.getMax());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 3. 扩展性基准：与 JDK 收集器和 ConcurrentGroupingExamples 中的收集器对比 1~64 个线程的耗时与加速比
+     * 在多路服务器上建议加 -XX:+UseNUMA 运行，分区表由聚合它的线程分配，会落在该线程所在节点的内存上
+     */
+    public static void scalingBenchmark(int elements, int distinctKeys, int[] parallelisms) {
+        System.out.println("\n=== 扩展性基准（元素数 " + elements + ", 不同 key 数 " + distinctKeys + "）===");
+
+        List<Integer> keys = new Random(7).ints(elements, 0, distinctKeys).boxed().collect(Collectors.toList());
+        Map<String, Function<ForkJoinPool, Map<Integer, Long>>> candidates = new LinkedHashMap<>();
+        candidates.put("groupingBy", pool -> runIn(pool, () -> keys.parallelStream()
+            .collect(Collectors.groupingBy(k -> k, Collectors.counting()))));
+        candidates.put("groupingByConcurrent", pool -> runIn(pool, () -> keys.parallelStream()
+            .collect(Collectors.groupingByConcurrent(k -> k, Collectors.counting()))));
+        candidates.put("countingLocal", pool -> runIn(pool, () -> keys.parallelStream()
+            .collect(ConcurrentGrouping.countingLocal((Integer k) -> k)).toMap()));
+        candidates.put("partitioned", pool -> PartitionedAggregation.counting(pool, keys, k -> k));
+
+        System.out.printf("%-8s", "线程数");
+        candidates.keySet().forEach(name -> System.out.printf("%24s", name));
+        System.out.println();
+
+        Map<Integer, Long> expected = keys.stream().collect(Collectors.groupingBy(k -> k, Collectors.counting()));
+        Map<String, Long> baseline = new HashMap<>();
+        for (int parallelism : parallelisms) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                System.out.printf("%-10d", parallelism);
+                for (Map.Entry<String, Function<ForkJoinPool, Map<Integer, Long>>> candidate : candidates.entrySet()) {
+                    if (!expected.equals(candidate.getValue().apply(pool))) {
+                        throw new IllegalStateException(candidate.getKey() + " 结果不一致");
+                    }
+                    long best = Long.MAX_VALUE;
+                    for (int round = 0; round < 3; round++) {
+                        long start = System.nanoTime();
+                        candidate.getValue().apply(pool);
+                        best = Math.min(best, System.nanoTime() - start);
+                    }
+                    // 加速比相对于同一实现在第一个并行度上的耗时
+                    long fastest = best;
+                    long base = baseline.computeIfAbsent(candidate.getKey(), k -> fastest);
+                    System.out.printf("%15.1fms %5.2fx", best / 1_000_000.0, (double) base / best);
+                }
+                System.out.println();
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static <T> T runIn(ForkJoinPool pool, Supplier<T> task) {
+        return pool.submit(task::get).join();
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        basicUsage();
+        partitionLayout();
+
+        // 可以通过参数放大规模：java PartitionedAggregationExamples <元素数> <key 数>
+        int elements = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int distinctKeys = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        int[] parallelisms = {1, 2, 4, 8, 16, 32, 64};
+        scalingBenchmark(elements, distinctKeys, parallelisms);
+        scalingBenchmark(elements, 16, parallelisms);
+    }
+
+    /**
+     * 执行方式
+     */
+    enum Strategy {
+        /** 原始记录按 key 哈希基数分区，每个分区由一个任务聚合 */
+        RADIX,
+        /** 先在每个块内预聚合，再把部分结果分区合并；低基数时避免同一 key 的所有记录落在一个核心上 */
+        PRE_AGGREGATE
+    }
+
+    /**
+     * 分区聚合
+     * 第一步每个工作线程处理一个连续块：计算 key 和哈希、统计各分区的记录数；
+     * 前缀和之后各块在每个分区内的写入区间互不重叠，第二步各自把记录散列写入按分区连续排列的数组；
+     * 第三步每个分区一个任务，在独占的开放寻址表中聚合。分区号取哈希的高位，表内槽位取低位，两者互不相关
+     */
+    static final class PartitionedAggregation {
+        static final int MIN_RADIX_BITS = 3;
+        /** 分区过多时散列写入的目标位置太分散，TLB 和写合并缓冲都会失效 */
+        static final int MAX_RADIX_BITS = 10;
+        static final int SAMPLE_SIZE = 4096;
+        /** 样本中每个 key 平均出现超过这么多次时改为块内预聚合 */
+        static final int PRE_AGGREGATE_RATIO = 16;
+
+        private PartitionedAggregation() {
+        }
+
+        public static <T, K> PartitionedMap<K, Long> counting(ForkJoinPool pool, List<? extends T> rows,
+                                                             Function<? super T, ? extends K> classifier) {
+            return aggregate(pool, rows, classifier, Collectors.counting());
+        }
+
+        public static <T, K, A, R> PartitionedMap<K, R> aggregate(ForkJoinPool pool, List<? extends T> rows,
+                                                                 Function<? super T, ? extends K> classifier,
+                                                                 Collector<? super T, A, R> downstream) {
+            int parallelism = pool.getParallelism();
+            Strategy strategy = chooseStrategy(rows, classifier);
+            return pool.invoke(new AggregationJob<>(rows, classifier, downstream, parallelism, strategy));
+        }
+
+        /**
+         * 分区数为并行度的 4 倍（取 2 的幂），便于分区任务之间用工作窃取平衡负载
+         */
+        static int radixBits(int parallelism) {
+            int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, parallelism * 4 - 1));
+            return Math.max(MIN_RADIX_BITS, Math.min(MAX_RADIX_BITS, bits));
+        }
+
+        /**
+         * 等距抽样估计基数
+         */
+        static <T, K> Strategy chooseStrategy(List<? extends T> rows, Function<? super T, ? extends K> classifier) {
+            int n = rows.size();
+            int samples = Math.min(n, SAMPLE_SIZE);
+            if (samples == 0) {
+                return Strategy.RADIX;
+            }
+            Set<K> distinct = new HashSet<>();
+            for (int i = 0; i < samples; i++) {
+                distinct.add(classifier.apply(rows.get((int) ((long) n * i / samples))));
+            }
+            return distinct.size() * PRE_AGGREGATE_RATIO <= samples ? Strategy.PRE_AGGREGATE : Strategy.RADIX;
+        }
+
+        static int hash(Object key) {
+            return HashCommon.mix(key.hashCode());
+        }
+    }
+
+    /**
+     * 一次聚合作业：三个阶段之间用 invokeAll 作为屏障
+     */
+    private static final class AggregationJob<T, K, A, R> extends RecursiveTask<PartitionedMap<K, R>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends T> rows;
+        private final Function<? super T, ? extends K> classifier;
+        private final Collector<? super T, A, R> downstream;
+        private final int workers;
+        private final Strategy strategy;
+
+        AggregationJob(List<? extends T> rows, Function<? super T, ? extends K> classifier,
+                       Collector<? super T, A, R> downstream, int workers, Strategy strategy) {
+            this.rows = rows;
+            this.classifier = classifier;
+            this.downstream = downstream;
+            this.workers = workers;
+            this.strategy = strategy;
+        }
+
+        @Override
+        protected PartitionedMap<K, R> compute() {
+            int n = rows.size();
+            int bits = PartitionedAggregation.radixBits(workers);
+            int partitions = 1 << bits;
+
+            // 1. 每个工作线程处理一个连续块，得到各分区的条目数
+            List<ScatterChunk<T, K, A>> chunks = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                chunks.add(new ScatterChunk<>(rows, classifier, downstream, strategy, bits,
+                    (int) ((long) n * w / workers), (int) ((long) n * (w + 1) / workers)));
+            }
+            invokeAll(chunks.stream().map(c -> ForkJoinTask.adapt(c::prepare)).collect(Collectors.toList()));
+
+            // 前缀和：分区 p 的条目连续存放，块 c 在分区 p 内的写入起点排在块 c-1 之后
+            int[] partitionStart = new int[partitions + 1];
+            int position = 0;
+            for (int p = 0; p < partitions; p++) {
+                partitionStart[p] = position;
+                for (ScatterChunk<T, K, A> chunk : chunks) {
+                    chunk.cursor[p] = position;
+                    position += chunk.histogram[p];
+                }
+            }
+            partitionStart[partitions] = position;
+
+            // 2. 各块只写自己的区间，块与块之间没有共享的写入位置
+            Object[] keys = new Object[position];
+            int[] hashes = new int[position];
+            Object[] items = new Object[position];
+            invokeAll(chunks.stream().map(c -> ForkJoinTask.adapt(() -> c.scatter(keys, hashes, items)))
+                .collect(Collectors.toList()));
+
+            // 3. 每个分区一个任务，表在聚合它的线程上分配
+            @SuppressWarnings("unchecked")
+            PartitionTable<K, R>[] tables = (PartitionTable<K, R>[]) new PartitionTable<?, ?>[partitions];
+            List<ForkJoinTask<?>> partitionTasks = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                int partition = p;
+                partitionTasks.add(ForkJoinTask.adapt(() -> tables[partition] = PartitionTable.build(
+                    keys, hashes, items, partitionStart[partition], partitionStart[partition + 1],
+                    downstream, strategy == Strategy.PRE_AGGREGATE)));
+            }
+            invokeAll(partitionTasks);
+            return new PartitionedMap<>(tables, bits, strategy);
+        }
+    }
+
+    /**
+     * 一个工作线程负责的连续块
+     * RADIX 方式下条目是原始记录；PRE_AGGREGATE 方式下先在块内聚合，条目是每个 key 的部分累加器
+     */
+    private static final class ScatterChunk<T, K, A> {
+        private final List<? extends T> rows;
+        private final Function<? super T, ? extends K> classifier;
+        private final Collector<? super T, A, ?> downstream;
+        private final Strategy strategy;
+        private final int shift;
+        private final int from;
+        private final int to;
+        final int[] histogram;
+        final int[] cursor;
+        private Object[] localKeys;
+        private int[] localHashes;
+        private Object[] localItems;
+        private int count;
+
+        ScatterChunk(List<? extends T> rows, Function<? super T, ? extends K> classifier,
+                     Collector<? super T, A, ?> downstream, Strategy strategy, int bits, int from, int to) {
+            this.rows = rows;
+            this.classifier = classifier;
+            this.downstream = downstream;
+            this.strategy = strategy;
+            this.shift = 32 - bits;
+            this.from = from;
+            this.to = to;
+            this.histogram = new int[1 << bits];
+            this.cursor = new int[1 << bits];
+        }
+
+        void prepare() {
+            if (strategy == Strategy.PRE_AGGREGATE) {
+                PartitionTable<K, A> local = new PartitionTable<>(16);
+                BiConsumer<A, ? super T> accumulator = downstream.accumulator();
+                Supplier<A> supplier = downstream.supplier();
+                for (int i = from; i < to; i++) {
+                    T row = rows.get(i);
+                    K key = requireKey(classifier.apply(row));
+                    accumulator.accept(local.computeIfAbsent(key, PartitionedAggregation.hash(key), supplier), row);
+                }
+                count = local.size();
+                localKeys = new Object[count];
+                localHashes = new int[count];
+                localItems = new Object[count];
+                int[] index = {0};
+                local.forEachSlot((key, hash, value) -> {
+                    localKeys[index[0]] = key;
+                    localHashes[index[0]] = hash;
+                    localItems[index[0]++] = value;
+                });
+            } else {
+                count = to - from;
+                localKeys = new Object[count];
+                localHashes = new int[count];
+                localItems = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    T row = rows.get(from + i);
+                    K key = requireKey(classifier.apply(row));
+                    localKeys[i] = key;
+                    localHashes[i] = PartitionedAggregation.hash(key);
+                    localItems[i] = row;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                histogram[localHashes[i] >>> shift]++;
+            }
+        }
+
+        void scatter(Object[] keys, int[] hashes, Object[] items) {
+            for (int i = 0; i < count; i++) {
+                int position = cursor[localHashes[i] >>> shift]++;
+                keys[position] = localKeys[i];
+                hashes[position] = localHashes[i];
+                items[position] = localItems[i];
+            }
+            localKeys = null;
+            localHashes = null;
+            localItems = null;
+        }
+
+        private static <K> K requireKey(K key) {
+            // 与 groupingBy 一致，不允许 null key
+            return Objects.requireNonNull(key, "分组 key 不能为 null");
+        }
+    }
+
+    @FunctionalInterface
+    interface SlotConsumer<K, V> {
+        void accept(K key, int hash, V value);
+    }
+
+    /**
+     * 单个分区的开放寻址表，保存 key 的哈希以便扩容和比较时不再调用 hashCode
+     * 只在一个任务内构建，构建完成后只读
+     */
+    static final class PartitionTable<K, V> {
+        private Object[] keys;
+        private int[] hashes;
+        private Object[] values;
+        private int mask;
+        private int size;
+        private int maxFill;
+
+        PartitionTable(int expectedSize) {
+            int capacity = HashCommon.arraySize(expectedSize, HashCommon.DEFAULT_LOAD_FACTOR);
+            allocate(capacity);
+        }
+
+        /**
+         * 聚合分区 [from, to) 中的条目；preAggregated 为 true 时条目是部分累加器，用 combiner 合并
+         */
+        @SuppressWarnings("unchecked")
+        static <T, K, A, R> PartitionTable<K, R> build(Object[] keys, int[] hashes, Object[] items, int from, int to,
+                                                      Collector<? super T, A, R> downstream, boolean preAggregated) {
+            PartitionTable<K, Object> table = new PartitionTable<>(Math.min(to - from, 1 << 12));
+            Supplier<A> supplier = downstream.supplier();
+            BiConsumer<A, ? super T> accumulator = downstream.accumulator();
+            BinaryOperator<A> combiner = downstream.combiner();
+            for (int i = from; i < to; i++) {
+                K key = (K) keys[i];
+                int slot = table.find(key, hashes[i]);
+                if (slot >= 0) {
+                    if (preAggregated) {
+                        table.values[slot] = combiner.apply((A) table.values[slot], (A) items[i]);
+                    } else {
+                        accumulator.accept((A) table.values[slot], (T) items[i]);
+                    }
+                } else if (preAggregated) {
+                    table.insert(key, hashes[i], items[i]);
+                } else {
+                    A container = supplier.get();
+                    accumulator.accept(container, (T) items[i]);
+                    table.insert(key, hashes[i], container);
+                }
+            }
+            if (!downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+                Function<A, R> finisher = downstream.finisher();
+                for (int slot = 0; slot < table.keys.length; slot++) {
+                    if (table.keys[slot] != null) {
+                        table.values[slot] = finisher.apply((A) table.values[slot]);
+                    }
+                }
+            }
+            return (PartitionTable<K, R>) (PartitionTable<K, ?>) table;
+        }
+
+        int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(Object key, int hash) {
+            int slot = find(key, hash);
+            return slot >= 0 ? (V) values[slot] : null;
+        }
+
+        /**
+         * 只看 key 是否占有槽位，值为 null（例如 finisher 返回 null）的 key 也算存在
+         */
+        boolean containsKey(Object key, int hash) {
+            return find(key, hash) >= 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        V computeIfAbsent(K key, int hash, Supplier<? extends V> factory) {
+            int slot = find(key, hash);
+            if (slot >= 0) {
+                return (V) values[slot];
+            }
+            V value = factory.get();
+            insert(key, hash, value);
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEachSlot(SlotConsumer<? super K, ? super V> action) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != null) {
+                    action.accept((K) keys[slot], hashes[slot], (V) values[slot]);
+                }
+            }
+        }
+
+        /**
+         * 返回 key 所在的槽位，不存在时返回 -1
+         */
+        private int find(Object key, int hash) {
+            int slot = hash & mask;
+            Object current;
+            while ((current = keys[slot]) != null) {
+                if (hashes[slot] == hash && current.equals(key)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void insert(Object key, int hash, Object value) {
+            int slot = hash & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            hashes[slot] = hash;
+            values[slot] = value;
+            if (++size >= maxFill) {
+                rehash(keys.length * 2);
+            }
+        }
+
+        private void rehash(int capacity) {
+            Object[] oldKeys = keys;
+            int[] oldHashes = hashes;
+            Object[] oldValues = values;
+            allocate(capacity);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = oldHashes[i] & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    hashes[slot] = oldHashes[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            keys = new Object[capacity];
+            hashes = new int[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+            maxFill = HashCommon.maxFill(capacity, HashCommon.DEFAULT_LOAD_FACTOR);
+        }
+    }
+
+    /**
+     * 拼接后的结果：各分区的 key 互不相交，查询时按哈希高位找到分区，不需要把所有条目复制到一个 HashMap
+     * 只读，修改操作抛出 UnsupportedOperationException
+     */
+    static final class PartitionedMap<K, V> extends AbstractMap<K, V> {
+        private final PartitionTable<K, V>[] tables;
+        private final int shift;
+        private final Strategy strategy;
+        private final int size;
+
+        PartitionedMap(PartitionTable<K, V>[] tables, int bits, Strategy strategy) {
+            this.tables = tables;
+            this.shift = 32 - bits;
+            this.strategy = strategy;
+            this.size = Stream.of(tables).mapToInt(PartitionTable::size).sum();
+        }
+
+        public Strategy getStrategy() {
+            return strategy;
+        }
+
+        public int[] partitionSizes() {
+            return Stream.of(tables).mapToInt(PartitionTable::size).toArray();
+        }
+
+        @Override
+        public V get(Object key) {
+            if (key == null) {
+                return null;
+            }
+            int hash = PartitionedAggregation.hash(key);
+            return tables[hash >>> shift].get(key, hash);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            if (key == null) {
+                return false;
+            }
+            int hash = PartitionedAggregation.hash(key);
+            return tables[hash >>> shift].containsKey(key, hash);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    List<Entry<K, V>> entries = new ArrayList<>(size);
+                    for (PartitionTable<K, V> table : tables) {
+                        table.forEachSlot((key, hash, value) -> entries.add(new SimpleImmutableEntry<>(key, value)));
+                    }
+                    return Collections.unmodifiableList(entries).iterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,713 @@
+package com.example.java8;
+
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * Java 8 管道事件示例类
+ * 仿照 JFR 自定义事件记录并行管道的执行过程：管道开始/结束、每次 Spliterator 拆分（大小与深度）、
+ * 每个叶子任务的执行（线程与耗时）以及收集器的 combine 步骤，用来诊断数据倾斜和过度拆分。
+ * Java 8 的标准 API 中没有 jdk.jfr，这里用一个轻量的事件记录器提供相同的事件结构和 begin/end/commit 用法
+ */
+public class PipelineEventsExamples {
+
+    /**
+     * 1. 记录一次并行求和：与 advancedParallelStreamUsage 中的管道相同
+     */
+    public static void recordParallelSum() throws Exception {
+        System.out.println("=== 记录并行管道 ===");
+
+        List<Integer> numbers = IntStream.rangeClosed(1, 1_000_000).boxed().collect(Collectors.toList());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        // 先预热一次，避免把首个叶子任务的 JIT 编译时间误判为倾斜
+        for (int i = 0; i < 3; i++) {
+            Recording warmup = EventRecorder.start(RecordingSettings.defaults());
+            pool.submit(() -> TracedStreams.parallelStream(numbers).mapToLong(Integer::longValue).sum()).get();
+            warmup.stop();
+        }
+        try (Recording recording = EventRecorder.start(RecordingSettings.defaults())) {
+            long sum = pool.submit(() -> TracedStreams.execute("parallelSum",
+                () -> TracedStreams.parallelStream(numbers).mapToLong(Integer::longValue).sum())).get();
+            System.out.println("并行处理结果: " + sum);
+
+            List<PipelineEvent> events = recording.stop();
+            System.out.println("记录到 " + events.size() + " 个事件，前 5 个:");
+            events.stream().limit(5).forEach(e -> System.out.println("  " + e));
+            System.out.println(RecordingAnalysis.of(events).summary());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 2. 诊断倾斜：最后八分之一元素的处理代价是其余元素的 20 倍，叶子任务耗时明显不均
+     */
+    public static void diagnoseSkew() throws Exception {
+        System.out.println("\n=== 诊断数据倾斜 ===");
+
+        List<Integer> numbers = IntStream.range(0, 20_000).boxed().collect(Collectors.toList());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (Recording recording = EventRecorder.start(RecordingSettings.defaults())) {
+            Map<Boolean, Long> counts = pool.submit(() -> TracedStreams.execute("skewed", () ->
+                TracedStreams.parallelStream(numbers)
+                    .filter(n -> expensiveCheck(n, n < 17_500 ? 10 : 200))
+                    .collect(TracedStreams.traced(Collectors.partitioningBy(n -> n % 2 == 0, Collectors.counting())))
+            )).get();
+            System.out.println("结果: " + counts);
+            System.out.println(RecordingAnalysis.of(recording.stop()).summary());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 3. 诊断过度拆分：很小的输入也被拆到很深，叶子任务只处理几个元素
+     */
+    public static void diagnoseOverSplitting() throws Exception {
+        System.out.println("\n=== 诊断过度拆分 ===");
+
+        List<String> words = Arrays.asList("Hello", "World", "Java", "Stream", "Parallel", "Processing",
+            "Spliterator", "ForkJoin", "Collector", "Combiner", "Leaf", "Task");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        RecordingSettings settings = RecordingSettings.defaults()
+            .threshold(LeafTaskEvent.class, 0)
+            .enabled(PipelineExecutionEvent.class, true);
+        try (Recording recording = EventRecorder.start(settings)) {
+            Map<String, Integer> lengths = pool.submit(() -> TracedStreams.execute("wordLengths", () ->
+                TracedStreams.parallelStream(words)
+                    .collect(TracedStreams.traced(Collectors.toMap(w -> w, String::length)))
+            )).get();
+            System.out.println("单词长度映射: " + new TreeMap<>(lengths));
+            System.out.println(RecordingAnalysis.of(recording.stop()).summary());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 4. 未开始记录或事件类型未启用时的开销：对应的事件对象不会被创建
+     */
+    public static void disabledOverhead() {
+        System.out.println("\n=== 未记录时的开销 ===");
+
+        List<Integer> numbers = IntStream.rangeClosed(1, 2_000_000).boxed().collect(Collectors.toList());
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long plain = numbers.parallelStream().mapToLong(Integer::longValue).sum();
+            long plainNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long traced = TracedStreams.execute("untraced",
+                () -> TracedStreams.parallelStream(numbers).mapToLong(Integer::longValue).sum());
+            long tracedNanos = System.nanoTime() - start;
+            System.out.printf("  第 %d 轮: 原始 %.2fms, 包装后(未记录) %.2fms, 结果一致: %b%n",
+                round + 1, plainNanos / 1e6, tracedNanos / 1e6, plain == traced);
+        }
+
+        // 记录进行中但关闭了拆分和叶子事件：包装器仍然存在，但不创建这两类事件、不读时钟
+        RecordingSettings executionOnly = RecordingSettings.defaults()
+            .enabled(SpliteratorSplitEvent.class, false)
+            .enabled(LeafTaskEvent.class, false);
+        try (Recording recording = EventRecorder.start(executionOnly)) {
+            long start = System.nanoTime();
+            TracedStreams.execute("executionOnly",
+                () -> TracedStreams.parallelStream(numbers).mapToLong(Integer::longValue).sum());
+            long nanos = System.nanoTime() - start;
+            System.out.printf("  只记录管道事件: %.2fms, 事件数 %d%n", nanos / 1e6, recording.stop().size());
+        }
+    }
+
+    private static boolean expensiveCheck(int n, int work) {
+        double x = n;
+        for (int i = 0; i < work; i++) {
+            x = Math.sqrt(x + i);
+        }
+        return x > 1;
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) throws Exception {
+        recordParallelSum();
+        diagnoseSkew();
+        diagnoseOverSplitting();
+        disabledOverhead();
+    }
+
+    /**
+     * 事件基类，用法与 jdk.jfr.Event 相同：
+     * <pre>
+     * LeafTaskEvent event = new LeafTaskEvent();
+     * event.begin();
+     * ...
+     * event.end();
+     * if (event.shouldCommit()) { event.elements = n; event.commit(); }
+     * </pre>
+     * 升级到带 JFR 的 JDK 后，把基类换成 jdk.jfr.Event、字段加上 @Label 即可由 JFR 记录
+     */
+    abstract static class PipelineEvent {
+        long startNanos;
+        long durationNanos;
+        String thread;
+
+        void begin() {
+            startNanos = System.nanoTime();
+        }
+
+        void end() {
+            durationNanos = System.nanoTime() - startNanos;
+        }
+
+        /**
+         * 事件类型已启用且耗时达到阈值
+         */
+        boolean shouldCommit() {
+            return EventRecorder.shouldCommit(getClass(), durationNanos);
+        }
+
+        /**
+         * 记录提交线程；事件在别的线程上补记时由调用方事先填好 thread
+         */
+        void commit() {
+            if (thread == null) {
+                thread = Thread.currentThread().getName();
+            }
+            EventRecorder.commit(this);
+        }
+
+        abstract String describe();
+
+        @Override
+        public String toString() {
+            return String.format("%-22s %-30s %9.3fms  %s", getClass().getSimpleName(), thread,
+                durationNanos / 1e6, describe());
+        }
+    }
+
+    /**
+     * 一次管道执行（终端操作）
+     */
+    static final class PipelineExecutionEvent extends PipelineEvent {
+        String pipeline;
+        boolean parallel;
+
+        @Override
+        String describe() {
+            return "pipeline=" + pipeline + ", parallel=" + parallel;
+        }
+    }
+
+    /**
+     * 一次 Spliterator 拆分：拆分前的估计大小、深度和两侧的估计大小
+     */
+    static final class SpliteratorSplitEvent extends PipelineEvent {
+        int depth;
+        long sizeBefore;
+        long prefixSize;
+        long suffixSize;
+
+        @Override
+        String describe() {
+            return "depth=" + depth + ", size=" + sizeBefore + " -> " + prefixSize + " + " + suffixSize;
+        }
+    }
+
+    /**
+     * 一个叶子任务：不再拆分、直接遍历元素的 Spliterator
+     */
+    static final class LeafTaskEvent extends PipelineEvent {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+        int depth;
+        long elements;
+        /** 线程 CPU 时间，不含被抢占的时间；不支持时为 -1 */
+        long cpuNanos = -1;
+        private long cpuStart;
+
+        @Override
+        void begin() {
+            cpuStart = currentCpuNanos();
+            super.begin();
+        }
+
+        @Override
+        void end() {
+            super.end();
+            if (cpuStart >= 0) {
+                cpuNanos = currentCpuNanos() - cpuStart;
+            }
+        }
+
+        private static long currentCpuNanos() {
+            return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+        }
+
+        @Override
+        String describe() {
+            return "depth=" + depth + ", elements=" + elements + ", cpu="
+                + (cpuNanos < 0 ? "n/a" : String.format("%.3fms", cpuNanos / 1e6));
+        }
+    }
+
+    /**
+     * 收集器的一次 combine
+     */
+    static final class CollectorCombineEvent extends PipelineEvent {
+        @Override
+        String describe() {
+            return "combine";
+        }
+    }
+
+    /**
+     * 记录设置：每种事件是否启用以及最小耗时阈值（对应 JFR 的 enabled / threshold）
+     */
+    static final class RecordingSettings {
+        final Map<Class<? extends PipelineEvent>, Boolean> enabled = new HashMap<>();
+        final Map<Class<? extends PipelineEvent>, Long> thresholds = new HashMap<>();
+        int capacity = 1 << 16;
+
+        static RecordingSettings defaults() {
+            RecordingSettings settings = new RecordingSettings();
+            settings.enabled.put(PipelineExecutionEvent.class, true);
+            settings.enabled.put(SpliteratorSplitEvent.class, true);
+            settings.enabled.put(LeafTaskEvent.class, true);
+            settings.enabled.put(CollectorCombineEvent.class, true);
+            return settings;
+        }
+
+        RecordingSettings enabled(Class<? extends PipelineEvent> type, boolean value) {
+            enabled.put(type, value);
+            return this;
+        }
+
+        RecordingSettings threshold(Class<? extends PipelineEvent> type, long nanos) {
+            thresholds.put(type, nanos);
+            return this;
+        }
+
+        RecordingSettings capacity(int events) {
+            capacity = events;
+            return this;
+        }
+    }
+
+    /**
+     * 一次记录：固定容量的环形缓冲区，写满后覆盖最旧的事件（与 JFR 的内存缓冲行为一致）
+     */
+    static final class Recording implements AutoCloseable {
+        private final RecordingSettings settings;
+        private final AtomicReferenceArray<PipelineEvent> ring;
+        private final AtomicLong sequence = new AtomicLong();
+        private volatile boolean stopped;
+
+        Recording(RecordingSettings settings) {
+            this.settings = settings;
+            this.ring = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(2, settings.capacity) * 2 - 1));
+        }
+
+        boolean accepts(Class<? extends PipelineEvent> type, long durationNanos) {
+            return !stopped && settings.enabled.getOrDefault(type, false)
+                && durationNanos >= settings.thresholds.getOrDefault(type, 0L);
+        }
+
+        void add(PipelineEvent event) {
+            long seq = sequence.getAndIncrement();
+            ring.set((int) (seq & (ring.length() - 1)), event);
+        }
+
+        /**
+         * 停止记录并按开始时间返回缓冲区中的事件
+         */
+        List<PipelineEvent> stop() {
+            stopped = true;
+            EventRecorder.detach(this);
+            List<PipelineEvent> events = new ArrayList<>();
+            long end = sequence.get();
+            for (long seq = Math.max(0, end - ring.length()); seq < end; seq++) {
+                PipelineEvent event = ring.get((int) (seq & (ring.length() - 1)));
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+            events.sort(Comparator.comparingLong(e -> e.startNanos));
+            return events;
+        }
+
+        long dropped() {
+            return Math.max(0, sequence.get() - ring.length());
+        }
+
+        @Override
+        public void close() {
+            if (!stopped) {
+                stop();
+            }
+        }
+    }
+
+    /**
+     * 全局事件记录器：同一时刻最多一个活动的 Recording
+     * 没有活动记录时 isRecording 为 false，埋点代码据此跳过事件对象的创建
+     */
+    static final class EventRecorder {
+        private static volatile Recording active;
+
+        private EventRecorder() {
+        }
+
+        static Recording start(RecordingSettings settings) {
+            Recording recording = new Recording(settings);
+            active = recording;
+            return recording;
+        }
+
+        static boolean isRecording() {
+            return active != null;
+        }
+
+        static boolean isEnabled(Class<? extends PipelineEvent> type) {
+            Recording recording = active;
+            return recording != null && recording.accepts(type, Long.MAX_VALUE);
+        }
+
+        static boolean shouldCommit(Class<? extends PipelineEvent> type, long durationNanos) {
+            Recording recording = active;
+            return recording != null && recording.accepts(type, durationNanos);
+        }
+
+        static void commit(PipelineEvent event) {
+            Recording recording = active;
+            if (recording != null) {
+                recording.add(event);
+            }
+        }
+
+        static void detach(Recording recording) {
+            if (active == recording) {
+                active = null;
+            }
+        }
+    }
+
+    /**
+     * 埋点入口：包装 Spliterator 和 Collector，并为终端操作记录管道事件
+     */
+    static final class TracedStreams {
+        private TracedStreams() {
+        }
+
+        /**
+         * 没有活动记录时直接返回普通的并行流
+         */
+        static <T> Stream<T> parallelStream(Collection<T> source) {
+            if (!EventRecorder.isRecording()) {
+                return source.parallelStream();
+            }
+            return parallelStream(source.spliterator());
+        }
+
+        /**
+         * 包装任意 Spliterator 为被追踪的并行流
+         */
+        static <T> Stream<T> parallelStream(Spliterator<T> spliterator) {
+            Trace trace = Trace.open();
+            return StreamSupport.stream(new TracingSpliterator<>(spliterator, 0, trace), true)
+                .onClose(trace::flush);
+        }
+
+        /**
+         * 执行终端操作并记录整体耗时；期间在本线程上创建的流，其短路未提交的叶子事件在结束时补记
+         */
+        static <T> T execute(String pipeline, Supplier<T> terminal) {
+            List<Trace> traces = Trace.beginExecution();
+            PipelineExecutionEvent event = null;
+            if (EventRecorder.isEnabled(PipelineExecutionEvent.class)) {
+                event = new PipelineExecutionEvent();
+                event.pipeline = pipeline;
+                event.parallel = true;
+                event.begin();
+            }
+            try {
+                return terminal.get();
+            } finally {
+                if (event != null) {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.commit();
+                    }
+                }
+                Trace.endExecution(traces);
+            }
+        }
+
+        /**
+         * 包装收集器的 combiner，记录每次 combine 的耗时和线程
+         */
+        static <T, A, R> Collector<T, A, R> traced(Collector<T, A, R> collector) {
+            if (!EventRecorder.isEnabled(CollectorCombineEvent.class)) {
+                return collector;
+            }
+            BinaryOperator<A> combiner = collector.combiner();
+            BinaryOperator<A> tracedCombiner = (left, right) -> {
+                CollectorCombineEvent event = new CollectorCombineEvent();
+                event.begin();
+                A result = combiner.apply(left, right);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.commit();
+                }
+                return result;
+            };
+            return Collector.of(collector.supplier(), collector.accumulator(), tracedCombiner, collector.finisher(),
+                collector.characteristics().toArray(new Collector.Characteristics[0]));
+        }
+    }
+
+    /**
+     * 记录拆分和叶子遍历的 Spliterator 包装器
+     * 叶子任务的耗时包含下游各阶段处理这些元素的时间，正好对应 ForkJoin 中一个叶子任务的执行时间
+     */
+    static final class TracingSpliterator<T> implements Spliterator<T> {
+        private final Spliterator<T> delegate;
+        private final Trace trace;
+        /** 本分片被切分的次数，即它在切分树中的深度；切出的前缀与切分后的自身处于同一深度 */
+        private int depth;
+        private LeafTaskEvent leaf;
+        private boolean leafChecked;
+        private long advanced;
+        private long lastAdvanceNanos;
+        private final AtomicBoolean leafCommitted = new AtomicBoolean();
+
+        TracingSpliterator(Spliterator<T> delegate, int depth, Trace trace) {
+            this.delegate = delegate;
+            this.depth = depth;
+            this.trace = trace;
+        }
+
+        /**
+         * 事件类型未启用（或记录已停止）时不创建事件对象、不读时钟，只做委托和深度计数
+         */
+        @Override
+        public Spliterator<T> trySplit() {
+            if (!EventRecorder.isEnabled(SpliteratorSplitEvent.class)) {
+                Spliterator<T> prefix = delegate.trySplit();
+                if (prefix == null) {
+                    return null;
+                }
+                depth++;
+                return new TracingSpliterator<>(prefix, depth, trace);
+            }
+            SpliteratorSplitEvent event = new SpliteratorSplitEvent();
+            event.begin();
+            long before = delegate.estimateSize();
+            Spliterator<T> prefix = delegate.trySplit();
+            event.end();
+            if (prefix == null) {
+                return null;
+            }
+            if (event.shouldCommit()) {
+                event.depth = depth;
+                event.sizeBefore = before;
+                event.prefixSize = prefix.estimateSize();
+                event.suffixSize = delegate.estimateSize();
+                event.commit();
+            }
+            depth++;
+            return new TracingSpliterator<>(prefix, depth, trace);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (!EventRecorder.isEnabled(LeafTaskEvent.class)) {
+                delegate.forEachRemaining(action);
+                return;
+            }
+            LeafTaskEvent event = new LeafTaskEvent();
+            event.begin();
+            long[] count = {0};
+            delegate.forEachRemaining(t -> {
+                count[0]++;
+                action.accept(t);
+            });
+            event.end();
+            if (event.shouldCommit()) {
+                event.depth = depth;
+                event.elements = count[0];
+                event.commit();
+            }
+        }
+
+        /**
+         * 短路操作逐个 tryAdvance：第一次调用时开始计时，遍历结束时提交；
+         * 短路提前停止时不会再被调用，由 Trace.flush 按最后一次 tryAdvance 的时间补记
+         * 是否追踪只在第一次调用时判断一次：未启用时之后的调用直接委托，不读时钟
+         */
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (!leafChecked) {
+                leafChecked = true;
+                if (EventRecorder.isEnabled(LeafTaskEvent.class)) {
+                    leaf = new LeafTaskEvent();
+                    leaf.thread = Thread.currentThread().getName();
+                    leaf.begin();
+                    trace.started(this);
+                }
+            }
+            if (leaf == null) {
+                return delegate.tryAdvance(action);
+            }
+            if (delegate.tryAdvance(action)) {
+                advanced++;
+                lastAdvanceNanos = System.nanoTime();
+                return true;
+            }
+            leaf.end();
+            commitLeaf(true);
+            return false;
+        }
+
+        /**
+         * 提交 tryAdvance 方式遍历的叶子事件，只提交一次
+         * 补记时在另一个线程上，测不到遍历线程的 CPU 时间，记为 -1
+         */
+        void commitLeaf(boolean exhausted) {
+            if (!leafCommitted.compareAndSet(false, true)) {
+                return;
+            }
+            if (!exhausted) {
+                leaf.durationNanos = advanced > 0 ? lastAdvanceNanos - leaf.startNanos : 0;
+                leaf.cpuNanos = -1;
+            }
+            if (leaf.shouldCommit()) {
+                leaf.depth = depth;
+                leaf.elements = advanced;
+                leaf.commit();
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return delegate.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return delegate.characteristics();
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return delegate.getComparator();
+        }
+    }
+
+    /**
+     * 一条被追踪的流：记录以 tryAdvance 方式开始遍历的分片，短路结束后补记它们的叶子事件
+     * TracedStreams.execute 会登记执行期间在本线程上创建的 Trace，执行结束时统一补记
+     */
+    static final class Trace {
+        private static final ThreadLocal<List<Trace>> EXECUTING = new ThreadLocal<>();
+
+        private final Queue<TracingSpliterator<?>> started = new ConcurrentLinkedQueue<>();
+
+        static Trace open() {
+            Trace trace = new Trace();
+            List<Trace> executing = EXECUTING.get();
+            if (executing != null) {
+                executing.add(trace);
+            }
+            return trace;
+        }
+
+        static List<Trace> beginExecution() {
+            List<Trace> previous = EXECUTING.get();
+            EXECUTING.set(new ArrayList<>());
+            return previous;
+        }
+
+        static void endExecution(List<Trace> previous) {
+            List<Trace> traces = EXECUTING.get();
+            if (previous == null) {
+                EXECUTING.remove();
+            } else {
+                EXECUTING.set(previous);
+            }
+            traces.forEach(Trace::flush);
+        }
+
+        void started(TracingSpliterator<?> spliterator) {
+            started.add(spliterator);
+        }
+
+        /**
+         * 补记尚未提交的叶子事件；已经遍历完并提交过的分片会被跳过
+         */
+        void flush() {
+            for (TracingSpliterator<?> spliterator; (spliterator = started.poll()) != null; ) {
+                spliterator.commitLeaf(false);
+            }
+        }
+    }
+
+    /**
+     * 记录分析：相当于在 JMC 里查看这些事件时关心的指标
+     */
+    static final class RecordingAnalysis {
+        private final List<PipelineEvent> events;
+
+        private RecordingAnalysis(List<PipelineEvent> events) {
+            this.events = events;
+        }
+
+        static RecordingAnalysis of(List<PipelineEvent> events) {
+            return new RecordingAnalysis(events);
+        }
+
+        <E extends PipelineEvent> List<E> ofType(Class<E> type) {
+            return events.stream().filter(type::isInstance).map(type::cast).collect(Collectors.toList());
+        }
+
+        String summary() {
+            List<SpliteratorSplitEvent> splits = ofType(SpliteratorSplitEvent.class);
+            List<LeafTaskEvent> leaves = ofType(LeafTaskEvent.class);
+            List<CollectorCombineEvent> combines = ofType(CollectorCombineEvent.class);
+            StringBuilder sb = new StringBuilder("记录分析:\n");
+            ofType(PipelineExecutionEvent.class).forEach(e ->
+                sb.append(String.format("  管道 %s: %.2fms%n", e.pipeline, e.durationNanos / 1e6)));
+            sb.append(String.format("  拆分 %d 次, 最大深度 %d%n", splits.size(),
+                splits.stream().mapToInt(e -> e.depth + 1).max().orElse(0)));
+            if (!leaves.isEmpty()) {
+                LongSummaryStatistics elements = leaves.stream().mapToLong(e -> e.elements).summaryStatistics();
+                // 优先用 CPU 时间比较叶子任务，线程被抢占的时间不应算作倾斜
+                boolean cpu = leaves.stream().allMatch(e -> e.cpuNanos >= 0);
+                long[] durations = leaves.stream().mapToLong(e -> cpu ? e.cpuNanos : e.durationNanos).sorted().toArray();
+                long median = durations[durations.length / 2];
+                long max = durations[durations.length - 1];
+                sb.append(String.format("  叶子任务 %d 个, 元素数 min/avg/max = %d / %.0f / %d%n",
+                    leaves.size(), elements.getMin(), elements.getAverage(), elements.getMax()));
+                sb.append(String.format("  叶子%s 中位数 %.3fms, 最大 %.3fms, 最慢/中位数 = %.1f%n",
+                    cpu ? " CPU 时间" : "耗时", median / 1e6, max / 1e6, median == 0 ? 0.0 : (double) max / median));
+                Map<String, Double> perThread = leaves.stream().collect(Collectors.groupingBy(e -> e.thread,
+                    TreeMap::new, Collectors.summingDouble(e -> e.durationNanos / 1e6)));
+                sb.append("  各线程叶子耗时(ms): ");
+                perThread.forEach((thread, ms) -> sb.append(String.format("%s=%.2f ", thread, ms)));
+                sb.append('\n');
+                if (median > 0 && (double) max / median > 4 && elements.getAverage() >= 16) {
+                    sb.append("  诊断: 存在明显的慢叶子任务（数据倾斜），考虑按代价拆分\n");
+                }
+                if (elements.getAverage() < 16) {
+                    sb.append("  诊断: 平均每个叶子任务元素过少，拆分开销可能超过收益\n");
+                }
+            }
+            sb.append(String.format("  combine %d 次, 总耗时 %.3fms", combines.size(),
+                combines.stream().mapToLong(e -> e.durationNanos).sum() / 1e6));
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package com.example.java8;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.*;
+import java.util.stream.*;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.example.java8.StreamAdvancedExamples.Transaction;
+
+/**
+ * Java 8 管道度量示例类
+ * 可选开启的埋点层：包装 filter / map / collect 等阶段，记录输入输出元素数、选择率、
+ * 对数分桶的纳秒直方图以及每次调用的线程分配字节数，通过 JMX 和可插拔的 MetricsSink 导出；
+ * 关闭时包装方法直接返回原始的 lambda，不引入任何额外开销
+ */
+public class PipelineMetricsExamples {
+
+    /**
+     * 1. 为交易管道的每个阶段埋点
+     */
+    public static void instrumentedPipeline() {
+        System.out.println("=== 阶段埋点 ===");
+
+        List<Transaction> transactions = generate(200_000);
+        MetricsRegistry metrics = MetricsRegistry.create("transactions", 1);
+
+        Map<String, Double> totals = transactions.stream()
+            .filter(metrics.filter("highValue", t -> t.getAmount() > 150))
+            .filter(metrics.filter("notJpy", t -> !"JPY".equals(t.getCurrency())))
+            .map(metrics.map("toCurrencyAmount", t -> new AbstractMap.SimpleEntry<>(t.getCurrency(), t.getAmount())))
+            .collect(metrics.collector("groupingBy", Collectors.groupingBy(Map.Entry::getKey, TreeMap::new,
+                Collectors.summingDouble(Map.Entry::getValue))));
+
+        totals.forEach((currency, total) -> System.out.printf("  %s: %.2f%n", currency, total));
+        metrics.publishTo(new ConsoleSink());
+    }
+
+    /**
+     * 2. JMX 导出：每个阶段注册为一个 MXBean，可以用 jconsole / VisualVM 查看
+     */
+    public static void jmxExport() throws Exception {
+        System.out.println("\n=== JMX 导出 ===");
+
+        MetricsRegistry metrics = MetricsRegistry.create("jmxDemo", 4);
+        long count = IntStream.range(0, 100_000).boxed()
+            .filter(metrics.filter("even", n -> n % 2 == 0))
+            .map(metrics.map("square", n -> (long) n * n))
+            .count();
+
+        List<ObjectName> names = metrics.registerMBeans();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : names) {
+            System.out.printf("  %s: in=%s, out=%s, selectivity=%.2f, p99=%sns%n", name,
+                server.getAttribute(name, "ElementsIn"), server.getAttribute(name, "ElementsOut"),
+                (Double) server.getAttribute(name, "Selectivity"), server.getAttribute(name, "P99Nanos"));
+        }
+        metrics.unregisterMBeans();
+        System.out.println("  结果数: " + count);
+
+        // 自定义 sink：把快照转成 key=value 行，接入任意监控系统
+        List<String> lines = new ArrayList<>();
+        metrics.publishTo((pipeline, stages) -> stages.forEach(s -> lines.add(
+            pipeline + "." + s.getStage() + ".selectivity=" + String.format("%.3f", s.getSelectivity()))));
+        System.out.println("  自定义 sink 输出: " + lines);
+    }
+
+    /**
+     * 3. 开销：未埋点、埋点但关闭、每 16 次采样一次、每次都采样
+     */
+    public static void overhead(int size) {
+        System.out.println("\n=== 埋点开销（" + size + " 个交易）===");
+
+        List<Transaction> transactions = generate(size);
+        ToDoubleFunction<MetricsRegistry> plain = m -> transactions.stream()
+            .filter(t -> t.getAmount() > 150)
+            .mapToDouble(Transaction::getAmount)
+            .sum();
+        ToDoubleFunction<MetricsRegistry> instrumented = m -> transactions.stream()
+            .filter(m.filter("highValue", t -> t.getAmount() > 150))
+            .mapToDouble(m.toDouble("amount", Transaction::getAmount))
+            .sum();
+
+        time("未埋点", plain, MetricsRegistry::disabled);
+        time("关闭", instrumented, MetricsRegistry::disabled);
+        time("采样 1/16", instrumented, () -> MetricsRegistry.create("overhead", 16));
+        time("采样 1/1", instrumented, () -> MetricsRegistry.create("overhead", 1));
+    }
+
+    private static void time(String label, ToDoubleFunction<MetricsRegistry> pipeline,
+                             Supplier<MetricsRegistry> registries) {
+        long best = Long.MAX_VALUE;
+        double result = 0;
+        for (int round = 0; round < 5; round++) {
+            MetricsRegistry registry = registries.get();
+            long start = System.nanoTime();
+            result = pipeline.applyAsDouble(registry);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  %-10s %7.2fms  结果 %.1f%n", label, best / 1e6, result);
+    }
+
+    private static List<Transaction> generate(int count) {
+        String[] currencies = {"USD", "EUR", "GBP", "JPY"};
+        Random random = new Random(8);
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transactions.add(new Transaction("T" + i, random.nextInt(400), currencies[random.nextInt(4)], "2024-01-01"));
+        }
+        return transactions;
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) throws Exception {
+        instrumentedPipeline();
+        jmxExport();
+        overhead(args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000);
+    }
+
+    /**
+     * 对数-线性分桶的纳秒直方图（HdrHistogram 的简化版）
+     * 小于 64 的值每个值一个桶；更大的值按最高位分组，每组 32 个线性子桶，相对误差约 3%。
+     * 记录是无锁的，可以被多个线程并发调用
+     */
+    static final class NanoHistogram {
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            long value = Math.max(0, nanos);
+            counts.incrementAndGet(indexOf(value));
+            total.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        static int indexOf(long value) {
+            if (value < 2 * SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return shift * SUB_BUCKETS + (int) (value >>> shift);
+        }
+
+        /**
+         * 桶的上界（包含）
+         */
+        static long upperBound(int index) {
+            if (index < 2 * SUB_BUCKETS) {
+                return index;
+            }
+            int shift = index / SUB_BUCKETS - 1;
+            long mantissa = index - (long) shift * SUB_BUCKETS;
+            return ((mantissa + 1) << shift) - 1;
+        }
+
+        long count() {
+            return total.sum();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        double mean() {
+            long n = total.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        long percentile(double p) {
+            long n = total.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p / 100 * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= Math.max(rank, 1)) {
+                    return Math.min(upperBound(i), max());
+                }
+            }
+            return max();
+        }
+    }
+
+    /**
+     * 基于 com.sun.management.ThreadMXBean 的线程分配探针
+     * Java 8 的 getThreadAllocatedBytes(long) 自身会分配一个小数组，启动时测出这部分开销并在每次测量中扣除
+     */
+    static final class AllocationProbe {
+        private static final com.sun.management.ThreadMXBean THREAD_BEAN = threadBean();
+        private static final long PROBE_OVERHEAD = calibrate();
+
+        private AllocationProbe() {
+        }
+
+        static boolean isSupported() {
+            return THREAD_BEAN != null;
+        }
+
+        static long currentThreadAllocatedBytes() {
+            return THREAD_BEAN == null ? 0 : THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        static long delta(long before) {
+            return Math.max(0, currentThreadAllocatedBytes() - before - PROBE_OVERHEAD);
+        }
+
+        private static com.sun.management.ThreadMXBean threadBean() {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+                return null;
+            }
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (!sunBean.isThreadAllocatedMemorySupported()) {
+                return null;
+            }
+            sunBean.setThreadAllocatedMemoryEnabled(true);
+            return sunBean;
+        }
+
+        private static long calibrate() {
+            if (THREAD_BEAN == null) {
+                return 0;
+            }
+            long overhead = Long.MAX_VALUE;
+            for (int i = 0; i < 100; i++) {
+                long before = currentThreadAllocatedBytes();
+                overhead = Math.min(overhead, currentThreadAllocatedBytes() - before);
+            }
+            return overhead;
+        }
+    }
+
+    /**
+     * JMX 管理接口：MXBean 接口必须是 public 的
+     */
+    public interface StageMetricsMXBean {
+        String getStage();
+
+        long getElementsIn();
+
+        long getElementsOut();
+
+        double getSelectivity();
+
+        long getSampledCalls();
+
+        double getMeanNanos();
+
+        long getP50Nanos();
+
+        long getP99Nanos();
+
+        long getMaxNanos();
+
+        double getAllocatedBytesPerCall();
+    }
+
+    /**
+     * 单个阶段的度量：计数器对每个元素都记录，耗时和分配只对采样到的调用记录
+     */
+    static final class StageMetrics implements StageMetricsMXBean {
+        private final String stage;
+        private final int sampleEvery;
+        private final LongAdder in = new LongAdder();
+        private final LongAdder out = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final LongAdder allocationSamples = new LongAdder();
+        private final NanoHistogram histogram = new NanoHistogram();
+
+        StageMetrics(String stage, int sampleEvery) {
+            this.stage = stage;
+            this.sampleEvery = sampleEvery;
+        }
+
+        boolean sample() {
+            return sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+        }
+
+        void recordIn() {
+            in.increment();
+        }
+
+        void recordOut(long n) {
+            out.add(n);
+        }
+
+        void recordCall(long nanos, long bytes) {
+            histogram.record(nanos);
+            if (bytes >= 0) {
+                allocatedBytes.add(bytes);
+                allocationSamples.increment();
+            }
+        }
+
+        @Override public String getStage() { return stage; }
+        @Override public long getElementsIn() { return in.sum(); }
+        @Override public long getElementsOut() { return out.sum(); }
+        @Override public long getSampledCalls() { return histogram.count(); }
+        @Override public double getMeanNanos() { return histogram.mean(); }
+        @Override public long getP50Nanos() { return histogram.percentile(50); }
+        @Override public long getP99Nanos() { return histogram.percentile(99); }
+        @Override public long getMaxNanos() { return histogram.max(); }
+
+        @Override
+        public double getSelectivity() {
+            long n = in.sum();
+            return n == 0 ? 0 : (double) out.sum() / n;
+        }
+
+        @Override
+        public double getAllocatedBytesPerCall() {
+            long samples = allocationSamples.sum();
+            return samples == 0 ? 0 : (double) allocatedBytes.sum() / samples;
+        }
+    }
+
+    /**
+     * 度量输出目标，例如控制台、日志或外部监控系统
+     */
+    @FunctionalInterface
+    interface MetricsSink {
+        void publish(String pipeline, List<StageMetricsMXBean> stages);
+    }
+
+    static final class ConsoleSink implements MetricsSink {
+        @Override
+        public void publish(String pipeline, List<StageMetricsMXBean> stages) {
+            System.out.println("管道 " + pipeline + ":");
+            System.out.printf("  %-18s %10s %10s %8s %9s %8s %8s %9s %10s%n",
+                "阶段", "输入", "输出", "选择率", "采样次数", "p50(ns)", "p99(ns)", "max(ns)", "分配(B/次)");
+            for (StageMetricsMXBean s : stages) {
+                System.out.printf("  %-18s %10d %10d %8.3f %9d %8d %8d %9d %10.1f%n",
+                    s.getStage(), s.getElementsIn(), s.getElementsOut(), s.getSelectivity(), s.getSampledCalls(),
+                    s.getP50Nanos(), s.getP99Nanos(), s.getMaxNanos(), s.getAllocatedBytesPerCall());
+            }
+        }
+    }
+
+    /**
+     * 度量注册表，同时也是埋点包装器的工厂
+     * disabled() 返回的注册表不创建任何度量对象，包装方法原样返回传入的 lambda；
+     * fromSystemProperty 根据 -Dpipeline.metrics=true 决定是否开启
+     */
+    static class MetricsRegistry {
+        private final String pipeline;
+        private final int sampleEvery;
+        private final Map<String, StageMetrics> stages = new ConcurrentHashMap<>();
+        private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+        private final List<ObjectName> registered = new ArrayList<>();
+
+        MetricsRegistry(String pipeline, int sampleEvery) {
+            if (sampleEvery < 1) {
+                throw new IllegalArgumentException("sampleEvery 必须大于 0: " + sampleEvery);
+            }
+            this.pipeline = pipeline;
+            this.sampleEvery = sampleEvery;
+        }
+
+        /**
+         * @param sampleEvery 每多少次调用采样一次耗时和分配（1 表示每次都采样）
+         */
+        public static MetricsRegistry create(String pipeline, int sampleEvery) {
+            return new MetricsRegistry(pipeline, sampleEvery);
+        }
+
+        public static MetricsRegistry disabled() {
+            return DisabledRegistry.INSTANCE;
+        }
+
+        public static MetricsRegistry fromSystemProperty(String pipeline) {
+            return Boolean.getBoolean("pipeline.metrics")
+                ? create(pipeline, Integer.getInteger("pipeline.metrics.sampleEvery", 16))
+                : disabled();
+        }
+
+        public <T> Predicate<T> filter(String stage, Predicate<T> predicate) {
+            StageMetrics m = stage(stage);
+            return t -> {
+                m.recordIn();
+                boolean result;
+                if (m.sample()) {
+                    long bytes = AllocationProbe.currentThreadAllocatedBytes();
+                    long start = System.nanoTime();
+                    result = predicate.test(t);
+                    m.recordCall(System.nanoTime() - start, AllocationProbe.delta(bytes));
+                } else {
+                    result = predicate.test(t);
+                }
+                if (result) {
+                    m.recordOut(1);
+                }
+                return result;
+            };
+        }
+
+        public <T, R> Function<T, R> map(String stage, Function<T, R> mapper) {
+            StageMetrics m = stage(stage);
+            return t -> {
+                m.recordIn();
+                R result;
+                if (m.sample()) {
+                    long bytes = AllocationProbe.currentThreadAllocatedBytes();
+                    long start = System.nanoTime();
+                    result = mapper.apply(t);
+                    m.recordCall(System.nanoTime() - start, AllocationProbe.delta(bytes));
+                } else {
+                    result = mapper.apply(t);
+                }
+                m.recordOut(1);
+                return result;
+            };
+        }
+
+        public <T> ToDoubleFunction<T> toDouble(String stage, ToDoubleFunction<T> mapper) {
+            StageMetrics m = stage(stage);
+            return t -> {
+                m.recordIn();
+                double result;
+                if (m.sample()) {
+                    long bytes = AllocationProbe.currentThreadAllocatedBytes();
+                    long start = System.nanoTime();
+                    result = mapper.applyAsDouble(t);
+                    m.recordCall(System.nanoTime() - start, AllocationProbe.delta(bytes));
+                } else {
+                    result = mapper.applyAsDouble(t);
+                }
+                m.recordOut(1);
+                return result;
+            };
+        }
+
+        /**
+         * 包装收集器：累加器调用计入输入和耗时，输出数取结果的大小（Map / Collection）或 1
+         */
+        public <T, A, R> Collector<T, A, R> collector(String stage, Collector<T, A, R> collector) {
+            StageMetrics m = stage(stage);
+            BiConsumer<A, T> accumulator = collector.accumulator();
+            Function<A, R> finisher = collector.finisher();
+            BiConsumer<A, T> timedAccumulator = (container, t) -> {
+                m.recordIn();
+                if (m.sample()) {
+                    long bytes = AllocationProbe.currentThreadAllocatedBytes();
+                    long start = System.nanoTime();
+                    accumulator.accept(container, t);
+                    m.recordCall(System.nanoTime() - start, AllocationProbe.delta(bytes));
+                } else {
+                    accumulator.accept(container, t);
+                }
+            };
+            Function<A, R> countingFinisher = container -> {
+                R result = finisher.apply(container);
+                m.recordOut(result instanceof Map ? ((Map<?, ?>) result).size()
+                    : result instanceof Collection ? ((Collection<?>) result).size() : 1);
+                return result;
+            };
+            // 去掉 IDENTITY_FINISH，保证 finisher 一定会被调用
+            Set<Collector.Characteristics> characteristics = EnumSet.noneOf(Collector.Characteristics.class);
+            characteristics.addAll(collector.characteristics());
+            characteristics.remove(Collector.Characteristics.IDENTITY_FINISH);
+            return Collector.of(collector.supplier(), timedAccumulator, collector.combiner(), countingFinisher,
+                characteristics.toArray(new Collector.Characteristics[0]));
+        }
+
+        public List<StageMetricsMXBean> snapshot() {
+            List<StageMetricsMXBean> result = new ArrayList<>(stages.values());
+            result.sort(Comparator.comparing(StageMetricsMXBean::getStage, Comparator.comparingInt(order::indexOf)));
+            return result;
+        }
+
+        public void publishTo(MetricsSink sink) {
+            sink.publish(pipeline, snapshot());
+        }
+
+        /**
+         * 把每个阶段注册到平台 MBeanServer：com.example.java8:type=PipelineStage,pipeline=...,name=...
+         */
+        public List<ObjectName> registerMBeans() throws Exception {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (StageMetricsMXBean stage : snapshot()) {
+                ObjectName name = new ObjectName("com.example.java8:type=PipelineStage,pipeline="
+                    + ObjectName.quote(pipeline) + ",name=" + ObjectName.quote(stage.getStage()));
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(stage, name);
+                    registered.add(name);
+                }
+            }
+            return new ArrayList<>(registered);
+        }
+
+        public void unregisterMBeans() throws Exception {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (ObjectName name : registered) {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            }
+            registered.clear();
+        }
+
+        private StageMetrics stage(String stage) {
+            return stages.computeIfAbsent(stage, s -> {
+                order.add(s);
+                return new StageMetrics(s, sampleEvery);
+            });
+        }
+    }
+
+    /**
+     * 关闭状态的注册表：所有包装都是恒等变换
+     */
+    static final class DisabledRegistry extends MetricsRegistry {
+        static final DisabledRegistry INSTANCE = new DisabledRegistry();
+
+        private DisabledRegistry() {
+            super("disabled", 1);
+        }
+
+        @Override
+        public <T> Predicate<T> filter(String stage, Predicate<T> predicate) {
+            return predicate;
+        }
+
+        @Override
+        public <T, R> Function<T, R> map(String stage, Function<T, R> mapper) {
+            return mapper;
+        }
+
+        @Override
+        public <T> ToDoubleFunction<T> toDouble(String stage, ToDoubleFunction<T> mapper) {
+            return mapper;
+        }
+
+        @Override
+        public <T, A, R> Collector<T, A, R> collector(String stage, Collector<T, A, R> collector) {
+            return collector;
+        }
+
+        @Override
+        public List<ObjectName> registerMBeans() {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,965 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.StreamAdvancedExamples.Order;
+import com.example.java8.StreamAdvancedExamples.Transaction;
+
+/**
+ * Java 8 并行前缀扫描示例类
+ * java.util.stream 没有 scan 操作，累计余额、按日期的累计收入只能写顺序循环。
+ * 这里用 ForkJoin 实现两遍的上扫（up-sweep）/下扫（down-sweep）：第一遍自底向上求出每个区间的汇总，
+ * 第二遍自顶向下把左侧区间的汇总作为进位传给右侧，叶子带着进位做局部扫描。
+ * 支持基本类型列、按 key 分组的扫描（例如按币种累计）、收集器形式和分批到达的流式输入
+ */
+public class PrefixScanExamples {
+
+    /**
+     * 1. 基本类型列：累计余额，结果与顺序循环和 Arrays.parallelPrefix 一致
+     */
+    public static void columnScan() {
+        System.out.println("=== 基本类型列的前缀扫描 ===");
+
+        List<Transaction> transactions = sampleTransactions();
+        double[] amounts = transactions.stream().mapToDouble(Transaction::getAmount).toArray();
+        System.out.println("金额:     " + Arrays.toString(amounts));
+        System.out.println("累计余额: " + Arrays.toString(ParallelScan.scan(amounts, Double::sum)));
+        System.out.println("前缀最大: " + Arrays.toString(ParallelScan.scan(amounts, Math::max)));
+        System.out.println("不含自身: " + Arrays.toString(ParallelScan.exclusiveScan(amounts, 0.0, Double::sum)));
+
+        // 以分为单位的 long 列，结果可以精确比较
+        long[] cents = new Random(1).longs(1_000_000, -50_000, 100_000).toArray();
+        long[] expected = cents.clone();
+        for (int i = 1; i < expected.length; i++) {
+            expected[i] += expected[i - 1];
+        }
+        long[] jdk = cents.clone();
+        Arrays.parallelPrefix(jdk, Long::sum);
+        long[] scanned = ParallelScan.scan(cents, Long::sum);
+        System.out.println("100 万笔余额与顺序循环一致: " + Arrays.equals(expected, scanned)
+            + ", 与 Arrays.parallelPrefix 一致: " + Arrays.equals(jdk, scanned)
+            + ", 最终余额: " + scanned[scanned.length - 1]);
+    }
+
+    /**
+     * 2. 按 key 扫描：每笔交易所在币种的累计金额
+     */
+    public static void keyedScan() {
+        System.out.println("\n=== 按币种累计 ===");
+
+        List<Transaction> transactions = sampleTransactions();
+        KeyCodes<String> currencies = KeyCodes.encode(transactions, Transaction::getCurrency);
+        double[] amounts = transactions.stream().mapToDouble(Transaction::getAmount).toArray();
+        double[] perCurrency = ParallelScan.scanByKey(amounts, currencies.codes, currencies.size(), 0.0, Double::sum);
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction t = transactions.get(i);
+            System.out.printf("%s %s %s %8.2f -> %s 累计 %8.2f%n",
+                t.getId(), t.getDate(), t.getCurrency(), t.getAmount(), t.getCurrency(), perCurrency[i]);
+        }
+
+        // 大输入上与顺序 HashMap 循环对比
+        int n = 1_000_000;
+        Random random = new Random(3);
+        String[] names = {"USD", "EUR", "GBP", "JPY", "CNY", "CHF"};
+        List<Transaction> large = IntStream.range(0, n)
+            .mapToObj(i -> new Transaction("T" + i, random.nextInt(100_000) / 100.0,
+                names[random.nextInt(names.length)], "2024-01-01"))
+            .collect(Collectors.toList());
+        KeyCodes<String> codes = KeyCodes.encode(large, Transaction::getCurrency);
+        long[] largeCents = large.stream().mapToLong(t -> Math.round(t.getAmount() * 100)).toArray();
+
+        long start = System.nanoTime();
+        long[] sequential = new long[n];
+        Map<String, Long> running = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            sequential[i] = running.merge(large.get(i).getCurrency(), largeCents[i], Long::sum);
+        }
+        long sequentialNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long[] parallel = ParallelScan.scanByKey(largeCents, codes.codes, codes.size(), 0L, Long::sum);
+        long parallelNanos = System.nanoTime() - start;
+        System.out.printf("100 万笔: 顺序 HashMap 循环 %.2fms, 并行按 key 扫描 %.2fms, 结果一致: %b%n",
+            sequentialNanos / 1e6, parallelNanos / 1e6, Arrays.equals(sequential, parallel));
+    }
+
+    /**
+     * 3. 收集器形式：按日期排序后的累计收入、按类别的累计收入
+     */
+    public static void scanCollectors() {
+        System.out.println("\n=== 扫描收集器 ===");
+
+        List<Order> orders = Arrays.asList(
+            new Order("A001", "Laptop", 1200.0, "Electronics", "2024-01-15"),
+            new Order("A002", "Mouse", 25.0, "Electronics", "2024-01-16"),
+            new Order("A003", "Desk", 300.0, "Furniture", "2024-01-16"),
+            new Order("A004", "Keyboard", 80.0, "Electronics", "2024-01-18"),
+            new Order("A005", "Chair", 150.0, "Furniture", "2024-01-18"),
+            new Order("A006", "Monitor", 400.0, "Electronics", "2024-01-20")
+        );
+
+        // 先按日期汇总，再对按日期排序的汇总做扫描
+        TreeMap<String, Double> revenueByDate = orders.stream()
+            .collect(Collectors.groupingBy(Order::getDate, TreeMap::new, Collectors.summingDouble(Order::getPrice)));
+        double[] cumulative = revenueByDate.values().parallelStream()
+            .collect(ScanCollectors.runningSum(Double::doubleValue));
+        int[] index = {0};
+        revenueByDate.forEach((date, revenue) ->
+            System.out.printf("%s 当日 %8.2f 累计 %8.2f%n", date, revenue, cumulative[index[0]++]));
+
+        double[] byCategory = orders.parallelStream()
+            .collect(ScanCollectors.runningSumByKey(Order::getCategory, Order::getPrice));
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            System.out.printf("%s %-11s %8.2f -> 类别累计 %8.2f%n",
+                order.getId(), order.getCategory(), order.getPrice(), byCategory[i]);
+        }
+
+        long[] numbers = LongStream.rangeClosed(1, 100_000).toArray();
+        double[] viaStream = LongStream.of(numbers).parallel().boxed()
+            .collect(ScanCollectors.runningSum(Long::doubleValue));
+        System.out.println("并行流收集 1..100000 的前缀和, 最后一个: " + (long) viaStream[viaStream.length - 1]
+            + ", 第 50000 个: " + (long) viaStream[49_999]);
+    }
+
+    /**
+     * 4. 流式输入：交易分批到达，每批并行扫描，进位跨批次保留
+     */
+    public static void streamingScan() {
+        System.out.println("\n=== 分批流式扫描 ===");
+
+        RunningScanner balance = new RunningScanner();
+        KeyedRunningScanner<String> perCurrency = new KeyedRunningScanner<>();
+        Random random = new Random(5);
+        String[] names = {"USD", "EUR", "GBP"};
+
+        Stream.generate(() -> IntStream.range(0, 100_000)
+                .mapToObj(i -> new Transaction("T", random.nextInt(10_000) / 100.0, names[random.nextInt(3)], "2024-01-01"))
+                .collect(Collectors.toList()))
+            .limit(5)
+            .forEach(batch -> {
+                double[] amounts = batch.stream().mapToDouble(Transaction::getAmount).toArray();
+                double[] running = balance.next(amounts);
+                double[] keyed = perCurrency.next(batch, Transaction::getCurrency, amounts);
+                System.out.printf("批次 %d 条, 批末余额 %.2f, 批末交易的币种累计 %.2f, 各币种合计 %s%n",
+                    batch.size(), running[running.length - 1], keyed[keyed.length - 1], perCurrency.totals());
+            });
+    }
+
+    /**
+     * 5. 基准测试：顺序循环、Arrays.parallelPrefix 与两遍扫描
+     */
+    public static void benchmark(int size) {
+        System.out.println("\n=== 基准测试（" + size + " 个 long，并行度 "
+            + ForkJoinPool.commonPool().getParallelism() + "）===");
+
+        long[] values = new Random(9).longs(size, 0, 1000).toArray();
+        time("顺序循环            ", () -> {
+            long[] out = values.clone();
+            for (int i = 1; i < out.length; i++) {
+                out[i] += out[i - 1];
+            }
+            return out[out.length - 1];
+        });
+        time("Arrays.parallelPrefix", () -> {
+            long[] out = values.clone();
+            Arrays.parallelPrefix(out, Long::sum);
+            return out[out.length - 1];
+        });
+        time("ParallelScan.scan    ", () -> {
+            long[] out = ParallelScan.scan(values, Long::sum);
+            return out[out.length - 1];
+        });
+    }
+
+    private static void time(String label, LongSupplier run) {
+        long result = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 7; round++) {
+            long start = System.nanoTime();
+            result = run.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%s %8.3fms  结果=%d%n", label, best / 1e6, result);
+    }
+
+    private static List<Transaction> sampleTransactions() {
+        return Arrays.asList(
+            new Transaction("T001", 100.0, "USD", "2024-01-01"),
+            new Transaction("T002", 200.0, "EUR", "2024-01-02"),
+            new Transaction("T003", 150.0, "USD", "2024-01-03"),
+            new Transaction("T004", 300.0, "GBP", "2024-01-04"),
+            new Transaction("T005", 250.0, "EUR", "2024-01-05")
+        );
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        columnScan();
+        keyedScan();
+        scanCollectors();
+        streamingScan();
+        benchmark(args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000);
+    }
+
+    /**
+     * 并行前缀扫描（包含自身的 inclusive scan），op 必须满足结合律
+     * 上扫建立一棵区间树并记录每个节点的汇总，下扫时左孩子继承父节点的进位，
+     * 右孩子的进位是 父进位 op 左孩子汇总；第一个叶子没有进位，因此 inclusive 扫描不需要单位元。
+     * 浮点加法不满足严格的结合律，并行结果与顺序循环可能在最后几位上不同
+     */
+    static final class ParallelScan {
+        /** 叶子区间的最小长度，更小的区间拆分开销大于收益 */
+        static final int MIN_GRAIN = 1 << 13;
+
+        private ParallelScan() {
+        }
+
+        public static double[] scan(double[] values, DoubleBinaryOperator op) {
+            double[] out = values.clone();
+            scanInPlace(out, op);
+            return out;
+        }
+
+        public static void scanInPlace(double[] values, DoubleBinaryOperator op) {
+            if (values.length == 0) {
+                return;
+            }
+            DoubleNode root = ForkJoinPool.commonPool().invoke(new DoubleUpSweep(values, op, 0, values.length,
+                grain(values.length)));
+            ForkJoinPool.commonPool().invoke(new DoubleDownSweep(values, op, root, 0, false));
+        }
+
+        /**
+         * 不含自身的 exclusive scan：第 i 个结果是前 i 个元素的汇总，第 0 个是 identity
+         */
+        public static double[] exclusiveScan(double[] values, double identity, DoubleBinaryOperator op) {
+            double[] out = new double[values.length];
+            if (values.length == 0) {
+                return out;
+            }
+            double[] inclusive = scan(values, op);
+            out[0] = identity;
+            System.arraycopy(inclusive, 0, out, 1, values.length - 1);
+            return out;
+        }
+
+        public static long[] scan(long[] values, LongBinaryOperator op) {
+            long[] out = values.clone();
+            scanInPlace(out, op);
+            return out;
+        }
+
+        public static void scanInPlace(long[] values, LongBinaryOperator op) {
+            if (values.length == 0) {
+                return;
+            }
+            LongNode root = ForkJoinPool.commonPool().invoke(new LongUpSweep(values, op, 0, values.length,
+                grain(values.length)));
+            ForkJoinPool.commonPool().invoke(new LongDownSweep(values, op, root, 0, false));
+        }
+
+        /**
+         * 按 key 扫描：结果的第 i 个是 keyCodes[i] 这个 key 到第 i 个元素为止的汇总
+         * key 需要先编码为 [0, keyCount) 的整数（见 KeyCodes）；树的每个节点保存一个长度为 keyCount 的汇总向量，
+         * 适合币种、类别这类低基数的 key
+         */
+        public static double[] scanByKey(double[] values, int[] keyCodes, int keyCount, double identity,
+                                         DoubleBinaryOperator op) {
+            checkKeys(values.length, keyCodes.length);
+            double[] out = values.clone();
+            if (out.length == 0) {
+                return out;
+            }
+            KeyedDoubleNode root = ForkJoinPool.commonPool().invoke(new KeyedDoubleUpSweep(out, keyCodes, keyCount,
+                identity, op, 0, out.length, keyedGrain(out.length, keyCount)));
+            ForkJoinPool.commonPool().invoke(new KeyedDoubleDownSweep(out, keyCodes, identity, op, root, null));
+            return out;
+        }
+
+        public static long[] scanByKey(long[] values, int[] keyCodes, int keyCount, long identity,
+                                       LongBinaryOperator op) {
+            checkKeys(values.length, keyCodes.length);
+            long[] out = values.clone();
+            if (out.length == 0) {
+                return out;
+            }
+            KeyedLongNode root = ForkJoinPool.commonPool().invoke(new KeyedLongUpSweep(out, keyCodes, keyCount,
+                identity, op, 0, out.length, keyedGrain(out.length, keyCount)));
+            ForkJoinPool.commonPool().invoke(new KeyedLongDownSweep(out, keyCodes, identity, op, root, null));
+            return out;
+        }
+
+        /**
+         * 叶子数约为并行度的 4 倍
+         */
+        static int grain(int length) {
+            int leaves = ForkJoinPool.getCommonPoolParallelism() * 4;
+            return Math.max(MIN_GRAIN, length / Math.max(1, leaves));
+        }
+
+        /**
+         * 每个节点多一个 keyCount 长度的向量，叶子不能比 key 数小太多
+         */
+        static int keyedGrain(int length, int keyCount) {
+            return Math.max(grain(length), keyCount * 8);
+        }
+
+        private static void checkKeys(int values, int keys) {
+            if (values != keys) {
+                throw new IllegalArgumentException("值列长度 " + values + " 与 key 列长度 " + keys + " 不一致");
+            }
+        }
+    }
+
+    /**
+     * 区间树节点：[lo, hi) 的汇总；叶子节点没有孩子
+     */
+    static final class DoubleNode {
+        final int lo;
+        final int hi;
+        final DoubleNode left;
+        final DoubleNode right;
+        final double total;
+
+        DoubleNode(int lo, int hi, DoubleNode left, DoubleNode right, double total) {
+            this.lo = lo;
+            this.hi = hi;
+            this.left = left;
+            this.right = right;
+            this.total = total;
+        }
+    }
+
+    /**
+     * 上扫：只读输入，自底向上计算每个节点的汇总
+     */
+    static final class DoubleUpSweep extends RecursiveTask<DoubleNode> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] values;
+        private final DoubleBinaryOperator op;
+        private final int lo;
+        private final int hi;
+        private final int grain;
+
+        DoubleUpSweep(double[] values, DoubleBinaryOperator op, int lo, int hi, int grain) {
+            this.values = values;
+            this.op = op;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        @Override
+        protected DoubleNode compute() {
+            if (hi - lo <= grain) {
+                double total = values[lo];
+                for (int i = lo + 1; i < hi; i++) {
+                    total = op.applyAsDouble(total, values[i]);
+                }
+                return new DoubleNode(lo, hi, null, null, total);
+            }
+            int mid = (lo + hi) >>> 1;
+            DoubleUpSweep leftTask = new DoubleUpSweep(values, op, lo, mid, grain);
+            leftTask.fork();
+            DoubleNode right = new DoubleUpSweep(values, op, mid, hi, grain).compute();
+            DoubleNode left = leftTask.join();
+            return new DoubleNode(lo, hi, left, right, op.applyAsDouble(left.total, right.total));
+        }
+    }
+
+    /**
+     * 下扫：自顶向下传递进位，叶子带进位做局部扫描并写回
+     */
+    static final class DoubleDownSweep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] values;
+        private final DoubleBinaryOperator op;
+        private final DoubleNode node;
+        private final double carry;
+        private final boolean hasCarry;
+
+        DoubleDownSweep(double[] values, DoubleBinaryOperator op, DoubleNode node, double carry, boolean hasCarry) {
+            this.values = values;
+            this.op = op;
+            this.node = node;
+            this.carry = carry;
+            this.hasCarry = hasCarry;
+        }
+
+        @Override
+        protected void compute() {
+            if (node.left == null) {
+                double running = hasCarry ? op.applyAsDouble(carry, values[node.lo]) : values[node.lo];
+                values[node.lo] = running;
+                for (int i = node.lo + 1; i < node.hi; i++) {
+                    running = op.applyAsDouble(running, values[i]);
+                    values[i] = running;
+                }
+                return;
+            }
+            double rightCarry = hasCarry ? op.applyAsDouble(carry, node.left.total) : node.left.total;
+            invokeAll(new DoubleDownSweep(values, op, node.left, carry, hasCarry),
+                new DoubleDownSweep(values, op, node.right, rightCarry, true));
+        }
+    }
+
+    static final class LongNode {
+        final int lo;
+        final int hi;
+        final LongNode left;
+        final LongNode right;
+        final long total;
+
+        LongNode(int lo, int hi, LongNode left, LongNode right, long total) {
+            this.lo = lo;
+            this.hi = hi;
+            this.left = left;
+            this.right = right;
+            this.total = total;
+        }
+    }
+
+    static final class LongUpSweep extends RecursiveTask<LongNode> {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] values;
+        private final LongBinaryOperator op;
+        private final int lo;
+        private final int hi;
+        private final int grain;
+
+        LongUpSweep(long[] values, LongBinaryOperator op, int lo, int hi, int grain) {
+            this.values = values;
+            this.op = op;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        @Override
+        protected LongNode compute() {
+            if (hi - lo <= grain) {
+                long total = values[lo];
+                for (int i = lo + 1; i < hi; i++) {
+                    total = op.applyAsLong(total, values[i]);
+                }
+                return new LongNode(lo, hi, null, null, total);
+            }
+            int mid = (lo + hi) >>> 1;
+            LongUpSweep leftTask = new LongUpSweep(values, op, lo, mid, grain);
+            leftTask.fork();
+            LongNode right = new LongUpSweep(values, op, mid, hi, grain).compute();
+            LongNode left = leftTask.join();
+            return new LongNode(lo, hi, left, right, op.applyAsLong(left.total, right.total));
+        }
+    }
+
+    static final class LongDownSweep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] values;
+        private final LongBinaryOperator op;
+        private final LongNode node;
+        private final long carry;
+        private final boolean hasCarry;
+
+        LongDownSweep(long[] values, LongBinaryOperator op, LongNode node, long carry, boolean hasCarry) {
+            this.values = values;
+            this.op = op;
+            this.node = node;
+            this.carry = carry;
+            this.hasCarry = hasCarry;
+        }
+
+        @Override
+        protected void compute() {
+            if (node.left == null) {
+                long running = hasCarry ? op.applyAsLong(carry, values[node.lo]) : values[node.lo];
+                values[node.lo] = running;
+                for (int i = node.lo + 1; i < node.hi; i++) {
+                    running = op.applyAsLong(running, values[i]);
+                    values[i] = running;
+                }
+                return;
+            }
+            long rightCarry = hasCarry ? op.applyAsLong(carry, node.left.total) : node.left.total;
+            invokeAll(new LongDownSweep(values, op, node.left, carry, hasCarry),
+                new LongDownSweep(values, op, node.right, rightCarry, true));
+        }
+    }
+
+    /**
+     * 按 key 扫描的区间树节点：totals[k] 是区间内 key k 的汇总（没有出现时为 identity）
+     */
+    static final class KeyedDoubleNode {
+        final int lo;
+        final int hi;
+        final KeyedDoubleNode left;
+        final KeyedDoubleNode right;
+        final double[] totals;
+
+        KeyedDoubleNode(int lo, int hi, KeyedDoubleNode left, KeyedDoubleNode right, double[] totals) {
+            this.lo = lo;
+            this.hi = hi;
+            this.left = left;
+            this.right = right;
+            this.totals = totals;
+        }
+    }
+
+    static final class KeyedDoubleUpSweep extends RecursiveTask<KeyedDoubleNode> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] values;
+        private final int[] keys;
+        private final int keyCount;
+        private final double identity;
+        private final DoubleBinaryOperator op;
+        private final int lo;
+        private final int hi;
+        private final int grain;
+
+        KeyedDoubleUpSweep(double[] values, int[] keys, int keyCount, double identity, DoubleBinaryOperator op,
+                           int lo, int hi, int grain) {
+            this.values = values;
+            this.keys = keys;
+            this.keyCount = keyCount;
+            this.identity = identity;
+            this.op = op;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        @Override
+        protected KeyedDoubleNode compute() {
+            if (hi - lo <= grain) {
+                double[] totals = new double[keyCount];
+                Arrays.fill(totals, identity);
+                for (int i = lo; i < hi; i++) {
+                    totals[keys[i]] = op.applyAsDouble(totals[keys[i]], values[i]);
+                }
+                return new KeyedDoubleNode(lo, hi, null, null, totals);
+            }
+            int mid = (lo + hi) >>> 1;
+            KeyedDoubleUpSweep leftTask = new KeyedDoubleUpSweep(values, keys, keyCount, identity, op, lo, mid, grain);
+            leftTask.fork();
+            KeyedDoubleNode right = new KeyedDoubleUpSweep(values, keys, keyCount, identity, op, mid, hi, grain)
+                .compute();
+            KeyedDoubleNode left = leftTask.join();
+            double[] totals = new double[keyCount];
+            for (int k = 0; k < keyCount; k++) {
+                totals[k] = op.applyAsDouble(left.totals[k], right.totals[k]);
+            }
+            return new KeyedDoubleNode(lo, hi, left, right, totals);
+        }
+    }
+
+    /**
+     * 按 key 下扫：进位是一个向量，根节点的进位为空（全部为 identity）
+     */
+    static final class KeyedDoubleDownSweep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] values;
+        private final int[] keys;
+        private final double identity;
+        private final DoubleBinaryOperator op;
+        private final KeyedDoubleNode node;
+        private final double[] carry;
+
+        KeyedDoubleDownSweep(double[] values, int[] keys, double identity, DoubleBinaryOperator op,
+                             KeyedDoubleNode node, double[] carry) {
+            this.values = values;
+            this.keys = keys;
+            this.identity = identity;
+            this.op = op;
+            this.node = node;
+            this.carry = carry;
+        }
+
+        @Override
+        protected void compute() {
+            if (node.left == null) {
+                double[] running = new double[node.totals.length];
+                if (carry != null) {
+                    System.arraycopy(carry, 0, running, 0, running.length);
+                } else {
+                    Arrays.fill(running, identity);
+                }
+                for (int i = node.lo; i < node.hi; i++) {
+                    int k = keys[i];
+                    running[k] = op.applyAsDouble(running[k], values[i]);
+                    values[i] = running[k];
+                }
+                return;
+            }
+            double[] rightCarry;
+            if (carry == null) {
+                rightCarry = node.left.totals;
+            } else {
+                rightCarry = new double[carry.length];
+                for (int k = 0; k < carry.length; k++) {
+                    rightCarry[k] = op.applyAsDouble(carry[k], node.left.totals[k]);
+                }
+            }
+            invokeAll(new KeyedDoubleDownSweep(values, keys, identity, op, node.left, carry),
+                new KeyedDoubleDownSweep(values, keys, identity, op, node.right, rightCarry));
+        }
+    }
+
+    static final class KeyedLongNode {
+        final int lo;
+        final int hi;
+        final KeyedLongNode left;
+        final KeyedLongNode right;
+        final long[] totals;
+
+        KeyedLongNode(int lo, int hi, KeyedLongNode left, KeyedLongNode right, long[] totals) {
+            this.lo = lo;
+            this.hi = hi;
+            this.left = left;
+            this.right = right;
+            this.totals = totals;
+        }
+    }
+
+    static final class KeyedLongUpSweep extends RecursiveTask<KeyedLongNode> {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] values;
+        private final int[] keys;
+        private final int keyCount;
+        private final long identity;
+        private final LongBinaryOperator op;
+        private final int lo;
+        private final int hi;
+        private final int grain;
+
+        KeyedLongUpSweep(long[] values, int[] keys, int keyCount, long identity, LongBinaryOperator op,
+                         int lo, int hi, int grain) {
+            this.values = values;
+            this.keys = keys;
+            this.keyCount = keyCount;
+            this.identity = identity;
+            this.op = op;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        @Override
+        protected KeyedLongNode compute() {
+            if (hi - lo <= grain) {
+                long[] totals = new long[keyCount];
+                Arrays.fill(totals, identity);
+                for (int i = lo; i < hi; i++) {
+                    totals[keys[i]] = op.applyAsLong(totals[keys[i]], values[i]);
+                }
+                return new KeyedLongNode(lo, hi, null, null, totals);
+            }
+            int mid = (lo + hi) >>> 1;
+            KeyedLongUpSweep leftTask = new KeyedLongUpSweep(values, keys, keyCount, identity, op, lo, mid, grain);
+            leftTask.fork();
+            KeyedLongNode right = new KeyedLongUpSweep(values, keys, keyCount, identity, op, mid, hi, grain).compute();
+            KeyedLongNode left = leftTask.join();
+            long[] totals = new long[keyCount];
+            for (int k = 0; k < keyCount; k++) {
+                totals[k] = op.applyAsLong(left.totals[k], right.totals[k]);
+            }
+            return new KeyedLongNode(lo, hi, left, right, totals);
+        }
+    }
+
+    static final class KeyedLongDownSweep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] values;
+        private final int[] keys;
+        private final long identity;
+        private final LongBinaryOperator op;
+        private final KeyedLongNode node;
+        private final long[] carry;
+
+        KeyedLongDownSweep(long[] values, int[] keys, long identity, LongBinaryOperator op,
+                           KeyedLongNode node, long[] carry) {
+            this.values = values;
+            this.keys = keys;
+            this.identity = identity;
+            this.op = op;
+            this.node = node;
+            this.carry = carry;
+        }
+
+        @Override
+        protected void compute() {
+            if (node.left == null) {
+                long[] running = new long[node.totals.length];
+                if (carry != null) {
+                    System.arraycopy(carry, 0, running, 0, running.length);
+                } else {
+                    Arrays.fill(running, identity);
+                }
+                for (int i = node.lo; i < node.hi; i++) {
+                    int k = keys[i];
+                    running[k] = op.applyAsLong(running[k], values[i]);
+                    values[i] = running[k];
+                }
+                return;
+            }
+            long[] rightCarry;
+            if (carry == null) {
+                rightCarry = node.left.totals;
+            } else {
+                rightCarry = new long[carry.length];
+                for (int k = 0; k < carry.length; k++) {
+                    rightCarry[k] = op.applyAsLong(carry[k], node.left.totals[k]);
+                }
+            }
+            invokeAll(new KeyedLongDownSweep(values, keys, identity, op, node.left, carry),
+                new KeyedLongDownSweep(values, keys, identity, op, node.right, rightCarry));
+        }
+    }
+
+    /**
+     * key 的字典编码：按首次出现的顺序编号为 0, 1, 2, ...
+     */
+    static final class KeyCodes<K> {
+        final int[] codes;
+        final List<K> keys;
+
+        private KeyCodes(int[] codes, List<K> keys) {
+            this.codes = codes;
+            this.keys = keys;
+        }
+
+        static <T, K> KeyCodes<K> encode(List<T> rows, Function<? super T, ? extends K> classifier) {
+            int[] codes = new int[rows.size()];
+            Map<K, Integer> dictionary = new LinkedHashMap<>();
+            for (int i = 0; i < rows.size(); i++) {
+                K key = classifier.apply(rows.get(i));
+                Integer code = dictionary.get(key);
+                if (code == null) {
+                    code = dictionary.size();
+                    dictionary.put(key, code);
+                }
+                codes[i] = code;
+            }
+            return new KeyCodes<>(codes, new ArrayList<>(dictionary.keySet()));
+        }
+
+        int size() {
+            return keys.size();
+        }
+    }
+
+    /**
+     * 扫描收集器：结果按遭遇顺序排列
+     * 叶子任务累加时就在本地块内做扫描并记下块的汇总（上扫），combiner 只按顺序拼接块，
+     * finisher 顺序求出每个块的进位后，再并行地把进位加到各块上（下扫）
+     */
+    static final class ScanCollectors {
+        private ScanCollectors() {
+        }
+
+        public static <T> Collector<T, ?, double[]> runningSum(ToDoubleFunction<? super T> mapper) {
+            return Collector.of(
+                ScanChunks::new,
+                (chunks, t) -> chunks.add(mapper.applyAsDouble(t)),
+                ScanChunks::append,
+                ScanChunks::finish);
+        }
+
+        /**
+         * 每个元素所在 key 的累计值，key 不需要预先编码
+         */
+        public static <T, K> Collector<T, ?, double[]> runningSumByKey(Function<? super T, ? extends K> classifier,
+                                                                      ToDoubleFunction<? super T> mapper) {
+            return Collector.<T, KeyedScanChunks<K>, double[]>of(
+                KeyedScanChunks::new,
+                (chunks, t) -> chunks.add(classifier.apply(t), mapper.applyAsDouble(t)),
+                KeyedScanChunks::append,
+                KeyedScanChunks::finish);
+        }
+    }
+
+    /**
+     * 局部扫描过的块：values 已是块内前缀和，total 是块的汇总
+     */
+    static final class ScanChunk {
+        double[] values = new double[16];
+        int size;
+        double total;
+
+        void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            total += value;
+            values[size++] = total;
+        }
+    }
+
+    static final class ScanChunks {
+        private final List<ScanChunk> chunks = new ArrayList<>();
+
+        void add(double value) {
+            if (chunks.isEmpty()) {
+                chunks.add(new ScanChunk());
+            }
+            chunks.get(chunks.size() - 1).add(value);
+        }
+
+        ScanChunks append(ScanChunks right) {
+            chunks.addAll(right.chunks);
+            return this;
+        }
+
+        double[] finish() {
+            int[] offsets = new int[chunks.size() + 1];
+            double[] carries = new double[chunks.size()];
+            for (int c = 0; c < chunks.size(); c++) {
+                offsets[c + 1] = offsets[c] + chunks.get(c).size;
+                if (c > 0) {
+                    carries[c] = carries[c - 1] + chunks.get(c - 1).total;
+                }
+            }
+            double[] out = new double[offsets[chunks.size()]];
+            IntStream.range(0, chunks.size()).parallel().forEach(c -> {
+                ScanChunk chunk = chunks.get(c);
+                double carry = carries[c];
+                for (int i = 0; i < chunk.size; i++) {
+                    out[offsets[c] + i] = carry + chunk.values[i];
+                }
+            });
+            return out;
+        }
+    }
+
+    /**
+     * 按 key 的局部扫描块：每个元素记下 key 和块内该 key 的前缀和，totals 是块内每个 key 的汇总
+     */
+    static final class KeyedScanChunk<K> {
+        final List<K> keys = new ArrayList<>();
+        double[] values = new double[16];
+        final Map<K, Double> totals = new HashMap<>();
+
+        void add(K key, double value) {
+            int size = keys.size();
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            keys.add(key);
+            values[size] = totals.merge(key, value, Double::sum);
+        }
+    }
+
+    static final class KeyedScanChunks<K> {
+        private final List<KeyedScanChunk<K>> chunks = new ArrayList<>();
+
+        void add(K key, double value) {
+            if (chunks.isEmpty()) {
+                chunks.add(new KeyedScanChunk<>());
+            }
+            chunks.get(chunks.size() - 1).add(key, value);
+        }
+
+        KeyedScanChunks<K> append(KeyedScanChunks<K> right) {
+            chunks.addAll(right.chunks);
+            return this;
+        }
+
+        double[] finish() {
+            int[] offsets = new int[chunks.size() + 1];
+            List<Map<K, Double>> carries = new ArrayList<>();
+            Map<K, Double> carry = new HashMap<>();
+            for (int c = 0; c < chunks.size(); c++) {
+                offsets[c + 1] = offsets[c] + chunks.get(c).keys.size();
+                carries.add(carry);
+                Map<K, Double> next = new HashMap<>(carry);
+                chunks.get(c).totals.forEach((k, total) -> next.merge(k, total, Double::sum));
+                carry = next;
+            }
+            double[] out = new double[offsets[chunks.size()]];
+            IntStream.range(0, chunks.size()).parallel().forEach(c -> {
+                KeyedScanChunk<K> chunk = chunks.get(c);
+                Map<K, Double> chunkCarry = carries.get(c);
+                for (int i = 0; i < chunk.keys.size(); i++) {
+                    out[offsets[c] + i] = chunkCarry.getOrDefault(chunk.keys.get(i), 0.0) + chunk.values[i];
+                }
+            });
+            return out;
+        }
+    }
+
+    /**
+     * 分批输入的累计和：每批用 ParallelScan 扫描，再加上之前所有批次的汇总
+     * 批次必须按顺序提交
+     */
+    static final class RunningScanner {
+        private double carry;
+
+        double[] next(double[] batch) {
+            double[] out = ParallelScan.scan(batch, Double::sum);
+            if (carry != 0) {
+                double c = carry;
+                IntStream.range(0, out.length).parallel().forEach(i -> out[i] += c);
+            }
+            if (out.length > 0) {
+                carry = out[out.length - 1];
+            }
+            return out;
+        }
+
+        double total() {
+            return carry;
+        }
+    }
+
+    /**
+     * 分批输入的按 key 累计和：跨批次保留每个 key 的汇总，新出现的 key 追加编码
+     */
+    static final class KeyedRunningScanner<K> {
+        private final Map<K, Integer> dictionary = new LinkedHashMap<>();
+        private double[] carries = new double[0];
+
+        <T> double[] next(List<T> batch, Function<? super T, ? extends K> classifier, double[] values) {
+            int[] codes = new int[batch.size()];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = dictionary.computeIfAbsent(classifier.apply(batch.get(i)), k -> dictionary.size());
+            }
+            if (carries.length < dictionary.size()) {
+                carries = Arrays.copyOf(carries, dictionary.size());
+            }
+            double[] out = ParallelScan.scanByKey(values, codes, dictionary.size(), 0.0, Double::sum);
+            double[] previous = carries.clone();
+            IntStream.range(0, out.length).parallel().forEach(i -> out[i] += previous[codes[i]]);
+            // 从后往前，每个 key 最后一次出现的位置就是该 key 新的汇总；本批没有出现的 key 保持不变
+            boolean[] updated = new boolean[carries.length];
+            for (int i = out.length - 1, remaining = carries.length; i >= 0 && remaining > 0; i--) {
+                if (!updated[codes[i]]) {
+                    updated[codes[i]] = true;
+                    carries[codes[i]] = out[i];
+                    remaining--;
+                }
+            }
+            return out;
+        }
+
+        Map<K, String> totals() {
+            Map<K, String> totals = new LinkedHashMap<>();
+            dictionary.forEach((key, code) -> totals.put(key, String.format("%.2f", carries[code])));
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,1195 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.StreamAdvancedExamples.Order;
+
+/**
+ * Java 8 开放寻址基本类型 Map 示例类
+ * 展示线性探测的 Object2Int / Object2Long / Object2Double / Int2Object / Int2Int Map，
+ * 它们没有每个条目的 Node 对象，也不装箱值，并提供可以直接在 Stream 中使用的 Collector
+ */
+public class PrimitiveMapExamples {
+
+    /**
+     * 1. 单词 → 长度：替代 toConcurrentMap(word -> word, String::length, ...)
+     */
+    public static void wordLengthMap() {
+        System.out.println("=== 单词长度映射 ===");
+
+        List<String> words = Arrays.asList("Hello", "World", "Java", "Stream", "Parallel", "Processing");
+
+        Object2IntOpenHashMap<String> wordLengthMap = words.parallelStream()
+            .collect(Object2IntOpenHashMap.toMap(word -> word, String::length, (existing, replacement) -> existing));
+
+        System.out.println("单词长度映射: " + wordLengthMap);
+        System.out.println("Stream 的长度: " + wordLengthMap.getInt("Stream"));
+        System.out.println("不存在的单词返回默认值: " + wordLengthMap.getOrDefault("Lambda", -1));
+    }
+
+    /**
+     * 2. 计数分组：替代 groupingBy(..., counting()) 和 groupingBy(..., summingDouble(...))
+     */
+    public static void countingAndSumming() {
+        System.out.println("\n=== 计数与求和分组 ===");
+
+        List<Order> orders = Arrays.asList(
+            new Order("A001", "Laptop", 1200.0, "Electronics", "2024-01-15"),
+            new Order("A002", "Mouse", 25.0, "Electronics", "2024-01-16"),
+            new Order("A003", "Desk", 300.0, "Furniture", "2024-01-17"),
+            new Order("A004", "Keyboard", 80.0, "Electronics", "2024-01-18"),
+            new Order("A005", "Chair", 150.0, "Furniture", "2024-01-19"),
+            new Order("A006", "Monitor", 400.0, "Electronics", "2024-01-20")
+        );
+
+        Object2LongOpenHashMap<String> countByCategory = orders.stream()
+            .collect(Object2LongOpenHashMap.counting(Order::getCategory));
+        System.out.println("每个类别的订单数: " + countByCategory);
+
+        Object2DoubleOpenHashMap<String> revenueByCategory = orders.stream()
+            .collect(Object2DoubleOpenHashMap.summing(Order::getCategory, Order::getPrice));
+        System.out.println("每个类别的总价值: " + revenueByCategory);
+
+        // int 键：按单词长度计数
+        Int2IntOpenHashMap lengthHistogram = Stream.of("Hello", "World", "Java", "Stream", "Lambda", "Go")
+            .collect(Int2IntOpenHashMap.counting(String::length));
+        System.out.println("单词长度分布: " + lengthHistogram);
+
+        // int 键 → 对象：按订单号数字部分建立索引
+        Int2ObjectOpenHashMap<Order> ordersByNumber = orders.stream()
+            .collect(Int2ObjectOpenHashMap.toMap(o -> Integer.parseInt(o.getId().substring(1)), o -> o));
+        System.out.println("3 号订单: " + ordersByNumber.get(3));
+    }
+
+    /**
+     * 3. 删除与迭代：线性探测使用回移删除，不留下墓碑
+     */
+    public static void removalAndIteration() {
+        System.out.println("\n=== 删除与迭代 ===");
+
+        Int2IntOpenHashMap squares = new Int2IntOpenHashMap();
+        IntStream.rangeClosed(0, 10).forEach(i -> squares.put(i, i * i));
+        for (int i = 0; i <= 10; i += 2) {
+            squares.remove(i);
+        }
+        System.out.println("删除偶数后: " + squares);
+        System.out.println("包含 0: " + squares.containsKey(0) + ", 包含 7: " + squares.containsKey(7));
+
+        int[] keySum = new int[1];
+        squares.forEach((key, value) -> keySum[0] += key);
+        System.out.println("剩余 key 之和: " + keySum[0]);
+    }
+
+    /**
+     * 4. 内存对比：大量 key 时 HashMap 与开放寻址 Map 的堆占用
+     */
+    public static void memoryComparison(int entries) {
+        System.out.println("\n=== 堆内存占用对比（" + entries + " 个条目）===");
+
+        String[] keys = IntStream.range(0, entries).mapToObj(i -> "key-" + i).toArray(String[]::new);
+        long keysOnly = usedHeap();
+        // 只统计 Map 自身，key 字符串两边共享
+        Object[] holder = new Object[1];
+
+        holder[0] = Arrays.stream(keys).collect(Collectors.toMap(k -> k, String::length, (a, b) -> a, HashMap::new));
+        long hashMapBytes = usedHeap() - keysOnly;
+        holder[0] = null;
+
+        holder[0] = Arrays.stream(keys).collect(Object2IntOpenHashMap.toMap(k -> k, String::length, (a, b) -> a));
+        long openMapBytes = usedHeap() - keysOnly;
+        holder[0] = null;
+
+        System.out.printf("HashMap<String, Integer>:   %,d 字节 (%.1f 字节/条目)%n", hashMapBytes, (double) hashMapBytes / entries);
+        System.out.printf("Object2IntOpenHashMap:      %,d 字节 (%.1f 字节/条目)%n", openMapBytes, (double) openMapBytes / entries);
+
+        long baseline = usedHeap();
+        holder[0] = IntStream.range(0, entries).boxed()
+            .collect(Collectors.toMap(i -> i * 31, i -> i, (a, b) -> a, HashMap::new));
+        long boxedBytes = usedHeap() - baseline;
+        holder[0] = null;
+
+        baseline = usedHeap();
+        Int2IntOpenHashMap primitive = new Int2IntOpenHashMap(entries);
+        for (int i = 0; i < entries; i++) {
+            primitive.put(i * 31, i);
+        }
+        holder[0] = primitive;
+        long primitiveBytes = usedHeap() - baseline;
+
+        System.out.printf("HashMap<Integer, Integer>:  %,d 字节 (%.1f 字节/条目)%n", boxedBytes, (double) boxedBytes / entries);
+        System.out.printf("Int2IntOpenHashMap:         %,d 字节 (%.1f 字节/条目)%n", primitiveBytes, (double) primitiveBytes / entries);
+        System.out.println("保持引用直到测量完成: " + (holder[0] != null) + ", key 数组长度: " + keys.length);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        wordLengthMap();
+        countingAndSumming();
+        removalAndIteration();
+        memoryComparison(args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000);
+    }
+
+    /**
+     * 开放寻址的公共工具：哈希扰动和容量计算
+     */
+    static final class HashCommon {
+        static final float DEFAULT_LOAD_FACTOR = 0.75f;
+        static final int DEFAULT_EXPECTED_SIZE = 16;
+        private static final int INT_PHI = 0x9E3779B9;
+
+        private HashCommon() {
+        }
+
+        /**
+         * 黄金分割乘法扰动：线性探测对聚集敏感，必须打散低质量的 hashCode
+         */
+        static int mix(int x) {
+            int h = x * INT_PHI;
+            return h ^ (h >>> 16);
+        }
+
+        static int arraySize(int expected, float loadFactor) {
+            long size = Math.max(2, nextPowerOfTwo((long) Math.ceil(expected / loadFactor)));
+            if (size > (1 << 30)) {
+                throw new IllegalArgumentException("容量过大: " + expected);
+            }
+            return (int) size;
+        }
+
+        static int maxFill(int capacity, float loadFactor) {
+            return Math.min((int) Math.ceil(capacity * loadFactor), capacity - 1);
+        }
+
+        private static long nextPowerOfTwo(long x) {
+            return x <= 1 ? 1 : Long.highestOneBit(x - 1) << 1;
+        }
+
+        /**
+         * 线性探测的回移删除：判断位于 pos 的条目（理想槽位 slot）能否移动到空出的 last 位置
+         */
+        static boolean canShift(int last, int slot, int pos) {
+            return last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos;
+        }
+    }
+
+    @FunctionalInterface
+    interface IntIntConsumer {
+        void accept(int key, int value);
+    }
+
+    @FunctionalInterface
+    interface IntObjConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    @FunctionalInterface
+    interface ObjDoubleBiConsumer<K> {
+        void accept(K key, double value);
+    }
+
+    /**
+     * Object → int 的开放寻址 Map，key 不能为 null（null 表示空槽）
+     */
+    static final class Object2IntOpenHashMap<K> {
+        private K[] keys;
+        private int[] values;
+        private int mask;
+        private int size;
+        private int maxFill;
+        private int defaultReturnValue;
+
+        public Object2IntOpenHashMap() {
+            this(HashCommon.DEFAULT_EXPECTED_SIZE);
+        }
+
+        @SuppressWarnings("unchecked")
+        public Object2IntOpenHashMap(int expectedSize) {
+            int capacity = HashCommon.arraySize(expectedSize, HashCommon.DEFAULT_LOAD_FACTOR);
+            this.keys = (K[]) new Object[capacity];
+            this.values = new int[capacity];
+            this.mask = capacity - 1;
+            this.maxFill = HashCommon.maxFill(capacity, HashCommon.DEFAULT_LOAD_FACTOR);
+        }
+
+        /**
+         * 收集为 Object2IntOpenHashMap；key 重复时用 merge 合并
+         */
+        public static <T, K> Collector<T, ?, Object2IntOpenHashMap<K>> toMap(
+                Function<? super T, ? extends K> keyMapper, ToIntFunction<? super T> valueMapper, IntBinaryOperator merge) {
+            return Collector.of(
+                Object2IntOpenHashMap::new,
+                (map, t) -> map.merge(keyMapper.apply(t), valueMapper.applyAsInt(t), merge),
+                (left, right) -> {
+                    right.forEach((k, v) -> left.merge(k, v, merge));
+                    return left;
+                });
+        }
+
+        public static <T, K> Collector<T, ?, Object2IntOpenHashMap<K>> counting(Function<? super T, ? extends K> classifier) {
+            return toMap(classifier, t -> 1, Integer::sum);
+        }
+
+        public void defaultReturnValue(int value) {
+            this.defaultReturnValue = value;
+        }
+
+        public int getInt(K key) {
+            int pos = find(key);
+            return pos >= 0 ? values[pos] : defaultReturnValue;
+        }
+
+        public int getOrDefault(K key, int defaultValue) {
+            int pos = find(key);
+            return pos >= 0 ? values[pos] : defaultValue;
+        }
+
+        public boolean containsKey(K key) {
+            return find(key) >= 0;
+        }
+
+        public int put(K key, int value) {
+            int pos = insertionPoint(key);
+            if (pos >= 0) {
+                int old = values[pos];
+                values[pos] = value;
+                return old;
+            }
+            insertAt(-pos - 1, key, value);
+            return defaultReturnValue;
+        }
+
+        /**
+         * 累加到已有值上，key 不存在时从 0 开始
+         */
+        public int addTo(K key, int increment) {
+            int pos = insertionPoint(key);
+            if (pos >= 0) {
+                return values[pos] += increment;
+            }
+            insertAt(-pos - 1, key, increment);
+            return increment;
+        }
+
+        public int merge(K key, int value, IntBinaryOperator remapping) {
+            int pos = insertionPoint(key);
+            if (pos >= 0) {
+                return values[pos] = remapping.applyAsInt(values[pos], value);
+            }
+            insertAt(-pos - 1, key, value);
+            return value;
+        }
+
+        public int removeInt(K key) {
+            int pos = find(key);
+            if (pos < 0) {
+                return defaultReturnValue;
+            }
+            int old = values[pos];
+            size--;
+            shiftKeys(pos);
+            return old;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public void forEach(ObjIntConsumer<? super K> action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    action.accept(keys[i], values[i]);
+                }
+            }
+        }
+
+        private int find(K key) {
+            int pos = insertionPoint(key);
+            return pos >= 0 ? pos : -1;
+        }
+
+        /**
+         * 返回已有 key 的位置；不存在时返回 -(空槽位置 + 1)
+         */
+        private int insertionPoint(K key) {
+            Objects.requireNonNull(key, "key");
+            int pos = HashCommon.mix(key.hashCode()) & mask;
+            K current;
+            while ((current = keys[pos]) != null) {
+                if (current.equals(key)) {
+                    return pos;
+                }
+                pos = (pos + 1) & mask;
+            }
+            return -pos - 1;
+        }
+
+        private void insertAt(int pos, K key, int value) {
+            keys[pos] = key;
+            values[pos] = value;
+            if (++size > maxFill) {
+                rehash(keys.length * 2);
+            }
+        }
+
+        private void shiftKeys(int pos) {
+            int last;
+            K current;
+            for (;;) {
+                pos = ((last = pos) + 1) & mask;
+                for (;;) {
+                    if ((current = keys[pos]) == null) {
+                        keys[last] = null;
+                        return;
+                    }
+                    int slot = HashCommon.mix(current.hashCode()) & mask;
+                    if (HashCommon.canShift(last, slot, pos)) {
+                        break;
+                    }
+                    pos = (pos + 1) & mask;
+                }
+                keys[last] = current;
+                values[last] = values[pos];
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void rehash(int newCapacity) {
+            K[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = (K[]) new Object[newCapacity];
+            values = new int[newCapacity];
+            mask = newCapacity - 1;
+            maxFill = HashCommon.maxFill(newCapacity, HashCommon.DEFAULT_LOAD_FACTOR);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int pos = HashCommon.mix(oldKeys[i].hashCode()) & mask;
+                    while (keys[pos] != null) {
+                        pos = (pos + 1) & mask;
+                    }
+                    keys[pos] = oldKeys[i];
+                    values[pos] = oldValues[i];
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ", "{", "}");
+            forEach((k, v) -> joiner.add(k + "=" + v));
+            return joiner.toString();
+        }
+    }
+
+    /**
+     * Object → long 的开放寻址 Map，key 不能为 null（null 表示空槽）
+     */
+    static final class Object2LongOpenHashMap<K> {
+        private K[] keys;
+        private long[] values;
+        private int mask;
+        private int size;
+        private int maxFill;
+        private long defaultReturnValue;
+
+        public Object2LongOpenHashMap() {
+            this(HashCommon.DEFAULT_EXPECTED_SIZE);
+        }
+
+        @SuppressWarnings("unchecked")
+        public Object2LongOpenHashMap(int expectedSize) {
+            int capacity = HashCommon.arraySize(expectedSize, HashCommon.DEFAULT_LOAD_FACTOR);
+            this.keys = (K[]) new Object[capacity];
+            this.values = new long[capacity];
+            this.mask = capacity - 1;
+            this.maxFill = HashCommon.maxFill(capacity, HashCommon.DEFAULT_LOAD_FACTOR);
+        }
+
+        public static <T, K> Collector<T, ?, Object2LongOpenHashMap<K>> toMap(
+                Function<? super T, ? extends K> keyMapper, ToLongFunction<? super T> valueMapper, LongBinaryOperator merge) {
+            return Collector.of(
+                Object2LongOpenHashMap::new,
+                (map, t) -> map.merge(keyMapper.apply(t), valueMapper.applyAsLong(t), merge),
+                (left, right) -> {
+                    right.forEach((k, v) -> left.merge(k, v, merge));
+                    return left;
+                });
+        }
+
+        public static <T, K> Collector<T, ?, Object2LongOpenHashMap<K>> counting(Function<? super T, ? extends K> classifier) {
+            return summing(classifier, t -> 1L);
+        }
+
+        public static <T, K> Collector<T, ?, Object2LongOpenHashMap<K>> summing(
+                Function<? super T, ? extends K> classifier, ToLongFunction<? super T> mapper) {
+            return Collector.of(
+                Object2LongOpenHashMap::new,
+                (map, t) -> map.addTo(classifier.apply(t), mapper.applyAsLong(t)),
+                Object2LongOpenHashMap::mergeSmallerIntoLarger,
+                Collector.Characteristics.UNORDERED);
+        }
+
+        /**
+         * 并行合并时把较小的表累加进较大的表，减少合并时的探测次数
+         */
+        static <K> Object2LongOpenHashMap<K> mergeSmallerIntoLarger(Object2LongOpenHashMap<K> left, Object2LongOpenHashMap<K> right) {
+            Object2LongOpenHashMap<K> larger = left.size >= right.size ? left : right;
+            Object2LongOpenHashMap<K> smaller = larger == left ? right : left;
+            smaller.forEach(larger::addTo);
+            return larger;
+        }
+
+        public void defaultReturnValue(long value) {
+            this.defaultReturnValue = value;
+        }
+
+        public long getLong(K key) {
+            int pos = find(key);
+            return pos >= 0 ? values[pos] : defaultReturnValue;
+        }
+
+        public long getOrDefault(K key, long defaultValue) {
+            int pos = find(key);
+            return pos >= 0 ? values[pos] : defaultValue;
+        }
+
+        public boolean containsKey(K key) {
+            return find(key) >= 0;
+        }
+
+        public long put(K key, long value) {
+            int pos = insertionPoint(key);
+            if (pos >= 0) {
+                long old = values[pos];
+                values[pos] = value;
+                return old;
+            }
+            insertAt(-pos - 1, key, value);
+            return defaultReturnValue;
+        }
+
+        public long addTo(K key, long increment) {
+            int pos = insertionPoint(key);
+            if (pos >= 0) {
+                return values[pos] += increment;
+            }
+            insertAt(-pos - 1, key, increment);
+            return increment;
+        }
+
+        public long merge(K key, long value, LongBinaryOperator remapping) {
+            int pos = insertionPoint(key);
+            if (pos >= 0) {
+                return values[pos] = remapping.applyAsLong(values[pos], value);
+            }
+            insertAt(-pos - 1, key, value);
+            return value;
+        }
+
+        public long removeLong(K key) {
+            int pos = find(key);
+            if (pos < 0) {
+                return defaultReturnValue;
+            }
+            long old = values[pos];
+            size--;
+            shiftKeys(pos);
+            return old;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public void forEach(ObjLongConsumer<? super K> action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    action.accept(keys[i], values[i]);
+                }
+            }
+        }
+
+        public Map<K, Long> toMap() {
+            Map<K, Long> result = new HashMap<>((int) (size / 0.75f) + 1);
+            forEach(result::put);
+            return result;
+        }
+
+        private int find(K key) {
+            int pos = insertionPoint(key);
+            return pos >= 0 ? pos : -1;
+        }
+
+        private int insertionPoint(K key) {
+            Objects.requireNonNull(key, "key");
+            int pos = HashCommon.mix(key.hashCode()) & mask;
+            K current;
+            while ((current = keys[pos]) != null) {
+                if (current.equals(key)) {
+                    return pos;
+                }
+                pos = (pos + 1) & mask;
+            }
+            return -pos - 1;
+        }
+
+        private void insertAt(int pos, K key, long value) {
+            keys[pos] = key;
+            values[pos] = value;
+            if (++size > maxFill) {
+                rehash(keys.length * 2);
+            }
+        }
+
+        private void shiftKeys(int pos) {
+            int last;
+            K current;
+            for (;;) {
+                pos = ((last = pos) + 1) & mask;
+                for (;;) {
+                    if ((current = keys[pos]) == null) {
+                        keys[last] = null;
+                        return;
+                    }
+                    int slot = HashCommon.mix(current.hashCode()) & mask;
+                    if (HashCommon.canShift(last, slot, pos)) {
+                        break;
+                    }
+                    pos = (pos + 1) & mask;
+                }
+                keys[last] = current;
+                values[last] = values[pos];
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void rehash(int newCapacity) {
+            K[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = (K[]) new Object[newCapacity];
+            values = new long[newCapacity];
+            mask = newCapacity - 1;
+            maxFill = HashCommon.maxFill(newCapacity, HashCommon.DEFAULT_LOAD_FACTOR);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int pos = HashCommon.mix(oldKeys[i].hashCode()) & mask;
+                    while (keys[pos] != null) {
+                        pos = (pos + 1) & mask;
+                    }
+                    keys[pos] = oldKeys[i];
+                    values[pos] = oldValues[i];
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ", "{", "}");
+            forEach((k, v) -> joiner.add(k + "=" + v));
+            return joiner.toString();
+        }
+    }
+
+    /**
+     * Object → double 的开放寻址 Map，key 不能为 null（null 表示空槽）
+     */
+    static final class Object2DoubleOpenHashMap<K> {
+        private K[] keys;
+        private double[] values;
+        private int mask;
+        private int size;
+        private int maxFill;
+        private double defaultReturnValue;
+
+        public Object2DoubleOpenHashMap() {
+            this(HashCommon.DEFAULT_EXPECTED_SIZE);
+        }
+
+        @SuppressWarnings("unchecked")
+        public Object2DoubleOpenHashMap(int expectedSize) {
+            int capacity = HashCommon.arraySize(expectedSize, HashCommon.DEFAULT_LOAD_FACTOR);
+            this.keys = (K[]) new Object[capacity];
+            this.values = new double[capacity];
+            this.mask = capacity - 1;
+            this.maxFill = HashCommon.maxFill(capacity, HashCommon.DEFAULT_LOAD_FACTOR);
+        }
+
+        public static <T, K> Collector<T, ?, Object2DoubleOpenHashMap<K>> toMap(
+                Function<? super T, ? extends K> keyMapper, ToDoubleFunction<? super T> valueMapper, DoubleBinaryOperator merge) {
+            return Collector.of(
+                Object2DoubleOpenHashMap::new,
+                (map, t) -> map.merge(keyMapper.apply(t), valueMapper.applyAsDouble(t), merge),
+                (left, right) -> {
+                    right.forEach((k, v) -> left.merge(k, v, merge));
+                    return left;
+                });
+        }
+
+        public static <T, K> Collector<T, ?, Object2DoubleOpenHashMap<K>> summing(
+                Function<? super T, ? extends K> classifier, ToDoubleFunction<? super T> mapper) {
+            return toMap(classifier, mapper, Double::sum);
+        }
+
+        public void defaultReturnValue(double value) {
+            this.defaultReturnValue = value;
+        }
+
+        public double getDouble(K key) {
+            int pos = find(key);
+            return pos >= 0 ? values[pos] : defaultReturnValue;
+        }
+
+        public double getOrDefault(K key, double defaultValue) {
+            int pos = find(key);
+            return pos >= 0 ? values[pos] : defaultValue;
+        }
+
+        public boolean containsKey(K key) {
+            return find(key) >= 0;
+        }
+
+        public double put(K key, double value) {
+            int pos = insertionPoint(key);
+            if (pos >= 0) {
+                double old = values[pos];
+                values[pos] = value;
+                return old;
+            }
+            insertAt(-pos - 1, key, value);
+            return defaultReturnValue;
+        }
+
+        public double addTo(K key, double increment) {
+            int pos = insertionPoint(key);
+            if (pos >= 0) {
+                return values[pos] += increment;
+            }
+            insertAt(-pos - 1, key, increment);
+            return increment;
+        }
+
+        public double merge(K key, double value, DoubleBinaryOperator remapping) {
+            int pos = insertionPoint(key);
+            if (pos >= 0) {
+                return values[pos] = remapping.applyAsDouble(values[pos], value);
+            }
+            insertAt(-pos - 1, key, value);
+            return value;
+        }
+
+        public double removeDouble(K key) {
+            int pos = find(key);
+            if (pos < 0) {
+                return defaultReturnValue;
+            }
+            double old = values[pos];
+            size--;
+            shiftKeys(pos);
+            return old;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public void forEach(ObjDoubleBiConsumer<? super K> action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    action.accept(keys[i], values[i]);
+                }
+            }
+        }
+
+        private int find(K key) {
+            int pos = insertionPoint(key);
+            return pos >= 0 ? pos : -1;
+        }
+
+        private int insertionPoint(K key) {
+            Objects.requireNonNull(key, "key");
+            int pos = HashCommon.mix(key.hashCode()) & mask;
+            K current;
+            while ((current = keys[pos]) != null) {
+                if (current.equals(key)) {
+                    return pos;
+                }
+                pos = (pos + 1) & mask;
+            }
+            return -pos - 1;
+        }
+
+        private void insertAt(int pos, K key, double value) {
+            keys[pos] = key;
+            values[pos] = value;
+            if (++size > maxFill) {
+                rehash(keys.length * 2);
+            }
+        }
+
+        private void shiftKeys(int pos) {
+            int last;
+            K current;
+            for (;;) {
+                pos = ((last = pos) + 1) & mask;
+                for (;;) {
+                    if ((current = keys[pos]) == null) {
+                        keys[last] = null;
+                        return;
+                    }
+                    int slot = HashCommon.mix(current.hashCode()) & mask;
+                    if (HashCommon.canShift(last, slot, pos)) {
+                        break;
+                    }
+                    pos = (pos + 1) & mask;
+                }
+                keys[last] = current;
+                values[last] = values[pos];
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void rehash(int newCapacity) {
+            K[] oldKeys = keys;
+            double[] oldValues = values;
+            keys = (K[]) new Object[newCapacity];
+            values = new double[newCapacity];
+            mask = newCapacity - 1;
+            maxFill = HashCommon.maxFill(newCapacity, HashCommon.DEFAULT_LOAD_FACTOR);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int pos = HashCommon.mix(oldKeys[i].hashCode()) & mask;
+                    while (keys[pos] != null) {
+                        pos = (pos + 1) & mask;
+                    }
+                    keys[pos] = oldKeys[i];
+                    values[pos] = oldValues[i];
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ", "{", "}");
+            forEach((k, v) -> joiner.add(k + "=" + v));
+            return joiner.toString();
+        }
+    }
+
+    /**
+     * int → Object 的开放寻址 Map
+     * 0 用作空槽标记，key 为 0 的条目单独存放在 zeroValue 中
+     */
+    static final class Int2ObjectOpenHashMap<V> {
+        private int[] keys;
+        private V[] values;
+        private int mask;
+        private int size;
+        private int maxFill;
+        private boolean containsZeroKey;
+        private V zeroValue;
+
+        public Int2ObjectOpenHashMap() {
+            this(HashCommon.DEFAULT_EXPECTED_SIZE);
+        }
+
+        @SuppressWarnings("unchecked")
+        public Int2ObjectOpenHashMap(int expectedSize) {
+            int capacity = HashCommon.arraySize(expectedSize, HashCommon.DEFAULT_LOAD_FACTOR);
+            this.keys = new int[capacity];
+            this.values = (V[]) new Object[capacity];
+            this.mask = capacity - 1;
+            this.maxFill = HashCommon.maxFill(capacity, HashCommon.DEFAULT_LOAD_FACTOR);
+        }
+
+        /**
+         * 收集为 Int2ObjectOpenHashMap；key 重复时抛出 IllegalStateException，与 Collectors.toMap 一致
+         */
+        public static <T, V> Collector<T, ?, Int2ObjectOpenHashMap<V>> toMap(
+                ToIntFunction<? super T> keyMapper, Function<? super T, ? extends V> valueMapper) {
+            return Collector.of(
+                Int2ObjectOpenHashMap::new,
+                (map, t) -> map.putUnique(keyMapper.applyAsInt(t), valueMapper.apply(t)),
+                (left, right) -> {
+                    right.forEach(left::putUnique);
+                    return left;
+                });
+        }
+
+        public V get(int key) {
+            if (key == 0) {
+                return containsZeroKey ? zeroValue : null;
+            }
+            int pos = insertionPoint(key);
+            return pos >= 0 ? values[pos] : null;
+        }
+
+        public boolean containsKey(int key) {
+            return key == 0 ? containsZeroKey : insertionPoint(key) >= 0;
+        }
+
+        public V put(int key, V value) {
+            if (key == 0) {
+                V old = zeroValue;
+                if (!containsZeroKey) {
+                    containsZeroKey = true;
+                    size++;
+                }
+                zeroValue = value;
+                return old;
+            }
+            int pos = insertionPoint(key);
+            if (pos >= 0) {
+                V old = values[pos];
+                values[pos] = value;
+                return old;
+            }
+            pos = -pos - 1;
+            keys[pos] = key;
+            values[pos] = value;
+            if (++size > maxFill) {
+                rehash(keys.length * 2);
+            }
+            return null;
+        }
+
+        private void putUnique(int key, V value) {
+            if (containsKey(key)) {
+                throw new IllegalStateException("Duplicate key " + key);
+            }
+            put(key, value);
+        }
+
+        public V remove(int key) {
+            if (key == 0) {
+                if (!containsZeroKey) {
+                    return null;
+                }
+                V old = zeroValue;
+                containsZeroKey = false;
+                zeroValue = null;
+                size--;
+                return old;
+            }
+            int pos = insertionPoint(key);
+            if (pos < 0) {
+                return null;
+            }
+            V old = values[pos];
+            size--;
+            shiftKeys(pos);
+            return old;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public void forEach(IntObjConsumer<? super V> action) {
+            if (containsZeroKey) {
+                action.accept(0, zeroValue);
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    action.accept(keys[i], values[i]);
+                }
+            }
+        }
+
+        private int insertionPoint(int key) {
+            int pos = HashCommon.mix(key) & mask;
+            int current;
+            while ((current = keys[pos]) != 0) {
+                if (current == key) {
+                    return pos;
+                }
+                pos = (pos + 1) & mask;
+            }
+            return -pos - 1;
+        }
+
+        private void shiftKeys(int pos) {
+            int last;
+            int current;
+            for (;;) {
+                pos = ((last = pos) + 1) & mask;
+                for (;;) {
+                    if ((current = keys[pos]) == 0) {
+                        keys[last] = 0;
+                        values[last] = null;
+                        return;
+                    }
+                    int slot = HashCommon.mix(current) & mask;
+                    if (HashCommon.canShift(last, slot, pos)) {
+                        break;
+                    }
+                    pos = (pos + 1) & mask;
+                }
+                keys[last] = current;
+                values[last] = values[pos];
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void rehash(int newCapacity) {
+            int[] oldKeys = keys;
+            V[] oldValues = values;
+            keys = new int[newCapacity];
+            values = (V[]) new Object[newCapacity];
+            mask = newCapacity - 1;
+            maxFill = HashCommon.maxFill(newCapacity, HashCommon.DEFAULT_LOAD_FACTOR);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int pos = HashCommon.mix(oldKeys[i]) & mask;
+                    while (keys[pos] != 0) {
+                        pos = (pos + 1) & mask;
+                    }
+                    keys[pos] = oldKeys[i];
+                    values[pos] = oldValues[i];
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ", "{", "}");
+            forEach((k, v) -> joiner.add(k + "=" + v));
+            return joiner.toString();
+        }
+    }
+
+    /**
+     * int → int 的开放寻址 Map
+     * 0 用作空槽标记，key 为 0 的条目单独存放在 zeroValue 中
+     */
+    static final class Int2IntOpenHashMap {
+        private int[] keys;
+        private int[] values;
+        private int mask;
+        private int size;
+        private int maxFill;
+        private boolean containsZeroKey;
+        private int zeroValue;
+        private int defaultReturnValue;
+
+        public Int2IntOpenHashMap() {
+            this(HashCommon.DEFAULT_EXPECTED_SIZE);
+        }
+
+        public Int2IntOpenHashMap(int expectedSize) {
+            int capacity = HashCommon.arraySize(expectedSize, HashCommon.DEFAULT_LOAD_FACTOR);
+            this.keys = new int[capacity];
+            this.values = new int[capacity];
+            this.mask = capacity - 1;
+            this.maxFill = HashCommon.maxFill(capacity, HashCommon.DEFAULT_LOAD_FACTOR);
+        }
+
+        public static <T> Collector<T, ?, Int2IntOpenHashMap> toMap(
+                ToIntFunction<? super T> keyMapper, ToIntFunction<? super T> valueMapper, IntBinaryOperator merge) {
+            return Collector.of(
+                Int2IntOpenHashMap::new,
+                (map, t) -> map.merge(keyMapper.applyAsInt(t), valueMapper.applyAsInt(t), merge),
+                (left, right) -> {
+                    right.forEach((k, v) -> left.merge(k, v, merge));
+                    return left;
+                });
+        }
+
+        public static <T> Collector<T, ?, Int2IntOpenHashMap> counting(ToIntFunction<? super T> classifier) {
+            return toMap(classifier, t -> 1, Integer::sum);
+        }
+
+        public void defaultReturnValue(int value) {
+            this.defaultReturnValue = value;
+        }
+
+        public int get(int key) {
+            if (key == 0) {
+                return containsZeroKey ? zeroValue : defaultReturnValue;
+            }
+            int pos = insertionPoint(key);
+            return pos >= 0 ? values[pos] : defaultReturnValue;
+        }
+
+        public boolean containsKey(int key) {
+            return key == 0 ? containsZeroKey : insertionPoint(key) >= 0;
+        }
+
+        public int put(int key, int value) {
+            if (key == 0) {
+                int old = containsZeroKey ? zeroValue : defaultReturnValue;
+                if (!containsZeroKey) {
+                    containsZeroKey = true;
+                    size++;
+                }
+                zeroValue = value;
+                return old;
+            }
+            int pos = insertionPoint(key);
+            if (pos >= 0) {
+                int old = values[pos];
+                values[pos] = value;
+                return old;
+            }
+            insertAt(-pos - 1, key, value);
+            return defaultReturnValue;
+        }
+
+        public int addTo(int key, int increment) {
+            return merge(key, increment, Integer::sum);
+        }
+
+        public int merge(int key, int value, IntBinaryOperator remapping) {
+            if (key == 0) {
+                zeroValue = containsZeroKey ? remapping.applyAsInt(zeroValue, value) : value;
+                if (!containsZeroKey) {
+                    containsZeroKey = true;
+                    size++;
+                }
+                return zeroValue;
+            }
+            int pos = insertionPoint(key);
+            if (pos >= 0) {
+                return values[pos] = remapping.applyAsInt(values[pos], value);
+            }
+            insertAt(-pos - 1, key, value);
+            return value;
+        }
+
+        public int remove(int key) {
+            if (key == 0) {
+                if (!containsZeroKey) {
+                    return defaultReturnValue;
+                }
+                containsZeroKey = false;
+                size--;
+                return zeroValue;
+            }
+            int pos = insertionPoint(key);
+            if (pos < 0) {
+                return defaultReturnValue;
+            }
+            int old = values[pos];
+            size--;
+            shiftKeys(pos);
+            return old;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public void forEach(IntIntConsumer action) {
+            if (containsZeroKey) {
+                action.accept(0, zeroValue);
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    action.accept(keys[i], values[i]);
+                }
+            }
+        }
+
+        private int insertionPoint(int key) {
+            int pos = HashCommon.mix(key) & mask;
+            int current;
+            while ((current = keys[pos]) != 0) {
+                if (current == key) {
+                    return pos;
+                }
+                pos = (pos + 1) & mask;
+            }
+            return -pos - 1;
+        }
+
+        private void insertAt(int pos, int key, int value) {
+            keys[pos] = key;
+            values[pos] = value;
+            if (++size > maxFill) {
+                rehash(keys.length * 2);
+            }
+        }
+
+        private void shiftKeys(int pos) {
+            int last;
+            int current;
+            for (;;) {
+                pos = ((last = pos) + 1) & mask;
+                for (;;) {
+                    if ((current = keys[pos]) == 0) {
+                        keys[last] = 0;
+                        return;
+                    }
+                    int slot = HashCommon.mix(current) & mask;
+                    if (HashCommon.canShift(last, slot, pos)) {
+                        break;
+                    }
+                    pos = (pos + 1) & mask;
+                }
+                keys[last] = current;
+                values[last] = values[pos];
+            }
+        }
+
+        private void rehash(int newCapacity) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[newCapacity];
+            values = new int[newCapacity];
+            mask = newCapacity - 1;
+            maxFill = HashCommon.maxFill(newCapacity, HashCommon.DEFAULT_LOAD_FACTOR);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int pos = HashCommon.mix(oldKeys[i]) & mask;
+                    while (keys[pos] != 0) {
+                        pos = (pos + 1) & mask;
+                    }
+                    keys[pos] = oldKeys[i];
+                    values[pos] = oldValues[i];
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ", "{", "}");
+            forEach((k, v) -> joiner.add(k + "=" + v));
+            return joiner.toString();
+        }
+    }
+}
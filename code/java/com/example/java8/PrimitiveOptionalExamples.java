@@ -0,0 +1,408 @@
+package com.example.java8;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.OptionalExamples.Address;
+import com.example.java8.OptionalExamples.User;
+
+/**
+ * Java 8 无分配 Optional 示例类
+ * 展示空安全的 getter 链求值、基本类型的 Optional 结果载体，以及如何测量热路径上的对象分配
+ */
+public class PrimitiveOptionalExamples {
+
+    private static final NullSafePath<User, String> USER_CITY =
+        NullSafePath.of(User::getAddress).then(Address::getCity);
+
+    /**
+     * 1. 空安全路径求值：一次遍历 User → Address → city，不创建中间 Optional
+     */
+    public static void nullSafePathEvaluation() {
+        System.out.println("=== 空安全路径求值 ===");
+
+        User alice = new User("Alice", new Address("北京", "朝阳区"));
+        User homeless = new User("Bob", null);
+        User cityless = new User("Carol", new Address(null, "徐汇区"));
+
+        // Optional 写法：每一步 map 都可能创建一个新的 Optional
+        String optionalCity = Optional.ofNullable(alice)
+            .map(User::getAddress)
+            .map(Address::getCity)
+            .orElse("未知城市");
+        System.out.println("Optional 链结果: " + optionalCity);
+
+        // 路径写法：路径对象只创建一次，可以在热路径上反复使用
+        System.out.println("Alice 所在城市: " + USER_CITY.evalOrElse(alice, "未知城市"));
+        System.out.println("Bob 所在城市: " + USER_CITY.evalOrElse(homeless, "未知城市"));
+        System.out.println("Carol 所在城市: " + USER_CITY.evalOrElse(cityless, "未知城市"));
+        System.out.println("null 用户所在城市: " + USER_CITY.evalOrElse(null, "未知城市"));
+        System.out.println("Bob 的路径是否可达: " + USER_CITY.isPresent(homeless));
+
+        // 需要 Optional 时再在链的末端转换一次
+        System.out.println("转换为 Optional: " + USER_CITY.toOptional(alice));
+    }
+
+    /**
+     * 2. 基本类型结果载体：解析整数不抛异常、不装箱
+     */
+    public static void primitiveResultCarriers() {
+        System.out.println("\n=== 基本类型结果载体 ===");
+
+        for (String input : Arrays.asList("123", "-42", "abc", "", "2147483648", null)) {
+            long result = OptionalInts.parseInt(input);
+            System.out.println("解析 '" + input + "': "
+                + (OptionalInts.isPresent(result) ? "值=" + OptionalInts.getAsInt(result) : "无效"));
+        }
+
+        // 可复用的可变载体：一个请求里反复解析时只分配一次
+        MutableOptionalInt holder = new MutableOptionalInt();
+        int sum = 0;
+        for (String input : Arrays.asList("10", "x", "20", "30")) {
+            if (OptionalInts.parseInt(input, holder)) {
+                sum += holder.getAsInt();
+            }
+        }
+        System.out.println("可复用载体求和: " + sum);
+
+        // 需要与 JDK API 交互时再转换为 OptionalInt
+        System.out.println("转换为 OptionalInt: " + OptionalInts.toOptionalInt(OptionalInts.parseInt("7")));
+        System.out.println("转换为 OptionalInt: " + OptionalInts.toOptionalInt(OptionalInts.parseInt("seven")));
+    }
+
+    /**
+     * 3. 替代 filter(Optional::isPresent).map(Optional::get)
+     */
+    public static void streamWithoutOptionalWrappers() {
+        System.out.println("\n=== 不经过 Optional 的流式解析 ===");
+
+        List<String> data = Arrays.asList("123", "456", "abc", "789", "def", "101112");
+
+        // 原写法：每个元素一个 Optional，外加装箱的 Integer
+        List<Integer> viaOptional = data.stream()
+            .map(PrimitiveOptionalExamples::safeParseInt)
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .collect(Collectors.toList());
+        System.out.println("Optional 写法: " + viaOptional);
+
+        // 基本类型写法：全程 long/int，没有中间对象
+        int[] viaPrimitive = data.stream()
+            .mapToLong(OptionalInts::parseInt)
+            .filter(OptionalInts::isPresent)
+            .mapToInt(OptionalInts::getAsInt)
+            .toArray();
+        System.out.println("基本类型写法: " + Arrays.toString(viaPrimitive));
+
+        // 对象流中的路径求值：用 map + filter(Objects::nonNull) 替代 Optional 链
+        List<User> users = Arrays.asList(
+            new User("Alice", new Address("北京", "朝阳区")),
+            new User("Bob", null),
+            new User("Carol", new Address("上海", "徐汇区")));
+        List<String> cities = users.stream()
+            .map(USER_CITY::eval)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+        System.out.println("所有可达城市: " + cities);
+    }
+
+    /**
+     * 4. 分配测量：用 ThreadMXBean 统计每次调用分配的字节数
+     * 说明：热身后 JIT 的逃逸分析往往能消除简单 Optional 链的分配，但跨方法边界、
+     * 无法内联或发生异常时就不一定了；路径对象和基本类型载体在任何情况下都不分配
+     */
+    public static void allocationMeasurement() {
+        System.out.println("\n=== 每次调用分配字节数 ===");
+
+        AllocationMeter meter = AllocationMeter.create();
+        if (meter == null) {
+            System.out.println("当前 JVM 不支持线程分配统计，跳过");
+            return;
+        }
+
+        User[] users = new User[1024];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = i % 3 == 0
+                ? new User("U" + i, null)
+                : new User("U" + i, new Address(i % 2 == 0 ? "北京" : null, "区" + i));
+        }
+        String[] inputs = new String[1024];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = i % 4 == 0 ? "n/a" : Integer.toString(i * 7919);
+        }
+
+        int iterations = 2_000_000;
+        ToIntFunction<Integer> optionalChain = i -> Optional.ofNullable(users[i & 1023])
+            .map(User::getAddress)
+            .map(Address::getCity)
+            .orElse("").length();
+        ToIntFunction<Integer> pathEval = i -> USER_CITY.evalOrElse(users[i & 1023], "").length();
+        ToIntFunction<Integer> optionalParse = i -> safeParseInt(inputs[i & 1023]).orElse(0);
+        ToIntFunction<Integer> primitiveParse = i -> OptionalInts.orElse(OptionalInts.parseInt(inputs[i & 1023]), 0);
+
+        System.out.printf("Optional 链:       %.2f 字节/次%n", meter.bytesPerOp(optionalChain, iterations));
+        System.out.printf("NullSafePath:      %.2f 字节/次%n", meter.bytesPerOp(pathEval, iterations));
+        System.out.printf("Optional 解析:     %.2f 字节/次%n", meter.bytesPerOp(optionalParse, iterations));
+        System.out.printf("基本类型解析:      %.2f 字节/次%n", meter.bytesPerOp(primitiveParse, iterations));
+    }
+
+    /**
+     * 工具方法：原有的异常驱动解析，用作对比
+     */
+    private static Optional<Integer> safeParseInt(String str) {
+        try {
+            return Optional.of(Integer.parseInt(str));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        nullSafePathEvaluation();
+        primitiveResultCarriers();
+        streamWithoutOptionalWrappers();
+        allocationMeasurement();
+    }
+
+    /**
+     * 空安全的 getter 链：任意一步返回 null 时整条路径求值为 null
+     * 路径对象不可变、线程安全，应当作为常量创建一次后复用
+     */
+    static final class NullSafePath<T, R> {
+        private final Function<Object, Object>[] steps;
+
+        private NullSafePath(Function<Object, Object>[] steps) {
+            this.steps = steps;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public static <T, R> NullSafePath<T, R> of(Function<? super T, ? extends R> first) {
+            Objects.requireNonNull(first, "first");
+            return new NullSafePath<>(new Function[] { first });
+        }
+
+        /**
+         * 追加一步 getter，返回新的路径对象
+         */
+        @SuppressWarnings("unchecked")
+        public <U> NullSafePath<T, U> then(Function<? super R, ? extends U> next) {
+            Objects.requireNonNull(next, "next");
+            Function<Object, Object>[] extended = Arrays.copyOf(steps, steps.length + 1);
+            extended[steps.length] = (Function<Object, Object>) (Function<?, ?>) next;
+            return new NullSafePath<>(extended);
+        }
+
+        /**
+         * 求值，路径不可达时返回 null
+         */
+        @SuppressWarnings("unchecked")
+        public R eval(T root) {
+            Object current = root;
+            for (Function<Object, Object> step : steps) {
+                if (current == null) {
+                    return null;
+                }
+                current = step.apply(current);
+            }
+            return (R) current;
+        }
+
+        public R evalOrElse(T root, R defaultValue) {
+            R value = eval(root);
+            return value != null ? value : defaultValue;
+        }
+
+        public R evalOrElseGet(T root, Supplier<? extends R> defaultSupplier) {
+            R value = eval(root);
+            return value != null ? value : defaultSupplier.get();
+        }
+
+        public boolean isPresent(T root) {
+            return eval(root) != null;
+        }
+
+        public Optional<R> toOptional(T root) {
+            return Optional.ofNullable(eval(root));
+        }
+    }
+
+    /**
+     * 把"可能不存在的 int"编码到一个 long 中：高 32 位为存在标记，低 32 位为值
+     * 结果是基本类型，可以直接在 LongStream/IntStream 中传递，没有任何对象分配
+     */
+    static final class OptionalInts {
+        static final long EMPTY = 0L;
+        private static final long PRESENT = 1L << 32;
+
+        private OptionalInts() {
+        }
+
+        public static long of(int value) {
+            return PRESENT | (value & 0xFFFFFFFFL);
+        }
+
+        public static boolean isPresent(long result) {
+            return (result & PRESENT) != 0;
+        }
+
+        public static int getAsInt(long result) {
+            if (!isPresent(result)) {
+                throw new NoSuchElementException("No value present");
+            }
+            return (int) result;
+        }
+
+        public static int orElse(long result, int other) {
+            return isPresent(result) ? (int) result : other;
+        }
+
+        public static OptionalInt toOptionalInt(long result) {
+            return isPresent(result) ? OptionalInt.of((int) result) : OptionalInt.empty();
+        }
+
+        /**
+         * 解析十进制整数，接受的格式与 Integer.parseInt 相同；格式错误或溢出时返回 EMPTY，
+         * 不抛异常，因此也不会创建异常对象
+         */
+        public static long parseInt(String str) {
+            if (str == null) {
+                return EMPTY;
+            }
+            int length = str.length();
+            if (length == 0) {
+                return EMPTY;
+            }
+
+            int index = 0;
+            boolean negative = false;
+            char first = str.charAt(0);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                index++;
+                if (length == 1) {
+                    return EMPTY;
+                }
+            }
+
+            // 按负数累加，这样 Integer.MIN_VALUE 也能表示
+            int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+            int multiplyMin = limit / 10;
+            int result = 0;
+            for (; index < length; index++) {
+                // 与 Integer.parseInt 一致，接受全角等 Unicode 十进制数字
+                int digit = Character.digit(str.charAt(index), 10);
+                if (digit < 0 || result < multiplyMin) {
+                    return EMPTY;
+                }
+                result *= 10;
+                if (result < limit + digit) {
+                    return EMPTY;
+                }
+                result -= digit;
+            }
+            return of(negative ? result : -result);
+        }
+
+        /**
+         * 解析到调用方提供的可复用载体中，返回是否解析成功
+         */
+        public static boolean parseInt(String str, MutableOptionalInt target) {
+            long result = parseInt(str);
+            if (isPresent(result)) {
+                target.set((int) result);
+                return true;
+            }
+            target.clear();
+            return false;
+        }
+    }
+
+    /**
+     * 可复用的 OptionalInt 风格载体，非线程安全，适合在单个请求内反复使用
+     */
+    static final class MutableOptionalInt {
+        private boolean present;
+        private int value;
+
+        public void set(int value) {
+            this.value = value;
+            this.present = true;
+        }
+
+        public void clear() {
+            this.present = false;
+            this.value = 0;
+        }
+
+        public boolean isPresent() {
+            return present;
+        }
+
+        public int getAsInt() {
+            if (!present) {
+                throw new NoSuchElementException("No value present");
+            }
+            return value;
+        }
+
+        public int orElse(int other) {
+            return present ? value : other;
+        }
+
+        @Override
+        public String toString() {
+            return present ? "MutableOptionalInt[" + value + "]" : "MutableOptionalInt.empty";
+        }
+    }
+
+    /**
+     * 基于 com.sun.management.ThreadMXBean 的分配计量器
+     * 先热身让 JIT 完成编译，再统计当前线程在测量区间内分配的字节数
+     */
+    static final class AllocationMeter {
+        private final com.sun.management.ThreadMXBean threadBean;
+
+        private AllocationMeter(com.sun.management.ThreadMXBean threadBean) {
+            this.threadBean = threadBean;
+        }
+
+        static AllocationMeter create() {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+                return null;
+            }
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (!sunBean.isThreadAllocatedMemorySupported()) {
+                return null;
+            }
+            sunBean.setThreadAllocatedMemoryEnabled(true);
+            return new AllocationMeter(sunBean);
+        }
+
+        double bytesPerOp(ToIntFunction<Integer> operation, int iterations) {
+            run(operation, iterations);
+            long threadId = Thread.currentThread().getId();
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            int sink = run(operation, iterations);
+            long after = threadBean.getThreadAllocatedBytes(threadId);
+            if (sink == 42) {
+                System.out.print("");
+            }
+            return (double) (after - before) / iterations;
+        }
+
+        private static int run(ToIntFunction<Integer> operation, int iterations) {
+            int sink = 0;
+            // 传入的 i 落在 Integer 缓存范围内，避免装箱本身被计入分配
+            for (int i = 0; i < iterations; i++) {
+                sink += operation.applyAsInt(i & 127);
+            }
+            return sink;
+        }
+    }
+}
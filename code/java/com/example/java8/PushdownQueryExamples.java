@@ -0,0 +1,765 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.OffHeapRecordExamples.Codecs;
+import com.example.java8.OffHeapRecordExamples.TransactionStore;
+import com.example.java8.OffHeapRecordExamples.TransactionView;
+import com.example.java8.StreamAdvancedExamples.Transaction;
+
+/**
+ * Java 8 谓词下推示例类
+ * 用可被检查的声明式表达式代替 filter 中的 lambda，让二进制交易存储自己完成过滤：
+ * 按块的 min/max 区域映射（zone map）整块跳过，字段级比较不解码整条记录，投影只物化需要的列
+ */
+public class PushdownQueryExamples {
+
+    /**
+     * 1. 与 transactions.stream().filter(amount > 150).filter(USD) 等价的下推查询
+     */
+    public static void basicPushdown() {
+        System.out.println("=== 谓词下推 ===");
+
+        ZoneMappedTransactionSource source = new ZoneMappedTransactionSource(4);
+        source.append(new Transaction("T001", 100.0, "USD", "2024-01-01"));
+        source.append(new Transaction("T002", 200.0, "EUR", "2024-01-02"));
+        source.append(new Transaction("T003", 250.0, "USD", "2024-01-03"));
+        source.append(new Transaction("T004", 300.0, "GBP", "2024-01-04"));
+        source.append(new Transaction("T005", 150.0, "USD", "2024-01-05"));
+        source.append(new Transaction("T006", 120.0, "EUR", "2024-01-06"));
+        source.append(new Transaction("T007", 90.0, "EUR", "2024-01-07"));
+        source.append(new Transaction("T008", 60.0, "GBP", "2024-01-08"));
+        try {
+            source.append(new Transaction("T009-TOO-LONG-ID", 500.0, "USD", "2024-01-09"));
+        } catch (IllegalArgumentException e) {
+            // 被拒绝的记录既不进入存储也不进入区域映射，块边界保持对齐
+            System.out.println("拒绝写入: " + e.getMessage() + ", 记录数 " + source.getStore().size()
+                + ", 块数 " + source.blockCount());
+        }
+
+        TransactionQuery query = TransactionQuery.from(source)
+            .where(Exprs.and(Exprs.gt(TxColumn.AMOUNT, 150), Exprs.eq(TxColumn.CURRENCY, "USD")))
+            .select(TxColumn.ID, TxColumn.AMOUNT);
+
+        System.out.println(query.explain());
+        System.out.println("结果: " + query.toList());
+        System.out.println("统计: " + query.lastStats());
+
+        // 第二个块全部 <= 150，被区域映射整块跳过
+        TransactionQuery highValue = TransactionQuery.from(source).where(Exprs.gt(TxColumn.AMOUNT, 150));
+        System.out.println("金额 > 150 的 ID: " + highValue.stream().map(row -> row.get(TxColumn.ID)).collect(Collectors.toList()));
+        System.out.println("统计: " + highValue.lastStats());
+    }
+
+    /**
+     * 2. 残余谓词与聚合下推：无法下推的条件在其余条件通过后才物化 Transaction
+     */
+    public static void residualAndAggregates() {
+        System.out.println("\n=== 残余谓词与聚合 ===");
+
+        ZoneMappedTransactionSource source = generate(10_000, 1024);
+
+        TransactionQuery query = TransactionQuery.from(source)
+            .where(Exprs.and(
+                Exprs.between(TxColumn.DATE, "2024-03-01", "2024-03-31"),
+                Exprs.in(TxColumn.CURRENCY, "USD", "GBP"),
+                Exprs.where("id 以 7 结尾", t -> t.getId().endsWith("7"))));
+        System.out.println(query.explain());
+        System.out.println("匹配数: " + query.count() + ", 统计: " + query.lastStats());
+        System.out.printf("金额合计: %.2f, 统计: %s%n", query.sumAmount(), query.lastStats());
+
+        TransactionQuery impossible = TransactionQuery.from(source)
+            .where(Exprs.and(Exprs.gt(TxColumn.AMOUNT, 500), Exprs.lt(TxColumn.AMOUNT, 400)));
+        System.out.println("矛盾条件: " + impossible.count() + " 条, 统计: " + impossible.lastStats());
+
+        TransactionQuery unknownCurrency = TransactionQuery.from(source).where(Exprs.eq(TxColumn.CURRENCY, "CHF"));
+        System.out.println("字典中不存在的货币: " + unknownCurrency.count() + " 条, 统计: " + unknownCurrency.lastStats());
+    }
+
+    /**
+     * 3. 对比：先解码完整记录再 filter，与下推 + 投影
+     */
+    public static void comparison(int count) {
+        System.out.println("\n=== 对比（" + count + " 条交易）===");
+
+        ZoneMappedTransactionSource source = generate(count, 4096);
+        TransactionStore store = source.getStore();
+
+        TransactionQuery recent = TransactionQuery.from(source)
+            .where(Exprs.and(
+                Exprs.ge(TxColumn.DATE, "2024-12-01"),
+                Exprs.gt(TxColumn.AMOUNT, 150),
+                Exprs.eq(TxColumn.CURRENCY, "USD")))
+            .select(TxColumn.ID);
+        TransactionQuery selective = TransactionQuery.from(source)
+            .where(Exprs.and(Exprs.gt(TxColumn.AMOUNT, 150), Exprs.eq(TxColumn.CURRENCY, "USD")))
+            .select(TxColumn.ID);
+
+        long decodeBest = Long.MAX_VALUE;
+        long pushdownBest = Long.MAX_VALUE;
+        long recentDecodeBest = Long.MAX_VALUE;
+        long recentPushdownBest = Long.MAX_VALUE;
+        long decoded = 0;
+        long pushed = 0;
+        long recentDecoded = 0;
+        long recentPushed = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            decoded = store.stream()
+                .map(TransactionView::toTransaction)
+                .filter(t -> t.getAmount() > 150)
+                .filter(t -> "USD".equals(t.getCurrency()))
+                .map(Transaction::getId)
+                .count();
+            decodeBest = Math.min(decodeBest, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            pushed = selective.stream().count();
+            pushdownBest = Math.min(pushdownBest, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            recentDecoded = store.stream()
+                .map(TransactionView::toTransaction)
+                .filter(t -> t.getDate().compareTo("2024-12-01") >= 0)
+                .filter(t -> t.getAmount() > 150)
+                .filter(t -> "USD".equals(t.getCurrency()))
+                .map(Transaction::getId)
+                .count();
+            recentDecodeBest = Math.min(recentDecodeBest, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            recentPushed = recent.stream().count();
+            recentPushdownBest = Math.min(recentPushdownBest, System.nanoTime() - start);
+        }
+        System.out.printf("金额>150 且 USD:      解码后过滤 %.1fms / 下推 %.1fms, 结果 %d / %d%n",
+            decodeBest / 1e6, pushdownBest / 1e6, decoded, pushed);
+        System.out.println("  " + selective.lastStats());
+        System.out.printf("再加 12 月的日期条件: 解码后过滤 %.1fms / 下推 %.1fms, 结果 %d / %d%n",
+            recentDecodeBest / 1e6, recentPushdownBest / 1e6, recentDecoded, recentPushed);
+        System.out.println("  " + recent.lastStats());
+    }
+
+    /**
+     * 按日期递增生成交易，使日期列在块内聚集、区域映射有效
+     */
+    private static ZoneMappedTransactionSource generate(int count, int blockSize) {
+        String[] currencies = {"USD", "EUR", "GBP", "JPY"};
+        Random random = new Random(21);
+        ZoneMappedTransactionSource source = new ZoneMappedTransactionSource(blockSize, count);
+        for (int i = 0; i < count; i++) {
+            int dayOfYear = (int) ((long) i * 360 / count);
+            String date = String.format("2024-%02d-%02d", dayOfYear / 30 + 1, dayOfYear % 30 + 1);
+            source.append(new Transaction("T" + i, random.nextInt(40_000) / 100.0,
+                currencies[random.nextInt(currencies.length)], date));
+        }
+        return source;
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        basicPushdown();
+        residualAndAggregates();
+        comparison(args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000);
+    }
+
+    /**
+     * 交易存储中可被下推的列
+     */
+    enum TxColumn { ID, AMOUNT, CURRENCY, DATE }
+
+    enum Op { EQ, LT, LE, GT, GE, IN }
+
+    /**
+     * 布尔表达式：结构公开，数据源可以检查并决定如何执行
+     */
+    abstract static class Expr {
+    }
+
+    static final class Comparison extends Expr {
+        final TxColumn column;
+        final Op op;
+        final Object value;
+
+        Comparison(TxColumn column, Op op, Object value) {
+            this.column = column;
+            this.op = op;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return column.name().toLowerCase() + " " + op + " " + value;
+        }
+    }
+
+    static final class And extends Expr {
+        final List<Expr> terms;
+
+        And(List<Expr> terms) {
+            this.terms = terms;
+        }
+
+        @Override
+        public String toString() {
+            return terms.stream().map(Expr::toString).collect(Collectors.joining(" AND ", "(", ")"));
+        }
+    }
+
+    /**
+     * 不透明的谓词：只能在物化出 Transaction 之后求值
+     */
+    static final class Residual extends Expr {
+        final String description;
+        final Predicate<Transaction> predicate;
+
+        Residual(String description, Predicate<Transaction> predicate) {
+            this.description = description;
+            this.predicate = predicate;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    /**
+     * 表达式工厂
+     */
+    static final class Exprs {
+        private Exprs() {
+        }
+
+        static Expr eq(TxColumn column, Object value) { return new Comparison(column, Op.EQ, value); }
+        static Expr lt(TxColumn column, Object value) { return new Comparison(column, Op.LT, value); }
+        static Expr le(TxColumn column, Object value) { return new Comparison(column, Op.LE, value); }
+        static Expr gt(TxColumn column, Object value) { return new Comparison(column, Op.GT, value); }
+        static Expr ge(TxColumn column, Object value) { return new Comparison(column, Op.GE, value); }
+
+        static Expr in(TxColumn column, Object... values) {
+            return new Comparison(column, Op.IN, Arrays.asList(values));
+        }
+
+        static Expr between(TxColumn column, Object low, Object high) {
+            return and(ge(column, low), le(column, high));
+        }
+
+        static Expr and(Expr... terms) {
+            return new And(Arrays.asList(terms));
+        }
+
+        static Expr where(String description, Predicate<Transaction> predicate) {
+            return new Residual(description, predicate);
+        }
+    }
+
+    /**
+     * 每块的区域映射：金额和日期的 min/max，以及块内出现过的货币编码
+     * NaN 金额不计入 min/max（否则整块的边界都会变成 NaN），只记录 hasNaN 让扫描时逐条检查
+     */
+    static final class ZoneMap {
+        double minAmount = Double.POSITIVE_INFINITY;
+        double maxAmount = Double.NEGATIVE_INFINITY;
+        boolean hasNaN;
+        int minDate = Integer.MAX_VALUE;
+        int maxDate = Integer.MIN_VALUE;
+        final BitSet currencies = new BitSet();
+
+        void add(double amount, int date, int currencyCode) {
+            if (Double.isNaN(amount)) {
+                hasNaN = true;
+            } else {
+                minAmount = Math.min(minAmount, amount);
+                maxAmount = Math.max(maxAmount, amount);
+            }
+            minDate = Math.min(minDate, date);
+            maxDate = Math.max(maxDate, date);
+            currencies.set(currencyCode);
+        }
+    }
+
+    /**
+     * 带区域映射的交易数据源：包装 OffHeapRecordExamples.TransactionStore，追加时增量维护每块的 ZoneMap
+     */
+    static final class ZoneMappedTransactionSource {
+        private final TransactionStore store;
+        private final int blockSize;
+        private final List<ZoneMap> zones = new ArrayList<>();
+
+        ZoneMappedTransactionSource(int blockSize) {
+            this(blockSize, 0);
+        }
+
+        ZoneMappedTransactionSource(int blockSize, int expectedRecords) {
+            if (blockSize < 1) {
+                throw new IllegalArgumentException("blockSize 必须大于 0: " + blockSize);
+            }
+            this.store = new TransactionStore(expectedRecords);
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * 先编码日期、准备好所在块的 ZoneMap，再写入存储；存储拒绝记录时区域映射不变，
+         * 写入成功后的区域更新不会失败，所以块边界始终与存储的槽位对齐
+         */
+        public long append(Transaction transaction) {
+            int date = Codecs.encodeDate(transaction.getDate());
+            boolean newBlock = store.size() % blockSize == 0;
+            ZoneMap zone = newBlock ? new ZoneMap() : zones.get(zones.size() - 1);
+            long index = store.append(transaction.getId(), transaction.getCurrency(), date, transaction.getAmount());
+            if (newBlock) {
+                zones.add(zone);
+            }
+            zone.add(transaction.getAmount(), date, store.currencyCode(transaction.getCurrency()));
+            return index;
+        }
+
+        TransactionStore getStore() {
+            return store;
+        }
+
+        int blockCount() {
+            return zones.size();
+        }
+
+        ZoneMap zone(int block) {
+            return zones.get(block);
+        }
+
+        long blockStart(int block) {
+            return (long) block * blockSize;
+        }
+
+        long blockEnd(int block) {
+            return Math.min(store.size(), blockStart(block) + blockSize);
+        }
+    }
+
+    /**
+     * 规划结果：同一列上的多个比较合并为闭区间 / 编码集合，无法下推的条件进入残余列表
+     */
+    static final class ScanPlan {
+        double minAmount = Double.NEGATIVE_INFINITY;
+        double maxAmount = Double.POSITIVE_INFINITY;
+        int minDate = Integer.MIN_VALUE;
+        int maxDate = Integer.MAX_VALUE;
+        BitSet currencies;
+        String idEquals;
+        /** 金额上有任何比较条件；NaN 不满足任何比较，即使区间无界也要排除 */
+        boolean amountCompared;
+        boolean unsatisfiable;
+        final List<Residual> residuals = new ArrayList<>();
+
+        boolean constrainsAmount() {
+            return minAmount != Double.NEGATIVE_INFINITY || maxAmount != Double.POSITIVE_INFINITY;
+        }
+
+        boolean constrainsDate() {
+            return minDate != Integer.MIN_VALUE || maxDate != Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 查询规划器：展开 AND，把比较折叠到 ScanPlan；类型不匹配在规划时报错
+     */
+    static final class QueryPlanner {
+        private QueryPlanner() {
+        }
+
+        static ScanPlan plan(Expr expr, TransactionStore store) {
+            ScanPlan plan = new ScanPlan();
+            if (expr != null) {
+                add(plan, expr, store);
+            }
+            if (plan.minAmount > plan.maxAmount || plan.minDate > plan.maxDate
+                || (plan.currencies != null && plan.currencies.isEmpty())) {
+                plan.unsatisfiable = true;
+            }
+            return plan;
+        }
+
+        private static void add(ScanPlan plan, Expr expr, TransactionStore store) {
+            if (expr instanceof And) {
+                for (Expr term : ((And) expr).terms) {
+                    add(plan, term, store);
+                }
+            } else if (expr instanceof Residual) {
+                plan.residuals.add((Residual) expr);
+            } else if (expr instanceof Comparison) {
+                Comparison c = (Comparison) expr;
+                switch (c.column) {
+                    case AMOUNT:
+                        addAmount(plan, c.op, toDouble(c));
+                        break;
+                    case DATE:
+                        addDate(plan, c.op, toDate(c));
+                        break;
+                    case CURRENCY:
+                        addCurrency(plan, c, store);
+                        break;
+                    default:
+                        if (c.op != Op.EQ || !(c.value instanceof String)) {
+                            throw new IllegalArgumentException("id 只支持字符串相等比较: " + c);
+                        }
+                        if (plan.idEquals != null && !plan.idEquals.equals(c.value)) {
+                            plan.unsatisfiable = true;
+                        }
+                        plan.idEquals = (String) c.value;
+                        break;
+                }
+            } else {
+                throw new IllegalArgumentException("不支持的表达式: " + expr);
+            }
+        }
+
+        /**
+         * 严格比较转换为闭区间：x > v 等价于 x >= nextUp(v)
+         */
+        private static void addAmount(ScanPlan plan, Op op, double value) {
+            plan.amountCompared = true;
+            if (Double.isNaN(value)) {
+                // 与 NaN 的比较恒为 false
+                plan.unsatisfiable = true;
+                return;
+            }
+            switch (op) {
+                case GT: plan.minAmount = Math.max(plan.minAmount, Math.nextUp(value)); break;
+                case GE: plan.minAmount = Math.max(plan.minAmount, value); break;
+                case LT: plan.maxAmount = Math.min(plan.maxAmount, Math.nextDown(value)); break;
+                case LE: plan.maxAmount = Math.min(plan.maxAmount, value); break;
+                case EQ:
+                    plan.minAmount = Math.max(plan.minAmount, value);
+                    plan.maxAmount = Math.min(plan.maxAmount, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("amount 不支持 " + op);
+            }
+        }
+
+        private static void addDate(ScanPlan plan, Op op, int value) {
+            switch (op) {
+                case GT: plan.minDate = Math.max(plan.minDate, value + 1); break;
+                case GE: plan.minDate = Math.max(plan.minDate, value); break;
+                case LT: plan.maxDate = Math.min(plan.maxDate, value - 1); break;
+                case LE: plan.maxDate = Math.min(plan.maxDate, value); break;
+                case EQ:
+                    plan.minDate = Math.max(plan.minDate, value);
+                    plan.maxDate = Math.min(plan.maxDate, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("date 不支持 " + op);
+            }
+        }
+
+        /**
+         * 货币值在规划时翻译成字典编码；字典中不存在的值直接让条件不可满足
+         */
+        private static void addCurrency(ScanPlan plan, Comparison c, TransactionStore store) {
+            List<?> values;
+            if (c.op == Op.EQ) {
+                values = Collections.singletonList(c.value);
+            } else if (c.op == Op.IN) {
+                values = (List<?>) c.value;
+            } else {
+                throw new IllegalArgumentException("currency 只支持 EQ / IN: " + c);
+            }
+            BitSet codes = new BitSet();
+            for (Object value : values) {
+                if (!(value instanceof String)) {
+                    throw new IllegalArgumentException("currency 的值必须是字符串: " + value);
+                }
+                int code = store.currencyCode((String) value);
+                if (code >= 0) {
+                    codes.set(code);
+                }
+            }
+            if (plan.currencies == null) {
+                plan.currencies = codes;
+            } else {
+                plan.currencies.and(codes);
+            }
+        }
+
+        private static double toDouble(Comparison c) {
+            if (!(c.value instanceof Number)) {
+                throw new IllegalArgumentException("amount 的值必须是数字: " + c);
+            }
+            return ((Number) c.value).doubleValue();
+        }
+
+        private static int toDate(Comparison c) {
+            if (!(c.value instanceof String)) {
+                throw new IllegalArgumentException("date 的值必须是 yyyy-MM-dd 字符串: " + c);
+            }
+            return Codecs.encodeDate((String) c.value);
+        }
+    }
+
+    /**
+     * 投影后的行：只包含 select 指定的列
+     */
+    static final class Row {
+        private final TxColumn[] columns;
+        private final Object[] values;
+
+        Row(TxColumn[] columns, Object[] values) {
+            this.columns = columns;
+            this.values = values;
+        }
+
+        public Object get(TxColumn column) {
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] == column) {
+                    return values[i];
+                }
+            }
+            throw new IllegalArgumentException("列未被投影: " + column);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("{");
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(columns[i].name().toLowerCase()).append('=').append(values[i]);
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    /**
+     * 一次执行的统计：扫描 / 跳过的块数、检查和匹配的记录数、为残余谓词物化的对象数
+     */
+    static final class QueryStats {
+        final LongAdder blocksScanned = new LongAdder();
+        final LongAdder blocksPruned = new LongAdder();
+        final LongAdder rowsExamined = new LongAdder();
+        final LongAdder rowsMatched = new LongAdder();
+        final LongAdder materialized = new LongAdder();
+
+        @Override
+        public String toString() {
+            return "QueryStats{扫描块=" + blocksScanned + ", 跳过块=" + blocksPruned
+                + ", 检查行=" + rowsExamined + ", 匹配行=" + rowsMatched + ", 物化对象=" + materialized + "}";
+        }
+    }
+
+    /**
+     * 下推查询：from(source).where(expr).select(columns)，终端操作 stream / toList / count / sumAmount
+     * 查询对象不可变；lastStats 记录最近一次执行的统计
+     */
+    static final class TransactionQuery {
+        private static final TxColumn[] ALL_COLUMNS = TxColumn.values();
+
+        private final ZoneMappedTransactionSource source;
+        private final Expr where;
+        private final TxColumn[] projection;
+        private volatile QueryStats lastStats = new QueryStats();
+
+        private TransactionQuery(ZoneMappedTransactionSource source, Expr where, TxColumn[] projection) {
+            this.source = source;
+            this.where = where;
+            this.projection = projection;
+        }
+
+        public static TransactionQuery from(ZoneMappedTransactionSource source) {
+            return new TransactionQuery(source, null, ALL_COLUMNS);
+        }
+
+        public TransactionQuery where(Expr expr) {
+            return new TransactionQuery(source, where == null ? expr : Exprs.and(where, expr), projection);
+        }
+
+        public TransactionQuery select(TxColumn... columns) {
+            if (columns.length == 0) {
+                throw new IllegalArgumentException("至少选择一列");
+            }
+            return new TransactionQuery(source, where, columns.clone());
+        }
+
+        public QueryStats lastStats() {
+            return lastStats;
+        }
+
+        /**
+         * 按块惰性产出匹配的行；可以 parallel()，每个块使用独立的视图
+         */
+        public Stream<Row> stream() {
+            ScanPlan plan = QueryPlanner.plan(where, source.getStore());
+            QueryStats stats = new QueryStats();
+            lastStats = stats;
+            if (plan.unsatisfiable) {
+                stats.blocksPruned.add(source.blockCount());
+                return Stream.empty();
+            }
+            return IntStream.range(0, source.blockCount())
+                .boxed()
+                .flatMap(block -> {
+                    List<Row> rows = new ArrayList<>();
+                    scanBlock(plan, block, source.getStore().newView(), stats,
+                        view -> rows.add(project(view)));
+                    return rows.stream();
+                });
+        }
+
+        public List<Row> toList() {
+            return stream().collect(Collectors.toList());
+        }
+
+        /**
+         * 聚合下推：不产生任何行对象
+         */
+        public long count() {
+            long[] count = new long[1];
+            scanAll(view -> count[0]++);
+            return count[0];
+        }
+
+        public double sumAmount() {
+            double[] sum = new double[1];
+            scanAll(view -> sum[0] += view.getAmount());
+            return sum[0];
+        }
+
+        public String explain() {
+            ScanPlan plan = QueryPlanner.plan(where, source.getStore());
+            StringBuilder sb = new StringBuilder();
+            sb.append("Scan TransactionStore (").append(source.getStore().size()).append(" 条, ")
+                .append(source.blockCount()).append(" 块)\n");
+            List<String> pushed = new ArrayList<>();
+            if (plan.constrainsAmount()) {
+                pushed.add("amount ∈ [" + plan.minAmount + ", " + plan.maxAmount + "]");
+            }
+            if (plan.constrainsDate()) {
+                pushed.add("date ∈ [" + plan.minDate + ", " + plan.maxDate + "]");
+            }
+            if (plan.currencies != null) {
+                pushed.add("currency ∈ " + plan.currencies.stream().mapToObj(source.getStore()::currencyName)
+                    .collect(Collectors.toList()));
+            }
+            if (plan.idEquals != null) {
+                pushed.add("id = " + plan.idEquals);
+            }
+            sb.append("  下推谓词: ").append(pushed.isEmpty() ? "无" : String.join(", ", pushed)).append('\n');
+            sb.append("  残余谓词: ").append(plan.residuals.isEmpty() ? "无" : plan.residuals).append('\n');
+            sb.append("  投影: ").append(Arrays.toString(projection));
+            if (plan.unsatisfiable) {
+                sb.append("\n  条件不可满足，不扫描任何块");
+            }
+            return sb.toString();
+        }
+
+        private void scanAll(Consumer<TransactionView> action) {
+            ScanPlan plan = QueryPlanner.plan(where, source.getStore());
+            QueryStats stats = new QueryStats();
+            lastStats = stats;
+            if (plan.unsatisfiable) {
+                stats.blocksPruned.add(source.blockCount());
+                return;
+            }
+            TransactionView view = source.getStore().newView();
+            for (int block = 0; block < source.blockCount(); block++) {
+                scanBlock(plan, block, view, stats, action);
+            }
+        }
+
+        /**
+         * 扫描一个块：先用区域映射判断整块跳过或整列免检，再逐条按从廉价到昂贵的顺序比较字段
+         */
+        private void scanBlock(ScanPlan plan, int block, TransactionView view, QueryStats stats,
+                               Consumer<TransactionView> action) {
+            ZoneMap zone = source.zone(block);
+            if (zone.maxAmount < plan.minAmount || zone.minAmount > plan.maxAmount
+                || zone.maxDate < plan.minDate || zone.minDate > plan.maxDate
+                || (plan.currencies != null && !plan.currencies.intersects(zone.currencies))) {
+                stats.blocksPruned.increment();
+                return;
+            }
+            stats.blocksScanned.increment();
+
+            // 块内所有值都落在区间内的列不需要逐条比较
+            boolean checkAmount = plan.amountCompared
+                && (zone.hasNaN || zone.minAmount < plan.minAmount || zone.maxAmount > plan.maxAmount);
+            boolean checkDate = zone.minDate < plan.minDate || zone.maxDate > plan.maxDate;
+            BitSet currencies = plan.currencies;
+            boolean checkCurrency = false;
+            if (currencies != null) {
+                BitSet outside = (BitSet) zone.currencies.clone();
+                outside.andNot(currencies);
+                checkCurrency = !outside.isEmpty();
+            }
+
+            TransactionStore store = source.getStore();
+            long end = source.blockEnd(block);
+            long examined = 0;
+            long matched = 0;
+            long materialized = 0;
+            for (long i = source.blockStart(block); i < end; i++) {
+                store.moveTo(i, view);
+                examined++;
+                if (checkCurrency && !currencies.get(view.getCurrencyCode())) {
+                    continue;
+                }
+                if (checkDate) {
+                    int date = view.getDateValue();
+                    if (date < plan.minDate || date > plan.maxDate) {
+                        continue;
+                    }
+                }
+                if (checkAmount) {
+                    double amount = view.getAmount();
+                    if (!(amount >= plan.minAmount && amount <= plan.maxAmount)) {
+                        continue;
+                    }
+                }
+                if (plan.idEquals != null && !plan.idEquals.equals(view.getId())) {
+                    continue;
+                }
+                if (!plan.residuals.isEmpty()) {
+                    Transaction transaction = view.toTransaction();
+                    materialized++;
+                    if (!testResiduals(plan.residuals, transaction)) {
+                        continue;
+                    }
+                }
+                matched++;
+                action.accept(view);
+            }
+            stats.rowsExamined.add(examined);
+            stats.rowsMatched.add(matched);
+            stats.materialized.add(materialized);
+        }
+
+        private static boolean testResiduals(List<Residual> residuals, Transaction transaction) {
+            for (Residual residual : residuals) {
+                if (!residual.predicate.test(transaction)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 只读取被投影的字段
+         */
+        private Row project(TransactionView view) {
+            Object[] values = new Object[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                switch (projection[i]) {
+                    case ID: values[i] = view.getId(); break;
+                    case AMOUNT: values[i] = view.getAmount(); break;
+                    case CURRENCY: values[i] = view.getCurrency(); break;
+                    default: values[i] = view.getDate(); break;
+                }
+            }
+            return new Row(projection, values);
+        }
+    }
+}
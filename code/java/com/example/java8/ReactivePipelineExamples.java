@@ -0,0 +1,717 @@
+package com.example.java8;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import com.example.java8.StreamAdvancedExamples.Transaction;
+
+/**
+ * Java 8 响应式管道示例类
+ * 把 streamApiCompositionAndChaining 中 Function&lt;Stream, Stream&gt; 形式的阶段搬到推送式数据源上：
+ * 按需求（request(n)）驱动的背压、有界缓冲、异步边界以及每个阶段独立的并发度
+ */
+public class ReactivePipelineExamples {
+
+    /**
+     * 与 StreamAdvancedExamples.streamApiCompositionAndChaining 中相同的阶段函数
+     */
+    static final Function<Stream<Transaction>, Stream<Transaction>> highValueFilter =
+        stream -> stream.filter(t -> t.getAmount() > 150);
+
+    static final Function<Stream<Transaction>, Stream<String>> currencyExtractor =
+        stream -> stream.map(Transaction::getCurrency);
+
+    static final Function<Stream<Transaction>, Stream<Transaction>> usdOnlyFilter =
+        stream -> stream.filter(t -> "USD".equals(t.getCurrency()));
+
+    /**
+     * 1. 复用已有的阶段函数处理推送的交易
+     */
+    public static void composedStagesOverFeed() throws Exception {
+        System.out.println("=== 在推送数据源上复用阶段函数 ===");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            FeedPublisher<Transaction> feed = new FeedPublisher<>(executor, 16);
+            List<String> received = Collections.synchronizedList(new ArrayList<>());
+
+            CompletableFuture<Long> done = ReactivePipeline.from(feed, executor)
+                .via(highValueFilter)
+                .via(usdOnlyFilter)
+                .via(currencyExtractor)
+                .subscribe(received::add);
+
+            feed.submit(new Transaction("T001", 100.0, "USD", "2024-01-01"));
+            feed.submit(new Transaction("T002", 200.0, "EUR", "2024-01-02"));
+            feed.submit(new Transaction("T003", 150.0, "USD", "2024-01-03"));
+            feed.submit(new Transaction("T004", 300.0, "GBP", "2024-01-04"));
+            feed.submit(new Transaction("T005", 250.0, "USD", "2024-01-05"));
+            feed.submit(new Transaction("T006", 500.0, "USD", "2024-01-06"));
+            feed.close();
+
+            System.out.println("下游收到 " + done.get(5, TimeUnit.SECONDS) + " 个元素: " + received);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 2. 背压：快速生产者 + 慢速消费者，缓冲区有界，生产者被 submit 阻塞而不是无限堆积
+     */
+    public static void backpressure() throws Exception {
+        System.out.println("\n=== 背压 ===");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            int bufferSize = 8;
+            FeedPublisher<Transaction> feed = new FeedPublisher<>(executor, bufferSize);
+            AtomicInteger consumed = new AtomicInteger();
+
+            CompletableFuture<Long> done = ReactivePipeline.from(feed, executor)
+                .bufferSize(bufferSize)
+                .via(highValueFilter)
+                .subscribe(t -> {
+                    sleepQuietly(1);
+                    consumed.incrementAndGet();
+                });
+
+            int total = 200;
+            int maxAhead = 0;
+            int rejected = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < total; i++) {
+                Transaction t = new Transaction("T" + i, 200 + i, "USD", "2024-01-01");
+                // offer 不阻塞，缓冲区满时返回 false；这里统计拒绝次数后改用阻塞的 submit
+                if (!feed.offer(t)) {
+                    rejected++;
+                    feed.submit(t);
+                }
+                maxAhead = Math.max(maxAhead, i + 1 - consumed.get());
+            }
+            long producerMillis = (System.nanoTime() - start) / 1_000_000;
+            feed.close();
+            long count = done.get(30, TimeUnit.SECONDS);
+
+            System.out.println("消费元素数: " + count);
+            System.out.println("生产者耗时: " + producerMillis + "ms（被背压减速）, offer 被拒绝次数: " + rejected);
+            System.out.println("生产者最多领先消费者: " + maxAhead + " 个元素（受各级缓冲区约束）");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 3. 每个阶段独立的并发度：慢速的富化阶段开多个工作者，其余阶段保持单线程有序
+     */
+    public static void perStageConcurrency() throws Exception {
+        System.out.println("\n=== 阶段并发度 ===");
+
+        Function<Stream<Transaction>, Stream<Transaction>> slowEnrichment = stream -> stream.peek(t -> sleepQuietly(2));
+
+        for (int concurrency : new int[] {1, 4}) {
+            ExecutorService executor = Executors.newFixedThreadPool(6);
+            try {
+                FeedPublisher<Transaction> feed = new FeedPublisher<>(executor, 32);
+                CompletableFuture<Long> done = ReactivePipeline.from(feed, executor)
+                    .batchSize(4)
+                    .via(slowEnrichment, concurrency)
+                    .via(usdOnlyFilter)
+                    .subscribe(t -> { });
+
+                long start = System.nanoTime();
+                for (int i = 0; i < 200; i++) {
+                    feed.submit(new Transaction("T" + i, i, i % 2 == 0 ? "USD" : "EUR", "2024-01-01"));
+                }
+                feed.close();
+                long count = done.get(30, TimeUnit.SECONDS);
+                System.out.printf("富化阶段并发度 %d: %d 个 USD 交易, 耗时 %dms%n",
+                    concurrency, count, (System.nanoTime() - start) / 1_000_000);
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 4. 错误传播：阶段抛出的异常取消上游并以 onError 结束下游
+     */
+    public static void errorPropagation() throws Exception {
+        System.out.println("\n=== 错误传播 ===");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            FeedPublisher<Transaction> feed = new FeedPublisher<>(executor, 16);
+            Function<Stream<Transaction>, Stream<Transaction>> validator = stream -> stream.peek(t -> {
+                if (t.getAmount() < 0) {
+                    throw new IllegalArgumentException("金额不能为负: " + t.getId());
+                }
+            });
+
+            CompletableFuture<Long> done = ReactivePipeline.from(feed, executor)
+                .via(validator)
+                .subscribe(t -> { });
+
+            feed.submit(new Transaction("T001", 100.0, "USD", "2024-01-01"));
+            feed.submit(new Transaction("T002", -5.0, "USD", "2024-01-02"));
+            feed.close();
+
+            try {
+                done.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                System.out.println("管道失败: " + e.getCause().getMessage());
+            }
+            System.out.println("上游已取消: " + feed.isCancelled());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) throws Exception {
+        composedStagesOverFeed();
+        backpressure();
+        perStageConcurrency();
+        errorPropagation();
+    }
+
+    /**
+     * 与 Java 9 java.util.concurrent.Flow 相同的接口定义（Java 8 中没有 Flow）
+     * 方法签名保持一致，升级后把引用换成 java.util.concurrent.Flow 即可
+     */
+    static final class Flow {
+        private Flow() {
+        }
+
+        interface Publisher<T> {
+            void subscribe(Subscriber<? super T> subscriber);
+        }
+
+        interface Subscriber<T> {
+            void onSubscribe(Subscription subscription);
+
+            void onNext(T item);
+
+            void onError(Throwable throwable);
+
+            void onComplete();
+        }
+
+        interface Subscription {
+            void request(long n);
+
+            void cancel();
+        }
+
+        interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+        }
+    }
+
+    /**
+     * 有界的单订阅者发射器：保存已发射但下游尚未请求的元素
+     * 容量通过 reserve/release 管理，投递在 executor 上串行执行（wip 计数保证同一时刻只有一个投递循环）
+     */
+    static final class BoundedEmitter<T> implements Flow.Subscription {
+        private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger free;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final Executor executor;
+        private final Runnable onSpace;
+        private final Runnable onCancel;
+        private volatile Flow.Subscriber<? super T> subscriber;
+        private volatile boolean ready;
+        private volatile boolean done;
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        private boolean terminated;
+
+        BoundedEmitter(Executor executor, int capacity, Runnable onSpace, Runnable onCancel) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("capacity 必须大于 0: " + capacity);
+            }
+            this.free = new AtomicInteger(capacity);
+            this.executor = executor;
+            this.onSpace = onSpace;
+            this.onCancel = onCancel;
+        }
+
+        void attach(Flow.Subscriber<? super T> s) {
+            if (subscriber != null) {
+                s.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                s.onError(new IllegalStateException("只支持一个订阅者"));
+                return;
+            }
+            subscriber = s;
+            s.onSubscribe(this);
+            ready = true;
+            signal();
+        }
+
+        /**
+         * 预留最多 max 个缓冲槽位，返回实际预留的数量
+         */
+        int reserve(int max) {
+            for (;;) {
+                int available = free.get();
+                int granted = Math.min(available, max);
+                if (granted <= 0 || free.compareAndSet(available, available - granted)) {
+                    return Math.max(granted, 0);
+                }
+            }
+        }
+
+        boolean hasFreeSlots() {
+            return free.get() > 0;
+        }
+
+        void release(int slots) {
+            if (slots > 0) {
+                free.addAndGet(slots);
+            }
+        }
+
+        /**
+         * 发射一个已经预留过槽位的元素
+         */
+        void emitReserved(T item) {
+            queue.offer(item);
+            signal();
+        }
+
+        boolean tryEmit(T item) {
+            if (reserve(1) == 0) {
+                return false;
+            }
+            emitReserved(item);
+            return true;
+        }
+
+        void complete() {
+            done = true;
+            signal();
+        }
+
+        void error(Throwable throwable) {
+            error = throwable;
+            done = true;
+            signal();
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error(new IllegalArgumentException("request 的数量必须为正数: " + n));
+                return;
+            }
+            for (;;) {
+                long current = requested.get();
+                long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                if (requested.compareAndSet(current, next)) {
+                    break;
+                }
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                queue.clear();
+                onCancel.run();
+            }
+        }
+
+        private void signal() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            for (;;) {
+                if (ready && !terminated) {
+                    drainOnce();
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void drainOnce() {
+            Flow.Subscriber<? super T> s = subscriber;
+            long demand = requested.get();
+            long emitted = 0;
+            while (emitted != demand && !cancelled) {
+                T item = queue.poll();
+                if (item == null) {
+                    break;
+                }
+                s.onNext(item);
+                emitted++;
+            }
+            if (emitted != 0) {
+                if (demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+                free.addAndGet((int) emitted);
+                onSpace.run();
+            }
+            if (cancelled) {
+                terminated = true;
+                return;
+            }
+            // 先投递完缓冲区中的元素，再发送终止信号
+            if (done && queue.isEmpty()) {
+                terminated = true;
+                Throwable e = error;
+                if (e != null) {
+                    s.onError(e);
+                } else {
+                    s.onComplete();
+                }
+            }
+        }
+    }
+
+    /**
+     * 推送式数据源：外部线程通过 offer（缓冲区满时返回 false）或 submit（阻塞等待空位）推入元素
+     */
+    static final class FeedPublisher<T> implements Flow.Publisher<T> {
+        private final Object lock = new Object();
+        private final BoundedEmitter<T> emitter;
+
+        FeedPublisher(Executor executor, int bufferSize) {
+            this.emitter = new BoundedEmitter<>(executor, bufferSize, this::wakeProducers, this::wakeProducers);
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super T> subscriber) {
+            emitter.attach(subscriber);
+        }
+
+        public boolean offer(T item) {
+            Objects.requireNonNull(item, "item");
+            return !emitter.isCancelled() && emitter.tryEmit(item);
+        }
+
+        /**
+         * 阻塞直到有空位；订阅已被取消时丢弃元素并返回 false
+         */
+        public boolean submit(T item) throws InterruptedException {
+            Objects.requireNonNull(item, "item");
+            synchronized (lock) {
+                while (!emitter.isCancelled()) {
+                    if (emitter.tryEmit(item)) {
+                        return true;
+                    }
+                    // 带超时等待，防止错过唤醒
+                    lock.wait(10);
+                }
+            }
+            return false;
+        }
+
+        public void close() {
+            emitter.complete();
+        }
+
+        public void closeExceptionally(Throwable error) {
+            emitter.error(error);
+        }
+
+        public boolean isCancelled() {
+            return emitter.isCancelled();
+        }
+
+        private void wakeProducers() {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 把一个 Function&lt;Stream&lt;T&gt;, Stream&lt;R&gt;&gt; 阶段包装成 Processor
+     * 上游元素进入有界的输入缓冲区，最多 concurrency 个工作者按微批次取出元素、用 stage 处理后写入输出缓冲区；
+     * 工作者先在输出缓冲区预留与批次同样多的槽位，因此阶段只能是 filter/map/peek 这类每个输入至多产出一个元素的操作。
+     * concurrency 为 1 时保持元素顺序
+     */
+    static final class StageProcessor<T, R> implements Flow.Processor<T, R> {
+        private final Function<Stream<T>, Stream<R>> stage;
+        private final Executor executor;
+        private final int concurrency;
+        private final int batchSize;
+        private final ArrayBlockingQueue<T> inbound;
+        private final BoundedEmitter<R> outbound;
+        private final AtomicInteger activeWorkers = new AtomicInteger();
+        private final AtomicBoolean terminated = new AtomicBoolean();
+        private volatile Flow.Subscription upstream;
+        private volatile boolean upstreamDone;
+
+        StageProcessor(Function<Stream<T>, Stream<R>> stage, Executor executor,
+                       int concurrency, int bufferSize, int batchSize) {
+            if (concurrency < 1 || batchSize < 1) {
+                throw new IllegalArgumentException("concurrency 和 batchSize 必须大于 0");
+            }
+            this.stage = stage;
+            this.executor = executor;
+            this.concurrency = concurrency;
+            this.batchSize = Math.min(batchSize, bufferSize);
+            this.inbound = new ArrayBlockingQueue<>(bufferSize);
+            this.outbound = new BoundedEmitter<>(executor, bufferSize, this::schedule, this::cancelUpstream);
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super R> subscriber) {
+            outbound.attach(subscriber);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            subscription.request(inbound.remainingCapacity());
+        }
+
+        @Override
+        public void onNext(T item) {
+            if (!inbound.offer(item)) {
+                // 上游发送的元素超过了请求数量
+                fail(new IllegalStateException("上游违反背压约定，输入缓冲区已满"));
+                return;
+            }
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            upstreamDone = true;
+            if (terminated.compareAndSet(false, true)) {
+                outbound.error(throwable);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            upstreamDone = true;
+            tryComplete();
+        }
+
+        /**
+         * 在并发度允许、输入非空且输出有空位时启动工作者
+         */
+        private void schedule() {
+            for (;;) {
+                int active = activeWorkers.get();
+                if (active >= concurrency || inbound.isEmpty() || !outbound.hasFreeSlots() || terminated.get()) {
+                    return;
+                }
+                if (activeWorkers.compareAndSet(active, active + 1)) {
+                    executor.execute(this::work);
+                }
+            }
+        }
+
+        private void work() {
+            try {
+                List<T> batch = new ArrayList<>(batchSize);
+                while (!terminated.get()) {
+                    int slots = outbound.reserve(batchSize);
+                    if (slots == 0) {
+                        break;
+                    }
+                    inbound.drainTo(batch, slots);
+                    if (batch.isEmpty()) {
+                        outbound.release(slots);
+                        break;
+                    }
+                    upstream.request(batch.size());
+                    process(batch, slots);
+                    batch.clear();
+                }
+            } catch (Throwable e) {
+                fail(e);
+            } finally {
+                activeWorkers.decrementAndGet();
+            }
+            tryComplete();
+            // 退出期间可能有新的输入或空位到达
+            schedule();
+        }
+
+        private void process(List<T> batch, int slots) {
+            int[] produced = {0};
+            stage.apply(batch.stream()).forEachOrdered(result -> {
+                if (produced[0] == slots) {
+                    throw new IllegalStateException("阶段产出的元素多于输入，不能用于有界缓冲");
+                }
+                produced[0]++;
+                outbound.emitReserved(result);
+            });
+            outbound.release(slots - produced[0]);
+        }
+
+        private void tryComplete() {
+            if (upstreamDone && inbound.isEmpty() && activeWorkers.get() == 0
+                && terminated.compareAndSet(false, true)) {
+                outbound.complete();
+            }
+        }
+
+        private void fail(Throwable e) {
+            if (terminated.compareAndSet(false, true)) {
+                cancelUpstream();
+                inbound.clear();
+                outbound.error(e);
+            }
+        }
+
+        private void cancelUpstream() {
+            Flow.Subscription s = upstream;
+            if (s != null) {
+                s.cancel();
+            }
+        }
+    }
+
+    /**
+     * 终端订阅者：每次请求 prefetch 个元素，消费掉一半后再补充；完成时 completion 得到元素总数
+     */
+    static final class ConsumerSubscriber<T> implements Flow.Subscriber<T> {
+        private final Consumer<? super T> consumer;
+        private final int prefetch;
+        private final CompletableFuture<Long> completion = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+        private long count;
+        private int consumedSinceRequest;
+
+        ConsumerSubscriber(Consumer<? super T> consumer, int prefetch) {
+            this.consumer = consumer;
+            this.prefetch = prefetch;
+        }
+
+        CompletableFuture<Long> getCompletion() {
+            return completion;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(prefetch);
+        }
+
+        @Override
+        public void onNext(T item) {
+            try {
+                consumer.accept(item);
+            } catch (Throwable e) {
+                subscription.cancel();
+                completion.completeExceptionally(e);
+                return;
+            }
+            count++;
+            int limit = Math.max(1, prefetch / 2);
+            if (++consumedSinceRequest == limit) {
+                consumedSinceRequest = 0;
+                subscription.request(limit);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(count);
+        }
+    }
+
+    /**
+     * 响应式管道的构建器：from(publisher).via(stage)...subscribe(consumer)
+     * 每个 via 都是一个异步边界，拥有自己的有界缓冲区
+     */
+    static final class ReactivePipeline<T> {
+        static final int DEFAULT_BUFFER_SIZE = 256;
+        static final int DEFAULT_BATCH_SIZE = 32;
+
+        private final Flow.Publisher<T> publisher;
+        private final Executor executor;
+        private final int bufferSize;
+        private final int batchSize;
+
+        private ReactivePipeline(Flow.Publisher<T> publisher, Executor executor, int bufferSize, int batchSize) {
+            this.publisher = publisher;
+            this.executor = executor;
+            this.bufferSize = bufferSize;
+            this.batchSize = batchSize;
+        }
+
+        public static <T> ReactivePipeline<T> from(Flow.Publisher<T> publisher, Executor executor) {
+            return new ReactivePipeline<>(publisher, executor, DEFAULT_BUFFER_SIZE, DEFAULT_BATCH_SIZE);
+        }
+
+        /**
+         * 之后添加的阶段使用的缓冲区大小
+         */
+        public ReactivePipeline<T> bufferSize(int bufferSize) {
+            return new ReactivePipeline<>(publisher, executor, bufferSize, batchSize);
+        }
+
+        /**
+         * 之后添加的阶段每个微批次的最大元素数
+         */
+        public ReactivePipeline<T> batchSize(int batchSize) {
+            return new ReactivePipeline<>(publisher, executor, bufferSize, batchSize);
+        }
+
+        public <R> ReactivePipeline<R> via(Function<Stream<T>, Stream<R>> stage) {
+            return via(stage, 1);
+        }
+
+        public <R> ReactivePipeline<R> via(Function<Stream<T>, Stream<R>> stage, int concurrency) {
+            StageProcessor<T, R> processor = new StageProcessor<>(stage, executor, concurrency, bufferSize, batchSize);
+            publisher.subscribe(processor);
+            return new ReactivePipeline<>(processor, executor, bufferSize, batchSize);
+        }
+
+        public CompletableFuture<Long> subscribe(Consumer<? super T> consumer) {
+            ConsumerSubscriber<T> subscriber = new ConsumerSubscriber<>(consumer, Math.min(bufferSize, 64));
+            publisher.subscribe(subscriber);
+            return subscriber.getCompletion();
+        }
+    }
+}
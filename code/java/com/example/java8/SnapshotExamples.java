@@ -0,0 +1,711 @@
+package com.example.java8;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+import java.util.zip.CRC32;
+
+import com.example.java8.StreamAdvancedExamples.Order;
+import com.example.java8.StreamAdvancedExamples.OrderStats;
+import com.example.java8.StreamAdvancedExamples.Transaction;
+import com.example.java8.StreamAdvancedExamples.TransactionSummary;
+
+/**
+ * Java 8 聚合快照示例类
+ * 服务重启时按类别的 OrderStats 和按币种的 TransactionSummary 需要扫描全部历史重新计算。
+ * 这里定期把聚合状态写成紧凑的二进制快照（临时文件 + fsync + 原子重命名，CRC32 校验），
+ * 启动时通过内存映射读回快照，只回放快照位置之后的新记录，启动时间与历史长度无关
+ */
+public class SnapshotExamples {
+
+    /**
+     * 1. 写入快照并通过内存映射读回
+     */
+    public static void snapshotRoundTrip() {
+        System.out.println("=== 快照写入与读回 ===");
+
+        InMemoryLog<Order> orders = new InMemoryLog<>(Arrays.asList(
+            new Order("A001", "Laptop", 1200.0, "Electronics", "2024-01-15"),
+            new Order("A002", "Mouse", 25.0, "Electronics", "2024-01-16"),
+            new Order("A003", "Desk", 300.0, "Furniture", "2024-01-17"),
+            new Order("A004", "Keyboard", 80.0, "Electronics", "2024-01-18"),
+            new Order("A005", "Chair", 150.0, "Furniture", "2024-01-19"),
+            new Order("A006", "Monitor", 400.0, "Electronics", "2024-01-20")
+        ));
+        InMemoryLog<Transaction> transactions = new InMemoryLog<>(Arrays.asList(
+            new Transaction("T001", 100.0, "USD", "2024-01-15"),
+            new Transaction("T002", 200.0, "EUR", "2024-01-16"),
+            new Transaction("T003", 150.0, "USD", "2024-01-17"),
+            new Transaction("T004", 300.0, "GBP", "2024-01-18"),
+            new Transaction("T005", 250.0, "EUR", "2024-01-19")
+        ));
+
+        Path dir = SnapshotStore.createDirectory();
+        try {
+            SnapshotStore store = new SnapshotStore(dir.resolve("summaries.snap"));
+            AggregateState state = AggregateState.rebuild(orders, transactions);
+            long bytes = store.write(state);
+
+            AggregateState loaded = store.load().orElseThrow(IllegalStateException::new);
+            System.out.println("快照大小: " + bytes + " 字节, 与内存状态一致: " + state.equals(loaded));
+            loaded.orderStats().forEach((category, stats) -> System.out.printf(
+                "  %-12s 总额 %.2f, 均价 %.2f, 最高 %.2f, 最低 %.2f, 数量 %d%n", category,
+                stats.getTotalValue(), stats.getAvgPrice(), stats.getMaxPrice(), stats.getMinPrice(),
+                stats.getCount()));
+            loaded.transactionSummaries().forEach((currency, summary) -> System.out.printf(
+                "  %-12s 总额 %.2f, 平均 %.2f, 数量 %d%n", currency, summary.getTotal(), summary.getAverage(),
+                summary.getCount()));
+            System.out.println("快照位置: 订单 " + loaded.getOrderPosition()
+                + ", 交易 " + loaded.getTransactionPosition());
+        } finally {
+            SnapshotStore.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * 2. 冷启动与热启动：冷启动扫描全部历史，热启动只读快照并回放尾部
+     */
+    public static void warmRestart(int[] historySizes, int tail) {
+        System.out.println("\n=== 冷启动与热启动 ===");
+
+        for (int history : historySizes) {
+            InMemoryLog<Order> orders = new InMemoryLog<>(JoinExamples.generateOrders(history + tail, 50_000));
+            InMemoryLog<Transaction> transactions = new InMemoryLog<>(
+                MemoryGovernorExamples.generateTransactions(history + tail, 50_000));
+            Path dir = SnapshotStore.createDirectory();
+            try {
+                SnapshotStore store = new SnapshotStore(dir.resolve("summaries.snap"));
+                // 上一次运行在处理到 history 条记录时写下快照，之后又到达了 tail 条
+                store.write(AggregateState.rebuild(orders.prefix(history), transactions.prefix(history)));
+
+                long start = System.nanoTime();
+                AggregateState cold = AggregateState.rebuild(orders, transactions);
+                double coldMs = (System.nanoTime() - start) / 1e6;
+
+                SummaryService service = SummaryService.recover(store, orders, transactions, Long.MAX_VALUE);
+                System.out.printf("历史 %7d 条: 冷启动 %7.2fms, %s, 结果一致: %b%n", history, coldMs,
+                    service.getRecovery(), cold.equals(service.copyState()));
+            } finally {
+                SnapshotStore.deleteDirectory(dir);
+            }
+        }
+    }
+
+    /**
+     * 3. 故障场景：写快照中途崩溃只会留下临时文件，快照损坏时由 CRC 发现并退回冷启动，
+     * 快照位置超过日志末尾时同样丢弃快照
+     */
+    public static void crashAndCorruption() {
+        System.out.println("\n=== 崩溃与损坏 ===");
+
+        InMemoryLog<Order> orders = new InMemoryLog<>(JoinExamples.generateOrders(20_000, 1_000));
+        InMemoryLog<Transaction> transactions = new InMemoryLog<>(
+            MemoryGovernorExamples.generateTransactions(20_000, 1_000));
+        Path dir = SnapshotStore.createDirectory();
+        try {
+            Path file = dir.resolve("summaries.snap");
+            SnapshotStore store = new SnapshotStore(file);
+            store.write(AggregateState.rebuild(orders.prefix(10_000), transactions.prefix(10_000)));
+
+            // 写新快照时崩溃：临时文件只写了一半，正式文件仍是上一个完整快照
+            Files.write(store.temporaryFile(), new byte[] {'S', 'N', 'A'});
+            SummaryService afterCrash = SummaryService.recover(store, orders, transactions, Long.MAX_VALUE);
+            System.out.println("写快照时崩溃: " + afterCrash.getRecovery());
+
+            // 快照内容被破坏：翻转中间的一个字节
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length / 2] ^= 0x40;
+            Files.write(file, bytes);
+            SummaryService afterCorruption = SummaryService.recover(store, orders, transactions, Long.MAX_VALUE);
+            System.out.println("快照损坏: " + afterCorruption.getRecovery());
+            System.out.println("两次恢复结果一致: " + afterCrash.copyState().equals(afterCorruption.copyState()));
+
+            // 快照比日志新：日志只剩前 5000 条，快照位置在日志末尾之后
+            store.write(AggregateState.rebuild(orders.prefix(10_000), transactions.prefix(10_000)));
+            SummaryService aheadOfLog = SummaryService.recover(store, orders.prefix(5_000),
+                transactions.prefix(5_000), Long.MAX_VALUE);
+            System.out.println("快照比日志新: " + aheadOfLog.getRecovery());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            SnapshotStore.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * 4. 在线摄入时按记录数定期写检查点，重启后从最近的检查点继续
+     */
+    public static void periodicCheckpoints(int records, long interval) {
+        System.out.println("\n=== 定期检查点 ===");
+
+        List<Order> incomingOrders = JoinExamples.generateOrders(records, 5_000);
+        List<Transaction> incomingTransactions = MemoryGovernorExamples.generateTransactions(records, 5_000);
+        InMemoryLog<Order> orders = new InMemoryLog<>(Collections.emptyList());
+        InMemoryLog<Transaction> transactions = new InMemoryLog<>(Collections.emptyList());
+        Path dir = SnapshotStore.createDirectory();
+        try {
+            SnapshotStore store = new SnapshotStore(dir.resolve("summaries.snap"));
+            SummaryService service = SummaryService.recover(store, orders, transactions, interval);
+            System.out.println("首次启动: " + service.getRecovery());
+            for (int i = 0; i < records; i++) {
+                service.record(incomingOrders.get(i));
+                service.record(incomingTransactions.get(i));
+            }
+            System.out.println("摄入 " + 2 * records + " 条记录, 写检查点 " + service.getCheckpoints() + " 次");
+
+            SummaryService restarted = SummaryService.recover(store, orders, transactions, interval);
+            System.out.println("重启: " + restarted.getRecovery());
+            System.out.println("与重启前一致: " + service.copyState().equals(restarted.copyState()));
+            Map<String, TransactionSummary> summaries = restarted.transactionSummaries();
+            summaries.forEach((currency, summary) -> System.out.printf("  %s 总额 %.2f, 数量 %d%n", currency,
+                summary.getTotal(), summary.getCount()));
+        } finally {
+            SnapshotStore.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) {
+        int tail = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        snapshotRoundTrip();
+        warmRestart(new int[] {100_000, 200_000, 400_000}, tail);
+        crashAndCorruption();
+        periodicCheckpoints(50_000, 30_000);
+    }
+
+    /**
+     * 可从指定位置顺序回放的记录来源，位置的含义由实现决定，对快照来说是不透明的 long
+     */
+    interface RecordSource<T> {
+        /**
+         * 把 position 之后的记录依次交给 sink，返回回放结束时的位置
+         * position 超出来源范围（例如快照比日志新）时抛出 IllegalArgumentException
+         */
+        long replay(long position, Consumer<? super T> sink);
+    }
+
+    /**
+     * 可追加的记录来源，append 返回追加后的位置
+     */
+    interface RecordLog<T> extends RecordSource<T> {
+        long append(T record);
+
+        /**
+         * 确保已 append 的记录都已持久化；写快照前调用，保证快照位置不会超过日志中持久化的部分
+         */
+        default void sync() {
+        }
+    }
+
+    /**
+     * 以列表下标为位置的记录来源，模拟按主键顺序读取的历史表
+     */
+    static final class InMemoryLog<T> implements RecordLog<T> {
+        private final List<T> records;
+
+        InMemoryLog(List<T> records) {
+            this.records = new ArrayList<>(records);
+        }
+
+        InMemoryLog<T> prefix(int count) {
+            return new InMemoryLog<>(records.subList(0, count));
+        }
+
+        @Override
+        public synchronized long replay(long position, Consumer<? super T> sink) {
+            if (position < 0 || position > records.size()) {
+                throw new IllegalArgumentException("回放位置 " + position + " 不在日志范围 [0, " + records.size()
+                    + "] 内，快照比日志新");
+            }
+            records.subList((int) position, records.size()).forEach(sink);
+            return records.size();
+        }
+
+        @Override
+        public synchronized long append(T record) {
+            records.add(record);
+            return records.size();
+        }
+    }
+
+    /**
+     * 按类别的订单累加器，可以还原出 OrderStats
+     */
+    static final class OrderAccumulator {
+        long count;
+        double total;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        void add(double price) {
+            count++;
+            total += price;
+            min = Math.min(min, price);
+            max = Math.max(max, price);
+        }
+
+        OrderAccumulator copy() {
+            OrderAccumulator copy = new OrderAccumulator();
+            copy.count = count;
+            copy.total = total;
+            copy.min = min;
+            copy.max = max;
+            return copy;
+        }
+
+        OrderStats toStats() {
+            return new OrderStats(total, count == 0 ? 0 : total / count, max, min, (int) count);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof OrderAccumulator)) {
+                return false;
+            }
+            OrderAccumulator other = (OrderAccumulator) o;
+            return count == other.count && Double.compare(total, other.total) == 0
+                && Double.compare(min, other.min) == 0 && Double.compare(max, other.max) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(count, total, min, max);
+        }
+    }
+
+    /**
+     * 按币种的交易累加器，可以还原出 TransactionSummary
+     */
+    static final class TransactionAccumulator {
+        long count;
+        double total;
+
+        void add(double amount) {
+            count++;
+            total += amount;
+        }
+
+        TransactionAccumulator copy() {
+            TransactionAccumulator copy = new TransactionAccumulator();
+            copy.count = count;
+            copy.total = total;
+            return copy;
+        }
+
+        TransactionSummary toSummary() {
+            return new TransactionSummary(total, count == 0 ? 0 : total / count, (int) count);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TransactionAccumulator)) {
+                return false;
+            }
+            TransactionAccumulator other = (TransactionAccumulator) o;
+            return count == other.count && Double.compare(total, other.total) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(count, total);
+        }
+    }
+
+    /**
+     * 聚合状态：两组累加器加上各自已经处理到的来源位置
+     * 快照保存的是累加器而不是 OrderStats，这样读回后还能继续累加
+     */
+    static final class AggregateState {
+        final Map<String, OrderAccumulator> orders = new HashMap<>();
+        final Map<String, TransactionAccumulator> transactions = new HashMap<>();
+        long orderPosition;
+        long transactionPosition;
+
+        static AggregateState rebuild(RecordSource<Order> orders, RecordSource<Transaction> transactions) {
+            AggregateState state = new AggregateState();
+            state.catchUp(orders, transactions);
+            return state;
+        }
+
+        /**
+         * 从当前位置回放两个来源的剩余记录，返回回放的记录数
+         */
+        long catchUp(RecordSource<Order> orderSource, RecordSource<Transaction> transactionSource) {
+            long[] replayed = new long[1];
+            orderPosition = orderSource.replay(orderPosition, order -> {
+                add(order);
+                replayed[0]++;
+            });
+            transactionPosition = transactionSource.replay(transactionPosition, transaction -> {
+                add(transaction);
+                replayed[0]++;
+            });
+            return replayed[0];
+        }
+
+        void add(Order order) {
+            orders.computeIfAbsent(order.getCategory(), k -> new OrderAccumulator()).add(order.getPrice());
+        }
+
+        void add(Transaction transaction) {
+            transactions.computeIfAbsent(transaction.getCurrency(), k -> new TransactionAccumulator())
+                .add(transaction.getAmount());
+        }
+
+        AggregateState copy() {
+            AggregateState copy = new AggregateState();
+            orders.forEach((k, v) -> copy.orders.put(k, v.copy()));
+            transactions.forEach((k, v) -> copy.transactions.put(k, v.copy()));
+            copy.orderPosition = orderPosition;
+            copy.transactionPosition = transactionPosition;
+            return copy;
+        }
+
+        Map<String, OrderStats> orderStats() {
+            return orders.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey,
+                e -> e.getValue().toStats(), (a, b) -> a, TreeMap::new));
+        }
+
+        Map<String, TransactionSummary> transactionSummaries() {
+            return transactions.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey,
+                e -> e.getValue().toSummary(), (a, b) -> a, TreeMap::new));
+        }
+
+        long getOrderPosition() { return orderPosition; }
+        long getTransactionPosition() { return transactionPosition; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof AggregateState)) {
+                return false;
+            }
+            AggregateState other = (AggregateState) o;
+            return orderPosition == other.orderPosition && transactionPosition == other.transactionPosition
+                && orders.equals(other.orders) && transactions.equals(other.transactions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(orders, transactions, orderPosition, transactionPosition);
+        }
+    }
+
+    /**
+     * 快照文件，布局（大端）：
+     * magic:int | version:int | payloadLength:int | crc32(payload):int | payload
+     * payload = orderPosition:long | transactionPosition:long | createdMillis:long
+     *           | orderGroups:int | (key | count:long | total | min | max:double)*
+     *           | transactionGroups:int | (key | count:long | total:double)*
+     * key 为 UTF-8 字节数（short）加字节内容
+     */
+    static final class SnapshotStore {
+        static final int MAGIC = 0x534E4150;
+        static final int VERSION = 1;
+        static final int HEADER_BYTES = 16;
+
+        private final Path file;
+
+        SnapshotStore(Path file) {
+            this.file = file;
+        }
+
+        Path temporaryFile() {
+            return file.resolveSibling(file.getFileName() + ".tmp");
+        }
+
+        /**
+         * 写入快照，返回文件字节数
+         * 先完整写入临时文件并 fsync，再原子重命名覆盖正式文件，读者只会看到旧快照或新快照
+         */
+        long write(AggregateState state) {
+            ByteBuffer payload = encode(state);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(payload.remaining()).putInt((int) crc.getValue());
+            header.flip();
+
+            Path temporary = temporaryFile();
+            try {
+                try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteBuffer[] buffers = {header, payload};
+                    while (payload.hasRemaining()) {
+                        channel.write(buffers);
+                    }
+                    channel.force(true);
+                }
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                syncDirectory(file.toAbsolutePath().getParent());
+                return HEADER_BYTES + payload.limit();
+            } catch (IOException e) {
+                throw new UncheckedIOException("写快照失败: " + file, e);
+            }
+        }
+
+        /**
+         * 通过内存映射读回快照；文件不存在时返回 empty，校验失败时抛出 IllegalStateException
+         * 遗留的临时文件说明上次写快照中途失败，直接忽略
+         */
+        Optional<AggregateState> load() {
+            if (!Files.exists(file)) {
+                return Optional.empty();
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("快照长度异常: " + size);
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                    throw new IllegalStateException("不是可识别的快照文件: " + file);
+                }
+                int length = buffer.getInt();
+                int expectedCrc = buffer.getInt();
+                if (length != size - HEADER_BYTES) {
+                    throw new IllegalStateException("快照被截断: 期望 " + length + " 字节, 实际 "
+                        + (size - HEADER_BYTES));
+                }
+                CRC32 crc = new CRC32();
+                crc.update(buffer.duplicate());
+                if ((int) crc.getValue() != expectedCrc) {
+                    throw new IllegalStateException("快照 CRC 校验失败: " + file);
+                }
+                return Optional.of(decode(buffer));
+            } catch (BufferUnderflowException e) {
+                throw new IllegalStateException("快照内容不完整: " + file, e);
+            } catch (IOException e) {
+                throw new UncheckedIOException("读快照失败: " + file, e);
+            }
+        }
+
+        private static ByteBuffer encode(AggregateState state) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeLong(state.orderPosition);
+                out.writeLong(state.transactionPosition);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(state.orders.size());
+                for (Map.Entry<String, OrderAccumulator> e : state.orders.entrySet()) {
+                    writeKey(out, e.getKey());
+                    out.writeLong(e.getValue().count);
+                    out.writeDouble(e.getValue().total);
+                    out.writeDouble(e.getValue().min);
+                    out.writeDouble(e.getValue().max);
+                }
+                out.writeInt(state.transactions.size());
+                for (Map.Entry<String, TransactionAccumulator> e : state.transactions.entrySet()) {
+                    writeKey(out, e.getKey());
+                    out.writeLong(e.getValue().count);
+                    out.writeDouble(e.getValue().total);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return ByteBuffer.wrap(bytes.toByteArray());
+        }
+
+        private static AggregateState decode(ByteBuffer buffer) {
+            AggregateState state = new AggregateState();
+            state.orderPosition = buffer.getLong();
+            state.transactionPosition = buffer.getLong();
+            buffer.getLong();
+            for (int i = buffer.getInt(); i > 0; i--) {
+                OrderAccumulator acc = new OrderAccumulator();
+                String key = readKey(buffer);
+                acc.count = buffer.getLong();
+                acc.total = buffer.getDouble();
+                acc.min = buffer.getDouble();
+                acc.max = buffer.getDouble();
+                state.orders.put(key, acc);
+            }
+            for (int i = buffer.getInt(); i > 0; i--) {
+                TransactionAccumulator acc = new TransactionAccumulator();
+                String key = readKey(buffer);
+                acc.count = buffer.getLong();
+                acc.total = buffer.getDouble();
+                state.transactions.put(key, acc);
+            }
+            if (buffer.hasRemaining()) {
+                throw new IllegalStateException("快照末尾有多余的 " + buffer.remaining() + " 字节");
+            }
+            return state;
+        }
+
+        private static void writeKey(DataOutputStream out, String key) throws IOException {
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("分组 key 过长: " + bytes.length + " 字节");
+            }
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readKey(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.getShort()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * 重命名本身要落盘还需要 fsync 所在目录；不是所有平台都允许打开目录，失败时忽略
+         */
+        private static void syncDirectory(Path dir) {
+            try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException ignored) {
+                // Windows 等平台上无法对目录 fsync
+            }
+        }
+
+        static Path createDirectory() {
+            return JoinExamples.SpillFiles.createDirectory("snapshot-");
+        }
+
+        static void deleteDirectory(Path dir) {
+            JoinExamples.SpillFiles.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * 启动时的恢复方式和耗时
+     */
+    static final class Recovery {
+        private final boolean fromSnapshot;
+        private final String reason;
+        private final long replayed;
+        private final double loadMillis;
+        private final double replayMillis;
+
+        Recovery(boolean fromSnapshot, String reason, long replayed, double loadMillis, double replayMillis) {
+            this.fromSnapshot = fromSnapshot;
+            this.reason = reason;
+            this.replayed = replayed;
+            this.loadMillis = loadMillis;
+            this.replayMillis = replayMillis;
+        }
+
+        public boolean isFromSnapshot() { return fromSnapshot; }
+        public long getReplayed() { return replayed; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: 读快照 %.2fms, 回放 %d 条 %.2fms", fromSnapshot ? "热启动" : "冷启动("
+                + reason + ")", loadMillis, replayed, replayMillis);
+        }
+    }
+
+    /**
+     * 维护聚合状态的服务：启动时从快照恢复，运行中记录新数据并每 checkpointInterval 条写一次快照
+     */
+    static final class SummaryService {
+        private final SnapshotStore store;
+        private final RecordLog<Order> orderLog;
+        private final RecordLog<Transaction> transactionLog;
+        private final long checkpointInterval;
+        private final AggregateState state;
+        private final Recovery recovery;
+        private long sinceCheckpoint;
+        private int checkpoints;
+
+        private SummaryService(SnapshotStore store, RecordLog<Order> orderLog, RecordLog<Transaction> transactionLog,
+                               long checkpointInterval, AggregateState state, Recovery recovery) {
+            this.store = store;
+            this.orderLog = orderLog;
+            this.transactionLog = transactionLog;
+            this.checkpointInterval = checkpointInterval;
+            this.state = state;
+            this.recovery = recovery;
+        }
+
+        static SummaryService recover(SnapshotStore store, RecordLog<Order> orderLog,
+                                      RecordLog<Transaction> transactionLog, long checkpointInterval) {
+            long start = System.nanoTime();
+            AggregateState state;
+            String reason = null;
+            try {
+                state = store.load().orElse(null);
+                if (state == null) {
+                    reason = "没有快照";
+                }
+            } catch (IllegalStateException e) {
+                // 快照不可用时退回全量重算，下一次检查点会覆盖坏文件
+                state = null;
+                reason = e.getMessage();
+            }
+            double loadMillis = (System.nanoTime() - start) / 1e6;
+            boolean fromSnapshot = state != null;
+            if (state == null) {
+                state = new AggregateState();
+            }
+
+            start = System.nanoTime();
+            long replayed;
+            try {
+                replayed = state.catchUp(orderLog, transactionLog);
+            } catch (IllegalArgumentException e) {
+                if (!fromSnapshot) {
+                    throw e;
+                }
+                // 快照位置超过日志末尾（日志被截断或换成了更旧的日志），快照不可信，丢弃后全量重算
+                fromSnapshot = false;
+                reason = e.getMessage();
+                state = new AggregateState();
+                replayed = state.catchUp(orderLog, transactionLog);
+            }
+            double replayMillis = (System.nanoTime() - start) / 1e6;
+            return new SummaryService(store, orderLog, transactionLog, checkpointInterval, state,
+                new Recovery(fromSnapshot, reason, replayed, loadMillis, replayMillis));
+        }
+
+        synchronized void record(Order order) {
+            state.orderPosition = orderLog.append(order);
+            state.add(order);
+            afterRecord();
+        }
+
+        synchronized void record(Transaction transaction) {
+            state.transactionPosition = transactionLog.append(transaction);
+            state.add(transaction);
+            afterRecord();
+        }
+
+        private void afterRecord() {
+            if (++sinceCheckpoint >= checkpointInterval) {
+                checkpoint();
+            }
+        }
+
+        synchronized void checkpoint() {
+            orderLog.sync();
+            transactionLog.sync();
+            store.write(state);
+            sinceCheckpoint = 0;
+            checkpoints++;
+        }
+
+        synchronized Map<String, OrderStats> orderStats() {
+            return state.orderStats();
+        }
+
+        synchronized Map<String, TransactionSummary> transactionSummaries() {
+            return state.transactionSummaries();
+        }
+
+        synchronized AggregateState copyState() {
+            return state.copy();
+        }
+
+        Recovery getRecovery() { return recovery; }
+        synchronized int getCheckpoints() { return checkpoints; }
+    }
+}
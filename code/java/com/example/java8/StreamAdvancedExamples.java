@@ -448,11 +448,11 @@ public class StreamAdvancedExamples {
     
     // 辅助方法
     private static Optional<Integer> safeParseInt(String str) {
-        try {
-            return Optional.of(Integer.parseInt(str));
-        } catch (NumberFormatException e) {
-            return Optional.empty();
-        }
+        // 使用不抛异常的解析，无效输入不会创建 NumberFormatException
+        long result = PrimitiveOptionalExamples.OptionalInts.parseInt(str);
+        return PrimitiveOptionalExamples.OptionalInts.isPresent(result)
+            ? Optional.of((int) result)
+            : Optional.empty();
     }
     
     /**
@@ -0,0 +1,732 @@
+package com.example.java8;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
+import java.util.zip.CRC32;
+
+import com.example.java8.JoinExamples.OrderCodec;
+import com.example.java8.JoinExamples.RecordCodec;
+import com.example.java8.MemoryGovernorExamples.TransactionCodec;
+import com.example.java8.SnapshotExamples.AggregateState;
+import com.example.java8.SnapshotExamples.RecordLog;
+import com.example.java8.SnapshotExamples.SnapshotStore;
+import com.example.java8.SnapshotExamples.SummaryService;
+import com.example.java8.StreamAdvancedExamples.Order;
+import com.example.java8.StreamAdvancedExamples.Transaction;
+
+/**
+ * Java 8 预写日志示例类
+ * 每条到达的 Order / Transaction 先以二进制编码追加到只追加的日志文件，每条记录带 CRC32。
+ * 每条记录 fsync 一次太慢，这里改为组提交：攒够 N 条或经过 T 毫秒后一次 FileChannel.force，
+ * 需要确认持久化的写入方等待同一次 fsync。重启时顺序扫描日志，截掉崩溃留下的残缺尾部，
+ * 回放读取器通过内存映射把记录直接交给 Stream / Collector 管道，并可作为快照的记录来源
+ */
+public class WriteAheadLogExamples {
+
+    /**
+     * 1. 追加、关闭、重新打开后用 Stream 回放
+     */
+    public static void appendAndReplay() {
+        System.out.println("=== 追加与回放 ===");
+
+        Path dir = WriteAheadLog.createDirectory();
+        try {
+            Path file = dir.resolve("orders.wal");
+            try (WriteAheadLog<Order> wal = WriteAheadLog.open(file, new OrderCodec(), GroupCommit.every(4, 10))) {
+                Arrays.asList(
+                    new Order("A001", "Laptop", 1200.0, "Electronics", "2024-01-15"),
+                    new Order("A002", "Mouse", 25.0, "Electronics", "2024-01-16"),
+                    new Order("A003", "Desk", 300.0, "Furniture", "2024-01-17"),
+                    new Order("A004", "Keyboard", 80.0, "Electronics", "2024-01-18"),
+                    new Order("A005", "Chair", 150.0, "Furniture", "2024-01-19"),
+                    new Order("A006", "Monitor", 400.0, "Electronics", "2024-01-20")
+                ).forEach(wal::append);
+                System.out.println("追加 " + wal.getAppended() + " 条, fsync " + wal.getSyncs() + " 次 (关闭前)");
+            }
+
+            try (WriteAheadLog<Order> wal = WriteAheadLog.open(file, new OrderCodec(), GroupCommit.every(4, 10));
+                 Stream<Order> replay = wal.stream(WriteAheadLog.FIRST_POSITION)) {
+                Map<String, DoubleSummaryStatistics> byCategory = replay.collect(Collectors.groupingBy(
+                    Order::getCategory, TreeMap::new, Collectors.summarizingDouble(Order::getPrice)));
+                System.out.println("重新打开: 恢复 " + wal.getRecoveredRecords() + " 条, 日志 "
+                    + wal.getDurablePosition() + " 字节");
+                byCategory.forEach((category, stats) -> System.out.printf("  %-12s 总额 %.2f, 数量 %d%n",
+                    category, stats.getSum(), stats.getCount()));
+            }
+        } finally {
+            WriteAheadLog.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * 2. 组提交：逐条 fsync 与按批 fsync 的吞吐对比；并发写入方等待同一次 fsync
+     */
+    public static void groupCommitThroughput(int records, int producers) throws InterruptedException {
+        System.out.println("\n=== 组提交吞吐 ===");
+
+        List<Transaction> transactions = MemoryGovernorExamples.generateTransactions(records, 10_000);
+        for (GroupCommit policy : Arrays.asList(GroupCommit.perRecord(), GroupCommit.every(256, 5),
+                GroupCommit.every(4096, 20))) {
+            Path dir = WriteAheadLog.createDirectory();
+            try (WriteAheadLog<Transaction> wal = WriteAheadLog.open(dir.resolve("tx.wal"), new TransactionCodec(),
+                    policy)) {
+                long start = System.nanoTime();
+                transactions.forEach(wal::append);
+                wal.sync();
+                double ms = (System.nanoTime() - start) / 1e6;
+                System.out.printf("%-28s %6d 条 %8.2fms, %9.0f 条/秒, fsync %d 次%n", policy, records, ms,
+                    records / ms * 1000, wal.getSyncs());
+            } finally {
+                WriteAheadLog.deleteDirectory(dir);
+            }
+        }
+
+        // 每个写入方都要求确认持久化，同一批内的写入方共享一次 fsync
+        int perProducer = Math.max(1, records / producers / 10);
+        Path dir = WriteAheadLog.createDirectory();
+        try (WriteAheadLog<Transaction> wal = WriteAheadLog.open(dir.resolve("tx.wal"), new TransactionCodec(),
+                GroupCommit.every(producers, 2))) {
+            ExecutorService executor = Executors.newFixedThreadPool(producers);
+            long start = System.nanoTime();
+            for (int p = 0; p < producers; p++) {
+                int offset = p * perProducer;
+                executor.execute(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        wal.appendDurable(transactions.get(offset + i));
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            double ms = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%d 个写入方各 %d 条并确认持久化: %.2fms, fsync %d 次, 平均每次 %.1f 条%n", producers,
+                perProducer, ms, wal.getSyncs(), (double) wal.getAppended() / wal.getSyncs());
+        } finally {
+            WriteAheadLog.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * 3. 崩溃恢复：未提交的缓冲丢失，残缺或校验失败的尾部在重新打开时被截掉
+     */
+    public static void crashRecovery() {
+        System.out.println("\n=== 崩溃恢复 ===");
+
+        List<Order> orders = JoinExamples.generateOrders(1_050, 100);
+        Path dir = WriteAheadLog.createDirectory();
+        try {
+            Path file = dir.resolve("orders.wal");
+            WriteAheadLog<Order> wal = WriteAheadLog.open(file, new OrderCodec(), GroupCommit.every(100, 60_000));
+            orders.forEach(wal::append);
+            long durable = wal.getDurablePosition();
+            // 进程崩溃：每满 100 条提交一次，最后 50 条还在缓冲中，没有写出
+            wal.abandon();
+            System.out.println("崩溃前追加 " + orders.size() + " 条, 已持久化到偏移量 " + durable);
+
+            // 再模拟一次写到一半的记录
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3}));
+            }
+            try (WriteAheadLog<Order> reopened = WriteAheadLog.open(file, new OrderCodec(),
+                    GroupCommit.every(100, 10))) {
+                System.out.println("重新打开: 恢复 " + reopened.getRecoveredRecords() + " 条, 截掉尾部 "
+                    + reopened.getTruncatedBytes() + " 字节");
+            }
+
+            // 最后一条记录的内容损坏：CRC 不匹配，从这条开始截断
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[] {'#'}), channel.size() - 3);
+            }
+            try (WriteAheadLog<Order> reopened = WriteAheadLog.open(file, new OrderCodec(),
+                    GroupCommit.every(100, 10));
+                 Stream<Order> replay = reopened.stream(WriteAheadLog.FIRST_POSITION)) {
+                List<Order> recovered = replay.collect(Collectors.toList());
+                System.out.println("尾部损坏后重新打开: 恢复 " + reopened.getRecoveredRecords() + " 条, 截掉尾部 "
+                    + reopened.getTruncatedBytes() + " 字节, 最后一条 " + recovered.get(recovered.size() - 1).getId());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            WriteAheadLog.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * 4. 顺序回放速度：内存映射读取直接进入 groupingBy 管道
+     */
+    public static void replayThroughput(int records) {
+        System.out.println("\n=== 回放吞吐 ===");
+
+        Path dir = WriteAheadLog.createDirectory();
+        try {
+            Path file = dir.resolve("tx.wal");
+            try (WriteAheadLog<Transaction> wal = WriteAheadLog.open(file, new TransactionCodec(),
+                    GroupCommit.every(8192, 50))) {
+                MemoryGovernorExamples.generateTransactions(records, 100_000).forEach(wal::append);
+            }
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                try (WriteAheadLog<Transaction> wal = WriteAheadLog.open(file, new TransactionCodec(),
+                        GroupCommit.every(8192, 50));
+                     Stream<Transaction> replay = wal.stream(WriteAheadLog.FIRST_POSITION)) {
+                    Map<String, Double> totals = replay.collect(Collectors.groupingBy(Transaction::getCurrency,
+                        TreeMap::new, Collectors.summingDouble(Transaction::getAmount)));
+                    double ms = (System.nanoTime() - start) / 1e6;
+                    System.out.printf("第 %d 轮: %d 条 %.1fMB 打开并回放 %.2fms (%.0fMB/s), 币种 %s%n", round + 1,
+                        wal.getRecoveredRecords(), wal.getDurablePosition() / 1048576.0, ms,
+                        wal.getDurablePosition() / 1048576.0 / ms * 1000, totals.keySet());
+                }
+            }
+        } finally {
+            WriteAheadLog.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * 5. 与快照结合：日志作为快照的记录来源，快照位置就是日志偏移量，重启只回放偏移量之后的部分
+     */
+    public static void snapshotOverLog(int records, long checkpointInterval) {
+        System.out.println("\n=== 快照 + 预写日志 ===");
+
+        List<Order> incomingOrders = JoinExamples.generateOrders(records, 5_000);
+        List<Transaction> incomingTransactions = MemoryGovernorExamples.generateTransactions(records, 5_000);
+        Path dir = WriteAheadLog.createDirectory();
+        try {
+            SnapshotStore store = new SnapshotStore(dir.resolve("summaries.snap"));
+            GroupCommit policy = GroupCommit.every(1024, 10);
+            AggregateState beforeCrash;
+            WriteAheadLog<Order> orderLog = WriteAheadLog.open(dir.resolve("orders.wal"), new OrderCodec(), policy);
+            WriteAheadLog<Transaction> transactionLog = WriteAheadLog.open(dir.resolve("transactions.wal"),
+                new TransactionCodec(), policy);
+            try {
+                SummaryService service = SummaryService.recover(store, orderLog, transactionLog, checkpointInterval);
+                for (int i = 0; i < records; i++) {
+                    service.record(incomingOrders.get(i));
+                    service.record(incomingTransactions.get(i));
+                }
+                orderLog.sync();
+                transactionLog.sync();
+                beforeCrash = service.copyState();
+                System.out.println("摄入 " + 2 * records + " 条, 写检查点 " + service.getCheckpoints() + " 次, 日志 "
+                    + (orderLog.getDurablePosition() + transactionLog.getDurablePosition()) / 1024 + "KB");
+            } finally {
+                // 没有在退出前写最终快照，模拟进程被杀
+                orderLog.abandon();
+                transactionLog.abandon();
+            }
+
+            try (WriteAheadLog<Order> orders = WriteAheadLog.open(dir.resolve("orders.wal"), new OrderCodec(), policy);
+                 WriteAheadLog<Transaction> transactions = WriteAheadLog.open(dir.resolve("transactions.wal"),
+                     new TransactionCodec(), policy)) {
+                SummaryService restarted = SummaryService.recover(store, orders, transactions, checkpointInterval);
+                System.out.println("重启: " + restarted.getRecovery());
+
+                long start = System.nanoTime();
+                AggregateState cold = AggregateState.rebuild(orders, transactions);
+                System.out.printf("对照: 全量回放日志 %.2fms%n", (System.nanoTime() - start) / 1e6);
+                System.out.println("与崩溃前一致: " + beforeCrash.equals(restarted.copyState())
+                    + ", 与全量回放一致: " + cold.equals(restarted.copyState()));
+            }
+        } finally {
+            WriteAheadLog.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * 主方法，运行所有示例
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int producers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        appendAndReplay();
+        groupCommitThroughput(records, producers);
+        crashRecovery();
+        replayThroughput(records * 25);
+        snapshotOverLog(records * 5, 30_000);
+    }
+
+    /**
+     * 组提交策略：攒够 maxRecords 条，或最早一条未提交记录等待超过 maxDelayMillis 毫秒时 fsync
+     * maxDelayMillis 为 0 表示没有时间上限，此时等待持久化的写入方会自己提交
+     */
+    static final class GroupCommit {
+        final int maxRecords;
+        final long maxDelayMillis;
+
+        private GroupCommit(int maxRecords, long maxDelayMillis) {
+            if (maxRecords < 1) {
+                throw new IllegalArgumentException("maxRecords 必须为正数: " + maxRecords);
+            }
+            if (maxDelayMillis < 0) {
+                throw new IllegalArgumentException("maxDelayMillis 不能为负数: " + maxDelayMillis);
+            }
+            this.maxRecords = maxRecords;
+            this.maxDelayMillis = maxDelayMillis;
+        }
+
+        static GroupCommit every(int records, long millis) {
+            return new GroupCommit(records, millis);
+        }
+
+        static GroupCommit perRecord() {
+            return new GroupCommit(1, 0);
+        }
+
+        @Override
+        public String toString() {
+            return maxRecords == 1 ? "GroupCommit{逐条}"
+                : "GroupCommit{" + maxRecords + " 条 / " + maxDelayMillis + "ms}";
+        }
+    }
+
+    /**
+     * 只追加的预写日志，文件布局（大端）：
+     * magic:int | version:int | (length:int | crc32(payload):int | payload)*
+     * 位置是文件偏移量：append 返回记录末尾的偏移量，快照保存它作为回放起点。
+     * append 只写入内存缓冲；缓冲按 GroupCommit 策略由写入线程或后台线程写出并 fsync，
+     * appendDurable / awaitDurable 等待记录所在的那一批落盘。写出失败后日志不再可用
+     */
+    static final class WriteAheadLog<T> implements RecordLog<T>, AutoCloseable {
+        static final int MAGIC = 0x57414C31;
+        static final int VERSION = 1;
+        static final long FIRST_POSITION = 8;
+        static final int ENTRY_HEADER_BYTES = 8;
+        private static final int MAX_PENDING_BYTES = 1 << 20;
+
+        private final Path file;
+        private final FileChannel channel;
+        private final RecordCodec<T> codec;
+        private final GroupCommit policy;
+        private final ScheduledExecutorService flusher;
+        private final long recoveredRecords;
+        private final long truncatedBytes;
+        /** 保证同一时刻只有一个线程写出并 fsync，写出期间其它线程仍可 append */
+        private final Object commitLock = new Object();
+        private final ByteArrayOutputStream scratch = new ByteArrayOutputStream(256);
+        private final DataOutputStream scratchOut = new DataOutputStream(scratch);
+        private final CRC32 crc = new CRC32();
+
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream(64 << 10);
+        private ByteArrayOutputStream spare = new ByteArrayOutputStream(64 << 10);
+        private int pendingRecords;
+        private long oldestPendingNanos;
+        private long position;
+        private long durable;
+        private long appended;
+        private long syncs;
+        private boolean closed;
+        private IOException failure;
+
+        private WriteAheadLog(Path file, FileChannel channel, RecordCodec<T> codec, GroupCommit policy, long end,
+                              long recoveredRecords, long truncatedBytes) {
+            this.file = file;
+            this.channel = channel;
+            this.codec = codec;
+            this.policy = policy;
+            this.position = end;
+            this.durable = end;
+            this.recoveredRecords = recoveredRecords;
+            this.truncatedBytes = truncatedBytes;
+            if (policy.maxRecords > 1 && policy.maxDelayMillis > 0) {
+                this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "wal-flusher-" + file.getFileName());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                long period = Math.max(1, policy.maxDelayMillis / 2);
+                flusher.scheduleWithFixedDelay(this::flushIfDue, period, period, TimeUnit.MILLISECONDS);
+            } else {
+                this.flusher = null;
+            }
+        }
+
+        /**
+         * 打开或创建日志：顺序校验已有记录，在第一条残缺或 CRC 不匹配的记录处截断
+         */
+        static <T> WriteAheadLog<T> open(Path file, RecordCodec<T> codec, GroupCommit policy) {
+            FileChannel channel = null;
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+                if (channel.size() < FIRST_POSITION) {
+                    // 新文件，或者连文件头都没有写完
+                    channel.truncate(0);
+                    ByteBuffer header = ByteBuffer.allocate((int) FIRST_POSITION).putInt(MAGIC).putInt(VERSION);
+                    header.flip();
+                    channel.write(header, 0);
+                    channel.force(true);
+                }
+                long size = channel.size();
+                EntryCursor cursor = new EntryCursor(channel, FIRST_POSITION, size);
+                if (cursor.buffer.getInt(0) != MAGIC || cursor.buffer.getInt(4) != VERSION) {
+                    throw new IllegalStateException("不是可识别的日志文件: " + file);
+                }
+                long records = 0;
+                while (cursor.next()) {
+                    records++;
+                }
+                long end = cursor.position();
+                if (end < size) {
+                    channel.truncate(end);
+                    channel.force(true);
+                }
+                channel.position(end);
+                return new WriteAheadLog<>(file, channel, codec, policy, end, records, size - end);
+            } catch (IOException e) {
+                closeQuietly(channel);
+                throw new UncheckedIOException("打开日志失败: " + file, e);
+            } catch (RuntimeException e) {
+                closeQuietly(channel);
+                throw e;
+            }
+        }
+
+        /**
+         * 追加一条记录，返回记录末尾的位置；此时记录未必已持久化
+         */
+        @Override
+        public long append(T record) {
+            long end;
+            boolean commitNow;
+            synchronized (this) {
+                ensureWritable();
+                scratch.reset();
+                try {
+                    codec.write(scratchOut, record);
+                    scratchOut.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                byte[] payload = scratch.toByteArray();
+                crc.reset();
+                crc.update(payload, 0, payload.length);
+                writeInt(pending, payload.length);
+                writeInt(pending, (int) crc.getValue());
+                pending.write(payload, 0, payload.length);
+                if (pendingRecords++ == 0) {
+                    oldestPendingNanos = System.nanoTime();
+                }
+                position += ENTRY_HEADER_BYTES + payload.length;
+                appended++;
+                end = position;
+                commitNow = pendingRecords >= policy.maxRecords || pending.size() >= MAX_PENDING_BYTES;
+            }
+            if (commitNow) {
+                commit();
+            }
+            return end;
+        }
+
+        /**
+         * 追加并等待记录所在的一批 fsync 完成
+         */
+        long appendDurable(T record) {
+            long end = append(record);
+            awaitDurable(end);
+            return end;
+        }
+
+        void awaitDurable(long position) {
+            if (flusher == null && getDurablePosition() < position) {
+                // 没有后台线程按时间提交，不足 maxRecords 条的一批只能由等待方自己提交，否则会一直等下去；
+                // 如果这条记录已在别的线程正在写出的一批里，commit 会在 commitLock 上等到那一批完成
+                commit();
+            }
+            synchronized (this) {
+                boolean interrupted = false;
+                while (durable < position) {
+                    ensureWritable();
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * 立即写出并 fsync 缓冲中的所有记录
+         */
+        @Override
+        public void sync() {
+            commit();
+        }
+
+        private void flushIfDue() {
+            boolean due;
+            synchronized (this) {
+                due = pendingRecords > 0 && failure == null && !closed
+                    && System.nanoTime() - oldestPendingNanos >= TimeUnit.MILLISECONDS.toNanos(policy.maxDelayMillis);
+            }
+            if (due) {
+                try {
+                    commit();
+                } catch (RuntimeException e) {
+                    // 失败已记录在 failure 中，写入方会在下一次 append 时看到；不能让异常终止定时任务
+                }
+            }
+        }
+
+        private void commit() {
+            synchronized (commitLock) {
+                ByteArrayOutputStream batch;
+                long upTo;
+                synchronized (this) {
+                    if (pendingRecords == 0) {
+                        return;
+                    }
+                    ensureWritable();
+                    batch = pending;
+                    pending = spare;
+                    upTo = position;
+                    pendingRecords = 0;
+                }
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    synchronized (this) {
+                        failure = e;
+                        notifyAll();
+                    }
+                    throw new UncheckedIOException("写日志失败: " + file, e);
+                }
+                batch.reset();
+                synchronized (this) {
+                    spare = batch;
+                    durable = upTo;
+                    syncs++;
+                    notifyAll();
+                }
+            }
+        }
+
+        private void ensureWritable() {
+            if (failure != null) {
+                throw new IllegalStateException("日志写出失败后不可用: " + file, failure);
+            }
+            if (closed) {
+                throw new IllegalStateException("日志已关闭: " + file);
+            }
+        }
+
+        /**
+         * 把 position 之后已持久化的记录依次交给 sink，返回回放结束时的位置
+         */
+        @Override
+        public long replay(long position, Consumer<? super T> sink) {
+            long end = getDurablePosition();
+            try (Stream<T> records = stream(position, end)) {
+                records.forEach(sink);
+            }
+            return end;
+        }
+
+        /**
+         * 从 position 开始顺序读取已持久化的记录；读取通过内存映射进行，返回的流需要关闭
+         */
+        Stream<T> stream(long position) {
+            return stream(position, getDurablePosition());
+        }
+
+        private Stream<T> stream(long position, long to) {
+            // 空状态的初始位置 0 等同于第一条记录的位置
+            long from = position == 0 ? FIRST_POSITION : position;
+            if (from < FIRST_POSITION || from > to) {
+                throw new IllegalArgumentException("回放位置 " + position + " 不在日志范围 [" + FIRST_POSITION + ", "
+                    + to + "] 内");
+            }
+            EntryCursor cursor;
+            try {
+                cursor = new EntryCursor(channel, from, to);
+            } catch (IOException e) {
+                throw new UncheckedIOException("读日志失败: " + file, e);
+            }
+            RecordCodec<T> decoder = codec;
+            Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super T> action) {
+                    if (!cursor.next()) {
+                        if (cursor.position() < to) {
+                            // 已持久化的范围内出现坏记录，不是崩溃造成的尾部残缺
+                            throw new IllegalStateException("日志在偏移量 " + cursor.position() + " 处损坏: " + file);
+                        }
+                        return false;
+                    }
+                    try {
+                        action.accept(decoder.read(cursor.input));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return true;
+                }
+            };
+            return StreamSupport.stream(spliterator, false);
+        }
+
+        /**
+         * 模拟进程崩溃：停止后台线程并关闭文件，缓冲中尚未写出的记录丢失
+         */
+        void abandon() {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            if (flusher != null) {
+                flusher.shutdownNow();
+            }
+            closeQuietly(channel);
+        }
+
+        @Override
+        public void close() {
+            if (flusher != null) {
+                flusher.shutdown();
+            }
+            try {
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                }
+                if (failure == null) {
+                    commit();
+                }
+            } finally {
+                synchronized (this) {
+                    closed = true;
+                    notifyAll();
+                }
+                closeQuietly(channel);
+            }
+        }
+
+        synchronized long getAppended() { return appended; }
+        synchronized long getSyncs() { return syncs; }
+        synchronized long getDurablePosition() { return durable; }
+        long getRecoveredRecords() { return recoveredRecords; }
+        long getTruncatedBytes() { return truncatedBytes; }
+
+        private static void writeInt(ByteArrayOutputStream out, int value) {
+            out.write(value >>> 24);
+            out.write(value >>> 16);
+            out.write(value >>> 8);
+            out.write(value);
+        }
+
+        private static void closeQuietly(Closeable closeable) {
+            if (closeable == null) {
+                return;
+            }
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // 已经在处理另一个异常，或者是模拟崩溃
+            }
+        }
+
+        static Path createDirectory() {
+            return JoinExamples.SpillFiles.createDirectory("wal-");
+        }
+
+        static void deleteDirectory(Path dir) {
+            JoinExamples.SpillFiles.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * 在内存映射的区间 [from, to) 上逐条校验记录；next 遇到末尾、残缺或 CRC 不匹配时返回 false，
+     * 此时 position 停在最后一条完整记录之后
+     */
+    static final class EntryCursor {
+        final ByteBuffer buffer;
+        final DataInputStream input;
+        private final ByteBufferInput payload;
+        private final CRC32 crc = new CRC32();
+        private long position;
+
+        EntryCursor(FileChannel channel, long from, long to) throws IOException {
+            if (to > Integer.MAX_VALUE) {
+                throw new IllegalStateException("示例只支持 2GB 以内的日志文件，实际应按段滚动: " + to);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, to);
+            this.buffer.position((int) from);
+            this.payload = new ByteBufferInput();
+            this.input = new DataInputStream(payload);
+            this.position = from;
+        }
+
+        boolean next() {
+            if (buffer.remaining() < WriteAheadLog.ENTRY_HEADER_BYTES) {
+                return false;
+            }
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            int expectedCrc = buffer.getInt(start + 4);
+            if (length < 0 || length > buffer.remaining() - WriteAheadLog.ENTRY_HEADER_BYTES) {
+                return false;
+            }
+            ByteBuffer slice = buffer.duplicate();
+            int from = start + WriteAheadLog.ENTRY_HEADER_BYTES;
+            slice.position(from).limit(from + length);
+            crc.reset();
+            crc.update(slice.duplicate());
+            if ((int) crc.getValue() != expectedCrc) {
+                return false;
+            }
+            payload.wrap(slice);
+            buffer.position(slice.limit());
+            position = slice.limit();
+            return true;
+        }
+
+        long position() {
+            return position;
+        }
+    }
+
+    /**
+     * 以 ByteBuffer 为数据源的 InputStream，让 DataInput 形式的编解码器直接读取映射内存
+     */
+    static final class ByteBufferInput extends InputStream {
+        private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+        void wrap(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return length == 0 ? 0 : -1;
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}